@@ -1,6 +1,7 @@
 package com.example.dataserver.controller;
 
 import com.example.dataserver.services.DataService;
+import com.example.dataserver.services.LoadStats;
 import com.example.dataserver.services.ZkService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,13 +25,16 @@ public class DataController {
     @Autowired
     private ZkService zkService;
 
+    @Autowired
+    private LoadStats loadStats;
+
     /**
      * 1、读取request content内容并保存在本地磁盘下的文件内
      * 2、同步调用其他ds服务的write，完成另外2副本的写入
      * 3、返回写成功的结果及三副本的位置
      * @param fileSystemName 文件系统名称
      * @param path
-     * @param offset
+     * @param offset 写入起始偏移，0表示整体重写，大于0时从该位置覆盖或追加
      * @param length
      * @return
      */
@@ -38,9 +42,10 @@ public class DataController {
     public ResponseEntity<Map<String, Object>> writeFile(
             @RequestHeader String fileSystemName,
             @RequestParam String path,
-            @RequestParam int offset,
+            @RequestParam long offset,
             @RequestParam int length,
             @RequestHeader(value = "X-Is-Replica-Sync", required = false) String xIsReplicaSync,
+            @RequestHeader(value = "X-Fsck-Transfer", required = false) String xFsckTransfer,
             HttpServletRequest request) {
         try {
             // 参数验证
@@ -86,8 +91,18 @@ public class DataController {
 
             // 核心修改：判断是否为副本同步请求（头存在且为"true"）
             boolean isReplicaSync = "true".equalsIgnoreCase(xIsReplicaSync);
+            // FSCK补副本单独计数，随心跳上报
+            boolean fsckTransfer = "true".equalsIgnoreCase(xFsckTransfer);
             // 调用服务层方法时传入标识
-            List<String> replicaLocations = dataService.writeWithChunk(fileSystemName, data, path, isReplicaSync);
+            List<String> replicaLocations;
+            loadStats.beginRequest(fsckTransfer);
+            long start = System.nanoTime();
+            try {
+                replicaLocations = dataService.writeWithChunk(fileSystemName, data, path, offset, isReplicaSync);
+            } finally {
+                loadStats.recordDiskOp(data.length, System.nanoTime() - start);
+                loadStats.endRequest(fsckTransfer);
+            }
 
             // 构造返回结果：成功标识+三副本位置
             Map<String, Object> result = new HashMap<>();
@@ -147,7 +162,15 @@ public class DataController {
             }
             
             // 调用服务层读取数据（支持分块读取）
-            byte[] data = dataService.readWithChunk(fileSystemName, path, offset, length);
+            byte[] data;
+            loadStats.beginRequest(false);
+            long start = System.nanoTime();
+            try {
+                data = dataService.readWithChunk(fileSystemName, path, offset, length);
+            } finally {
+                loadStats.recordDiskOp(0, System.nanoTime() - start);
+                loadStats.endRequest(false);
+            }
 
             // 若数据为空，返回404
             if (data == null) {
@@ -1,5 +1,6 @@
 package com.example.dataserver.services;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,7 +10,9 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +31,20 @@ public class DataService {
     // 新增块大小常量（64MB）
     private static final int BLOCK_SIZE = 64 * 1024 * 1024; // 64MB
 
+    // 未写满的最后一块的MD5中间状态（本地块路径 -> 已摘要的长度与状态），追加时在此基础上继续摘要，不必重读整块
+    private static final int MAX_OPEN_DIGESTS = 1024;
+    private final Map<String, ChunkDigest> openDigests = new ConcurrentHashMap<>();
+
+    private static final class ChunkDigest {
+        final long length;
+        final MessageDigest digest;
+
+        ChunkDigest(long length, MessageDigest digest) {
+            this.length = length;
+            this.digest = digest;
+        }
+    }
+
     /**
      * 生成本地存储路径（基于文件系统名称和文件路径映射）
      */
@@ -161,13 +178,19 @@ public class DataService {
 
     /**
      * 分块写入文件内容
+     * offset为0时整体重写文件；offset大于0时从该位置覆盖/追加，只改写涉及的块并更新清单中对应的MD5，
+     * 追加到文件末尾的开销与追加的字节数成正比。offset不能超过当前文件长度（不支持空洞）
      * @param fileSystemName 文件系统名称
      * @param data 要写入的数据
      * @param path 文件路径
+     * @param offset 写入起始偏移（字节）
      * @param isReplicaSync 是否为副本同步请求
      * @return 副本位置列表
      */
-    public List<String> writeWithChunk(String fileSystemName, byte[] data, String path, boolean isReplicaSync) {
+    public List<String> writeWithChunk(String fileSystemName, byte[] data, String path, long offset, boolean isReplicaSync) {
+        if (offset > 0) {
+            return writeAtOffset(fileSystemName, data, path, offset);
+        }
         try {
             List<String> replicaLocations = new ArrayList<>();
             replicaLocations.add(selfIp + ":" + selfPort); // 本节点始终作为副本之一
@@ -202,13 +225,25 @@ public class DataService {
                     java.nio.file.Files.createDirectories(parentDir);
                 }
                 Files.write(chunkFilePath, chunkData);
+                openDigests.remove(localChunkPath);
+                if (i == totalChunks - 1 && length < BLOCK_SIZE) {
+                    // 最后一块未写满，保留摘要状态供后续追加
+                    rememberDigest(localChunkPath, length, DigestUtils.updateDigest(DigestUtils.getMd5Digest(), chunkData));
+                }
+            }
+            // 原文件更长时多出的块已不在清单内，一并删除，避免之后追加新块时残留旧数据
+            for (int i = totalChunks; ; i++) {
+                String staleChunkPath = getLocalFilePath(fileSystemName, path + "_chunk_" + i);
+                openDigests.remove(staleChunkPath);
+                if (!new File(staleChunkPath).delete()) {
+                    break;
+                }
             }
 
             // 3. 生成MD5清单文件
             String md5ListPath = path + "_md5_list.txt";
             String localMd5ListPath = getLocalFilePath(fileSystemName, md5ListPath);
-            String md5ListContent = String.join("\n", chunkMd5List);
-            writeToLocal(localMd5ListPath, md5ListContent.getBytes(StandardCharsets.UTF_8), 0);
+            writeMd5ListFile(localMd5ListPath, chunkMd5List);
             System.out.println("[INFO] MD5清单文件已生成：" + localMd5ListPath + "，包含" + chunkMd5List.size() + "个MD5值");
 
             // 4. 如果不是副本同步请求，则尝试同步到其他DataServer（简化实现）
@@ -230,6 +265,121 @@ public class DataService {
         }
     }
 
+    /**
+     * 从offset开始覆盖/追加：只读写涉及的块，其余块与清单中的MD5保持不变
+     */
+    private List<String> writeAtOffset(String fileSystemName, byte[] data, String path, long offset) {
+        try {
+            System.out.println("[INFO] 偏移写入开始，文件系统: " + fileSystemName + ", 目标路径：" + path + "，偏移：" + offset + "，大小：" + data.length + "字节");
+
+            // 1. 由清单与最后一块的实际大小得到当前文件长度
+            String localMd5ListPath = getLocalFilePath(fileSystemName, path + "_md5_list.txt");
+            List<String> chunkMd5List = new ArrayList<>(readMd5ListFromLocal(localMd5ListPath));
+            long fileLength = 0;
+            if (!chunkMd5List.isEmpty()) {
+                int lastIndex = chunkMd5List.size() - 1;
+                File lastChunk = new File(getLocalFilePath(fileSystemName, path + "_chunk_" + lastIndex));
+                fileLength = (long) lastIndex * BLOCK_SIZE + lastChunk.length();
+            }
+            if (offset > fileLength) {
+                throw new IllegalArgumentException("写入偏移超出文件末尾: offset=" + offset + ", fileLength=" + fileLength);
+            }
+
+            // 2. 逐块写入涉及的范围
+            long end = offset + data.length;
+            int firstChunk = (int) (offset / BLOCK_SIZE);
+            int lastChunk = (int) ((end - 1) / BLOCK_SIZE);
+            for (int i = firstChunk; i <= lastChunk; i++) {
+                long chunkStart = (long) i * BLOCK_SIZE;
+                int from = (int) (Math.max(offset, chunkStart) - chunkStart);
+                int to = (int) (Math.min(end, chunkStart + BLOCK_SIZE) - chunkStart);
+                int srcPos = (int) (chunkStart + from - offset);
+                boolean newChunk = i >= chunkMd5List.size();
+
+                String localChunkPath = getLocalFilePath(fileSystemName, path + "_chunk_" + i);
+                File chunkFile = new File(localChunkPath);
+                if (chunkFile.getParentFile() != null && !chunkFile.getParentFile().exists()) {
+                    chunkFile.getParentFile().mkdirs();
+                }
+                long chunkLength;
+                try (RandomAccessFile raf = new RandomAccessFile(chunkFile, "rw")) {
+                    if (newChunk) {
+                        // 新块总是从块首开始写，清掉可能残留的旧块内容
+                        raf.setLength(0);
+                    }
+                    raf.seek(from);
+                    raf.write(data, srcPos, to - from);
+                    chunkLength = raf.length();
+                }
+
+                String chunkMd5 = chunkMd5(localChunkPath, chunkFile, from, data, srcPos, to - from, chunkLength);
+                if (newChunk) {
+                    chunkMd5List.add(chunkMd5);
+                } else {
+                    chunkMd5List.set(i, chunkMd5);
+                }
+                System.out.println("[INFO] 块 " + i + " 写入[" + from + ", " + to + ")，MD5：" + chunkMd5);
+            }
+
+            // 3. 更新MD5清单
+            writeMd5ListFile(localMd5ListPath, chunkMd5List);
+            System.out.println("[INFO] 偏移写入完成，文件系统: " + fileSystemName + ", 路径：" + path + "，文件长度：" + Math.max(fileLength, end));
+
+            List<String> replicaLocations = new ArrayList<>();
+            replicaLocations.add(selfIp + ":" + selfPort);
+            return replicaLocations;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("[ERROR] 偏移写入失败：fileSystemName=" + fileSystemName + ", path=" + path + ", offset=" + offset + ", 错误: " + e.getMessage());
+            throw new RuntimeException("Write at offset failed", e);
+        }
+    }
+
+    /**
+     * 计算写入后块的MD5
+     * 写入恰好接在已缓存摘要的末尾时（顺序追加）只摘要新写入的字节，否则重新读取整块
+     */
+    private String chunkMd5(String localChunkPath, File chunkFile, int from, byte[] data, int srcPos, int length,
+                            long chunkLength) throws Exception {
+        ChunkDigest cached = openDigests.remove(localChunkPath);
+        MessageDigest digest;
+        if (cached != null && cached.length == from && from + length == chunkLength) {
+            digest = cached.digest;
+            digest.update(data, srcPos, length);
+        } else {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(chunkFile))) {
+                digest = DigestUtils.updateDigest(DigestUtils.getMd5Digest(), in);
+            }
+        }
+        if (chunkLength < BLOCK_SIZE) {
+            // 块未写满，后续还可能追加：先复制一份求值，原状态留作下次继续摘要
+            MessageDigest snapshot = (MessageDigest) digest.clone();
+            rememberDigest(localChunkPath, chunkLength, digest);
+            return Hex.encodeHexString(snapshot.digest());
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private void rememberDigest(String localChunkPath, long length, MessageDigest digest) {
+        if (openDigests.size() >= MAX_OPEN_DIGESTS) {
+            // 摘要状态只是加速手段，超出上限时整体丢弃，之后的追加按整块重算
+            openDigests.clear();
+        }
+        openDigests.put(localChunkPath, new ChunkDigest(length, digest));
+    }
+
+    /**
+     * 整体写入MD5清单（截断旧内容，清单变短时不残留旧行）
+     */
+    private void writeMd5ListFile(String localMd5ListPath, List<String> chunkMd5List) throws IOException {
+        java.nio.file.Path listPath = Paths.get(localMd5ListPath);
+        if (listPath.getParent() != null) {
+            Files.createDirectories(listPath.getParent());
+        }
+        Files.write(listPath, String.join("\n", chunkMd5List).getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * 同步数据到其他DataServer
      */
@@ -328,6 +478,7 @@ public class DataService {
                     break;
                 }
                 
+                openDigests.remove(localChunkPath);
                 if (chunkFile.delete()) {
                     System.out.println("[INFO] 删除分块文件成功：" + localChunkPath);
                 } else {
@@ -0,0 +1,89 @@
+package com.example.dataserver.services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本DataServer的实时负载，随ZK心跳上报给MetaServer用于副本放置
+ * 队列深度和待完成的FSCK传输是瞬时值；写入速率和磁盘延迟按上报周期统计后做指数平滑，避免单个周期的抖动
+ */
+@Service
+public class LoadStats {
+
+    // 平滑系数：新周期的权重
+    private static final double ALPHA = 0.5;
+
+    // 正在处理的读写请求数
+    private final AtomicInteger queueDepth = new AtomicInteger(0);
+    // 正在写入的FSCK补副本数
+    private final AtomicInteger pendingTransfers = new AtomicInteger(0);
+
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder diskNanos = new LongAdder();
+    private final LongAdder diskOps = new LongAdder();
+
+    private long lastSampleNanos = System.nanoTime();
+    private double writeMBps;
+    private double diskLatencyMs;
+
+    public void beginRequest(boolean fsckTransfer) {
+        queueDepth.incrementAndGet();
+        if (fsckTransfer) {
+            pendingTransfers.incrementAndGet();
+        }
+    }
+
+    public void endRequest(boolean fsckTransfer) {
+        queueDepth.decrementAndGet();
+        if (fsckTransfer) {
+            pendingTransfers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 记录一次磁盘读写
+     *
+     * @param bytes        写入字节数，读操作传0
+     * @param elapsedNanos 服务层读写耗时
+     */
+    public void recordDiskOp(long bytes, long elapsedNanos) {
+        bytesWritten.add(bytes);
+        diskNanos.add(elapsedNanos);
+        diskOps.increment();
+    }
+
+    /**
+     * 结束当前统计周期并刷新平滑值，由心跳线程调用
+     */
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastSampleNanos) / 1e9);
+        lastSampleNanos = now;
+
+        double mbps = bytesWritten.sumThenReset() / 1024.0 / 1024.0 / seconds;
+        long ops = diskOps.sumThenReset();
+        long nanos = diskNanos.sumThenReset();
+        writeMBps = ALPHA * mbps + (1 - ALPHA) * writeMBps;
+        // 空闲周期没有样本，延迟向0衰减
+        double latency = ops == 0 ? 0 : nanos / 1e6 / ops;
+        diskLatencyMs = ALPHA * latency + (1 - ALPHA) * diskLatencyMs;
+    }
+
+    public int getQueueDepth() {
+        return Math.max(0, queueDepth.get());
+    }
+
+    public int getPendingTransfers() {
+        return Math.max(0, pendingTransfers.get());
+    }
+
+    public synchronized double getWriteMBps() {
+        return writeMBps;
+    }
+
+    public synchronized double getDiskLatencyMs() {
+        return diskLatencyMs;
+    }
+}
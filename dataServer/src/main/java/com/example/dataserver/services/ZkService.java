@@ -2,11 +2,13 @@ package com.example.dataserver.services;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.zookeeper.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -32,6 +34,20 @@ public class ZkService {
     @Value("${dataserver.total-capacity:2048}")
     private long configTotalCapacity;
     
+    // 机架/可用区，随注册信息上报，MetaServer据此把副本分散到不同机架
+    @Value("${dataserver.rack:default-rack}")
+    private String rack;
+    
+    @Value("${dataserver.zone:default-zone}")
+    private String zone;
+    
+    // 负载上报间隔；容量和文件数需要遍历存储目录，仍按10秒重新统计
+    @Value("${dataserver.load.report-interval:2000}")
+    private long loadReportInterval;
+    
+    @Autowired
+    private LoadStats loadStats;
+    
     private ZooKeeper zooKeeper;
     private String dataServerNodePath;
     private final AtomicLong usedCapacity = new AtomicLong(0);
@@ -214,17 +230,26 @@ public class ZkService {
     
     private String createServerInfo() {
         return String.format(
-            "{\"ip\":\"%s\",\"port\":%d,\"totalCapacity\":%d,\"usedCapacity\":%d,\"fileTotal\":%d,\"status\":\"alive\"}",
-            serverIp, serverPort, totalCapacity.get(), usedCapacity.get(), fileTotal.get()
+            Locale.ROOT,
+            "{\"ip\":\"%s\",\"port\":%d,\"rack\":\"%s\",\"zone\":\"%s\",\"totalCapacity\":%d,\"usedCapacity\":%d,\"fileTotal\":%d,"
+                + "\"queueDepth\":%d,\"writeMBps\":%.2f,\"pendingTransfers\":%d,\"diskLatencyMs\":%.2f,\"status\":\"alive\"}",
+            serverIp, serverPort, rack.trim(), zone.trim(), totalCapacity.get(), usedCapacity.get(), fileTotal.get(),
+            loadStats.getQueueDepth(), loadStats.getWriteMBps(), loadStats.getPendingTransfers(), loadStats.getDiskLatencyMs()
         );
     }
     
     private void startHeartbeat() {
         Thread heartbeatThread = new Thread(() -> {
+            long lastCapacityCheck = 0;
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    updateHeartbeat();
-                    Thread.sleep(10000); // 每10秒更新一次心跳
+                    loadStats.sample();
+                    boolean recount = System.currentTimeMillis() - lastCapacityCheck >= 10000;
+                    if (recount) {
+                        lastCapacityCheck = System.currentTimeMillis();
+                    }
+                    updateHeartbeat(recount);
+                    Thread.sleep(Math.min(loadReportInterval, 10000)); // 负载按上报间隔更新，容量每10秒重新统计
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
@@ -238,14 +263,16 @@ public class ZkService {
         heartbeatThread.start();
     }
     
-    private void updateHeartbeat() {
+    private void updateHeartbeat(boolean recount) {
         try {
             if (zooKeeper != null && zooKeeper.getState() == ZooKeeper.States.CONNECTED) {
-                // 重新计算当前已用容量
-                long currentUsedCapacity = calculateCurrentUsedCapacity();
-                usedCapacity.set(currentUsedCapacity);
-                // 重新统计文件总数
-                fileTotal.set(calculateCurrentFileTotal());
+                if (recount) {
+                    // 重新计算当前已用容量
+                    long currentUsedCapacity = calculateCurrentUsedCapacity();
+                    usedCapacity.set(currentUsedCapacity);
+                    // 重新统计文件总数
+                    fileTotal.set(calculateCurrentFileTotal());
+                }
                 
                 String serverInfo = createServerInfo();
                 zooKeeper.setData(dataServerNodePath, serverInfo.getBytes(), -1);
@@ -0,0 +1,44 @@
+package com.ksyun.campus.client;
+
+import com.ksyun.campus.client.domain.StatInfo;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步文件系统基类
+ * 与FileSystem语义一致，但所有方法立即返回CompletableFuture，不占用调用线程；
+ * 适合需要同时发起大量stat/小文件读写的场景，少量线程即可驱动整个集群
+ */
+public abstract class AsyncFileSystem implements AutoCloseable {
+
+    // 文件系统名称，可理解成命名空间
+    protected String defaultFileSystemName;
+
+    public abstract CompletableFuture<StatInfo> statAsync(String path);
+
+    /**
+     * 打开文件：返回文件元数据（大小、副本位置），数据通过readAsync按需读取
+     */
+    public abstract CompletableFuture<StatInfo> openAsync(String path);
+
+    /**
+     * 读取文件数据，length为-1时读取到文件末尾
+     */
+    public abstract CompletableFuture<byte[]> readAsync(String path, long offset, int length);
+
+    public abstract CompletableFuture<StatInfo> writeAsync(String path, byte[] data);
+
+    public abstract CompletableFuture<Boolean> createAsync(String path);
+
+    public abstract CompletableFuture<Boolean> mkdirAsync(String path);
+
+    public abstract CompletableFuture<Boolean> deleteAsync(String path);
+
+    public abstract CompletableFuture<Boolean> existsAsync(String path);
+
+    public abstract CompletableFuture<List<StatInfo>> listFileStatsAsync(String path);
+
+    @Override
+    public abstract void close();
+}
@@ -0,0 +1,324 @@
+package com.ksyun.campus.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ksyun.campus.client.domain.StatInfo;
+import com.ksyun.campus.client.util.HttpAsyncClientUtil;
+import com.ksyun.campus.client.util.HttpClientConfig;
+import com.ksyun.campus.client.util.MetaServerLocator;
+import com.ksyun.campus.client.util.MisdirectedRequestException;
+import com.ksyun.campus.client.util.MountTable;
+import com.ksyun.campus.client.util.ServiceUnavailableException;
+import com.ksyun.campus.client.util.TxidTracker;
+import com.ksyun.campus.client.util.ZkUtil;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.io.CloseMode;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 基于HttpClient5异步客户端的文件系统实现
+ * 请求按挂载表路由到路径所属的MetaServer组；组内Leader地址由MetaServerLocator缓存（ZK watch刷新），
+ * 连接失败/503时在回调中切换候选地址，全程不阻塞调用线程；只读请求在组内Leader与Follower间轮询，并携带该组见过的最新txid
+ */
+public class EAsyncFileSystem extends AsyncFileSystem {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<StatInfo>> STAT_LIST_TYPE = new TypeReference<List<StatInfo>>() {};
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private ZkUtil zkUtil;
+    private CloseableHttpAsyncClient httpAsyncClient;
+    // 每个MetaServer组一个定位器（含该组见过的最新txid），按挂载表首次命中时创建
+    private final Map<String, MetaServerLocator> locators = new ConcurrentHashMap<>();
+    private MountTable mountTable;
+    // 切主/421时刷新Leader与挂载表要同步读ZK，放在这里执行，不占用HttpClient的IO线程
+    private ExecutorService zkRefresher;
+
+    public EAsyncFileSystem() {
+        this("default");
+    }
+
+    public EAsyncFileSystem(String fileSystemName) {
+        this(fileSystemName, new HttpClientConfig().withMaxConnections(200), Runtime.getRuntime().availableProcessors());
+    }
+
+    public EAsyncFileSystem(String fileSystemName, HttpClientConfig config, int ioThreads) {
+        this.defaultFileSystemName = fileSystemName;
+        initializeComponents(config, ioThreads);
+    }
+
+    /**
+     * 初始化组件
+     */
+    private void initializeComponents(HttpClientConfig config, int ioThreads) {
+        try {
+            zkUtil = new ZkUtil();
+            zkUtil.connectToZookeeper();
+
+            List<String> metaServerAddresses = zkUtil.getMetaServerAddresses();
+            String defaultMetaServerAddress = metaServerAddresses != null && !metaServerAddresses.isEmpty()
+                    ? metaServerAddresses.get(0)
+                    : "localhost:8000";
+            MetaServerLocator metaServerLocator = new MetaServerLocator(zkUtil, defaultMetaServerAddress);
+            metaServerLocator.start();
+            locators.put(MountTable.DEFAULT_GROUP, metaServerLocator);
+            mountTable = new MountTable(zkUtil);
+            mountTable.refresh();
+
+            zkRefresher = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "minfs-async-zk-refresher");
+                t.setDaemon(true);
+                return t;
+            });
+            httpAsyncClient = HttpAsyncClientUtil.createHttpAsyncClient(config, ioThreads);
+        } catch (Exception e) {
+            throw new RuntimeException("初始化异步文件系统失败: " + e.getMessage(), e);
+        }
+    }
+
+    public String getFileSystemName() {
+        return defaultFileSystemName;
+    }
+
+    @Override
+    public CompletableFuture<StatInfo> statAsync(String path) {
+        return read("/stats", path, null)
+                .thenApply(response -> parse(response, "获取文件状态失败", path, body -> MAPPER.readValue(body, StatInfo.class)));
+    }
+
+    @Override
+    public CompletableFuture<StatInfo> openAsync(String path) {
+        return read("/open", path, null)
+                .thenApply(response -> parse(response, "打开文件失败", path, body -> {
+                    StatInfo statInfo = MAPPER.readValue(body, StatInfo.class);
+                    if (statInfo == null || statInfo.getType() == null) {
+                        throw new IOException("打开文件失败: 返回的元数据无效");
+                    }
+                    return statInfo;
+                }));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> readAsync(String path, long offset, int length) {
+        return read("/read", path, "&offset=" + offset + "&length=" + length)
+                .thenApply(response -> parse(response, "读取文件失败", path, body -> body));
+    }
+
+    @Override
+    public CompletableFuture<StatInfo> writeAsync(String path, byte[] data) {
+        String query = query(path) + "&offset=0&length=" + data.length;
+        return requestMetaServer(path, false, "/write", query, (url, txid) -> withTxid(SimpleRequestBuilder.post(url)
+                .addHeader("fileSystemName", defaultFileSystemName)
+                .setBody(data, ContentType.APPLICATION_OCTET_STREAM), txid)
+                .build())
+                .thenApply(response -> parse(response, "写入文件失败", path, body -> MAPPER.readValue(body, StatInfo.class)));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> createAsync(String path) {
+        return get("/create", path, null)
+                .thenApply(response -> parse(response, "创建文件失败", path, body -> true));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> mkdirAsync(String path) {
+        return get("/mkdir", path, null)
+                .thenApply(response -> parse(response, "创建目录失败", path, body -> true));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteAsync(String path) {
+        return get("/delete", path, null)
+                .thenApply(response -> parse(response, "删除失败", path,
+                        body -> Boolean.TRUE.equals(MAPPER.readValue(body, MAP_TYPE).get("success"))));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(String path) {
+        return read("/exists", path, null)
+                .thenApply(response -> parse(response, "检查文件存在性失败", path,
+                        body -> Boolean.TRUE.equals(MAPPER.readValue(body, MAP_TYPE).get("exists"))));
+    }
+
+    @Override
+    public CompletableFuture<List<StatInfo>> listFileStatsAsync(String path) {
+        return read("/listdir", path, null)
+                .thenApply(response -> parse(response, "列出目录内容失败", path, body -> {
+                    List<StatInfo> list = MAPPER.readValue(body, STAT_LIST_TYPE);
+                    return mountTable.mergeChildMountPoints(defaultFileSystemName, path,
+                            list != null ? list : new ArrayList<>(), null, null);
+                }));
+    }
+
+    private CompletableFuture<SimpleHttpResponse> get(String endpoint, String path, String extraParams) {
+        return get(false, endpoint, path, extraParams);
+    }
+
+    /**
+     * 只读请求：候选地址在组内Leader与Follower间轮询
+     */
+    private CompletableFuture<SimpleHttpResponse> read(String endpoint, String path, String extraParams) {
+        return get(true, endpoint, path, extraParams);
+    }
+
+    private CompletableFuture<SimpleHttpResponse> get(boolean readOnly, String endpoint, String path, String extraParams) {
+        String query = query(path) + (extraParams == null ? "" : extraParams);
+        return requestMetaServer(path, readOnly, endpoint, query, (url, txid) -> withTxid(SimpleRequestBuilder.get(url)
+                .addHeader("fileSystemName", defaultFileSystemName), txid)
+                .build());
+    }
+
+    private static SimpleRequestBuilder withTxid(SimpleRequestBuilder builder, TxidTracker txidTracker) {
+        String txid = txidTracker.headerValue();
+        return txid != null ? builder.addHeader(TxidTracker.HEADER, txid) : builder;
+    }
+
+    private static String query(String path) {
+        return "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 向path所属MetaServer组发起异步请求，失败切换策略与EFileSystem.requestMetaServer一致：
+     * 连接失败或503时切换到下一个候选地址，其余异常不重试，避免写请求被重复执行；
+     * 组返回421（本地挂载表过期）时刷新挂载表，按新路由重发一次
+     */
+    private CompletableFuture<SimpleHttpResponse> requestMetaServer(String path, boolean readOnly, String endpoint, String query,
+                                                                   BiFunction<String, TxidTracker, SimpleHttpRequest> requestFactory) {
+        return requestGroup(locatorFor(path), readOnly, endpoint, query, requestFactory)
+                .exceptionallyComposeAsync(error -> {
+                    Throwable cause = unwrap(error);
+                    if (!(cause instanceof MisdirectedRequestException)) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    mountTable.refresh();
+                    return requestGroup(locatorFor(path), readOnly, endpoint, query, requestFactory);
+                }, zkRefresher);
+    }
+
+    private CompletableFuture<SimpleHttpResponse> requestGroup(MetaServerLocator locator, boolean readOnly, String endpoint, String query,
+                                                               BiFunction<String, TxidTracker, SimpleHttpRequest> requestFactory) {
+        List<String> candidates = readOnly ? locator.readCandidates() : locator.candidates();
+        return attempt(locator, candidates, 0, endpoint, query, requestFactory, null);
+    }
+
+    private CompletableFuture<SimpleHttpResponse> attempt(MetaServerLocator locator, List<String> candidates, int index,
+                                                          String endpoint, String query,
+                                                          BiFunction<String, TxidTracker, SimpleHttpRequest> requestFactory,
+                                                          Throwable lastError) {
+        if (index >= candidates.size()) {
+            return CompletableFuture.failedFuture(lastError != null ? lastError
+                    : new IOException("MetaServer组" + locator.getGroup() + "没有可用的节点"));
+        }
+        String address = candidates.get(index);
+        String url = "http://" + address + endpoint + query;
+        TxidTracker txidTracker = locator.getTxidTracker();
+        return HttpAsyncClientUtil.execute(httpAsyncClient, requestFactory.apply(url, txidTracker))
+                .handle((response, error) -> {
+                    if (error == null) {
+                        Header txid = response.getFirstHeader(TxidTracker.HEADER);
+                        if (txid != null && response.getCode() < 300) {
+                            txidTracker.observe(txid.getValue());
+                        }
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    Throwable cause = unwrap(error);
+                    if (cause instanceof ServiceUnavailableException) {
+                        // markNotLeader会同步读ZK，不能在IO线程上执行，否则切主期间所有在途请求都被卡住
+                        return CompletableFuture.runAsync(() -> locator.markNotLeader(address), zkRefresher)
+                                .thenComposeAsync(ignored -> attempt(locator, candidates, index + 1, endpoint, query,
+                                        requestFactory, cause), zkRefresher);
+                    } else if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                            || cause instanceof UnknownHostException) {
+                        locator.markFailed(address);
+                    } else {
+                        return CompletableFuture.<SimpleHttpResponse>failedFuture(cause);
+                    }
+                    return attempt(locator, candidates, index + 1, endpoint, query, requestFactory, cause);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * path所属MetaServer组的定位器
+     */
+    private MetaServerLocator locatorFor(String path) {
+        String group = mountTable.resolve(defaultFileSystemName, path);
+        return locators.computeIfAbsent(group, g -> {
+            MetaServerLocator locator = new MetaServerLocator(zkUtil, g, null);
+            locator.start();
+            return locator;
+        });
+    }
+
+    /**
+     * 校验状态码并解析响应体，404映射为FileNotFoundException
+     */
+    private static <T> T parse(SimpleHttpResponse response, String action, String path, BodyParser<T> parser) {
+        int code = response.getCode();
+        byte[] body = response.getBodyBytes();
+        try {
+            if (code == HttpStatus.SC_NOT_FOUND) {
+                throw new FileNotFoundException(action + ": 路径不存在 " + path);
+            }
+            if (code < 200 || code >= 300) {
+                String message = body != null ? new String(body, StandardCharsets.UTF_8) : "";
+                throw new IOException(action + ": " + path + ", 状态码: " + code + ", 响应: " + message);
+            }
+            return parser.parse(body != null ? body : new byte[0]);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BodyParser<T> {
+        T parse(byte[] body) throws IOException;
+    }
+
+    /**
+     * 关闭资源
+     */
+    @Override
+    public void close() {
+        try {
+            if (httpAsyncClient != null) {
+                httpAsyncClient.close(CloseMode.GRACEFUL);
+            }
+            if (zkRefresher != null) {
+                zkRefresher.shutdownNow();
+            }
+            if (zkUtil != null) {
+                zkUtil.close();
+            }
+        } catch (Exception e) {
+            // 忽略关闭时的异常
+        }
+    }
+}
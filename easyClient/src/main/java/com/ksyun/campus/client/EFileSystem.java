@@ -1,12 +1,22 @@
 package com.ksyun.campus.client;
 
+import com.ksyun.campus.client.domain.BatchOperation;
+import com.ksyun.campus.client.domain.BatchResult;
 import com.ksyun.campus.client.domain.ClusterInfo;
+import com.ksyun.campus.client.domain.ContentSummary;
 import com.ksyun.campus.client.domain.DataServerMsg;
+import com.ksyun.campus.client.domain.ListingPage;
 import com.ksyun.campus.client.domain.MetaServerMsg;
 import com.ksyun.campus.client.domain.ReplicaData;
 import com.ksyun.campus.client.domain.StatInfo;
 import com.ksyun.campus.client.util.HttpClientUtil;
+import com.ksyun.campus.client.util.MetaServerLocator;
+import com.ksyun.campus.client.util.MisdirectedRequestException;
+import com.ksyun.campus.client.util.MountTable;
+import com.ksyun.campus.client.util.ServiceUnavailableException;
+import com.ksyun.campus.client.util.TxidTracker;
 import com.ksyun.campus.client.util.ZkUtil;
+import org.apache.hc.client5.http.ConnectTimeoutException;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
@@ -16,17 +26,40 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.ConnectException;
 import java.net.URLEncoder;
+import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class EFileSystem extends FileSystem {
 
+    // 迭代列目录的默认页大小
+    private static final int DEFAULT_LIST_PAGE_SIZE = 1000;
+    // 写租约续约周期，远小于服务端软期限（默认30秒），偶尔丢一次心跳不会失去租约
+    private static final long LEASE_RENEW_INTERVAL_MS = 10000;
+
     private String defaultFileSystemName;
     private ZkUtil zkUtil;
     private HttpClient httpClient;
     private String defaultMetaServerAddress;
+    // default组的定位器；其他MetaServer组的定位器按挂载表首次命中时创建
+    private MetaServerLocator metaServerLocator;
+    private final Map<String, MetaServerLocator> locators = new ConcurrentHashMap<>();
+    private MountTable mountTable;
+    // 写租约：本客户端的唯一名称、持有租约的文件（create时取得，输出流关闭时释放）
+    private final String clientName = "minfs-client-" + UUID.randomUUID();
+    private final Set<String> leasedPaths = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService leaseRenewer;
 
     public EFileSystem() {
         this("default");
@@ -57,6 +90,23 @@ public class EFileSystem extends FileSystem {
                 defaultMetaServerAddress = "localhost:8000"; // 默认地址
             }
             
+            // 缓存Leader/Follower地址，后续由ZK watch刷新
+            metaServerLocator = new MetaServerLocator(zkUtil, defaultMetaServerAddress);
+            metaServerLocator.start();
+            locators.put(MountTable.DEFAULT_GROUP, metaServerLocator);
+            
+            // 挂载表：文件系统/子树 -> MetaServer组
+            mountTable = new MountTable(zkUtil);
+            mountTable.refresh();
+            
+            // 所有打开文件的租约由一个后台线程统一续约
+            leaseRenewer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "minfs-lease-renewer");
+                t.setDaemon(true);
+                return t;
+            });
+            leaseRenewer.scheduleWithFixedDelay(this::renewLeases, LEASE_RENEW_INTERVAL_MS, LEASE_RENEW_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            
         } catch (Exception e) {
             throw new RuntimeException("初始化文件系统失败: " + e.getMessage(), e);
         }
@@ -76,24 +126,77 @@ public class EFileSystem extends FileSystem {
     }
     
     /**
-     * 获取MetaServer地址
+     * 获取MetaServer地址（读取本地缓存的Leader地址，不访问ZK）
      */
     public String getMetaServerAddress() {
+        return metaServerLocator.current();
+    }
+
+    /**
+     * 向path所属MetaServer组发起请求
+     * 优先使用缓存的Leader；连接失败或返回503（非Leader且无法转发）时立即切换到下一个候选地址，
+     * 其余异常（如读超时）不重试，避免写请求被重复执行
+     */
+    String requestMetaServer(String path, String endpoint, String queryParams, MetaServerRequest request) throws Exception {
+        return route(path, false, endpoint, queryParams, request);
+    }
+    
+    /**
+     * 向path所属MetaServer组发起只读请求：在组内Leader与Follower间轮询，请求携带本组见过的最新txid；
+     * 节点过旧或等不到该txid时返回503，与连接失败一样切换到下一个候选地址
+     */
+    String readMetaServer(String path, String endpoint, String queryParams, MetaServerRequest request) throws Exception {
+        return route(path, true, endpoint, queryParams, request);
+    }
+    
+    /**
+     * 按挂载表路由到MetaServer组；组返回421说明本地挂载表已过期，刷新后按新路由重发一次
+     */
+    private String route(String path, boolean readOnly, String endpoint, String queryParams, MetaServerRequest request) throws Exception {
         try {
-            // 1) 优先取ZK的leader地址
-            String leader = zkUtil.getLeaderAddress();
-            if (leader != null && !leader.isEmpty()) {
-                return leader;
-            }
-            // 2) 回退：取metaservers子节点列表的第一个
-            List<String> addresses = zkUtil.getMetaServerAddresses();
-            if (addresses != null && !addresses.isEmpty()) {
-                return addresses.get(0);
+            return requestGroup(locatorFor(path), readOnly, endpoint, queryParams, request);
+        } catch (MisdirectedRequestException e) {
+            mountTable.refresh();
+            return requestGroup(locatorFor(path), readOnly, endpoint, queryParams, request);
+        }
+    }
+    
+    private String requestGroup(MetaServerLocator locator, boolean readOnly, String endpoint, String queryParams,
+                                MetaServerRequest request) throws Exception {
+        String query = queryParams == null ? "" : queryParams;
+        IOException lastError = null;
+        for (String address : readOnly ? locator.readCandidates() : locator.candidates()) {
+            try {
+                return request.execute("http://" + address + endpoint + query, locator.getTxidTracker());
+            } catch (ServiceUnavailableException e) {
+                locator.markNotLeader(address);
+                lastError = e;
+            } catch (ConnectException | ConnectTimeoutException | UnknownHostException e) {
+                locator.markFailed(address);
+                lastError = e;
             }
-        } catch (Exception e) {
-            // 忽略，走默认
         }
-        return defaultMetaServerAddress;
+        throw lastError != null ? lastError : new IOException("MetaServer组" + locator.getGroup() + "没有可用的节点");
+    }
+    
+    /**
+     * path所属MetaServer组的定位器
+     */
+    private MetaServerLocator locatorFor(String path) {
+        String group = mountTable.resolve(defaultFileSystemName, path);
+        return locators.computeIfAbsent(group, g -> {
+            MetaServerLocator locator = new MetaServerLocator(zkUtil, g, null);
+            locator.start();
+            return locator;
+        });
+    }
+
+    @FunctionalInterface
+    interface MetaServerRequest {
+        /**
+         * @param txidTracker 目标组见过的最新txid，随请求携带并由响应更新
+         */
+        String execute(String url, TxidTracker txidTracker) throws Exception;
     }
     
     /**
@@ -140,15 +243,12 @@ public class EFileSystem extends FileSystem {
             System.out.println("打开文件: fileSystemName=" + defaultFileSystemName + ", path=" + path);
             
             // 1. 从MetaServer获取文件元数据
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/open";
-            
             // 构建请求头
             String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
-            String fullUrl = url + queryParams;
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", defaultFileSystemName);
+            String response = readMetaServer(path, "/open", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 // 解析JSON响应为StatInfo对象
@@ -177,26 +277,10 @@ public class EFileSystem extends FileSystem {
         try {
             System.out.println("创建文件: fileSystemName=" + defaultFileSystemName + ", path=" + path);
             
-            // 1. 从MetaServer创建文件
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/create";
-            
-            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
-            String fullUrl = url + queryParams;
-            
-            // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", defaultFileSystemName);
-            
-            if (response != null && !response.contains("error")) {
-                // 简化处理，直接创建StatInfo
-                StatInfo statInfo = new StatInfo();
-                statInfo.setPath(path);
-                statInfo.setSize(0);
-                System.out.println("成功创建文件: fileSystemName=" + defaultFileSystemName + ", path=" + path);
-                return new FSOutputStream(path, this);
-            } else {
-                throw new IOException("创建文件失败: " + path + ", 响应: " + response);
-            }
+            // 1. 从MetaServer创建文件，同时取得写租约
+            createWithLease(path);
+            System.out.println("成功创建文件: fileSystemName=" + defaultFileSystemName + ", path=" + path);
+            return new FSOutputStream(path, this);
             
         } catch (Exception e) {
             System.err.println("创建文件异常: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", 错误: " + e.getMessage());
@@ -204,6 +288,38 @@ public class EFileSystem extends FileSystem {
         }
     }
     
+    /**
+     * 以追加方式打开文件（不存在时创建），写入的数据接在文件末尾，已有内容不会重写
+     * 输出流每次flush把缓冲的数据作为一次追加发送，适合持续写日志
+     */
+    @Override
+    public FSOutputStream append(String path) throws IOException {
+        try {
+            System.out.println("追加打开文件: fileSystemName=" + defaultFileSystemName + ", path=" + path);
+            createWithLease(path);
+            return new FSOutputStream(path, this, true);
+        } catch (Exception e) {
+            System.err.println("追加打开文件异常: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", 错误: " + e.getMessage());
+            throw new IOException("追加打开文件失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 文件不存在时创建，并取得写租约（对已存在的文件create只取得租约，不改动内容）
+     */
+    private void createWithLease(String path) throws Exception {
+        String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8)
+                + "&clientName=" + URLEncoder.encode(clientName, StandardCharsets.UTF_8);
+        
+        // 添加文件系统名称到请求头
+        String response = requestMetaServer(path, "/create", queryParams,
+                (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
+        if (response == null || response.contains("error")) {
+            throw new IOException("创建文件失败: " + path + ", 响应: " + response);
+        }
+        leasedPaths.add(path);
+    }
+    
     /**
      * 创建目录
      */
@@ -213,14 +329,11 @@ public class EFileSystem extends FileSystem {
             System.out.println("创建目录: fileSystemName=" + defaultFileSystemName + ", path=" + path);
             
             // 从MetaServer创建目录
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/mkdir";
-            
             String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
-            String fullUrl = url + queryParams;
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", defaultFileSystemName);
+            String response = requestMetaServer(path, "/mkdir", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 System.out.println("成功创建目录: fileSystemName=" + defaultFileSystemName + ", path=" + path);
@@ -244,14 +357,11 @@ public class EFileSystem extends FileSystem {
             System.out.println("删除文件/目录: fileSystemName=" + defaultFileSystemName + ", path=" + path);
             
             // 从MetaServer删除文件/目录
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/delete";
-            
             String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
-            String fullUrl = url + queryParams;
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", defaultFileSystemName);
+            String response = requestMetaServer(path, "/delete", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 // 检查响应中的success字段
@@ -271,6 +381,35 @@ public class EFileSystem extends FileSystem {
         }
     }
     
+    /**
+     * 重命名/移动文件或目录，只修改元数据，数据不搬迁
+     */
+    @Override
+    public boolean rename(String src, String dst) throws IOException {
+        try {
+            System.out.println("重命名: fileSystemName=" + defaultFileSystemName + ", " + src + " -> " + dst);
+            
+            // 重命名只在一个MetaServer组内修改目录项，跨组需要搬迁元数据，不支持
+            if (!mountTable.resolve(defaultFileSystemName, src).equals(mountTable.resolve(defaultFileSystemName, dst))) {
+                throw new IOException("不能跨MetaServer组重命名: " + src + " -> " + dst);
+            }
+            
+            String queryParams = "?src=" + URLEncoder.encode(src, StandardCharsets.UTF_8)
+                    + "&dst=" + URLEncoder.encode(dst, StandardCharsets.UTF_8);
+            String response = requestMetaServer(src, "/rename", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
+            
+            if (response != null && response.contains("\"success\":true")) {
+                System.out.println("重命名成功: fileSystemName=" + defaultFileSystemName + ", " + src + " -> " + dst);
+                return true;
+            }
+            throw new IOException("重命名失败: " + src + " -> " + dst + ", 响应: " + response);
+        } catch (Exception e) {
+            System.err.println("重命名异常: fileSystemName=" + defaultFileSystemName + ", " + src + " -> " + dst + ", 错误: " + e.getMessage());
+            throw new IOException("重命名失败: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * 获取文件状态
      */
@@ -280,14 +419,11 @@ public class EFileSystem extends FileSystem {
             System.out.println("获取文件状态: fileSystemName=" + defaultFileSystemName + ", path=" + path);
             
             // 从MetaServer获取文件状态
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/stats";
-            
             String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
-            String fullUrl = url + queryParams;
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", defaultFileSystemName);
+            String response = readMetaServer(path, "/stats", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
@@ -307,6 +443,55 @@ public class EFileSystem extends FileSystem {
         }
     }
     
+    /**
+     * 获取目录内容汇总（总字节数、文件数、目录数），由MetaServer直接返回，不需递归列目录
+     */
+    @Override
+    public ContentSummary getContentSummary(String path) throws IOException {
+        try {
+            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
+            String response = readMetaServer(path, "/du", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
+            
+            if (response != null && !response.contains("error")) {
+                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+                ContentSummary summary = mapper.readValue(response, ContentSummary.class);
+                if (summary == null) {
+                    throw new IOException("获取内容汇总失败: 返回为空");
+                }
+                return summary;
+            } else {
+                throw new IOException("获取内容汇总失败: " + path + ", 响应: " + response);
+            }
+        } catch (Exception e) {
+            System.err.println("获取内容汇总异常: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", 错误: " + e.getMessage());
+            throw new IOException("获取内容汇总失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 设置目录配额，根目录的配额即整个文件系统的配额；-1表示不限制
+     */
+    @Override
+    public ContentSummary setQuota(String path, long namespaceQuota, long spaceQuota) throws IOException {
+        try {
+            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8)
+                    + "&namespaceQuota=" + namespaceQuota + "&spaceQuota=" + spaceQuota;
+            String response = requestMetaServer(path, "/quota", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
+            
+            if (response != null && !response.contains("error")) {
+                com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+                return mapper.readValue(response, ContentSummary.class);
+            } else {
+                throw new IOException("设置配额失败: " + path + ", 响应: " + response);
+            }
+        } catch (Exception e) {
+            System.err.println("设置配额异常: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", 错误: " + e.getMessage());
+            throw new IOException("设置配额失败: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * 列出目录内容
      */
@@ -316,14 +501,11 @@ public class EFileSystem extends FileSystem {
             System.out.println("列出目录内容: fileSystemName=" + defaultFileSystemName + ", path=" + path);
             
             // 从MetaServer列出目录内容
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/listdir";
-            
             String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
-            String fullUrl = url + queryParams;
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", defaultFileSystemName);
+            String response = readMetaServer(path, "/listdir", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
@@ -332,6 +514,7 @@ public class EFileSystem extends FileSystem {
                         new com.fasterxml.jackson.core.type.TypeReference<java.util.List<StatInfo>>(){}
                 );
                 if (list == null) list = new java.util.ArrayList<>();
+                list = mountTable.mergeChildMountPoints(defaultFileSystemName, path, list, null, null);
                 System.out.println("成功列出目录内容: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", count=" + list.size());
                 return list;
             } else {
@@ -343,6 +526,51 @@ public class EFileSystem extends FileSystem {
             throw new IOException("列出目录内容失败: " + e.getMessage(), e);
         }
     }
+    
+    /**
+     * 分页列出目录内容，本页名称范围内的挂载点一并按序返回，因此一页可能多于limit条
+     *
+     * @param startAfter 上一页返回的nextStartAfter，首页传null
+     * @param limit      页大小
+     */
+    public ListingPage listFileStatsPage(String path, String startAfter, int limit) throws IOException {
+        try {
+            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8) + "&limit=" + limit;
+            if (startAfter != null) {
+                queryParams += "&startAfter=" + URLEncoder.encode(startAfter, StandardCharsets.UTF_8);
+            }
+            
+            String response = readMetaServer(path, "/listdir", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
+            
+            if (response == null || response.isEmpty()) {
+                throw new IOException("分页列出目录内容失败: " + path + ", 响应为空");
+            }
+            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+            ListingPage page = mapper.readValue(response, ListingPage.class);
+            List<StatInfo> entries = page.getEntries() != null ? page.getEntries() : new java.util.ArrayList<>();
+            // 本页覆盖(startAfter, nextStartAfter]，最后一页覆盖startAfter之后的全部名称
+            String upTo = page.isHasMore() ? page.getNextStartAfter() : null;
+            page.setEntries(mountTable.mergeChildMountPoints(defaultFileSystemName, path, entries, startAfter, upTo));
+            return page;
+            
+        } catch (Exception e) {
+            System.err.println("分页列出目录内容异常: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", 错误: " + e.getMessage());
+            throw new IOException("分页列出目录内容失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 以迭代器方式列出目录内容，按页懒加载，适用于超大目录
+     * 拉取失败时next/hasNext抛出UncheckedIOException
+     */
+    public Iterator<StatInfo> listFileStatsIterator(String path) {
+        return listFileStatsIterator(path, DEFAULT_LIST_PAGE_SIZE);
+    }
+    
+    public Iterator<StatInfo> listFileStatsIterator(String path, int pageSize) {
+        return new ListingIterator(this, path, pageSize);
+    }
 
     /**
      * 检查文件是否存在
@@ -353,14 +581,11 @@ public class EFileSystem extends FileSystem {
             System.out.println("检查文件是否存在: fileSystemName=" + defaultFileSystemName + ", path=" + path);
             
             // 从MetaServer检查文件是否存在
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/exists";
-            
             String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
-            String fullUrl = url + queryParams;
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", defaultFileSystemName);
+            String response = readMetaServer(path, "/exists", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 // 检查响应中的exists字段
@@ -386,10 +611,8 @@ public class EFileSystem extends FileSystem {
             System.out.println("获取集群信息: fileSystemName=" + defaultFileSystemName);
             
             // 从MetaServer获取集群信息
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/cluster/info";
-            
-            String response = HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName);
+            String response = requestMetaServer("/", "/cluster/info", null,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response == null || response.contains("error")) {
                 throw new IOException("获取集群信息失败, 响应: " + response);
@@ -499,11 +722,9 @@ public class EFileSystem extends FileSystem {
             System.out.println("获取文件系统统计信息: fileSystemName=" + defaultFileSystemName);
             
             // 从MetaServer获取文件系统统计信息
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/filesystem/stats";
-            
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName);
+            String response = requestMetaServer("/", "/filesystem/stats", null,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
@@ -529,10 +750,8 @@ public class EFileSystem extends FileSystem {
             System.out.println("获取全局统计信息: fileSystemName=" + defaultFileSystemName);
             
             // 从MetaServer获取全局统计信息
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/filesystem/global-stats";
-            
-            String response = HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName);
+            String response = requestMetaServer("/", "/filesystem/global-stats", null,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
@@ -551,21 +770,27 @@ public class EFileSystem extends FileSystem {
     }
     
     /**
-     * 写入文件内容
+     * 写入文件内容（整体重写）
      */
     public void writeFile(String path, byte[] data) throws IOException {
+        writeFile(path, data, 0);
+    }
+    
+    /**
+     * 从offset开始写入：offset为0时整体重写文件，大于0时覆盖或追加（不能超过文件末尾）
+     */
+    public void writeFile(String path, byte[] data, long offset) throws IOException {
         try {
-            System.out.println("写入文件: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", size=" + data.length);
+            System.out.println("写入文件: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", offset=" + offset + ", size=" + data.length);
             
             // 从MetaServer写入文件
-            MetaServerMsg metaServer = getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/write";
-            
-            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8) + "&offset=0&length=" + data.length;
-            String fullUrl = url + queryParams;
+            // 通过create打开的文件带上租约持有者；直接写入不取得租约，只要求没有其他客户端正在写
+            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8) + "&offset=" + offset + "&length=" + data.length
+                    + leaseParam(path);
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doPostWithHeader(httpClient, fullUrl, data, "fileSystemName", defaultFileSystemName);
+            String response = requestMetaServer(path, "/write", queryParams,
+                    (url, txid) -> HttpClientUtil.doPostWithHeader(httpClient, url, data, "fileSystemName", defaultFileSystemName, txid));
             
             if (response != null && !response.contains("error")) {
                 System.out.println("成功写入文件: fileSystemName=" + defaultFileSystemName + ", path=" + path);
@@ -579,6 +804,114 @@ public class EFileSystem extends FileSystem {
         }
     }
     
+    /**
+     * 追加数据到文件末尾（文件不存在时创建），只传输追加的数据
+     */
+    public void appendFile(String path, byte[] data) throws IOException {
+        try {
+            System.out.println("追加文件: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", size=" + data.length);
+            
+            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8) + "&length=" + data.length
+                    + leaseParam(path);
+            String response = requestMetaServer(path, "/append", queryParams,
+                    (url, txid) -> HttpClientUtil.doPostWithHeader(httpClient, url, data, "fileSystemName", defaultFileSystemName, txid));
+            if (response == null || response.isEmpty() || response.contains("error")) {
+                throw new IOException("追加文件失败: " + path + ", 响应: " + response);
+            }
+        
+        } catch (Exception e) {
+            System.err.println("追加文件异常: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", 错误: " + e.getMessage());
+            throw new IOException("追加文件失败: " + e.getMessage(), e);
+        }
+    }
+    
+    private String leaseParam(String path) {
+        return leasedPaths.contains(path) ? "&clientName=" + URLEncoder.encode(clientName, StandardCharsets.UTF_8) : "";
+    }
+    
+    /**
+     * 释放文件的写租约（输出流关闭时调用）
+     * 释放失败不影响已完成的写入，租约在服务端超过软期限后自动失效
+     */
+    void releaseLease(String path) {
+        if (!leasedPaths.remove(path)) {
+            return;
+        }
+        try {
+            String queryParams = "?path=" + URLEncoder.encode(path, StandardCharsets.UTF_8)
+                    + "&clientName=" + URLEncoder.encode(clientName, StandardCharsets.UTF_8);
+            requestMetaServer(path, "/lease/release", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", defaultFileSystemName));
+        } catch (Exception e) {
+            System.err.println("释放写租约失败: fileSystemName=" + defaultFileSystemName + ", path=" + path + ", 错误: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 续约本客户端的全部写租约：每个持有租约的MetaServer组一次请求，与打开的文件数无关
+     */
+    private void renewLeases() {
+        if (leasedPaths.isEmpty()) {
+            return;
+        }
+        // 组 -> 该组内任一持有租约的路径，用于路由
+        Map<String, String> groups = new HashMap<>();
+        for (String path : leasedPaths) {
+            groups.putIfAbsent(mountTable.resolve(defaultFileSystemName, path), path);
+        }
+        String queryParams = "?clientName=" + URLEncoder.encode(clientName, StandardCharsets.UTF_8);
+        for (String path : groups.values()) {
+            try {
+                requestMetaServer(path, "/lease/renew", queryParams, (url, txid) -> HttpClientUtil.doGet(httpClient, url));
+            } catch (Exception e) {
+                System.err.println("续约写租约失败: clientName=" + clientName + ", 错误: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 本客户端的租约持有者名称
+     */
+    public String getClientName() {
+        return clientName;
+    }
+    
+    /**
+     * 批量执行元数据操作（stat/exists/mkdir/create/delete）
+     * 一次请求提交所有操作，服务端以一个WriteBatch落盘，按顺序返回每个操作的结果
+     */
+    public List<BatchResult> batch(List<BatchOperation> operations) throws IOException {
+        try {
+            System.out.println("批量操作: fileSystemName=" + defaultFileSystemName + ", 操作数=" + operations.size());
+            
+            // 一批操作在同一个MetaServer组内原子提交，不能跨组
+            String batchPath = operations.isEmpty() ? "/" : operations.get(0).getPath();
+            String group = mountTable.resolve(defaultFileSystemName, batchPath);
+            for (BatchOperation operation : operations) {
+                if (!group.equals(mountTable.resolve(defaultFileSystemName, operation.getPath()))) {
+                    throw new IOException("批量操作不能跨MetaServer组: " + batchPath + ", " + operation.getPath());
+                }
+            }
+            
+            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+            String body = mapper.writeValueAsString(operations);
+            String response = requestMetaServer(batchPath, "/batch", null,
+                    (url, txid) -> HttpClientUtil.doPostJsonWithHeader(httpClient, url, body, "fileSystemName", defaultFileSystemName, txid));
+            
+            if (response == null || response.isEmpty()) {
+                throw new IOException("批量操作失败: 响应为空");
+            }
+            List<BatchResult> results = mapper.readValue(response,
+                    new com.fasterxml.jackson.core.type.TypeReference<List<BatchResult>>(){});
+            System.out.println("批量操作完成: fileSystemName=" + defaultFileSystemName + ", 结果数=" + results.size());
+            return results;
+            
+        } catch (Exception e) {
+            System.err.println("批量操作异常: fileSystemName=" + defaultFileSystemName + ", 错误: " + e.getMessage());
+            throw new IOException("批量操作失败: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * 获取HTTP客户端实例
      */
@@ -591,6 +924,9 @@ public class EFileSystem extends FileSystem {
      */
     public void close() {
         try {
+            if (leaseRenewer != null) {
+                leaseRenewer.shutdownNow();
+            }
             if (zkUtil != null) {
                 zkUtil.close();
             }
@@ -1,6 +1,5 @@
 package com.ksyun.campus.client;
 
-import com.ksyun.campus.client.domain.MetaServerMsg;
 import com.ksyun.campus.client.domain.ReplicaData;
 import com.ksyun.campus.client.domain.StatInfo;
 import com.ksyun.campus.client.util.HttpClientUtil;
@@ -59,14 +58,11 @@ public class FSInputStream extends InputStream {
             }
             
             // 从MetaServer读取文件数据（支持分块读取）
-            MetaServerMsg metaServer = fileSystem.getMetaServer();
-            String url = "http://" + metaServer.getHost() + ":" + metaServer.getPort() + "/read";
-            
             String queryParams = "?path=" + java.net.URLEncoder.encode(statInfo.getPath(), "UTF-8") + "&offset=0&length=-1";
-            String fullUrl = url + queryParams;
             
             // 添加文件系统名称到请求头
-            String response = HttpClientUtil.doGetWithHeader(httpClient, fullUrl, "fileSystemName", fileSystem.getFileSystemName());
+            String response = fileSystem.readMetaServer(statInfo.getPath(), "/read", queryParams,
+                    (url, txid) -> HttpClientUtil.doGetWithHeader(httpClient, url, "fileSystemName", fileSystem.getFileSystemName(), txid));
             if (response == null) {
                 throw new IOException("从MetaServer读取文件失败: 响应为空");
             }
@@ -7,12 +7,17 @@ import java.io.OutputStream;
 /**
  * 文件系统输出流
  * 用于写入文件数据到分布式文件系统
+ * 数据先在本地缓冲，flush/close时发送：create打开的流首次发送时整体重写文件，之后按已发送的长度续写；
+ * append打开的流每次发送都追加到文件末尾
  */
 public class FSOutputStream extends OutputStream {
     
     private final String filePath;
     private final EFileSystem fileSystem;
     private final ByteArrayOutputStream buffer;
+    private final boolean append;
+    // 已发送到服务端的字节数
+    private long sent = 0;
     private boolean closed = false;
     
     /**
@@ -21,8 +26,16 @@ public class FSOutputStream extends OutputStream {
      * @param fileSystem 文件系统实例
      */
     public FSOutputStream(String filePath, EFileSystem fileSystem) {
+        this(filePath, fileSystem, false);
+    }
+    
+    /**
+     * @param append 为true时写入的数据追加到文件末尾，不重写已有内容
+     */
+    public FSOutputStream(String filePath, EFileSystem fileSystem, boolean append) {
         this.filePath = filePath;
         this.fileSystem = fileSystem;
+        this.append = append;
         this.buffer = new ByteArrayOutputStream();
     }
     
@@ -58,13 +71,12 @@ public class FSOutputStream extends OutputStream {
         
         try {
             // 将缓冲的数据写入文件系统
-            byte[] data = buffer.toByteArray();
-            if (data.length > 0) {
-                fileSystem.writeFile(filePath, data);
-            }
+            sendBuffered();
         } finally {
             closed = true;
             buffer.close();
+            // 无论写入是否成功都释放写租约，其他客户端不必等租约过期
+            fileSystem.releaseLease(filePath);
         }
     }
     
@@ -73,7 +85,24 @@ public class FSOutputStream extends OutputStream {
         if (closed) {
             throw new IOException("输出流已关闭");
         }
-        buffer.flush();
+        sendBuffered();
+    }
+    
+    /**
+     * 发送缓冲区中的数据，只传输新写入的部分
+     */
+    private void sendBuffered() throws IOException {
+        byte[] data = buffer.toByteArray();
+        if (data.length == 0) {
+            return;
+        }
+        if (append) {
+            fileSystem.appendFile(filePath, data);
+        } else {
+            fileSystem.writeFile(filePath, data, sent);
+        }
+        sent += data.length;
+        buffer.reset();
     }
     
     /**
@@ -87,6 +116,6 @@ public class FSOutputStream extends OutputStream {
      * 获取已写入的数据大小
      */
     public int getWrittenSize() {
-        return buffer.size();
+        return (int) (sent + buffer.size());
     }
 }
@@ -1,6 +1,7 @@
 package com.ksyun.campus.client;
 
 import com.ksyun.campus.client.domain.ClusterInfo;
+import com.ksyun.campus.client.domain.ContentSummary;
 import com.ksyun.campus.client.domain.StatInfo;
 
 import java.io.IOException;
@@ -24,12 +25,20 @@ public abstract class FileSystem {
 
     public abstract FSOutputStream create(String path) throws IOException;
 
+    public abstract FSOutputStream append(String path) throws IOException;
+
     public abstract boolean mkdir(String path) throws IOException;
 
     public abstract boolean delete(String path) throws IOException;
 
+    public abstract boolean rename(String src, String dst) throws IOException;
+
     public abstract StatInfo getFileStats(String path) throws IOException;
 
+    public abstract ContentSummary getContentSummary(String path) throws IOException;
+
+    public abstract ContentSummary setQuota(String path, long namespaceQuota, long spaceQuota) throws IOException;
+
     public abstract List<StatInfo> listFileStats(String path) throws IOException;
 
     public abstract ClusterInfo getClusterInfo() throws IOException;
@@ -0,0 +1,62 @@
+package com.ksyun.campus.client;
+
+import com.ksyun.campus.client.domain.ListingPage;
+import com.ksyun.campus.client.domain.StatInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 目录列表迭代器
+ * 按页从MetaServer拉取，当前页消费完才请求下一页，内存占用只与页大小相关
+ */
+class ListingIterator implements Iterator<StatInfo> {
+
+    private final EFileSystem fileSystem;
+    private final String path;
+    private final int pageSize;
+
+    private List<StatInfo> page = Collections.emptyList();
+    private int index;
+    private String startAfter;
+    private boolean hasMore = true;
+
+    ListingIterator(EFileSystem fileSystem, String path, int pageSize) {
+        this.fileSystem = fileSystem;
+        this.path = path;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        // 空页但服务端仍标记hasMore时继续拉取
+        while (index >= page.size() && hasMore) {
+            fetchNextPage();
+        }
+        return index < page.size();
+    }
+
+    @Override
+    public StatInfo next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(index++);
+    }
+
+    private void fetchNextPage() {
+        try {
+            ListingPage listingPage = fileSystem.listFileStatsPage(path, startAfter, pageSize);
+            page = listingPage.getEntries() != null ? listingPage.getEntries() : Collections.emptyList();
+            index = 0;
+            startAfter = listingPage.getNextStartAfter();
+            hasMore = listingPage.isHasMore() && startAfter != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("分页列出目录内容失败: " + path, e);
+        }
+    }
+}
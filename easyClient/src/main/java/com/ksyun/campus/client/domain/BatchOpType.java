@@ -0,0 +1,9 @@
+package com.ksyun.campus.client.domain;
+
+/**
+ * 批量操作类型
+ */
+public enum BatchOpType
+{
+    STAT, EXISTS, MKDIR, CREATE, DELETE
+}
@@ -0,0 +1,61 @@
+package com.ksyun.campus.client.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchOperation
+{
+    public BatchOpType op;
+    public String path;
+
+    public BatchOperation() {}
+
+    public BatchOperation(BatchOpType op, String path) {
+        this.op = op;
+        this.path = path;
+    }
+
+    public static BatchOperation stat(String path) {
+        return new BatchOperation(BatchOpType.STAT, path);
+    }
+
+    public static BatchOperation exists(String path) {
+        return new BatchOperation(BatchOpType.EXISTS, path);
+    }
+
+    public static BatchOperation mkdir(String path) {
+        return new BatchOperation(BatchOpType.MKDIR, path);
+    }
+
+    public static BatchOperation create(String path) {
+        return new BatchOperation(BatchOpType.CREATE, path);
+    }
+
+    public static BatchOperation delete(String path) {
+        return new BatchOperation(BatchOpType.DELETE, path);
+    }
+
+    public BatchOpType getOp() {
+        return op;
+    }
+
+    public void setOp(BatchOpType op) {
+        this.op = op;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOperation{" +
+                "op=" + op +
+                ", path='" + path + '\'' +
+                '}';
+    }
+}
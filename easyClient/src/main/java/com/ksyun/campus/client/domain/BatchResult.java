@@ -0,0 +1,65 @@
+package com.ksyun.campus.client.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchResult
+{
+    public BatchOpType op;
+    public String path;
+    public boolean success;
+    public StatInfo statInfo;
+    public String message;
+
+    public BatchResult() {}
+
+    public BatchOpType getOp() {
+        return op;
+    }
+
+    public void setOp(BatchOpType op) {
+        this.op = op;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public StatInfo getStatInfo() {
+        return statInfo;
+    }
+
+    public void setStatInfo(StatInfo statInfo) {
+        this.statInfo = statInfo;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "op=" + op +
+                ", path='" + path + '\'' +
+                ", success=" + success +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
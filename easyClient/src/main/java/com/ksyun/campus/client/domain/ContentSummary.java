@@ -0,0 +1,80 @@
+package com.ksyun.campus.client.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 目录内容汇总：总字节数、文件数、目录数（含自身），以及目录配额
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ContentSummary
+{
+    public String path;
+    public long length;
+    public long fileCount;
+    public long directoryCount;
+    // -1表示未设置配额
+    public long namespaceQuota = -1;
+    public long spaceQuota = -1;
+
+    public ContentSummary() {}
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public void setFileCount(long fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    public long getDirectoryCount() {
+        return directoryCount;
+    }
+
+    public void setDirectoryCount(long directoryCount) {
+        this.directoryCount = directoryCount;
+    }
+
+    public long getNamespaceQuota() {
+        return namespaceQuota;
+    }
+
+    public void setNamespaceQuota(long namespaceQuota) {
+        this.namespaceQuota = namespaceQuota;
+    }
+
+    public long getSpaceQuota() {
+        return spaceQuota;
+    }
+
+    public void setSpaceQuota(long spaceQuota) {
+        this.spaceQuota = spaceQuota;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentSummary{" +
+                "path='" + path + '\'' +
+                ", length=" + length +
+                ", fileCount=" + fileCount +
+                ", directoryCount=" + directoryCount +
+                ", namespaceQuota=" + namespaceQuota +
+                ", spaceQuota=" + spaceQuota +
+                '}';
+    }
+}
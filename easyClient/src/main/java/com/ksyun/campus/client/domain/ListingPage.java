@@ -0,0 +1,42 @@
+package com.ksyun.campus.client.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+
+/**
+ * 分页列目录的一页结果，nextStartAfter作为下一页请求的startAfter
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ListingPage
+{
+    public List<StatInfo> entries;
+    public String nextStartAfter;
+    public boolean hasMore;
+
+    public ListingPage() {}
+
+    public List<StatInfo> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<StatInfo> entries) {
+        this.entries = entries;
+    }
+
+    public String getNextStartAfter() {
+        return nextStartAfter;
+    }
+
+    public void setNextStartAfter(String nextStartAfter) {
+        this.nextStartAfter = nextStartAfter;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
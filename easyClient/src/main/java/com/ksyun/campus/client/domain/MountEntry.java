@@ -0,0 +1,45 @@
+package com.ksyun.campus.client.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * 挂载表条目：把一个文件系统（path为/）或其下的子树交给指定的MetaServer组管理
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MountEntry {
+    public String fileSystemName;
+    public String path;
+    public String group;
+
+    public MountEntry() {}
+
+    public MountEntry(String fileSystemName, String path, String group) {
+        this.fileSystemName = fileSystemName;
+        this.path = path;
+        this.group = group;
+    }
+
+    public String getFileSystemName() {
+        return fileSystemName;
+    }
+
+    public void setFileSystemName(String fileSystemName) {
+        this.fileSystemName = fileSystemName;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+}
@@ -0,0 +1,89 @@
+package com.ksyun.campus.client.util;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步HTTP工具类
+ * 基于HttpClient5的NIO客户端，少量IO线程即可承载大量并发请求
+ */
+public class HttpAsyncClientUtil {
+
+    /**
+     * 创建并启动异步HTTP客户端
+     *
+     * @param config    连接与超时配置，与同步客户端共用
+     * @param ioThreads IO reactor线程数
+     */
+    public static CloseableHttpAsyncClient createHttpAsyncClient(HttpClientConfig config, int ioThreads) {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setTcpNoDelay(true)
+                .setSoTimeout(Timeout.ofMilliseconds(config.getSocketTimeOut()))
+                .build();
+        ConnectionConfig coConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(config.getConnectionTimeOut()))
+                .build();
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(config.getMaxConnections())
+                .setMaxConnPerRoute(config.getMaxConnections())
+                .setDefaultConnectionConfig(coConfig)
+                .build();
+        RequestConfig reConfig = RequestConfig.custom()
+                .setResponseTimeout(Timeout.ofMilliseconds(config.getSocketTimeOut()))
+                .build();
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setIOReactorConfig(ioReactorConfig)
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(reConfig)
+                .build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * 执行请求，将回调转换为CompletableFuture
+     * 与同步版本一致，503映射为ServiceUnavailableException，421映射为MisdirectedRequestException，其余状态码由调用方判断
+     */
+    public static CompletableFuture<SimpleHttpResponse> execute(CloseableHttpAsyncClient client, SimpleHttpRequest request) {
+        CompletableFuture<SimpleHttpResponse> future = new CompletableFuture<>();
+        String url = String.valueOf(request.getRequestUri());
+        client.execute(request, new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                if (response.getCode() == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                    future.completeExceptionally(new ServiceUnavailableException(url));
+                } else if (response.getCode() == MisdirectedRequestException.STATUS) {
+                    future.completeExceptionally(new MisdirectedRequestException(url));
+                } else {
+                    future.complete(response);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                future.completeExceptionally(new IOException("请求已取消: " + url));
+            }
+        });
+        return future;
+    }
+}
@@ -14,9 +14,13 @@ import org.apache.hc.core5.http.io.SocketConfig;
 import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
 import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 
@@ -71,8 +75,7 @@ public class HttpClientUtil {
     public static String doGet(HttpClient client, String url) throws IOException, ParseException {
         ClassicHttpRequest request = ClassicRequestBuilder.get(url).build();
         try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
-            HttpEntity entity = response.getEntity();
-            return entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+            return readBody(url, response);
         }
     }
     
@@ -84,8 +87,17 @@ public class HttpClientUtil {
                 .addHeader(headerName, headerValue)
                 .build();
         try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
-            HttpEntity entity = response.getEntity();
-            return entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+            return readBody(url, response);
+        }
+    }
+    
+    /**
+     * 执行带请求头的GET请求，并携带/记录元数据txid
+     */
+    public static String doGetWithHeader(HttpClient client, String url, String headerName, String headerValue, TxidTracker tracker) throws IOException, ParseException {
+        ClassicHttpRequest request = withTxid(ClassicRequestBuilder.get(url).addHeader(headerName, headerValue), tracker).build();
+        try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
+            return readBody(url, response, tracker);
         }
     }
     
@@ -97,8 +109,7 @@ public class HttpClientUtil {
                 .setEntity(new ByteArrayEntity(data, null))
                 .build();
         try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
-            HttpEntity entity = response.getEntity();
-            return entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+            return readBody(url, response);
         }
     }
     
@@ -111,8 +122,44 @@ public class HttpClientUtil {
                 .addHeader(headerName, headerValue)
                 .build();
         try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
-            HttpEntity entity = response.getEntity();
-            return entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+            return readBody(url, response);
+        }
+    }
+    
+    /**
+     * 执行带请求头的POST请求，发送字节数组，并携带/记录元数据txid
+     */
+    public static String doPostWithHeader(HttpClient client, String url, byte[] data, String headerName, String headerValue, TxidTracker tracker) throws IOException, ParseException {
+        ClassicHttpRequest request = withTxid(ClassicRequestBuilder.post(url)
+                .setEntity(new ByteArrayEntity(data, null))
+                .addHeader(headerName, headerValue), tracker).build();
+        try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
+            return readBody(url, response, tracker);
+        }
+    }
+    
+    /**
+     * 执行带请求头的POST请求，发送JSON
+     */
+    public static String doPostJsonWithHeader(HttpClient client, String url, String json, String headerName, String headerValue) throws IOException, ParseException {
+        ClassicHttpRequest request = ClassicRequestBuilder.post(url)
+                .setEntity(new StringEntity(json, ContentType.APPLICATION_JSON))
+                .addHeader(headerName, headerValue)
+                .build();
+        try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
+            return readBody(url, response);
+        }
+    }
+    
+    /**
+     * 执行带请求头的POST请求，发送JSON，并携带/记录元数据txid
+     */
+    public static String doPostJsonWithHeader(HttpClient client, String url, String json, String headerName, String headerValue, TxidTracker tracker) throws IOException, ParseException {
+        ClassicHttpRequest request = withTxid(ClassicRequestBuilder.post(url)
+                .setEntity(new StringEntity(json, ContentType.APPLICATION_JSON))
+                .addHeader(headerName, headerValue), tracker).build();
+        try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
+            return readBody(url, response, tracker);
         }
     }
     
@@ -122,11 +169,49 @@ public class HttpClientUtil {
     public static String doDelete(HttpClient client, String url) throws IOException, ParseException {
         ClassicHttpRequest request = ClassicRequestBuilder.delete(url).build();
         try (ClassicHttpResponse response = client.executeOpen(null, request, null)) {
-            HttpEntity entity = response.getEntity();
-            return entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+            return readBody(url, response);
         }
     }
     
+    /**
+     * 读取响应体；503表示服务端暂不可用（如非Leader且无法转发），抛出异常交由调用方切换节点；
+     * 421表示路径不归该MetaServer组管理，交由调用方刷新挂载表后重新路由；
+     * 423表示文件的写租约由其他客户端持有
+     */
+    private static String readBody(String url, ClassicHttpResponse response) throws IOException, ParseException {
+        HttpEntity entity = response.getEntity();
+        if (response.getCode() == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+            EntityUtils.consume(entity);
+            throw new ServiceUnavailableException(url);
+        }
+        if (response.getCode() == MisdirectedRequestException.STATUS) {
+            EntityUtils.consume(entity);
+            throw new MisdirectedRequestException(url);
+        }
+        if (response.getCode() == LeaseConflictException.STATUS) {
+            EntityUtils.consume(entity);
+            throw new LeaseConflictException(url);
+        }
+        return entity != null ? EntityUtils.toString(entity, StandardCharsets.UTF_8) : null;
+    }
+    
+    /**
+     * 读取响应体并记录响应中的txid（只记录成功响应）
+     */
+    private static String readBody(String url, ClassicHttpResponse response, TxidTracker tracker) throws IOException, ParseException {
+        String body = readBody(url, response);
+        Header txid = response.getFirstHeader(TxidTracker.HEADER);
+        if (txid != null && response.getCode() < 300) {
+            tracker.observe(txid.getValue());
+        }
+        return body;
+    }
+    
+    private static ClassicRequestBuilder withTxid(ClassicRequestBuilder builder, TxidTracker tracker) {
+        String txid = tracker.headerValue();
+        return txid != null ? builder.addHeader(TxidTracker.HEADER, txid) : builder;
+    }
+    
     /**
      * 构建带查询参数的URL
      */
@@ -0,0 +1,25 @@
+package com.ksyun.campus.client.util;
+
+import java.io.IOException;
+
+/**
+ * 服务端返回423：文件的写租约由其他客户端持有，当前不能创建/写入该文件
+ * 持有者关闭文件或超过租约软期限未续约后可以重试
+ */
+public class LeaseConflictException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int STATUS = 423;
+
+    private final String url;
+
+    public LeaseConflictException(String url) {
+        super("文件正由其他客户端写入(423): " + url);
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
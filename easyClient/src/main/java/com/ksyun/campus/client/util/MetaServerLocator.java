@@ -0,0 +1,207 @@
+package com.ksyun.campus.client.util;
+
+import org.apache.zookeeper.Watcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MetaServer地址定位器（每个MetaServer组一个）
+ * 缓存Leader地址与Follower列表，由ZK watch驱动刷新，稳态下请求路径上不再访问ZK；
+ * Follower作为热备地址，Leader连接失败时可立即切换。txid按组递增，读己之写的txid也按组记录
+ */
+public class MetaServerLocator {
+
+    // 连接失败的地址在该时间窗口内降低优先级，等待ZK通知新的Leader
+    private static final long FAILURE_BACKOFF_MS = 5000;
+
+    private final ZkUtil zkUtil;
+    private final String group;
+    // 组内没有任何可用地址时的回退地址，可为null
+    private final String defaultAddress;
+    private final TxidTracker txidTracker = new TxidTracker();
+
+    private volatile String leaderAddress;
+    private volatile List<String> metaServerAddresses = Collections.emptyList();
+    // 地址 -> 最近一次失败时间
+    private final Map<String, Long> failedAddresses = new ConcurrentHashMap<>();
+    // 上一次读取MetaServer列表失败，watch可能未注册
+    private volatile boolean metaServersStale;
+    // 只读请求轮询的起点
+    private final AtomicInteger readCursor = new AtomicInteger();
+
+    // 复用同一个Watcher实例，重复注册时ZK会去重，避免一次变更触发多次刷新
+    private final Watcher leaderWatcher = event -> {
+        if (event.getType() != Watcher.Event.EventType.None) {
+            refreshLeader();
+        }
+    };
+    // 子节点变化，或metaservers节点被创建/删除时都需要重新读取
+    private final Watcher metaServersWatcher = event -> {
+        if (event.getType() != Watcher.Event.EventType.None) {
+            refreshMetaServers();
+        }
+    };
+
+    public MetaServerLocator(ZkUtil zkUtil, String defaultAddress) {
+        this(zkUtil, MountTable.DEFAULT_GROUP, defaultAddress);
+    }
+
+    public MetaServerLocator(ZkUtil zkUtil, String group, String defaultAddress) {
+        this.zkUtil = zkUtil;
+        this.group = group;
+        this.defaultAddress = defaultAddress;
+    }
+
+    /**
+     * 首次加载并注册watch
+     */
+    public void start() {
+        refreshLeader();
+        refreshMetaServers();
+    }
+
+    /**
+     * 读取Leader地址并重新注册watch（ZK watch为一次性，触发后需重新设置）
+     */
+    private void refreshLeader() {
+        try {
+            String leader = zkUtil.getLeaderAddress(group, leaderWatcher);
+            if (leader != null && !leader.equals(leaderAddress)) {
+                // Leader变化后，之前的失败记录不再有参考价值
+                failedAddresses.clear();
+            }
+            leaderAddress = leader;
+        } catch (Exception e) {
+            // ZK暂时不可用：保留上一次已知的Leader，不把null当作Leader缓存；
+            // 此时watch可能未注册成功，下一次markNotLeader会重新读取并注册
+        }
+    }
+
+    /**
+     * 读取MetaServer列表并重新注册子节点watch
+     */
+    private void refreshMetaServers() {
+        try {
+            List<String> addresses = zkUtil.getMetaServerAddresses(group, metaServersWatcher);
+            metaServerAddresses = Collections.unmodifiableList(new ArrayList<>(addresses));
+            metaServersStale = false;
+        } catch (Exception e) {
+            // ZK暂时不可用：保留旧值；watch可能未注册成功，下一次markNotLeader时重试
+            metaServersStale = true;
+        }
+    }
+
+    /**
+     * 当前首选地址：Leader优先，其次健康的Follower，最后默认地址
+     */
+    public String current() {
+        return candidates().get(0);
+    }
+
+    /**
+     * 按优先级排列的候选地址：健康Leader、健康Follower、最近失败过的地址，均不可用时回退默认地址
+     */
+    public List<String> candidates() {
+        String leader = leaderAddress;
+        List<String> servers = metaServerAddresses;
+        List<String> healthy = new ArrayList<>(servers.size() + 1);
+        List<String> failed = new ArrayList<>(2);
+        long now = System.currentTimeMillis();
+
+        if (leader != null) {
+            (isFailed(leader, now) ? failed : healthy).add(leader);
+        }
+        for (String address : servers) {
+            if (address.equals(leader)) {
+                continue;
+            }
+            (isFailed(address, now) ? failed : healthy).add(address);
+        }
+        healthy.addAll(failed);
+        if (healthy.isEmpty() && defaultAddress != null) {
+            healthy.add(defaultAddress);
+        }
+        return healthy;
+    }
+
+    /**
+     * 只读请求的候选地址：健康的Leader与Follower一起轮询，使元数据读吞吐随MetaServer数量扩展；
+     * 最近失败过的地址排在最后。Follower过旧或等不到要求的txid时返回503，调用方顺延到下一个地址
+     */
+    public List<String> readCandidates() {
+        List<String> ordered = candidates();
+        int healthy = 0;
+        long now = System.currentTimeMillis();
+        while (healthy < ordered.size() && !isFailed(ordered.get(healthy), now)) {
+            healthy++;
+        }
+        if (healthy > 1) {
+            Collections.rotate(ordered.subList(0, healthy), -Math.floorMod(readCursor.getAndIncrement(), healthy));
+        }
+        return ordered;
+    }
+
+    private boolean isFailed(String address, long now) {
+        Long failedAt = failedAddresses.get(address);
+        if (failedAt == null) {
+            return false;
+        }
+        if (now - failedAt > FAILURE_BACKOFF_MS) {
+            failedAddresses.remove(address, failedAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 连接失败：降低该地址优先级，下一次请求直接走其他候选
+     */
+    public void markFailed(String address) {
+        failedAddresses.put(address, System.currentTimeMillis());
+    }
+
+    /**
+     * 对端不是Leader或无法服务（503）：降低优先级并立即从ZK重新读取一次Leader
+     */
+    public void markNotLeader(String address) {
+        markFailed(address);
+        refreshLeader();
+        if (metaServersStale) {
+            refreshMetaServers();
+        }
+    }
+
+    public String getLeaderAddress() {
+        return leaderAddress;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * 本组见过的最新txid
+     */
+    public TxidTracker getTxidTracker() {
+        return txidTracker;
+    }
+
+    /**
+     * Follower地址列表（不含Leader）
+     */
+    public List<String> getFollowerAddresses() {
+        String leader = leaderAddress;
+        List<String> followers = new ArrayList<>();
+        for (String address : metaServerAddresses) {
+            if (!address.equals(leader)) {
+                followers.add(address);
+            }
+        }
+        return followers;
+    }
+}
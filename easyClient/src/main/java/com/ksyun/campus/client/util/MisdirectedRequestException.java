@@ -0,0 +1,25 @@
+package com.ksyun.campus.client.util;
+
+import java.io.IOException;
+
+/**
+ * 服务端返回421：路径不归该MetaServer组管理，说明本地挂载表已过期
+ * 调用方刷新挂载表后按新的路由重发
+ */
+public class MisdirectedRequestException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int STATUS = 421;
+
+    private final String url;
+
+    public MisdirectedRequestException(String url) {
+        super("路径不属于该MetaServer组(421): " + url);
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
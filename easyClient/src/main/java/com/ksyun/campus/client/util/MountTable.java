@@ -0,0 +1,132 @@
+package com.ksyun.campus.client.util;
+
+import com.ksyun.campus.client.domain.FileType;
+import com.ksyun.campus.client.domain.MountEntry;
+import com.ksyun.campus.client.domain.StatInfo;
+import org.apache.zookeeper.Watcher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 挂载表本地缓存
+ * ZK上 {root}/mounts 把文件系统或其下的子树映射到MetaServer组，由watch刷新；
+ * 同一路径命中多个条目时取最长前缀，没有命中时属于default组
+ */
+public class MountTable {
+
+    public static final String DEFAULT_GROUP = "default";
+
+    private final ZkUtil zkUtil;
+    private volatile List<MountEntry> entries = Collections.emptyList();
+
+    private final Watcher watcher = event -> {
+        if (event.getType() != Watcher.Event.EventType.None) {
+            refresh();
+        }
+    };
+
+    public MountTable(ZkUtil zkUtil) {
+        this.zkUtil = zkUtil;
+    }
+
+    /**
+     * 重新读取挂载表并注册watch；读取失败时保留旧表
+     */
+    public void refresh() {
+        try {
+            entries = Collections.unmodifiableList(new ArrayList<>(zkUtil.getMountEntries(watcher)));
+        } catch (Exception e) {
+            // 保留旧值，等待下一次事件或421触发的刷新
+        }
+    }
+
+    /**
+     * 路径所属的MetaServer组
+     */
+    public String resolve(String fileSystemName, String path) {
+        MountEntry best = null;
+        for (MountEntry entry : entries) {
+            if (entry.getFileSystemName().equals(fileSystemName) && covers(entry.getPath(), path)
+                    && (best == null || entry.getPath().length() > best.getPath().length())) {
+                best = entry;
+            }
+        }
+        return best != null ? best.getGroup() : DEFAULT_GROUP;
+    }
+
+    /**
+     * 直接位于parent下的挂载点路径（不含文件系统级挂载），列目录时补充为子目录
+     */
+    public List<String> childMountPoints(String fileSystemName, String parent) {
+        String prefix = parent.endsWith("/") ? parent : parent + "/";
+        List<String> children = new ArrayList<>();
+        for (MountEntry entry : entries) {
+            String path = entry.getPath();
+            if (entry.getFileSystemName().equals(fileSystemName) && path.startsWith(prefix)
+                    && path.length() > prefix.length() && path.indexOf('/', prefix.length()) < 0) {
+                children.add(path);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * 挂载到其他MetaServer组的子树在父目录所在的组中可能没有目录项，列目录时补充为子目录
+     * listing按名称字节序排列（与MetaServer一致），只并入名称在(after, upTo]内且尚未列出的挂载点，
+     * 按同样的顺序插入；after/upTo为null表示该侧不限，分页时传本页的startAfter与nextStartAfter
+     */
+    public List<StatInfo> mergeChildMountPoints(String fileSystemName, String parent, List<StatInfo> listing,
+                                                String after, String upTo) {
+        List<StatInfo> merged = listing;
+        for (String mountPoint : childMountPoints(fileSystemName, parent)) {
+            String name = nameOf(mountPoint);
+            if ((after != null && compareNames(name, after) <= 0) || (upTo != null && compareNames(name, upTo) > 0)) {
+                continue;
+            }
+            int insertAt = merged.size();
+            boolean listed = false;
+            for (int i = 0; i < merged.size(); i++) {
+                int cmp = compareNames(name, nameOf(merged.get(i).getPath()));
+                if (cmp == 0) {
+                    listed = true;
+                    break;
+                }
+                if (cmp < 0) {
+                    insertAt = i;
+                    break;
+                }
+            }
+            if (listed) {
+                continue;
+            }
+            if (merged == listing) {
+                merged = new ArrayList<>(listing);
+            }
+            StatInfo statInfo = new StatInfo();
+            statInfo.setPath(mountPoint);
+            statInfo.setType(FileType.Directory);
+            merged.add(insertAt, statInfo);
+        }
+        return merged;
+    }
+
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static int compareNames(String a, String b) {
+        return Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public List<MountEntry> getEntries() {
+        return entries;
+    }
+
+    private static boolean covers(String mountPath, String path) {
+        return "/".equals(mountPath) || path.equals(mountPath) || path.startsWith(mountPath + "/");
+    }
+}
@@ -0,0 +1,23 @@
+package com.ksyun.campus.client.util;
+
+import java.io.IOException;
+
+/**
+ * 服务端返回503（如Follower无法定位Leader）时抛出
+ * 调用方据此立即切换到其他MetaServer，而不是把空响应当作成功
+ */
+public class ServiceUnavailableException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String url;
+
+    public ServiceUnavailableException(String url) {
+        super("服务不可用(503): " + url);
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ksyun.campus.client.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户端见过的最新元数据txid
+ * MetaServer每个成功响应都带X-Txid（该节点已应用的txid），读请求带上目前见过的最大值，
+ * 被分散到Follower的读会等该节点应用到这个txid再返回，保证读己之写与单调读
+ */
+public class TxidTracker {
+
+    public static final String HEADER = "X-Txid";
+
+    private final AtomicLong lastSeen = new AtomicLong();
+
+    /**
+     * 记录响应头中的txid，只前进不后退
+     */
+    public void observe(String headerValue) {
+        if (headerValue == null) {
+            return;
+        }
+        try {
+            long txid = Long.parseLong(headerValue.trim());
+            lastSeen.accumulateAndGet(txid, Math::max);
+        } catch (NumberFormatException e) {
+            // 忽略无法解析的值
+        }
+    }
+
+    public long get() {
+        return lastSeen.get();
+    }
+
+    /**
+     * 读请求需要携带的头部值；尚未见过任何变更时返回null，不携带
+     */
+    public String headerValue() {
+        long txid = lastSeen.get();
+        return txid > 0 ? String.valueOf(txid) : null;
+    }
+}
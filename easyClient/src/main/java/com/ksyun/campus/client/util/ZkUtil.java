@@ -1,10 +1,15 @@
 package com.ksyun.campus.client.util;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ksyun.campus.client.domain.MountEntry;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
@@ -22,6 +27,8 @@ public class ZkUtil {
     // 统一ZK根路径，便于读取leader
     private String zkRootPath = "/minfs";
     
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    
     /**
      * 连接到Zookeeper
      */
@@ -37,58 +44,146 @@ public class ZkUtil {
     }
     
     /**
-     * 获取当前Leader的地址（host:port）
+     * 获取default组当前Leader的地址（host:port）
      * 读取路径: /minfs/leader/leader，内容形如 host:port:timestamp
      */
     public String getLeaderAddress() throws Exception {
+        return getLeaderAddress(null);
+    }
+
+    /**
+     * 获取default组当前Leader的地址，并在leader节点上注册一次性watch
+     */
+    public String getLeaderAddress(Watcher watcher) throws Exception {
+        return getLeaderAddress(MountTable.DEFAULT_GROUP, watcher);
+    }
+    
+    /**
+     * 获取指定MetaServer组当前Leader的地址，并在leader节点上注册一次性watch
+     * 使用exists注册watch，leader节点不存在时也能收到NodeCreated事件
+     *
+     * @return Leader地址；当前没有Leader时返回null
+     * @throws Exception 读取ZK失败（连接丢失、会话过期等），调用方应保留上一次已知的Leader
+     */
+    public String getLeaderAddress(String group, Watcher watcher) throws Exception {
         if (zooKeeper == null) {
             throw new IllegalStateException("Zookeeper未连接");
         }
+        String path = groupRoot(group) + "/leader/leader";
+        Stat stat = watcher != null ? zooKeeper.exists(path, watcher) : null;
+        if (watcher != null && stat == null) {
+            return null;
+        }
+        byte[] data;
         try {
-            String path = zkRootPath + "/leader/leader";
-            byte[] data = zooKeeper.getData(path, false, (Stat) null);
-            if (data == null || data.length == 0) {
-                return null;
-            }
-            String raw = new String(data);
-            // 可能为 host:port 或 host:port:timestamp
-            String[] parts = raw.split(":");
-            if (parts.length >= 2) {
-                return parts[0] + ":" + parts[1];
-            }
-            return raw;
-        } catch (Exception e) {
-            // 路径不存在或其他异常则返回null，交由调用方回退
+            data = zooKeeper.getData(path, false, (Stat) null);
+        } catch (KeeperException.NoNodeException e) {
+            // exists之后leader节点被删除：当前没有Leader，已注册的watch会在新Leader出现时通知
             return null;
         }
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        return toAddress(new String(data));
     }
     
     /**
-     * 获取MetaServer地址列表
+     * 获取MetaServer地址列表（host:port）
      */
     public List<String> getMetaServerAddresses() throws Exception {
+        return getMetaServerAddresses(null);
+    }
+
+    /**
+     * 获取default组MetaServer地址列表，并在metaservers节点上注册子节点变化watch
+     */
+    public List<String> getMetaServerAddresses(Watcher watcher) throws Exception {
+        return getMetaServerAddresses(MountTable.DEFAULT_GROUP, watcher);
+    }
+    
+    /**
+     * 获取指定MetaServer组的地址列表，并在metaservers节点上注册子节点变化watch
+     * metaservers节点不存在时用exists监听其创建，返回空列表
+     *
+     * @throws Exception 读取ZK失败（连接丢失、会话过期等），调用方应保留上一次已知的列表
+     */
+    public List<String> getMetaServerAddresses(String group, Watcher watcher) throws Exception {
         if (zooKeeper == null) {
             throw new IllegalStateException("Zookeeper未连接");
         }
-        List<String> addresses = new ArrayList<>();
+        String path = groupRoot(group) + "/metaservers";
+        List<String> children;
         try {
-            String path = zkRootPath + "/metaservers";
-            List<String> children = zooKeeper.getChildren(path, false);
-            for (String child : children) {
-                byte[] data = zooKeeper.getData(path + "/" + child, false, null);
-                if (data != null && data.length > 0) {
-                    addresses.add(new String(data));
-                } else {
-                    // 回退：有些实现可能把地址放在节点名
-                    addresses.add(child);
-                }
+            children = watcher != null
+                    ? zooKeeper.getChildren(path, watcher)
+                    : zooKeeper.getChildren(path, false);
+        } catch (KeeperException.NoNodeException e) {
+            // 组尚未有MetaServer注册：监听节点创建，避免之后一直拿不到列表
+            if (watcher != null && zooKeeper.exists(path, watcher) != null) {
+                return getMetaServerAddresses(group, watcher);
+            }
+            return new ArrayList<>();
+        }
+        List<String> addresses = new ArrayList<>(children.size());
+        for (String child : children) {
+            byte[] data;
+            try {
+                data = zooKeeper.getData(path + "/" + child, false, null);
+            } catch (KeeperException.NoNodeException e) {
+                // 列出之后该MetaServer已下线，子节点watch会带来新的列表
+                continue;
+            }
+            if (data != null && data.length > 0) {
+                addresses.add(toAddress(new String(data)));
+            } else {
+                // 回退：有些实现可能把地址放在节点名
+                addresses.add(child);
             }
-        } catch (Exception e) {
-            // 如果路径不存在，返回空列表
         }
         return addresses;
     }
     
+    /**
+     * 读取挂载表 {root}/mounts（JSON数组）并注册watch；节点不存在时用exists监听其创建，返回空表
+     */
+    public List<MountEntry> getMountEntries(Watcher watcher) throws Exception {
+        if (zooKeeper == null) {
+            throw new IllegalStateException("Zookeeper未连接");
+        }
+        String path = zkRootPath + "/mounts";
+        try {
+            if (zooKeeper.exists(path, watcher) == null) {
+                return Collections.emptyList();
+            }
+            byte[] data = zooKeeper.getData(path, watcher, null);
+            if (data == null || data.length == 0) {
+                return Collections.emptyList();
+            }
+            List<MountEntry> entries = MAPPER.readValue(data, new TypeReference<List<MountEntry>>() {});
+            return entries != null ? entries : Collections.emptyList();
+        } catch (KeeperException.NoNodeException e) {
+            return Collections.emptyList();
+        }
+    }
+    
+    /**
+     * MetaServer组在ZK上的根路径：default组为根路径本身，其他组为 {root}/groups/{组名}
+     */
+    private String groupRoot(String group) {
+        return MountTable.DEFAULT_GROUP.equals(group) ? zkRootPath : zkRootPath + "/groups/" + group;
+    }
+
+    /**
+     * 节点数据可能为 host:port 或 host:port:status:timestamp，统一截取为 host:port
+     */
+    private String toAddress(String raw) {
+        String[] parts = raw.split(":");
+        if (parts.length >= 2) {
+            return parts[0] + ":" + parts[1];
+        }
+        return raw;
+    }
+    
     /**
      * 获取DataServer地址列表
      */
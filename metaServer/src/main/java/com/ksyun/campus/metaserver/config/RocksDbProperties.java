@@ -0,0 +1,32 @@
+package com.ksyun.campus.metaserver.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * RocksDB调优参数，对应application.yml中的metadata.rocksdb
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "metadata.rocksdb")
+public class RocksDbProperties {
+
+    // 所有列族共享的LRU块缓存
+    private long blockCacheSizeMb = 256;
+    // 0表示关闭布隆过滤器
+    private double bloomBitsPerKey = 10;
+    // 布隆过滤器同时包含整键，供getMetadata/exists的点查使用
+    private boolean wholeKeyFiltering = true;
+    // memtable前缀布隆过滤器占写缓冲的比例，0表示关闭
+    private double memtablePrefixBloomRatio = 0.1;
+    // 索引与过滤器块放入块缓存，内存占用受blockCacheSizeMb约束
+    private boolean cacheIndexAndFilterBlocks = true;
+    private long blockSizeKb = 16;
+    
+    private long writeBufferSizeMb = 64;
+    private int maxWriteBufferNumber = 4;
+    private int maxBackgroundJobs = 4;
+    private int level0SlowdownWritesTrigger = 8;
+    private int level0StopWritesTrigger = 12;
+}
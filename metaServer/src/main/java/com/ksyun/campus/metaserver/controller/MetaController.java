@@ -1,24 +1,56 @@
 package com.ksyun.campus.metaserver.controller;
 
 import com.ksyun.campus.metaserver.domain.StatInfo;
+import com.ksyun.campus.metaserver.domain.BatchOperation;
+import com.ksyun.campus.metaserver.domain.BatchResult;
+import com.ksyun.campus.metaserver.domain.ContentSummary;
 import com.ksyun.campus.metaserver.domain.FileType;
+import com.ksyun.campus.metaserver.domain.NamespaceStats;
+import com.ksyun.campus.metaserver.domain.MountEntry;
 import com.ksyun.campus.metaserver.services.MetaService;
 import com.ksyun.campus.metaserver.services.FsckServices;
+import com.ksyun.campus.metaserver.services.LeaseConflictException;
+import com.ksyun.campus.metaserver.services.LeaseManager;
 import com.ksyun.campus.metaserver.services.MetadataStorageService;
+import com.ksyun.campus.metaserver.services.PathAlreadyExistsException;
+import com.ksyun.campus.metaserver.services.PathNotFoundException;
+import com.ksyun.campus.metaserver.services.QuotaExceededException;
+import com.ksyun.campus.metaserver.services.StaleReadException;
 import com.ksyun.campus.metaserver.services.ZkMetaServerService;
-import com.ksyun.campus.metaserver.services.ReplicationService;
-import com.ksyun.campus.metaserver.domain.ReplicationType;
+import com.ksyun.campus.metaserver.services.RaftService;
+import com.ksyun.campus.metaserver.domain.AppendEntriesRequest;
+import com.ksyun.campus.metaserver.domain.AppendEntriesResponse;
+import com.ksyun.campus.metaserver.domain.InstallSnapshotRequest;
+import com.ksyun.campus.metaserver.domain.VoteRequest;
+import com.ksyun.campus.metaserver.domain.VoteResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Optional;
 import com.ksyun.campus.metaserver.domain.ReplicaData;
 import com.ksyun.campus.metaserver.services.ZkDataServerService;
 
@@ -40,7 +72,10 @@ public class MetaController {
     private ZkMetaServerService zkMetaServerService;
     
     @Autowired
-    private ReplicationService replicationService;
+    private RaftService raftService;
+    
+    @Autowired
+    private LeaseManager leaseManager;
 
     @Autowired
     private org.springframework.web.client.RestTemplate restTemplate;
@@ -48,19 +83,49 @@ public class MetaController {
     @Autowired
     private org.springframework.context.ApplicationContext applicationContext;
 
-    private java.net.URI buildLeaderUri(String leader, String path, String query) {
-        try {
-            return new java.net.URI("http://" + leader + path + (query == null ? "" : ("?" + query)));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    // 分页列目录的默认/最大页大小
+    private static final int DEFAULT_LIST_PAGE_SIZE = 1000;
+    private static final int MAX_LIST_PAGE_SIZE = 10000;
+
+    // 路径不归本MetaServer组管理（HTTP 421 Misdirected Request）
+    private static final int MISDIRECTED_REQUEST = 421;
+    
+    // 响应中为本节点已应用的txid；读请求中为客户端见过的最新txid，节点应用到该txid后才返回（读己之写）
+    private static final String TXID_HEADER = "X-Txid";
+    
+    /**
+     * 路径不归本组管理（客户端挂载表过期），返回421让客户端刷新挂载表后重新路由
+     */
+    private <T> ResponseEntity<T> misdirected(String fileSystemName, String path) {
+        log.warn("路径不属于本MetaServer组{}: fileSystemName={}, path={}", zkMetaServerService.getGroup(), fileSystemName, path);
+        return ResponseEntity.status(MISDIRECTED_REQUEST).build();
+    }
+    
+    /**
+     * 成功响应附带本节点已应用的txid
+     */
+    private ResponseEntity.BodyBuilder okWithTxid() {
+        return ResponseEntity.ok().header(TXID_HEADER, String.valueOf(raftService.getAppliedTxid()));
+    }
+    
+    /**
+     * 转发到Leader的请求重新组装响应时，保留Leader返回的txid
+     */
+    private static org.springframework.http.HttpHeaders txidHeaderOf(ResponseEntity<?> resp) {
+        org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
+        String txid = resp.getHeaders().getFirst(TXID_HEADER);
+        if (txid != null) {
+            headers.set(TXID_HEADER, txid);
         }
+        return headers;
     }
     
     /**
      * 获取文件状态信息
      */
     @RequestMapping("stats")
-    public ResponseEntity<StatInfo> stats(@RequestHeader String fileSystemName, @RequestParam String path) {
+    public ResponseEntity<StatInfo> stats(@RequestHeader String fileSystemName, @RequestParam String path,
+                                          @RequestHeader(value = TXID_HEADER, required = false) Long minTxid) {
         try {
             // 参数验证
             if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
@@ -76,13 +141,20 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("获取文件状态: fileSystemName={}, path={}", fileSystemName, path);
+            raftService.awaitReadable(minTxid == null ? 0 : minTxid);
             StatInfo statInfo = metaService.getFile(fileSystemName, path);
             if (statInfo != null) {
-                return ResponseEntity.ok(statInfo);
+                return okWithTxid().body(statInfo);
             } else {
                 return ResponseEntity.notFound().build();
             }
+        } catch (StaleReadException e) {
+            log.warn("获取文件状态失败: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
         } catch (IllegalArgumentException e) {
             log.warn("获取文件状态失败: 参数错误: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -92,11 +164,99 @@ public class MetaController {
         }
     }
     
+    /**
+     * 获取目录内容汇总（du），读取增量维护的目录汇总，不遍历子树
+     */
+    @RequestMapping("du")
+    public ResponseEntity<ContentSummary> du(@RequestHeader String fileSystemName, @RequestParam String path,
+                                             @RequestHeader(value = TXID_HEADER, required = false) Long minTxid) {
+        try {
+            // 参数验证
+            if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
+                log.warn("获取内容汇总失败: 文件系统名称为空");
+                return ResponseEntity.badRequest().build();
+            }
+            if (path == null || !path.startsWith("/")) {
+                log.warn("获取内容汇总失败: 路径格式错误: {}", path);
+                return ResponseEntity.badRequest().build();
+            }
+            
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
+            log.info("获取内容汇总: fileSystemName={}, path={}", fileSystemName, path);
+            raftService.awaitReadable(minTxid == null ? 0 : minTxid);
+            ContentSummary summary = metaService.getContentSummary(fileSystemName, path);
+            if (summary != null) {
+                return okWithTxid().body(summary);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (StaleReadException e) {
+            log.warn("获取内容汇总失败: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
+        } catch (Exception e) {
+            log.error("获取内容汇总失败: fileSystemName={}, path={}", fileSystemName, path, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+    
+    /**
+     * 设置目录配额（根目录即整个文件系统），-1表示不限制
+     * namespaceQuota限制子树中的文件与目录数，spaceQuota限制子树的逻辑字节数；在create/write/mkdir/rename提交时检查
+     */
+    @RequestMapping("quota")
+    public ResponseEntity<ContentSummary> setQuota(@RequestHeader String fileSystemName, @RequestParam String path,
+                                                   @RequestParam(defaultValue = "-1") long namespaceQuota,
+                                                   @RequestParam(defaultValue = "-1") long spaceQuota) {
+        try {
+            if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
+                log.warn("设置配额失败: 文件系统名称为空");
+                return ResponseEntity.badRequest().build();
+            }
+            if (path == null || !path.startsWith("/")) {
+                log.warn("设置配额失败: 路径格式错误: {}", path);
+                return ResponseEntity.badRequest().build();
+            }
+            
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
+            log.info("设置配额: fileSystemName={}, path={}, namespaceQuota={}, spaceQuota={}", fileSystemName, path, namespaceQuota, spaceQuota);
+            if (!zkMetaServerService.isLeader()) {
+                String leader = zkMetaServerService.getLeaderAddress();
+                if (leader == null) {
+                    log.error("设置配额失败: 无法获取Leader地址");
+                    return ResponseEntity.status(503).build();
+                }
+                URI uri = UriComponentsBuilder.fromUriString("http://" + leader + "/quota")
+                        .queryParam("path", path).queryParam("namespaceQuota", namespaceQuota).queryParam("spaceQuota", spaceQuota)
+                        .encode().build().toUri();
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("fileSystemName", fileSystemName);
+                return restTemplate.exchange(uri, HttpMethod.GET,
+                        new HttpEntity<>(headers), ContentSummary.class);
+            }
+            
+            ContentSummary summary = metaService.setQuota(fileSystemName, path, namespaceQuota, spaceQuota);
+            return okWithTxid().body(summary);
+        } catch (IllegalArgumentException e) {
+            log.warn("设置配额失败: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (HttpStatusCodeException e) {
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (Exception e) {
+            log.error("设置配额失败: fileSystemName={}, path={}", fileSystemName, path, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+    
     /**
      * 创建文件
      */
     @RequestMapping("create")
-    public ResponseEntity<StatInfo> createFile(@RequestHeader String fileSystemName, @RequestParam String path) {
+    public ResponseEntity<StatInfo> createFile(@RequestHeader String fileSystemName, @RequestParam String path,
+                                               @RequestParam(required = false) String clientName) {
         try {
             // 参数验证
             if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
@@ -116,12 +276,20 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("创建文件: fileSystemName={}, path={}", fileSystemName, path);
             if (!zkMetaServerService.isLeader()) {
                 String leader = zkMetaServerService.getLeaderAddress();
                 if (leader != null) {
-                    java.net.URI uri = buildLeaderUri(leader, "/create", "path=" + path);
-                    ResponseEntity<StatInfo> resp = restTemplate.exchange(uri, org.springframework.http.HttpMethod.GET, null, StatInfo.class);
+                    URI uri = UriComponentsBuilder.fromUriString("http://" + leader + "/create")
+                            .queryParam("path", path).queryParamIfPresent("clientName", Optional.ofNullable(clientName))
+                            .encode().build().toUri();
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.set("fileSystemName", fileSystemName);
+                    ResponseEntity<StatInfo> resp = restTemplate.exchange(uri, HttpMethod.GET,
+                            new HttpEntity<>(headers), StatInfo.class);
                     return resp;
                 } else {
                     log.error("创建文件失败: 无法获取Leader地址");
@@ -129,35 +297,26 @@ public class MetaController {
                 }
             }
             
-            StatInfo statInfo = metaService.createFile(fileSystemName, path, FileType.File);
-            // 先确保父目录链在Follower存在（幂等）
-            try {
-                String parent = path;
-                java.util.List<String> dirChain = new java.util.ArrayList<>();
-                int idx = parent.lastIndexOf('/');
-                if (idx > 0) {
-                    parent = parent.substring(0, idx);
-                    while (parent != null && !"/".equals(parent) && parent.startsWith("/")) {
-                        dirChain.add(0, parent);
-                        int i = parent.lastIndexOf('/');
-                        if (i <= 0) break;
-                        parent = parent.substring(0, i);
-                    }
-                }
-                for (String dir : dirChain) {
-                    Map<String, Object> payload = new HashMap<>();
-                    payload.put("fileSystemName", fileSystemName);
-                    replicationService.replicateToFollowers(ReplicationType.CREATE_DIR, dir, payload);
-                }
-            } catch (Exception e) {
-                log.warn("复制父目录链失败(不影响本地创建): fileSystemName={}, path={}", fileSystemName, path, e);
+            // 带clientName的创建同时取得写租约，租约期内其他客户端不能创建/写入同一文件
+            if (clientName != null) {
+                leaseManager.acquire(fileSystemName, path, clientName);
+            } else {
+                leaseManager.checkWritable(fileSystemName, path);
             }
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("fileSystemName", fileSystemName);
-            payload.put("size", 0);
-            replicationService.replicateToFollowers(ReplicationType.CREATE_FILE, path, payload);
-            return ResponseEntity.ok(statInfo);
             
+            // 变更连同自动创建的父目录记入操作日志，由Follower异步拉取
+            StatInfo statInfo = metaService.createFile(fileSystemName, path, FileType.File);
+            return okWithTxid().body(statInfo);
+            
+        } catch (QuotaExceededException e) {
+            log.warn("创建文件失败: fileSystemName={}, path={}, {}", fileSystemName, path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).build();
+        } catch (LeaseConflictException e) {
+            log.warn("创建文件失败: fileSystemName={}, path={}, {}", fileSystemName, path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.LOCKED).build();
+        } catch (HttpStatusCodeException e) {
+            // Leader返回的4xx/5xx原样透传
+            return ResponseEntity.status(e.getStatusCode()).build();
         } catch (IllegalArgumentException e) {
             log.warn("创建文件失败: 参数错误: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -191,13 +350,20 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("创建目录: fileSystemName={}, path={}", fileSystemName, path);
             
             if (!zkMetaServerService.isLeader()) {
                 String leader = zkMetaServerService.getLeaderAddress();
                 if (leader != null) {
-                    java.net.URI uri = buildLeaderUri(leader, "/mkdir", "path=" + path);
-                    ResponseEntity<StatInfo> resp = restTemplate.exchange(uri, org.springframework.http.HttpMethod.GET, null, StatInfo.class);
+                    URI uri = UriComponentsBuilder.fromUriString("http://" + leader + "/mkdir")
+                            .queryParam("path", path).encode().build().toUri();
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.set("fileSystemName", fileSystemName);
+                    ResponseEntity<StatInfo> resp = restTemplate.exchange(uri, HttpMethod.GET,
+                            new HttpEntity<>(headers), StatInfo.class);
                     return resp;
                 } else {
                     log.error("创建目录失败: 无法获取Leader地址");
@@ -206,34 +372,14 @@ public class MetaController {
             }
             
             StatInfo statInfo = metaService.createDirectory(fileSystemName, path);
+            return okWithTxid().body(statInfo);
             
-            // 为保证Follower侧的父目录链也存在，这里将父链全部复制（幂等）
-            try {
-                String p = path;
-                java.util.List<String> chain = new java.util.ArrayList<>();
-                while (p != null && !"/".equals(p) && p.startsWith("/")) {
-                    chain.add(0, p); // 头插，最终从上到下
-                    int idx = p.lastIndexOf('/');
-                    if (idx <= 0) {
-                        break;
-                    }
-                    p = p.substring(0, idx);
-                }
-                // 复制父链每一层
-                for (String dir : chain) {
-                    Map<String, Object> payload = new HashMap<>();
-                    payload.put("fileSystemName", fileSystemName);
-                    replicationService.replicateToFollowers(ReplicationType.CREATE_DIR, dir, payload);
-                }
-            } catch (Exception e) {
-                log.warn("复制父目录链失败(不影响本地创建): fileSystemName={}, path={}", fileSystemName, path, e);
-                // 回退为只复制当前目录
-                Map<String, Object> payload = new HashMap<>();
-                payload.put("fileSystemName", fileSystemName);
-                replicationService.replicateToFollowers(ReplicationType.CREATE_DIR, path, payload);
-            }
-            return ResponseEntity.ok(statInfo);
-            
+        } catch (QuotaExceededException e) {
+            log.warn("创建目录失败: fileSystemName={}, path={}, {}", fileSystemName, path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).build();
+        } catch (HttpStatusCodeException e) {
+            // Leader返回的4xx/5xx原样透传
+            return ResponseEntity.status(e.getStatusCode()).build();
         } catch (IllegalArgumentException e) {
             log.warn("创建目录失败: 参数错误: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -252,7 +398,8 @@ public class MetaController {
             @RequestHeader String fileSystemName,
             @RequestParam String path,
             @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "-1") int length) {
+            @RequestParam(defaultValue = "-1") int length,
+            @RequestHeader(value = TXID_HEADER, required = false) Long minTxid) {
         try {
             // 参数验证
             if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
@@ -276,28 +423,24 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("读取文件: fileSystemName={}, path={}, offset={}, length={}", fileSystemName, path, offset, length);
             
-            // 如果不是Leader，则将读请求转发给Leader
-            if (!zkMetaServerService.isLeader()) {
-                String leader = zkMetaServerService.getLeaderAddress();
-                if (leader != null) {
-                    java.net.URI uri = buildLeaderUri(leader, "/read", "path=" + path + "&offset=" + offset + "&length=" + length);
-                    ResponseEntity<byte[]> resp = restTemplate.exchange(uri, org.springframework.http.HttpMethod.GET, null, byte[].class);
-                    return resp;
-                } else {
-                    log.error("读取文件失败: 无法获取Leader地址");
-                    return ResponseEntity.status(503).build();
-                }
-            }
+            // Follower与Leader一样在本地解析元数据，只要同步进度满足要求
+            raftService.awaitReadable(minTxid == null ? 0 : minTxid);
             
             // 调用MetaService读取文件
             byte[] data = metaService.readFile(fileSystemName, path, offset, length);
             if (data != null) {
-                return ResponseEntity.ok(data);
+                return okWithTxid().body(data);
             } else {
                 return ResponseEntity.notFound().build();
             }
+        } catch (StaleReadException e) {
+            log.warn("读取文件失败: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
         } catch (IllegalArgumentException e) {
             log.warn("读取文件失败: 参数错误: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -309,91 +452,98 @@ public class MetaController {
 
     /**
      * 写入文件数据
+     * offset为0时整体重写文件，大于0时从该位置覆盖或追加（不能超过文件末尾）
      */
     @RequestMapping(value = "write", method = RequestMethod.POST)
     public ResponseEntity<StatInfo> writeFile(
             @RequestHeader String fileSystemName,
             @RequestParam String path,
-            @RequestParam int offset,
+            @RequestParam long offset,
             @RequestParam int length,
+            @RequestParam(required = false) String clientName,
             HttpServletRequest request) {
+        return write(fileSystemName, path, offset, length, clientName, false, request);
+    }
+    
+    /**
+     * 追加数据到文件末尾（文件不存在时先创建），偏移由Leader持锁时按当前文件大小确定
+     */
+    @RequestMapping(value = "append", method = RequestMethod.POST)
+    public ResponseEntity<StatInfo> appendFile(
+            @RequestHeader String fileSystemName,
+            @RequestParam String path,
+            @RequestParam int length,
+            @RequestParam(required = false) String clientName,
+            HttpServletRequest request) {
+        return write(fileSystemName, path, 0, length, clientName, true, request);
+    }
+    
+    private ResponseEntity<StatInfo> write(String fileSystemName, String path, long offset, int length, String clientName,
+                                           boolean append, HttpServletRequest request) {
         try {
-            log.info("写入文件: fileSystemName={}, path={}, offset={}, length={}", 
+            if (offset < 0 || length < 0) {
+                log.warn("写入文件失败: 参数错误: offset={}, length={}", offset, length);
+                return ResponseEntity.badRequest().build();
+            }
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
+            log.info("{}文件: fileSystemName={}, path={}, offset={}, length={}", append ? "追加" : "写入",
                     fileSystemName, path, offset, length);
             
             // 如果不是Leader，则将写请求和原始数据转发给Leader
             if (!zkMetaServerService.isLeader()) {
                 String leader = zkMetaServerService.getLeaderAddress();
                 if (leader != null) {
-                    java.net.URI uri = buildLeaderUri(leader, "/write", "path=" + path + "&offset=" + offset + "&length=" + length);
-                    org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-                    headers.setContentType(org.springframework.http.MediaType.APPLICATION_OCTET_STREAM);
+                    UriComponentsBuilder builder = UriComponentsBuilder
+                            .fromUriString("http://" + leader + (append ? "/append" : "/write"))
+                            .queryParam("path", path).queryParam("length", length)
+                            .queryParamIfPresent("clientName", Optional.ofNullable(clientName));
+                    if (!append) {
+                        builder.queryParam("offset", offset);
+                    }
+                    URI uri = builder.encode().build().toUri();
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+                    headers.set("fileSystemName", fileSystemName);
                     byte[] forwardBody = request.getInputStream().readAllBytes();
-                    org.springframework.http.HttpEntity<byte[]> entity = new org.springframework.http.HttpEntity<>(forwardBody, headers);
-                    ResponseEntity<StatInfo> resp = restTemplate.exchange(uri, org.springframework.http.HttpMethod.POST, entity, StatInfo.class);
+                    HttpEntity<byte[]> entity = new HttpEntity<>(forwardBody, headers);
+                    ResponseEntity<StatInfo> resp = restTemplate.exchange(uri, HttpMethod.POST, entity, StatInfo.class);
                     return resp;
                 } else {
                     return ResponseEntity.status(503).body(null);
                 }
             }
+            
+            // 持有租约的客户端写入时顺带续约（切主后也借此重新取得租约）；不带clientName的写入只要求没有其他有效租约
+            if (clientName != null) {
+                leaseManager.reclaim(fileSystemName, path, clientName);
+            } else {
+                leaseManager.checkWritable(fileSystemName, path);
+            }
 
             // 读取请求体中的二进制数据（Leader本地写）
             byte[] data = request.getInputStream().readAllBytes();
             
             // 调用MetaService写入文件
-            StatInfo statInfo = metaService.writeFile(fileSystemName, path, data, offset, length);
+            StatInfo statInfo = append
+                    ? metaService.appendFile(fileSystemName, path, data, length)
+                    : metaService.writeFile(fileSystemName, path, data, offset, length);
 
-            // 先复制父目录链与CREATE_FILE（幂等，避免边写边建时Follower缺失父链/文件）
-            try {
-                String parent = path;
-                java.util.List<String> dirChain = new java.util.ArrayList<>();
-                int idx = parent.lastIndexOf('/');
-                if (idx > 0) {
-                    parent = parent.substring(0, idx);
-                    while (parent != null && !"/".equals(parent) && parent.startsWith("/")) {
-                        dirChain.add(0, parent);
-                        int i = parent.lastIndexOf('/');
-                        if (i <= 0) break;
-                        parent = parent.substring(0, i);
-                    }
-                }
-                for (String dir : dirChain) {
-                    Map<String, Object> payload = new HashMap<>();
-                    payload.put("fileSystemName", fileSystemName);
-                    replicationService.replicateToFollowers(ReplicationType.CREATE_DIR, dir, payload);
-                }
-                Map<String, Object> payload = new HashMap<>();
-                payload.put("fileSystemName", fileSystemName);
-                payload.put("size", statInfo.getSize());
-                replicationService.replicateToFollowers(ReplicationType.CREATE_FILE, path, payload);
-            } catch (Exception ex) {
-                log.warn("写入前置复制父链/文件失败(不影响本地写): fileSystemName={}, path={}", fileSystemName, path, ex);
-            }
-
-            // 复制到从节点：携带大小与副本信息（可选）
-            java.util.List<java.util.Map<String, Object>> replicasPayload = new java.util.ArrayList<>();
-            if (statInfo.getReplicaData() != null) {
-                for (com.ksyun.campus.metaserver.domain.ReplicaData r : statInfo.getReplicaData()) {
-                    java.util.Map<String, Object> m = new java.util.HashMap<>();
-                    m.put("id", r.id);
-                    m.put("dsNode", r.dsNode);
-                    m.put("path", r.path);
-                    m.put("offset", r.offset);
-                    m.put("length", r.length);
-                    m.put("isPrimary", r.isPrimary);
-                    replicasPayload.add(m);
-                }
-            }
-            java.util.Map<String, Object> payload = new java.util.HashMap<>();
-            payload.put("fileSystemName", fileSystemName);
-            payload.put("size", statInfo.getSize());
-            if (!replicasPayload.isEmpty()) {
-                payload.put("replicas", replicasPayload);
-            }
-            replicationService.replicateToFollowers(ReplicationType.WRITE, path, payload);
-            
-            return ResponseEntity.ok(statInfo);
+            return okWithTxid().body(statInfo);
             
+        } catch (QuotaExceededException e) {
+            log.warn("写入文件失败: fileSystemName={}, path={}, {}", fileSystemName, path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(null);
+        } catch (IllegalArgumentException e) {
+            log.warn("写入文件失败: fileSystemName={}, path={}, {}", fileSystemName, path, e.getMessage());
+            return ResponseEntity.badRequest().body(null);
+        } catch (LeaseConflictException e) {
+            log.warn("写入文件失败: fileSystemName={}, path={}, {}", fileSystemName, path, e.getMessage());
+            return ResponseEntity.status(HttpStatus.LOCKED).body(null);
+        } catch (HttpStatusCodeException e) {
+            // Leader返回的4xx/5xx原样透传
+            return ResponseEntity.status(e.getStatusCode()).body(null);
         } catch (Exception e) {
             log.error("写入文件失败: fileSystemName={}, path={}", fileSystemName, path, e);
             return ResponseEntity.status(500).body(null);
@@ -404,7 +554,10 @@ public class MetaController {
      * 列出目录内容
      */
     @RequestMapping("listdir")
-    public ResponseEntity<List<StatInfo>> listdir(@RequestHeader String fileSystemName, @RequestParam String path) {
+    public ResponseEntity<?> listdir(@RequestHeader String fileSystemName, @RequestParam String path,
+                                     @RequestParam(required = false) String startAfter,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestHeader(value = TXID_HEADER, required = false) Long minTxid) {
         try {
             // 参数验证
             if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
@@ -420,9 +573,24 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
+            raftService.awaitReadable(minTxid == null ? 0 : minTxid);
+            
+            // 指定limit或startAfter时按页返回，响应中携带续传标记
+            if (limit != null || startAfter != null) {
+                int pageSize = limit == null || limit <= 0 ? DEFAULT_LIST_PAGE_SIZE : Math.min(limit, MAX_LIST_PAGE_SIZE);
+                log.info("分页列出目录内容: fileSystemName={}, path={}, startAfter={}, limit={}", fileSystemName, path, startAfter, pageSize);
+                return okWithTxid().body(metaService.listFiles(fileSystemName, path, startAfter, pageSize));
+            }
+            
             log.info("列出目录内容: fileSystemName={}, path={}", fileSystemName, path);
             List<StatInfo> files = metaService.listFiles(fileSystemName, path);
-            return ResponseEntity.ok(files);
+            return okWithTxid().body(files);
+        } catch (StaleReadException e) {
+            log.warn("列出目录内容失败: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
         } catch (Exception e) {
             log.error("列出目录内容失败: fileSystemName={}, path={}", fileSystemName, path, e);
             return ResponseEntity.status(500).build();
@@ -449,24 +617,31 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("删除文件/目录: fileSystemName={}, path={}", fileSystemName, path);
             // 非Leader将请求转发到Leader，避免各自执行导致不一致
             if (!zkMetaServerService.isLeader()) {
                 String leader = zkMetaServerService.getLeaderAddress();
-                if (leader != null) {
-                    java.net.URI uri = buildLeaderUri(leader, "/delete", "path=" + path);
-                    ResponseEntity<Map> resp = restTemplate.exchange(uri, org.springframework.http.HttpMethod.GET, null, Map.class);
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> body = resp.getBody() == null ? new HashMap<>() : (Map<String, Object>) resp.getBody();
-                    return ResponseEntity.status(resp.getStatusCode()).body(body);
+                if (leader == null) {
+                    log.error("删除失败: 无法获取Leader地址");
+                    return ResponseEntity.status(503).build();
                 }
+                URI uri = UriComponentsBuilder.fromUriString("http://" + leader + "/delete")
+                        .queryParam("path", path).encode().build().toUri();
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("fileSystemName", fileSystemName);
+                ResponseEntity<Map> resp = restTemplate.exchange(uri, HttpMethod.GET,
+                        new HttpEntity<>(headers), Map.class);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> body = resp.getBody() == null ? new HashMap<>() : (Map<String, Object>) resp.getBody();
+                return ResponseEntity.status(resp.getStatusCode()).headers(txidHeaderOf(resp)).body(body);
             }
             
             boolean deleteSuccess = metaService.deleteFile(fileSystemName, path);
             if (deleteSuccess) {
-                Map<String, Object> payload = new HashMap<>();
-                payload.put("fileSystemName", fileSystemName);
-                replicationService.replicateToFollowers(ReplicationType.DELETE, path, payload);
+                leaseManager.releaseUnder(fileSystemName, path);
             }
             
             Map<String, Object> result = new HashMap<>();
@@ -475,10 +650,13 @@ public class MetaController {
             result.put("message", deleteSuccess ? "删除成功" : "删除失败");
             
             if (deleteSuccess) {
-                return ResponseEntity.ok(result);
+                return okWithTxid().body(result);
             } else {
                 return ResponseEntity.status(500).body(result);
             }
+        } catch (HttpStatusCodeException e) {
+            // Leader返回的4xx/5xx原样透传
+            return ResponseEntity.status(e.getStatusCode()).build();
         } catch (Exception e) {
             log.error("删除失败: fileSystemName={}, path={}", fileSystemName, path, e);
             Map<String, Object> result = new HashMap<>();
@@ -489,13 +667,142 @@ public class MetaController {
         }
     }
 
+    /**
+     * 重命名/移动文件或目录
+     * 只移动inode在父目录下的目录项，目录下的子树与DataServer上的数据块都不动，耗时与子树大小无关；
+     * 目标的父目录必须已存在。源或目标父目录不存在返回404，目标已存在返回409，其他非法参数返回400
+     */
+    @RequestMapping("rename")
+    public ResponseEntity<Map<String, Object>> rename(@RequestHeader String fileSystemName, @RequestParam String src, @RequestParam String dst) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("src", src);
+        result.put("dst", dst);
+        try {
+            // 参数验证
+            if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
+                log.warn("重命名失败: 文件系统名称为空");
+                return ResponseEntity.badRequest().build();
+            }
+            if (src == null || !src.startsWith("/") || dst == null || !dst.startsWith("/")) {
+                log.warn("重命名失败: 路径格式错误: src={}, dst={}", src, dst);
+                return ResponseEntity.badRequest().build();
+            }
 
+            if (!zkMetaServerService.ownsPath(fileSystemName, src)) {
+                return misdirected(fileSystemName, src);
+            }
+            if (!zkMetaServerService.ownsPath(fileSystemName, dst)) {
+                return misdirected(fileSystemName, dst);
+            }
+            log.info("重命名: fileSystemName={}, src={}, dst={}", fileSystemName, src, dst);
+            if (!zkMetaServerService.isLeader()) {
+                String leader = zkMetaServerService.getLeaderAddress();
+                if (leader == null) {
+                    log.error("重命名失败: 无法获取Leader地址");
+                    return ResponseEntity.status(503).build();
+                }
+                URI uri = UriComponentsBuilder.fromUriString("http://" + leader + "/rename")
+                        .queryParam("src", src).queryParam("dst", dst).encode().build().toUri();
+                HttpHeaders headers = new HttpHeaders();
+                headers.set("fileSystemName", fileSystemName);
+                ResponseEntity<Map> resp = restTemplate.exchange(uri, HttpMethod.GET,
+                        new HttpEntity<>(headers), Map.class);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> body = resp.getBody() == null ? new HashMap<>() : (Map<String, Object>) resp.getBody();
+                return ResponseEntity.status(resp.getStatusCode()).headers(txidHeaderOf(resp)).body(body);
+            }
+            
+            StatInfo statInfo = metaService.renameFile(fileSystemName, src, dst);
+            leaseManager.releaseUnder(fileSystemName, src);
+            
+            result.put("success", true);
+            result.put("statInfo", statInfo);
+            result.put("message", "重命名成功");
+            return okWithTxid().body(result);
+        } catch (QuotaExceededException e) {
+            log.warn("重命名失败: fileSystemName={}, src={}, dst={}, {}", fileSystemName, src, dst, e.getMessage());
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(result);
+        } catch (IllegalArgumentException e) {
+            log.warn("重命名失败: fileSystemName={}, src={}, dst={}, 原因: {}", fileSystemName, src, dst, e.getMessage());
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return ResponseEntity.status(statusOf(e)).body(result);
+        } catch (HttpStatusCodeException e) {
+            // Leader返回的4xx/5xx原样透传
+            return ResponseEntity.status(e.getStatusCode()).build();
+        } catch (Exception e) {
+            log.error("重命名失败: fileSystemName={}, src={}, dst={}", fileSystemName, src, dst, e);
+            result.put("success", false);
+            result.put("message", "重命名异常: " + e.getMessage());
+            return ResponseEntity.status(500).body(result);
+        }
+    }
+    
+    private static int statusOf(IllegalArgumentException e) {
+        if (e instanceof PathNotFoundException) {
+            return 404;
+        }
+        if (e instanceof PathAlreadyExistsException) {
+            return 409;
+        }
+        return 400;
+    }
+    
+    /**
+     * 批量元数据操作（stat/exists/mkdir/create/delete）
+     * 所有变更在Leader上作为一个WriteBatch提交，并作为一个整体复制到Follower，按顺序返回每个操作的结果
+     */
+    @RequestMapping(value = "batch", method = RequestMethod.POST)
+    public ResponseEntity<List<BatchResult>> batch(@RequestHeader String fileSystemName, @RequestBody List<BatchOperation> operations) {
+        try {
+            if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
+                log.warn("批量操作失败: 文件系统名称为空");
+                return ResponseEntity.badRequest().build();
+            }
+            if (operations == null || operations.isEmpty()) {
+                return ResponseEntity.ok(new ArrayList<>());
+            }
+            
+            // 一批操作在同一个组内原子提交，不能跨组
+            for (BatchOperation operation : operations) {
+                if (operation.getPath() != null && !zkMetaServerService.ownsPath(fileSystemName, operation.getPath())) {
+                    return misdirected(fileSystemName, operation.getPath());
+                }
+            }
+            log.info("批量操作: fileSystemName={}, 操作数={}", fileSystemName, operations.size());
+            if (!zkMetaServerService.isLeader()) {
+                String leader = zkMetaServerService.getLeaderAddress();
+                if (leader != null) {
+                    URI uri = UriComponentsBuilder.fromUriString("http://" + leader + "/batch").build().toUri();
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.set("fileSystemName", fileSystemName);
+                    headers.setContentType(MediaType.APPLICATION_JSON);
+                    ResponseEntity<List<BatchResult>> resp = restTemplate.exchange(uri, HttpMethod.POST,
+                            new HttpEntity<>(operations, headers),
+                            new ParameterizedTypeReference<List<BatchResult>>() {});
+                    return resp;
+                } else {
+                    log.error("批量操作失败: 无法获取Leader地址");
+                    return ResponseEntity.status(503).build();
+                }
+            }
+            
+            List<BatchResult> results = metaService.executeBatch(fileSystemName, operations);
+            return okWithTxid().body(results);
+        } catch (Exception e) {
+            log.error("批量操作失败: fileSystemName={}", fileSystemName, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
     
     /**
      * 根据文件path查询三副本的位置，返回客户端具体ds、文件分块信息
      */
     @RequestMapping("open")
-    public ResponseEntity<StatInfo> open(@RequestHeader String fileSystemName, @RequestParam String path) {
+    public ResponseEntity<StatInfo> open(@RequestHeader String fileSystemName, @RequestParam String path,
+                                         @RequestHeader(value = TXID_HEADER, required = false) Long minTxid) {
         try {
             // 参数验证
             if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
@@ -511,13 +818,20 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("打开文件: fileSystemName={}, path={}", fileSystemName, path);
+            raftService.awaitReadable(minTxid == null ? 0 : minTxid);
             StatInfo statInfo = metaService.getFile(fileSystemName, path);
             if (statInfo != null && statInfo.getType() == FileType.File) {
-                return ResponseEntity.ok(statInfo);
+                return okWithTxid().body(statInfo);
             } else {
                 return ResponseEntity.notFound().build();
             }
+        } catch (StaleReadException e) {
+            log.warn("打开文件失败: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
         } catch (Exception e) {
             log.error("打开文件失败: fileSystemName={}, path={}", fileSystemName, path, e);
             return ResponseEntity.status(500).build();
@@ -536,6 +850,8 @@ public class MetaController {
             Map<String, Object> metaServerInfo = new HashMap<>();
             metaServerInfo.put("followerAddresses", zkMetaServerService.getFollowerAddresses());
             metaServerInfo.put("leaderAddress", zkMetaServerService.getLeaderAddress());
+            metaServerInfo.put("group", zkMetaServerService.getGroup());
+            metaServerInfo.put("raft", raftService.getStatus());
             clusterInfo.put("metaServers", metaServerInfo);
 
             // 2. 获取DataServer集群信息
@@ -576,40 +892,14 @@ public class MetaController {
         Map<String, Object> distribution = new HashMap<>();
         
         try {
-            // 获取所有文件元数据
-            List<StatInfo> allFiles = metaService.getAllFiles();
-            
-            // 统计每个DataServer上的主副本数量
-            Map<String, Integer> primaryReplicaCount = new HashMap<>();
-            Map<String, Integer> totalReplicaCount = new HashMap<>();
-            
-            for (StatInfo fileInfo : allFiles) {
-                if (fileInfo.getType() == FileType.File && fileInfo.getReplicaData() != null) {
-                    for (ReplicaData replica : fileInfo.getReplicaData()) {
-                        String dsNode = replica.dsNode;
-                        
-                        // 统计总副本数
-                        totalReplicaCount.put(dsNode, totalReplicaCount.getOrDefault(dsNode, 0) + 1);
-                        
-                        // 统计主副本数
-                        if (replica.isPrimary) {
-                            primaryReplicaCount.put(dsNode, primaryReplicaCount.getOrDefault(dsNode, 0) + 1);
-                        }
-                    }
-                }
-            }
+            // 副本分布随元数据变更增量维护，这里直接读取计数器
+            NamespaceStats stats = metaService.getNamespaceStats();
+            distribution.put("primaryReplicaCount", stats.getPrimaryCount());
+            distribution.put("totalReplicaCount", stats.getReplicaCount());
+            distribution.put("totalFiles", stats.getFiles());
+            distribution.put("totalDirectories", stats.getDirectories());
             
-            distribution.put("primaryReplicaCount", primaryReplicaCount);
-            distribution.put("totalReplicaCount", totalReplicaCount);
-            distribution.put("totalFiles", allFiles.stream()
-                    .filter(f -> f.getType() == FileType.File)
-                    .count());
-            distribution.put("totalDirectories", allFiles.stream()
-                    .filter(f -> f.getType() == FileType.Directory)
-                    .count());
-            
-            log.info("主副本分布统计完成: {} 个文件, {} 个目录", 
-                    distribution.get("totalFiles"), distribution.get("totalDirectories"));
+            log.debug("主副本分布统计完成: {} 个文件, {} 个目录", stats.getFiles(), stats.getDirectories());
             
         } catch (Exception e) {
             log.error("获取主副本分布统计失败", e);
@@ -722,7 +1012,8 @@ public class MetaController {
      * 检查文件是否存在
      */
     @RequestMapping("exists")
-    public ResponseEntity<Map<String, Object>> fileExists(@RequestHeader String fileSystemName, @RequestParam String path) {
+    public ResponseEntity<Map<String, Object>> fileExists(@RequestHeader String fileSystemName, @RequestParam String path,
+                                                          @RequestHeader(value = TXID_HEADER, required = false) Long minTxid) {
         try {
             // 参数验证
             if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
@@ -738,7 +1029,11 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("检查文件是否存在: fileSystemName={}, path={}", fileSystemName, path);
+            raftService.awaitReadable(minTxid == null ? 0 : minTxid);
             boolean exists = metaService.fileExists(fileSystemName, path);
             
             Map<String, Object> result = new HashMap<>();
@@ -747,7 +1042,10 @@ public class MetaController {
             result.put("exists", exists);
             result.put("message", exists ? "文件存在" : "文件不存在");
             
-            return ResponseEntity.ok(result);
+            return okWithTxid().body(result);
+        } catch (StaleReadException e) {
+            log.warn("检查文件是否存在失败: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
         } catch (Exception e) {
             log.error("检查文件是否存在失败: fileSystemName={}, path={}", fileSystemName, path, e);
             Map<String, Object> result = new HashMap<>();
@@ -763,7 +1061,8 @@ public class MetaController {
      * 获取文件状态
      */
     @RequestMapping("getStatus")
-    public ResponseEntity<StatInfo> getStatus(@RequestHeader String fileSystemName, @RequestParam String path) {
+    public ResponseEntity<StatInfo> getStatus(@RequestHeader String fileSystemName, @RequestParam String path,
+                                              @RequestHeader(value = TXID_HEADER, required = false) Long minTxid) {
         try {
             // 参数验证
             if (fileSystemName == null || fileSystemName.trim().isEmpty()) {
@@ -779,13 +1078,20 @@ public class MetaController {
                 return ResponseEntity.badRequest().build();
             }
             
+            if (!zkMetaServerService.ownsPath(fileSystemName, path)) {
+                return misdirected(fileSystemName, path);
+            }
             log.info("获取文件状态: fileSystemName={}, path={}", fileSystemName, path);
+            raftService.awaitReadable(minTxid == null ? 0 : minTxid);
             StatInfo statInfo = metaService.getFileStatus(fileSystemName, path);
             if (statInfo != null) {
-                return ResponseEntity.ok(statInfo);
+                return okWithTxid().body(statInfo);
             } else {
                 return ResponseEntity.notFound().build();
             }
+        } catch (StaleReadException e) {
+            log.warn("获取文件状态失败: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
         } catch (Exception e) {
             log.error("获取文件状态失败: fileSystemName={}, path={}", fileSystemName, path, e);
             return ResponseEntity.status(500).build();
@@ -812,6 +1118,97 @@ public class MetaController {
             return ResponseEntity.status(500).build();
         }
     }
+    
+    /**
+     * 续约客户端持有的全部写租约（每个客户端每个周期一次，不按文件）
+     * 租约只在Leader上，非Leader返回503由客户端切换到Leader
+     */
+    @RequestMapping("lease/renew")
+    public ResponseEntity<Map<String, Object>> renewLease(@RequestParam String clientName) {
+        if (clientName == null || clientName.trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!zkMetaServerService.isLeader()) {
+            return ResponseEntity.status(503).build();
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("clientName", clientName);
+        result.put("leases", leaseManager.renew(clientName));
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * 写者关闭文件时释放写租约
+     */
+    @RequestMapping("lease/release")
+    public ResponseEntity<Map<String, Object>> releaseLease(@RequestHeader String fileSystemName, @RequestParam String path,
+                                                            @RequestParam String clientName) {
+        if (fileSystemName == null || fileSystemName.trim().isEmpty() || path == null || !path.startsWith("/")
+                || clientName == null || clientName.trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!zkMetaServerService.isLeader()) {
+            return ResponseEntity.status(503).build();
+        }
+        leaseManager.release(fileSystemName, path, clientName);
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("path", path);
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * 查看挂载表与本节点所属的MetaServer组
+     */
+    @RequestMapping("mount/list")
+    public ResponseEntity<Map<String, Object>> listMounts() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("group", zkMetaServerService.getGroup());
+        result.put("mounts", zkMetaServerService.getMountTable());
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * 把文件系统（path为/）或其下的子树挂载到指定MetaServer组，已有条目则改为新组
+     * 挂载只改变路由，不迁移已有元数据，应在子树为空或数据已迁移后执行
+     */
+    @RequestMapping("mount/add")
+    public ResponseEntity<List<MountEntry>> addMount(@RequestHeader String fileSystemName, @RequestParam String path,
+                                                     @RequestParam String group) {
+        try {
+            if (fileSystemName == null || fileSystemName.trim().isEmpty() || path == null || !path.startsWith("/")) {
+                log.warn("挂载失败: 参数错误: fileSystemName={}, path={}", fileSystemName, path);
+                return ResponseEntity.badRequest().build();
+            }
+            if (group == null || group.trim().isEmpty() || group.contains("/")) {
+                log.warn("挂载失败: 组名无效: {}", group);
+                return ResponseEntity.badRequest().build();
+            }
+            log.info("挂载: fileSystemName={}, path={} -> group={}", fileSystemName, path, group);
+            return ResponseEntity.ok(zkMetaServerService.updateMount(fileSystemName, path, group));
+        } catch (Exception e) {
+            log.error("挂载失败: fileSystemName={}, path={}, group={}", fileSystemName, path, group, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+    
+    /**
+     * 删除挂载条目，该路径回落到上一级挂载或default组
+     */
+    @RequestMapping("mount/remove")
+    public ResponseEntity<List<MountEntry>> removeMount(@RequestHeader String fileSystemName, @RequestParam String path) {
+        try {
+            if (fileSystemName == null || fileSystemName.trim().isEmpty() || path == null || !path.startsWith("/")) {
+                log.warn("删除挂载失败: 参数错误: fileSystemName={}, path={}", fileSystemName, path);
+                return ResponseEntity.badRequest().build();
+            }
+            log.info("删除挂载: fileSystemName={}, path={}", fileSystemName, path);
+            return ResponseEntity.ok(zkMetaServerService.updateMount(fileSystemName, path, null));
+        } catch (Exception e) {
+            log.error("删除挂载失败: fileSystemName={}, path={}", fileSystemName, path, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
 
     /**
      * 健康检查
@@ -903,60 +1300,68 @@ public class MetaController {
         return ResponseEntity.ok(result);
     }
 
-    // Leader导出快照，Follower用于重放
-    @RequestMapping(value = "internal/snapshot", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, Object>> exportSnapshot() {
-        List<StatInfo> all = metaService.getAllFiles();
-        List<Map<String, Object>> files = all.stream().map(s -> {
-            Map<String, Object> m = new HashMap<>();
-            m.put("path", s.getPath());
-            m.put("type", s.getType().name());
-            m.put("size", s.getSize());
-            // 这里需要从存储键中提取文件系统名称，暂时使用默认值
-            m.put("fileSystemName", "default");
-            if (s.getReplicaData() != null && !s.getReplicaData().isEmpty()) {
-                List<Map<String, Object>> replicas = s.getReplicaData().stream().map(r -> {
-                    Map<String, Object> rm = new HashMap<>();
-                    rm.put("id", r.id);
-                    rm.put("dsNode", r.dsNode);
-                    rm.put("path", r.path);
-                    rm.put("offset", r.offset);
-                    rm.put("length", r.length);
-                    rm.put("isPrimary", r.isPrimary);
-                    return rm;
-                }).toList();
-                m.put("replicas", replicas);
-            }
-            return m;
-        }).toList();
-        return ResponseEntity.ok(Map.of("files", files));
+    /**
+     * Raft节点状态：角色、任期、提交/应用位置，Leader上还包括各Follower的复制进度
+     */
+    @RequestMapping(value = "internal/raft/status", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, Object>> raftStatus() {
+        return ResponseEntity.ok(raftService.getStatus());
     }
-
-    // 内部复制接收接口（仅Follower调用）
-    @RequestMapping(value = "internal/replicate", method = RequestMethod.POST)
-    public ResponseEntity<Map<String, Object>> internalReplicate(
-            @RequestParam String type,
-            @RequestParam String path,
-            @RequestBody(required = false) Map<String, Object> payload) {
+    
+    @RequestMapping(value = "internal/raft/vote", method = RequestMethod.POST)
+    public ResponseEntity<VoteResponse> raftVote(@RequestBody VoteRequest request) {
+        return ResponseEntity.ok(raftService.handleVote(request));
+    }
+    
+    @RequestMapping(value = "internal/raft/append", method = RequestMethod.POST)
+    public ResponseEntity<AppendEntriesResponse> raftAppend(@RequestBody AppendEntriesRequest request) {
         try {
-            boolean ok = replicationService.applyReplication(ReplicationType.valueOf(type), path, payload == null ? Map.of() : payload);
-            return ResponseEntity.ok(Map.of("success", ok));
+            return ResponseEntity.ok(raftService.handleAppendEntries(request));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(503).build();
         } catch (Exception e) {
-            return ResponseEntity.status(500).body(Map.of("success", false, "error", e.getMessage()));
+            log.error("处理AppendEntries失败: leader={}, prevTxid={}", request.getLeaderId(), request.getPrevTxid(), e);
+            return ResponseEntity.status(500).build();
         }
     }
 
-     /**
-     * 手动触发从Leader追赶一次（仅Follower有效）
-     * @return
-     */
-    @RequestMapping(value = "internal/catchup", method = RequestMethod.POST)
-    public ResponseEntity<Map<String, Object>> manualCatchup() {
+    @RequestMapping(value = "internal/raft/snapshot", method = RequestMethod.POST)
+    public ResponseEntity<AppendEntriesResponse> raftInstallSnapshot(@RequestBody InstallSnapshotRequest request) {
         try {
-            replicationService.catchUpFromLeaderIfNeeded();
-            return ResponseEntity.ok(Map.of("success", true));
+            return ResponseEntity.ok(raftService.handleInstallSnapshot(request));
         } catch (Exception e) {
-            return ResponseEntity.status(500).body(Map.of("success", false, "error", e.getMessage()));
+            log.error("安装快照失败: leader={}", request.getLeaderId(), e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+    
+    /**
+     * 下载快照文件从offset开始的剩余部分，直接从文件通道写入响应流，内存占用与文件大小无关
+     */
+    @RequestMapping(value = "internal/raft/snapshot/{snapshotId}/{fileName}", method = RequestMethod.GET)
+    public void downloadSnapshotFile(@PathVariable String snapshotId, @PathVariable String fileName,
+                                     @RequestParam(defaultValue = "0") long offset, HttpServletResponse response) throws IOException {
+        Path file = metadataStorage.getSnapshotFile(snapshotId, fileName);
+        if (file == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "快照文件不存在: " + snapshotId + "/" + fileName);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (offset < 0 || offset > size) {
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), "offset超出文件长度: " + offset);
+                return;
+            }
+            response.setContentType("application/octet-stream");
+            response.setContentLengthLong(size - offset);
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = offset;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            out.flush();
         }
     }
 
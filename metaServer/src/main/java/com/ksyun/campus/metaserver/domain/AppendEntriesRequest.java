@@ -0,0 +1,68 @@
+package com.ksyun.campus.metaserver.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raft日志复制请求，entries为空时即心跳
+ * prevTxid/prevTerm是entries之前一条日志的位置，Follower在该位置任期相同时才接受
+ */
+public class AppendEntriesRequest {
+    public long term;
+    public String leaderId;
+    public long prevTxid;
+    public long prevTerm;
+    public List<EditLogEntry> entries = new ArrayList<>();
+    // Leader已提交的txid
+    public long leaderCommit;
+
+    public AppendEntriesRequest() {}
+
+    public long getTerm() {
+        return term;
+    }
+
+    public void setTerm(long term) {
+        this.term = term;
+    }
+
+    public String getLeaderId() {
+        return leaderId;
+    }
+
+    public void setLeaderId(String leaderId) {
+        this.leaderId = leaderId;
+    }
+
+    public long getPrevTxid() {
+        return prevTxid;
+    }
+
+    public void setPrevTxid(long prevTxid) {
+        this.prevTxid = prevTxid;
+    }
+
+    public long getPrevTerm() {
+        return prevTerm;
+    }
+
+    public void setPrevTerm(long prevTerm) {
+        this.prevTerm = prevTerm;
+    }
+
+    public List<EditLogEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<EditLogEntry> entries) {
+        this.entries = entries;
+    }
+
+    public long getLeaderCommit() {
+        return leaderCommit;
+    }
+
+    public void setLeaderCommit(long leaderCommit) {
+        this.leaderCommit = leaderCommit;
+    }
+}
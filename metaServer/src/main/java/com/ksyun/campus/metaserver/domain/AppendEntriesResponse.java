@@ -0,0 +1,43 @@
+package com.ksyun.campus.metaserver.domain;
+
+/**
+ * Raft日志复制/快照安装响应
+ * 成功时matchTxid为Follower确认与Leader一致的最后一条txid；失败时为Leader下次可以尝试的txid（跳过整段冲突任期）
+ */
+public class AppendEntriesResponse {
+    public long term;
+    public boolean success;
+    public long matchTxid;
+
+    public AppendEntriesResponse() {}
+
+    public AppendEntriesResponse(long term, boolean success, long matchTxid) {
+        this.term = term;
+        this.success = success;
+        this.matchTxid = matchTxid;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public void setTerm(long term) {
+        this.term = term;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public long getMatchTxid() {
+        return matchTxid;
+    }
+
+    public void setMatchTxid(long matchTxid) {
+        this.matchTxid = matchTxid;
+    }
+}
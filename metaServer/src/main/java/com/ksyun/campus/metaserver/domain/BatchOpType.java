@@ -0,0 +1,13 @@
+package com.ksyun.campus.metaserver.domain;
+
+/**
+ * 批量操作类型
+ * STAT/EXISTS为只读操作，其余为变更操作，统一在一个WriteBatch中提交
+ */
+public enum BatchOpType {
+	STAT,
+	EXISTS,
+	MKDIR,
+	CREATE,
+	DELETE
+}
@@ -0,0 +1,37 @@
+package com.ksyun.campus.metaserver.domain;
+
+public class BatchOperation {
+    public BatchOpType op;
+    public String path;
+
+    public BatchOperation() {}
+
+    public BatchOperation(BatchOpType op, String path) {
+        this.op = op;
+        this.path = path;
+    }
+
+    public BatchOpType getOp() {
+        return op;
+    }
+
+    public void setOp(BatchOpType op) {
+        this.op = op;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOperation{" +
+                "op=" + op +
+                ", path='" + path + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,71 @@
+package com.ksyun.campus.metaserver.domain;
+
+public class BatchResult {
+    public BatchOpType op;
+    public String path;
+    public boolean success;
+    // STAT/MKDIR/CREATE返回的元数据，EXISTS不存在或DELETE时为空
+    public StatInfo statInfo;
+    public String message;
+
+    public BatchResult() {}
+
+    public static BatchResult ok(BatchOperation operation, StatInfo statInfo, String message) {
+        BatchResult result = new BatchResult();
+        result.op = operation.getOp();
+        result.path = operation.getPath();
+        result.success = true;
+        result.statInfo = statInfo;
+        result.message = message;
+        return result;
+    }
+
+    public static BatchResult fail(BatchOperation operation, String message) {
+        BatchResult result = new BatchResult();
+        result.op = operation.getOp();
+        result.path = operation.getPath();
+        result.success = false;
+        result.message = message;
+        return result;
+    }
+
+    public BatchOpType getOp() {
+        return op;
+    }
+
+    public void setOp(BatchOpType op) {
+        this.op = op;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public StatInfo getStatInfo() {
+        return statInfo;
+    }
+
+    public void setStatInfo(StatInfo statInfo) {
+        this.statInfo = statInfo;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
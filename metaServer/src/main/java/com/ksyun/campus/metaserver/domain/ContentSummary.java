@@ -0,0 +1,73 @@
+package com.ksyun.campus.metaserver.domain;
+
+/**
+ * 目录（或文件）的内容汇总，对应du/count
+ * directoryCount包含目录自身；对文件而言fileCount为1、length为文件大小
+ * namespaceQuota限制子树中的文件与目录总数（不含目录自身），spaceQuota限制子树的逻辑字节数
+ */
+public class ContentSummary {
+    public String path;
+    public long length;
+    public long fileCount;
+    public long directoryCount;
+    // -1表示未设置配额
+    public long namespaceQuota = -1;
+    public long spaceQuota = -1;
+
+    public ContentSummary() {}
+
+    public ContentSummary(String path, long length, long fileCount, long directoryCount) {
+        this.path = path;
+        this.length = length;
+        this.fileCount = fileCount;
+        this.directoryCount = directoryCount;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public void setFileCount(long fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    public long getDirectoryCount() {
+        return directoryCount;
+    }
+
+    public void setDirectoryCount(long directoryCount) {
+        this.directoryCount = directoryCount;
+    }
+
+    public long getNamespaceQuota() {
+        return namespaceQuota;
+    }
+
+    public void setNamespaceQuota(long namespaceQuota) {
+        this.namespaceQuota = namespaceQuota;
+    }
+
+    public long getSpaceQuota() {
+        return spaceQuota;
+    }
+
+    public void setSpaceQuota(long spaceQuota) {
+        this.spaceQuota = spaceQuota;
+    }
+}
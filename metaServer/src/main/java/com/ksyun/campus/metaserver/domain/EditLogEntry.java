@@ -0,0 +1,137 @@
+package com.ksyun.campus.metaserver.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 元数据操作日志（Raft日志）的一条记录，对应一次原子提交（一个MetadataBatch）
+ * txid即Raft日志下标，从1开始连续递增；term为Leader追加该条目时的任期。
+ * 条目先复制到多数派，提交后各节点按txid顺序应用到命名空间；ops为空的条目是新Leader上任时追加的空操作
+ */
+public class EditLogEntry {
+    public long txid;
+    public long term;
+    public long timestamp;
+    // 应用时检查目录配额（客户端发起的变更）
+    public boolean quotaChecked;
+    public List<Op> ops = new ArrayList<>();
+
+    public EditLogEntry() {}
+
+    public EditLogEntry(long txid, long term, long timestamp) {
+        this.txid = txid;
+        this.term = term;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 批次中的一条变更，字段按type取用
+     */
+    public static class Op {
+        public ReplicationType type;
+        public String fileSystemName;
+        public String path;
+        public String target;
+        public StatInfo statInfo;
+        public long namespaceQuota;
+        public long spaceQuota;
+
+        public Op() {}
+
+        public ReplicationType getType() {
+            return type;
+        }
+
+        public void setType(ReplicationType type) {
+            this.type = type;
+        }
+
+        public String getFileSystemName() {
+            return fileSystemName;
+        }
+
+        public void setFileSystemName(String fileSystemName) {
+            this.fileSystemName = fileSystemName;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public void setTarget(String target) {
+            this.target = target;
+        }
+
+        public StatInfo getStatInfo() {
+            return statInfo;
+        }
+
+        public void setStatInfo(StatInfo statInfo) {
+            this.statInfo = statInfo;
+        }
+
+        public long getNamespaceQuota() {
+            return namespaceQuota;
+        }
+
+        public void setNamespaceQuota(long namespaceQuota) {
+            this.namespaceQuota = namespaceQuota;
+        }
+
+        public long getSpaceQuota() {
+            return spaceQuota;
+        }
+
+        public void setSpaceQuota(long spaceQuota) {
+            this.spaceQuota = spaceQuota;
+        }
+    }
+
+    public long getTxid() {
+        return txid;
+    }
+
+    public void setTxid(long txid) {
+        this.txid = txid;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public void setTerm(long term) {
+        this.term = term;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public boolean isQuotaChecked() {
+        return quotaChecked;
+    }
+
+    public void setQuotaChecked(boolean quotaChecked) {
+        this.quotaChecked = quotaChecked;
+    }
+
+    public List<Op> getOps() {
+        return ops;
+    }
+
+    public void setOps(List<Op> ops) {
+        this.ops = ops;
+    }
+}
@@ -0,0 +1,57 @@
+package com.ksyun.campus.metaserver.domain;
+
+import java.util.List;
+
+/**
+ * 待回收的DataServer数据
+ * 与删除元数据的WriteBatch一起落盘，由BlockGcService异步删除副本，宕机重启后继续回收
+ */
+public class GcTask {
+    public long seq;
+    public String fileSystemName;
+    public List<ReplicaData> replicas;
+    public long createTime;
+    public int attempts;
+    
+    public GcTask() {}
+    
+    public long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+    
+    public String getFileSystemName() {
+        return fileSystemName;
+    }
+    
+    public void setFileSystemName(String fileSystemName) {
+        this.fileSystemName = fileSystemName;
+    }
+    
+    public List<ReplicaData> getReplicas() {
+        return replicas;
+    }
+    
+    public void setReplicas(List<ReplicaData> replicas) {
+        this.replicas = replicas;
+    }
+    
+    public long getCreateTime() {
+        return createTime;
+    }
+    
+    public void setCreateTime(long createTime) {
+        this.createTime = createTime;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+}
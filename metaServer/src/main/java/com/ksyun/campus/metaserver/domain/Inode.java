@@ -0,0 +1,97 @@
+package com.ksyun.campus.metaserver.domain;
+
+import java.util.List;
+
+/**
+ * 命名空间中的一个节点
+ * 只保存父节点ID和自身名称，完整路径由遍历时拼接，路径前缀不重复存储
+ */
+public class Inode {
+    public long id;
+    public long parentId;
+    public String name;
+    public FileType type;
+    public long size;
+    public long mtime;
+    public List<ReplicaData> replicaData;
+
+    public Inode() {}
+
+    public static Inode of(long id, long parentId, String name, StatInfo statInfo) {
+        Inode inode = new Inode();
+        inode.id = id;
+        inode.parentId = parentId;
+        inode.name = name;
+        inode.type = statInfo.getType();
+        inode.size = statInfo.getSize();
+        inode.mtime = statInfo.getMtime();
+        inode.replicaData = statInfo.getReplicaData();
+        return inode;
+    }
+
+    public StatInfo toStatInfo(String path) {
+        StatInfo statInfo = new StatInfo();
+        statInfo.setPath(path);
+        statInfo.setType(type);
+        statInfo.setSize(size);
+        statInfo.setMtime(mtime);
+        statInfo.setReplicaData(replicaData);
+        return statInfo;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(long parentId) {
+        this.parentId = parentId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public FileType getType() {
+        return type;
+    }
+
+    public void setType(FileType type) {
+        this.type = type;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getMtime() {
+        return mtime;
+    }
+
+    public void setMtime(long mtime) {
+        this.mtime = mtime;
+    }
+
+    public List<ReplicaData> getReplicaData() {
+        return replicaData;
+    }
+
+    public void setReplicaData(List<ReplicaData> replicaData) {
+        this.replicaData = replicaData;
+    }
+}
@@ -0,0 +1,43 @@
+package com.ksyun.campus.metaserver.domain;
+
+/**
+ * Raft快照安装请求：Follower所需的日志已被Leader裁剪时，用Leader的快照整体替换其状态
+ * 请求只携带快照清单，Follower收到后按清单从Leader拉取SST文件
+ */
+public class InstallSnapshotRequest {
+    public long term;
+    public String leaderId;
+    public SnapshotManifest snapshot;
+
+    public InstallSnapshotRequest() {}
+
+    public InstallSnapshotRequest(long term, String leaderId, SnapshotManifest snapshot) {
+        this.term = term;
+        this.leaderId = leaderId;
+        this.snapshot = snapshot;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public void setTerm(long term) {
+        this.term = term;
+    }
+
+    public String getLeaderId() {
+        return leaderId;
+    }
+
+    public void setLeaderId(String leaderId) {
+        this.leaderId = leaderId;
+    }
+
+    public SnapshotManifest getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(SnapshotManifest snapshot) {
+        this.snapshot = snapshot;
+    }
+}
@@ -0,0 +1,45 @@
+package com.ksyun.campus.metaserver.domain;
+
+import java.util.List;
+
+/**
+ * 分页列目录的一页结果
+ * nextStartAfter为本页最后一个子项的名称，作为下一页请求的startAfter；hasMore为false时为空
+ */
+public class ListingPage {
+    public List<StatInfo> entries;
+    public String nextStartAfter;
+    public boolean hasMore;
+
+    public ListingPage() {}
+
+    public ListingPage(List<StatInfo> entries, String nextStartAfter, boolean hasMore) {
+        this.entries = entries;
+        this.nextStartAfter = nextStartAfter;
+        this.hasMore = hasMore;
+    }
+
+    public List<StatInfo> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<StatInfo> entries) {
+        this.entries = entries;
+    }
+
+    public String getNextStartAfter() {
+        return nextStartAfter;
+    }
+
+    public void setNextStartAfter(String nextStartAfter) {
+        this.nextStartAfter = nextStartAfter;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,104 @@
+package com.ksyun.campus.metaserver.domain;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件系统的命名空间计数器
+ * 每次元数据变更时随同一个WriteBatch增量更新并落盘，统计接口直接读取，不再遍历命名空间
+ */
+public class NamespaceStats {
+    public long files;
+    public long directories;
+    public long totalSize;
+    // DataServer地址 -> 副本数 / 主副本数
+    public Map<String, Long> replicaCount = new HashMap<>();
+    public Map<String, Long> primaryCount = new HashMap<>();
+
+    public NamespaceStats() {}
+
+    /**
+     * 计入（sign=1）或扣除（sign=-1）一个inode
+     */
+    public void addInode(Inode inode, int sign) {
+        if (inode.getType() == FileType.Directory) {
+            directories += sign;
+            return;
+        }
+        files += sign;
+        totalSize += sign * inode.getSize();
+        List<ReplicaData> replicas = inode.getReplicaData();
+        if (replicas == null) {
+            return;
+        }
+        for (ReplicaData replica : replicas) {
+            if (replica.dsNode == null) {
+                continue;
+            }
+            addCount(replicaCount, replica.dsNode, sign);
+            if (replica.isPrimary) {
+                addCount(primaryCount, replica.dsNode, sign);
+            }
+        }
+    }
+
+    public void merge(NamespaceStats other) {
+        files += other.files;
+        directories += other.directories;
+        totalSize += other.totalSize;
+        other.replicaCount.forEach((dsNode, count) -> addCount(replicaCount, dsNode, count));
+        other.primaryCount.forEach((dsNode, count) -> addCount(primaryCount, dsNode, count));
+    }
+
+    public NamespaceStats copy() {
+        NamespaceStats copy = new NamespaceStats();
+        copy.merge(this);
+        return copy;
+    }
+
+    private static void addCount(Map<String, Long> counts, String dsNode, long delta) {
+        // 计数归零的DataServer不再保留，避免下线节点长期残留
+        counts.merge(dsNode, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public void setFiles(long files) {
+        this.files = files;
+    }
+
+    public long getDirectories() {
+        return directories;
+    }
+
+    public void setDirectories(long directories) {
+        this.directories = directories;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public Map<String, Long> getReplicaCount() {
+        return replicaCount;
+    }
+
+    public void setReplicaCount(Map<String, Long> replicaCount) {
+        this.replicaCount = replicaCount;
+    }
+
+    public Map<String, Long> getPrimaryCount() {
+        return primaryCount;
+    }
+
+    public void setPrimaryCount(Map<String, Long> primaryCount) {
+        this.primaryCount = primaryCount;
+    }
+}
@@ -1,10 +1,15 @@
 package com.ksyun.campus.metaserver.domain;
 
+/**
+ * 操作日志中一条变更的类型
+ */
 public enum ReplicationType {
-	CREATE_FILE,
-	CREATE_DIR,
-	WRITE,
-	DELETE
+	// 写入文件/目录元数据，缺失的父目录一并创建
+	PUT,
+	// 删除文件，目录连同子树一起删除
+	DELETE,
+	// 重命名/移动，target为目标路径
+	RENAME,
+	// 设置目录配额，namespaceQuota与spaceQuota为-1表示不限制
+	SET_QUOTA
 }
-
-
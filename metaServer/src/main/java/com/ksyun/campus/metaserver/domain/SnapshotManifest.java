@@ -0,0 +1,103 @@
+package com.ksyun.campus.metaserver.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 元数据快照清单：txid/term为快照包含的最后一条已应用日志，files为各列族的SST文件（列族内按键有序、互不重叠）
+ * Follower按清单逐个从Leader拉取文件，校验长度与CRC32C后通过ingestExternalFile导入
+ */
+public class SnapshotManifest {
+    public String id;
+    public long txid;
+    public long term;
+    public List<SnapshotFile> files = new ArrayList<>();
+
+    public SnapshotManifest() {}
+
+    public SnapshotManifest(String id, long txid, long term) {
+        this.id = id;
+        this.txid = txid;
+        this.term = term;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getTxid() {
+        return txid;
+    }
+
+    public void setTxid(long txid) {
+        this.txid = txid;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public void setTerm(long term) {
+        this.term = term;
+    }
+
+    public List<SnapshotFile> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<SnapshotFile> files) {
+        this.files = files;
+    }
+
+    public static class SnapshotFile {
+        public String name;
+        public String columnFamily;
+        public long size;
+        public long checksum;
+
+        public SnapshotFile() {}
+
+        public SnapshotFile(String name, String columnFamily, long size, long checksum) {
+            this.name = name;
+            this.columnFamily = columnFamily;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getColumnFamily() {
+            return columnFamily;
+        }
+
+        public void setColumnFamily(String columnFamily) {
+            this.columnFamily = columnFamily;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+
+        public void setChecksum(long checksum) {
+            this.checksum = checksum;
+        }
+    }
+}
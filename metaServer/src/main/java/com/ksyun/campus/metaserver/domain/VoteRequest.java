@@ -0,0 +1,63 @@
+package com.ksyun.campus.metaserver.domain;
+
+/**
+ * Raft投票请求：候选人的任期与日志末尾，日志不比投票者新的候选人得不到选票
+ * preVote为true时是预投票，投票者只回答是否会投票，不改变自己的任期和投票记录
+ */
+public class VoteRequest {
+    public long term;
+    public String candidateId;
+    public long lastLogTxid;
+    public long lastLogTerm;
+    public boolean preVote;
+
+    public VoteRequest() {}
+
+    public VoteRequest(long term, String candidateId, long lastLogTxid, long lastLogTerm, boolean preVote) {
+        this.term = term;
+        this.candidateId = candidateId;
+        this.lastLogTxid = lastLogTxid;
+        this.lastLogTerm = lastLogTerm;
+        this.preVote = preVote;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public void setTerm(long term) {
+        this.term = term;
+    }
+
+    public String getCandidateId() {
+        return candidateId;
+    }
+
+    public void setCandidateId(String candidateId) {
+        this.candidateId = candidateId;
+    }
+
+    public long getLastLogTxid() {
+        return lastLogTxid;
+    }
+
+    public void setLastLogTxid(long lastLogTxid) {
+        this.lastLogTxid = lastLogTxid;
+    }
+
+    public long getLastLogTerm() {
+        return lastLogTerm;
+    }
+
+    public void setLastLogTerm(long lastLogTerm) {
+        this.lastLogTerm = lastLogTerm;
+    }
+
+    public boolean isPreVote() {
+        return preVote;
+    }
+
+    public void setPreVote(boolean preVote) {
+        this.preVote = preVote;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ksyun.campus.metaserver.domain;
+
+/**
+ * Raft投票响应，term为投票者的当前任期
+ */
+public class VoteResponse {
+    public long term;
+    public boolean granted;
+
+    public VoteResponse() {}
+
+    public VoteResponse(long term, boolean granted) {
+        this.term = term;
+        this.granted = granted;
+    }
+
+    public long getTerm() {
+        return term;
+    }
+
+    public void setTerm(long term) {
+        this.term = term;
+    }
+
+    public boolean isGranted() {
+        return granted;
+    }
+
+    public void setGranted(boolean granted) {
+        this.granted = granted;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.GcTask;
+import com.ksyun.campus.metaserver.domain.ReplicaData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DataServer数据的异步回收
+ * 删除只在元数据中原子地移除子树并写入GC任务，实际数据由这里在后台删除，删除请求不必等待DataServer。
+ * 只有Leader执行回收；Follower保留队列以便切主后接手，超过保留期的任务视为已由原Leader处理
+ */
+@Slf4j
+@Service
+public class BlockGcService {
+    
+    @Autowired
+    private MetadataStorageService metadataStorage;
+    
+    @Autowired
+    private DataServerClientService dataServerClient;
+    
+    @Autowired
+    private ZkMetaServerService zkMetaServerService;
+    
+    @Value("${metadata.gc.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${metadata.gc.max-attempts:10}")
+    private int maxAttempts;
+    
+    @Value("${metadata.gc.follower-retention-ms:3600000}")
+    private long followerRetentionMs;
+    
+    @Scheduled(fixedDelayString = "${metadata.gc.interval:5000}")
+    public void scheduledGc() {
+        if (metadataStorage.getGcQueueSize() == 0) {
+            return;
+        }
+        try {
+            if (zkMetaServerService.isLeader()) {
+                runGc();
+            } else {
+                purgeExpired();
+            }
+        } catch (Exception e) {
+            log.error("GC执行异常", e);
+        }
+    }
+    
+    private void runGc() {
+        List<GcTask> tasks = metadataStorage.peekGcTasks(batchSize);
+        int deleted = 0;
+        int failed = 0;
+        for (GcTask task : tasks) {
+            List<ReplicaData> remaining = new ArrayList<>();
+            for (ReplicaData replica : task.getReplicas()) {
+                if (dataServerClient.deleteFileFromDataServer(task.getFileSystemName(), replica)) {
+                    deleted++;
+                } else {
+                    remaining.add(replica);
+                    failed++;
+                }
+            }
+            if (!remaining.isEmpty()) {
+                task.setAttempts(task.getAttempts() + 1);
+                if (task.getAttempts() >= maxAttempts) {
+                    // DataServer长期不可达时放弃，残留数据由FSCK处理
+                    log.warn("GC任务重试{}次仍失败，放弃: seq={}, fileSystemName={}, 剩余副本: {}",
+                            task.getAttempts(), task.getSeq(), task.getFileSystemName(), remaining.size());
+                    remaining.clear();
+                }
+            }
+            metadataStorage.completeGcTask(task, remaining);
+        }
+        log.info("GC完成: {} 个任务, 删除副本 {} 个, 失败 {} 个, 队列剩余 {}",
+                tasks.size(), deleted, failed, metadataStorage.getGcQueueSize());
+    }
+    
+    private void purgeExpired() {
+        long deadline = System.currentTimeMillis() - followerRetentionMs;
+        for (GcTask task : metadataStorage.peekGcTasks(batchSize)) {
+            if (task.getCreateTime() > deadline) {
+                break;
+            }
+            metadataStorage.completeGcTask(task, null);
+        }
+    }
+}
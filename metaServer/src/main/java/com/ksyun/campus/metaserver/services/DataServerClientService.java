@@ -77,7 +77,7 @@ public class DataServerClientService {
     /**
      * 直接向指定 DataServer 写入数据，携带副本同步标记，避免被对端继续级联复制。
      */
-    public boolean writeDirectToDataServer(String dsAddress, String fileSystemName, String path, int offset, int length, byte[] data) {
+    public boolean writeDirectToDataServer(String dsAddress, String fileSystemName, String path, long offset, int length, byte[] data) {
         try {
             String url = "http://" + dsAddress + "/write";
 
@@ -163,6 +163,8 @@ public class DataServerClientService {
             String url = "http://" + dsAddress + "/write?path=" + path + "&offset=0&length=" + (data == null ? 0 : data.length);
             HttpHeaders headers = new HttpHeaders();
             headers.set("X-Is-Replica-Sync", "true");
+            // 标记为FSCK补副本，目标DataServer将其计入待完成传输并随心跳上报
+            headers.set("X-Fsck-Transfer", "true");
             headers.set("fileSystemName", fileSystemName);
             headers.setContentType(org.springframework.http.MediaType.APPLICATION_OCTET_STREAM);
             ResponseEntity<String> response = restTemplate.exchange(
@@ -0,0 +1,99 @@
+package com.ksyun.campus.metaserver.services;
+
+import java.util.Map;
+
+/**
+ * 一个DataServer在某次心跳时的不可变视图：地址、机架/可用区、容量与实时负载
+ * 由ZkDataServerService在ZK数据变化时从解析结果构建一次，放置和FSCK直接读取字段，不再逐次从Map中拆箱
+ */
+public final class DataServerNode {
+
+    public static final String DEFAULT_ZONE = "default-zone";
+    public static final String DEFAULT_RACK = "default-rack";
+
+    public final String id;
+    public final String address;
+    public final String host;
+    public final String zone;
+    public final String rack;
+    public final long totalCapacity;
+    public final long remainingCapacity;
+    // 心跳上报的实时负载
+    public final int queueDepth;
+    public final double writeMBps;
+    public final int pendingTransfers;
+    public final double diskLatencyMs;
+
+    private final String rackKey;
+
+    DataServerNode(String id, String address, String host, String zone, String rack,
+                   long totalCapacity, long remainingCapacity,
+                   int queueDepth, double writeMBps, int pendingTransfers, double diskLatencyMs) {
+        this.id = id;
+        this.address = address;
+        this.host = host;
+        this.zone = zone;
+        this.rack = rack;
+        this.totalCapacity = totalCapacity;
+        this.remainingCapacity = remainingCapacity;
+        this.queueDepth = queueDepth;
+        this.writeMBps = writeMBps;
+        this.pendingTransfers = pendingTransfers;
+        this.diskLatencyMs = diskLatencyMs;
+        this.rackKey = zone + "/" + rack;
+    }
+
+    /**
+     * 由ZkDataServerService解析出的DataServer信息构建，缺少地址时返回null
+     */
+    static DataServerNode fromServerInfo(Map<String, Object> server) {
+        Object address = server.get("address");
+        if (address == null) {
+            return null;
+        }
+        Object id = server.get("id");
+        Object host = server.getOrDefault("host", server.get("ip"));
+        Object remaining = server.get("remainingCapacity");
+        long totalCapacity = numberOf(server.get("totalCapacity")).longValue();
+        long remainingCapacity = remaining instanceof Number
+                ? ((Number) remaining).longValue()
+                : totalCapacity - numberOf(server.get("usedCapacity")).longValue();
+        return new DataServerNode(id == null ? String.valueOf(address) : String.valueOf(id), String.valueOf(address),
+                host == null ? null : String.valueOf(host),
+                labelOf(server.get("zone"), DEFAULT_ZONE), labelOf(server.get("rack"), DEFAULT_RACK),
+                totalCapacity, Math.max(0L, remainingCapacity),
+                numberOf(server.get("queueDepth")).intValue(), numberOf(server.get("writeMBps")).doubleValue(),
+                numberOf(server.get("pendingTransfers")).intValue(), numberOf(server.get("diskLatencyMs")).doubleValue());
+    }
+
+    private static Number numberOf(Object value) {
+        return value instanceof Number ? (Number) value : 0;
+    }
+
+    private static String labelOf(Object value, String defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        String label = String.valueOf(value).trim();
+        return label.isEmpty() || label.equals("null") ? defaultValue : label;
+    }
+
+    /**
+     * 机架名只在可用区内唯一
+     */
+    public String rackKey() {
+        return rackKey;
+    }
+
+    /**
+     * 已用容量比例，未上报总容量时按0处理
+     */
+    public double usedRatio() {
+        return totalCapacity <= 0 ? 0.0 : Math.max(0.0, 1.0 - (double) remainingCapacity / totalCapacity);
+    }
+
+    @Override
+    public String toString() {
+        return address + "@" + rackKey;
+    }
+}
@@ -0,0 +1,51 @@
+package com.ksyun.campus.metaserver.services;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 定长直接映射缓存
+ * 槽位数固定，按hash定位，冲突时直接覆盖；内存占用与命名空间大小无关。
+ * 槽位中保存完整条目，调用方读出后自行校验是否命中（hash相同不代表key相同）
+ */
+class DirectMappedCache<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+
+    DirectMappedCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    E get(long hash) {
+        return slots.get(index(hash));
+    }
+
+    void put(long hash, E entry) {
+        slots.set(index(hash), entry);
+    }
+
+    /**
+     * 仅当槽位仍是expected时清除，避免误删并发写入的新条目
+     */
+    void remove(long hash, E expected) {
+        slots.compareAndSet(index(hash), expected, null);
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    private int index(long hash) {
+        // 乘法散列，打散连续分配的inode ID
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
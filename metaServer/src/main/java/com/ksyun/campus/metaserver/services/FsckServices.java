@@ -24,9 +24,18 @@ public class FsckServices {
     @Autowired
     private MetadataStorageService metadataStorage;
     
+    @Autowired
+    private RaftService raftService;
+    
     @Autowired
     private DataServerClientService dataServerClientService;
     
+    @Autowired
+    private ZkMetaServerService zkMetaServerService;
+    
+    @Autowired
+    private PlacementPolicy placementPolicy;
+    
     // 存储FSCK检查结果（全局）
     private final Map<String, Object> fsckResults = new ConcurrentHashMap<>();
     
@@ -35,6 +44,10 @@ public class FsckServices {
      */
     @Scheduled(fixedRate = 120000)
     public void scheduledFsck() {
+        // 修复结果写入元数据，只能由Leader提交后经操作日志同步到Follower
+        if (!zkMetaServerService.isLeader()) {
+            return;
+        }
         log.info("开始定时FSCK检查");
         performFsck();
     }
@@ -148,7 +161,7 @@ public class FsckServices {
             String ds = r.dsNode; // 形如 ip:port
             boolean exists = false;
             try {
-                exists = dataServerClientService.checkFileExistsOnDataServer(ds, fileSystemName, statInfo.getPath());
+                exists = dataServerClientService.checkFileExistsOnDataServer(ds, fileSystemName, MetaService.dataPathOf(r, statInfo.getPath()));
             } catch (Exception e) {
                 log.warn("副本健康检查失败：{} -> {}", ds, statInfo.getPath(), e);
             }
@@ -176,14 +189,16 @@ public class FsckServices {
                     used.add(r.dsNode);
                 }
                 List<String> targets = chooseTargetDataServers(used, need);
+                // 新副本沿用源副本的数据路径（块路径），与文件当前的逻辑路径无关
+                String dataPath = MetaService.dataPathOf(source, statInfo.getPath());
                 for (String target : targets) {
                     try {
-                        boolean ok = dataServerClientService.replicateBetweenDataServers(source.dsNode, target, fileSystemName, statInfo.getPath());
+                        boolean ok = dataServerClientService.replicateBetweenDataServers(source.dsNode, target, fileSystemName, dataPath);
                         if (ok) {
                             ReplicaData nr = new ReplicaData();
                             nr.id = java.util.UUID.randomUUID().toString();
                             nr.dsNode = target;
-                            nr.path = statInfo.getPath();
+                            nr.path = dataPath;
                             nr.offset = 0;
                             nr.length = statInfo.getSize();
                             nr.isPrimary = false;
@@ -215,7 +230,7 @@ public class FsckServices {
         // 5) 如有变化则更新元数据
         if (changed) {
             statInfo.setReplicaData(validReplicas);
-            metadataStorage.saveMetadata(fileSystemName, statInfo.getPath(), statInfo);
+            raftService.submit(new MetadataBatch().put(fileSystemName, statInfo.getPath(), statInfo));
         }
         return changed;
     }
@@ -286,22 +301,20 @@ public class FsckServices {
                 for (ReplicaData r : currentReplicas) assigned.add(r.dsNode);
             }
             int cleaned = 0;
-            List<Map<String, Object>> actives = zkDataServerService.getActiveDataServers();
-            for (Map<String, Object> s : actives) {
-                Object addrObj = s.get("address");
-                if (addrObj == null) continue;
-                String addr = String.valueOf(addrObj);
+            String dataPath = MetaService.dataPathOf(currentReplicas == null || currentReplicas.isEmpty() ? null : currentReplicas.get(0), statInfo.getPath());
+            for (DataServerNode node : zkDataServerService.getActiveDataServers()) {
+                String addr = node.address;
                 if (assigned.contains(addr)) continue; // 该节点是被分配副本的，跳过
                 boolean exists = false;
                 try {
-                    exists = dataServerClientService.checkFileExistsOnDataServer(addr, fileSystemName, statInfo.getPath());
+                    exists = dataServerClientService.checkFileExistsOnDataServer(addr, fileSystemName, dataPath);
                 } catch (Exception e) {
                     // 忽略探测异常
                 }
                 if (exists) {
                     ReplicaData temp = new ReplicaData();
                     temp.dsNode = addr;
-                    temp.path = statInfo.getPath();
+                    temp.path = dataPath;
                     boolean ok = dataServerClientService.deleteFileFromDataServer(fileSystemName, temp);
                     if (ok) cleaned++;
                     log.info("清理历史脏副本: {} -> {} 成功={} ", addr, statInfo.getPath(), ok);
@@ -315,21 +328,10 @@ public class FsckServices {
     }
 
     /**
-     * 从活跃 DataServer 中选择目标节点，排除已使用的节点。
+     * 按放置策略选择补副本的目标节点：排除已有副本，并尽量放到已有副本未占用的机架/可用区
      */
     private List<String> chooseTargetDataServers(Set<String> exclude, int needed) {
-        List<Map<String, Object>> actives = zkDataServerService.getActiveDataServers();
-        List<String> candidates = new ArrayList<>();
-        for (Map<String, Object> s : actives) {
-            Object addr = s.get("address");
-            if (addr == null) continue;
-            String a = String.valueOf(addr);
-            if (!exclude.contains(a)) {
-                candidates.add(a);
-            }
-        }
-        // 简单截断到需要数量（后续可替换为按负载/机架分布的打分选择）
-        return candidates.size() > needed ? candidates.subList(0, needed) : candidates;
+        return placementPolicy.chooseTargets(needed, exclude);
     }
     
     /**
@@ -0,0 +1,258 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ksyun.campus.metaserver.domain.FileType;
+import com.ksyun.campus.metaserver.domain.Inode;
+import com.ksyun.campus.metaserver.domain.ReplicaData;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * inode记录的二进制编码
+ * 格式（版本1）：
+ *   version(1B) id parentId name type size mtime replicaCount replica*
+ *   replica: idFlag id dsNodeId pathFlag [path] offset length isPrimary
+ * 整数均为zigzag varint；DataServer地址通过字典转换为小整数；UUID形式的副本ID按16字节存储；
+ * 同一文件各副本路径相同时只存一次。
+ * 以'{'开头的值为旧的JSON格式，解码时兼容，由调用方择机重写为二进制
+ */
+class InodeCodec {
+
+    static final byte VERSION_1 = 1;
+    
+    private static final byte ID_UUID = 0;
+    private static final byte ID_STRING = 1;
+    private static final byte ID_NULL = 2;
+    
+    private static final byte PATH_STRING = 0;
+    private static final byte PATH_SAME_AS_PREVIOUS = 1;
+    private static final byte PATH_NULL = 2;
+    
+    /**
+     * DataServer地址字典，0保留给null
+     */
+    interface DataServerDictionary {
+        int intern(String dsNode);
+        
+        String lookup(int id);
+    }
+    
+    private final DataServerDictionary dictionary;
+    private final ObjectMapper objectMapper;
+    
+    InodeCodec(DataServerDictionary dictionary, ObjectMapper objectMapper) {
+        this.dictionary = dictionary;
+        this.objectMapper = objectMapper;
+    }
+    
+    static boolean isLegacyJson(byte[] value) {
+        return value.length > 0 && value[0] == '{';
+    }
+    
+    byte[] encode(Inode inode) {
+        Writer out = new Writer(64);
+        out.writeByte(VERSION_1);
+        out.writeVarLong(inode.getId());
+        out.writeVarLong(inode.getParentId());
+        out.writeString(inode.getName());
+        out.writeVarLong(inode.getType() == null ? 0 : inode.getType().getCode() + 1);
+        out.writeVarLong(inode.getSize());
+        out.writeVarLong(inode.getMtime());
+        
+        List<ReplicaData> replicas = inode.getReplicaData();
+        out.writeVarLong(replicas == null ? 0 : replicas.size() + 1);
+        if (replicas != null) {
+            String previousPath = null;
+            for (ReplicaData replica : replicas) {
+                writeReplicaId(out, replica.id);
+                out.writeVarLong(replica.dsNode == null ? 0 : dictionary.intern(replica.dsNode));
+                if (replica.path == null) {
+                    out.writeByte(PATH_NULL);
+                } else if (replica.path.equals(previousPath)) {
+                    out.writeByte(PATH_SAME_AS_PREVIOUS);
+                } else {
+                    out.writeByte(PATH_STRING);
+                    out.writeString(replica.path);
+                }
+                previousPath = replica.path;
+                out.writeVarLong(replica.offset);
+                out.writeVarLong(replica.length);
+                out.writeByte(replica.isPrimary ? (byte) 1 : (byte) 0);
+            }
+        }
+        return out.toByteArray();
+    }
+    
+    Inode decode(byte[] value) throws IOException {
+        if (isLegacyJson(value)) {
+            return objectMapper.readValue(value, Inode.class);
+        }
+        Reader in = new Reader(value);
+        byte version = in.readByte();
+        if (version != VERSION_1) {
+            throw new IOException("不支持的inode编码版本: " + version);
+        }
+        Inode inode = new Inode();
+        inode.setId(in.readVarLong());
+        inode.setParentId(in.readVarLong());
+        inode.setName(in.readString());
+        int type = (int) in.readVarLong();
+        inode.setType(type == 0 ? null : FileType.get(type - 1));
+        inode.setSize(in.readVarLong());
+        inode.setMtime(in.readVarLong());
+        
+        int replicaCount = (int) in.readVarLong();
+        if (replicaCount > 0) {
+            List<ReplicaData> replicas = new ArrayList<>(replicaCount - 1);
+            String previousPath = null;
+            for (int i = 0; i < replicaCount - 1; i++) {
+                ReplicaData replica = new ReplicaData();
+                replica.id = readReplicaId(in);
+                int dsNodeId = (int) in.readVarLong();
+                replica.dsNode = dsNodeId == 0 ? null : dictionary.lookup(dsNodeId);
+                byte pathFlag = in.readByte();
+                replica.path = pathFlag == PATH_STRING ? in.readString()
+                        : pathFlag == PATH_SAME_AS_PREVIOUS ? previousPath : null;
+                previousPath = replica.path;
+                replica.offset = in.readVarLong();
+                replica.length = in.readVarLong();
+                replica.isPrimary = in.readByte() != 0;
+                replicas.add(replica);
+            }
+            inode.setReplicaData(replicas);
+        }
+        return inode;
+    }
+    
+    private static void writeReplicaId(Writer out, String id) {
+        if (id == null) {
+            out.writeByte(ID_NULL);
+            return;
+        }
+        if (id.length() == 36) {
+            try {
+                UUID uuid = UUID.fromString(id);
+                // 只有规范形式才能无损还原
+                if (uuid.toString().equals(id)) {
+                    out.writeByte(ID_UUID);
+                    out.writeLong(uuid.getMostSignificantBits());
+                    out.writeLong(uuid.getLeastSignificantBits());
+                    return;
+                }
+            } catch (IllegalArgumentException ignored) {
+                // 非UUID，按字符串存储
+            }
+        }
+        out.writeByte(ID_STRING);
+        out.writeString(id);
+    }
+    
+    private static String readReplicaId(Reader in) throws IOException {
+        byte flag = in.readByte();
+        return switch (flag) {
+            case ID_UUID -> new UUID(in.readLong(), in.readLong()).toString();
+            case ID_STRING -> in.readString();
+            default -> null;
+        };
+    }
+    
+    private static final class Writer {
+        private byte[] buf;
+        private int pos;
+        
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+        
+        void writeByte(byte b) {
+            ensure(1);
+            buf[pos++] = b;
+        }
+        
+        void writeLong(long v) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (v >>> shift);
+            }
+        }
+        
+        void writeVarLong(long v) {
+            long zigzag = (v << 1) ^ (v >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[pos++] = (byte) zigzag;
+        }
+        
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+        
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+            }
+        }
+    }
+    
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+        
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+        
+        byte readByte() throws IOException {
+            if (pos >= buf.length) {
+                throw new IOException("inode记录已截断");
+            }
+            return buf[pos++];
+        }
+        
+        long readLong() throws IOException {
+            long v = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+        
+        long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IOException("varint格式错误");
+        }
+        
+        String readString() throws IOException {
+            int length = (int) readVarLong();
+            if (length < 0 || pos + length > buf.length) {
+                throw new IOException("inode记录已截断");
+            }
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.ksyun.campus.metaserver.services;
+
+/**
+ * 文件的写租约由其他客户端持有且未过期
+ */
+public class LeaseConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LeaseConflictException(String message) {
+        super(message);
+    }
+}
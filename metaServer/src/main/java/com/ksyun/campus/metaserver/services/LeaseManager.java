@@ -0,0 +1,238 @@
+package com.ksyun.campus.metaserver.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 文件写租约（单写者语义）
+ * create/write时为客户端授予文件的写租约，租约期内其他客户端对该文件的create/write返回冲突，写入因此按文件串行化。
+ * 租约按客户端而不是按文件续约：同一客户端持有的所有文件共享一个续约时间，客户端每个周期只需一次心跳。
+ * 超过软期限未续约的租约可被其他客户端直接接管（写者已崩溃时的租约恢复）；超过硬期限的由后台清理，即使没有竞争者。
+ * 写入在一次请求内完成DataServer写与元数据提交，租约恢复不需要截断或同步副本，只转移持有者。
+ * 租约只保存在Leader内存中；切主后新Leader从空表开始，旧Leader上的租约仍可能有写者在用。
+ * 因此成为Leader后的一个软期限内为恢复期：已存在的文件不授予新租约、也不接受无租约写入，
+ * 只有带clientName写入的原持有者可以重新取得（reclaim）；恢复期结束后未重新取得的租约视同超过软期限
+ */
+@Slf4j
+@Service
+public class LeaseManager {
+
+    @Autowired
+    private ZkMetaServerService zkMetaServerService;
+
+    @Autowired
+    private MetadataStorageService metadataStorage;
+
+    @Value("${metadata.lease.soft-limit-ms:30000}")
+    private long softLimitMs;
+
+    @Value("${metadata.lease.hard-limit-ms:300000}")
+    private long hardLimitMs;
+
+    // 持有者 -> 租约；(文件系统, 路径) -> 持有者，两张表都只在this锁内访问
+    private final Map<String, Lease> leases = new HashMap<>();
+    private final Map<String, String> holders = new HashMap<>();
+
+    // 上次观察到的Leader身份与成为Leader的时间，用于判断是否处于恢复期
+    private boolean leader;
+    private long leaderSince;
+
+    /**
+     * 为clientName授予path的写租约，已持有时视为续约
+     *
+     * @throws LeaseConflictException 租约由其他客户端持有且未超过软期限，或恢复期内文件已存在
+     */
+    public synchronized void acquire(String fileSystemName, String path, String clientName) {
+        grant(fileSystemName, path, clientName, false);
+    }
+
+    /**
+     * 客户端声明自己持有path的租约（带clientName的写入）：与acquire相同，
+     * 但恢复期内表中没有该文件的租约时直接授予，原持有者切主后借此重新取得租约
+     *
+     * @throws LeaseConflictException 租约由其他客户端持有且未超过软期限
+     */
+    public synchronized void reclaim(String fileSystemName, String path, String clientName) {
+        grant(fileSystemName, path, clientName, true);
+    }
+
+    private void grant(String fileSystemName, String path, String clientName, boolean reclaim) {
+        String key = key(fileSystemName, path);
+        String holder = holders.get(key);
+        if (holder == null && !reclaim) {
+            checkRecovery(fileSystemName, path);
+        }
+        if (holder != null && !holder.equals(clientName)) {
+            Lease current = leases.get(holder);
+            if (current != null && !current.expired(softLimitMs)) {
+                throw new LeaseConflictException("文件正由客户端" + holder + "写入: " + path);
+            }
+            log.warn("租约超过软期限未续约，转移给新的写者: fileSystemName={}, path={}, {} -> {}",
+                    fileSystemName, path, holder, clientName);
+            if (current != null) {
+                current.paths.remove(key);
+                if (current.paths.isEmpty()) {
+                    leases.remove(holder);
+                }
+            }
+        }
+        Lease lease = leases.computeIfAbsent(clientName, Lease::new);
+        lease.paths.add(key);
+        lease.renew();
+        holders.put(key, clientName);
+    }
+
+    /**
+     * 不带租约的写入（如一次性写入的异步客户端）：只要没有其他客户端持有有效租约即可写
+     *
+     * @throws LeaseConflictException 租约由其他客户端持有且未超过软期限
+     */
+    public synchronized void checkWritable(String fileSystemName, String path) {
+        String holder = holders.get(key(fileSystemName, path));
+        if (holder == null) {
+            checkRecovery(fileSystemName, path);
+            return;
+        }
+        Lease lease = leases.get(holder);
+        if (lease != null && !lease.expired(softLimitMs)) {
+            throw new LeaseConflictException("文件正由客户端" + holder + "写入: " + path);
+        }
+    }
+
+    /**
+     * 续约clientName持有的全部租约，返回持有的文件数
+     */
+    public synchronized int renew(String clientName) {
+        Lease lease = leases.get(clientName);
+        if (lease == null) {
+            return 0;
+        }
+        lease.renew();
+        return lease.paths.size();
+    }
+
+    /**
+     * 写者关闭文件时释放租约；不是持有者时忽略
+     */
+    public synchronized void release(String fileSystemName, String path, String clientName) {
+        String key = key(fileSystemName, path);
+        if (!clientName.equals(holders.get(key))) {
+            return;
+        }
+        holders.remove(key);
+        Lease lease = leases.get(clientName);
+        if (lease != null) {
+            lease.paths.remove(key);
+            if (lease.paths.isEmpty()) {
+                leases.remove(clientName);
+            }
+        }
+    }
+
+    /**
+     * 删除或重命名后，原路径及其子树上的租约一并作废
+     */
+    public synchronized void releaseUnder(String fileSystemName, String path) {
+        String key = key(fileSystemName, path);
+        String prefix = path.equals("/") ? key : key + "/";
+        Iterator<Map.Entry<String, String>> it = holders.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            if (entry.getKey().equals(key) || entry.getKey().startsWith(prefix)) {
+                Lease lease = leases.get(entry.getValue());
+                if (lease != null) {
+                    lease.paths.remove(entry.getKey());
+                    if (lease.paths.isEmpty()) {
+                        leases.remove(entry.getValue());
+                    }
+                }
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 恢复期内旧Leader授予的租约可能仍有效，已存在的文件一律按冲突处理；新建的文件不可能有旧租约
+     */
+    private void checkRecovery(String fileSystemName, String path) {
+        if (observeLeadership() && System.currentTimeMillis() - leaderSince < softLimitMs
+                && metadataStorage.exists(fileSystemName, path)) {
+            throw new LeaseConflictException("新Leader租约恢复期内，等待原持有者重新取得租约: " + path);
+        }
+    }
+
+    /**
+     * 记录非Leader到Leader的切换时间；请求路径上调用，不依赖定时任务的周期
+     */
+    private boolean observeLeadership() {
+        boolean nowLeader = zkMetaServerService.isLeader();
+        if (nowLeader && !leader) {
+            leaderSince = System.currentTimeMillis();
+            log.info("本节点成为Leader，进入{}ms的写租约恢复期", softLimitMs);
+        }
+        leader = nowLeader;
+        return nowLeader;
+    }
+
+    public synchronized int getLeaseCount() {
+        return holders.size();
+    }
+
+    /**
+     * 回收超过硬期限的租约；非Leader不受理写请求，持有的租约已无意义，全部清空
+     */
+    @Scheduled(fixedDelayString = "${metadata.lease.check-interval:5000}")
+    public synchronized void checkLeases() {
+        if (!observeLeadership()) {
+            if (!leases.isEmpty()) {
+                log.info("本节点不再是Leader，清空{}个写租约", holders.size());
+                leases.clear();
+                holders.clear();
+            }
+            return;
+        }
+        Iterator<Lease> it = leases.values().iterator();
+        while (it.hasNext()) {
+            Lease lease = it.next();
+            if (lease.expired(hardLimitMs)) {
+                log.warn("客户端超过硬期限未续约，回收其租约: clientName={}, 文件数={}", lease.holder, lease.paths.size());
+                for (String key : lease.paths) {
+                    holders.remove(key);
+                }
+                it.remove();
+            }
+        }
+    }
+
+    private static String key(String fileSystemName, String path) {
+        return fileSystemName + ":" + path;
+    }
+
+    private static final class Lease {
+
+        private final String holder;
+        private final Set<String> paths = new HashSet<>();
+        private long lastRenewed;
+
+        private Lease(String holder) {
+            this.holder = holder;
+        }
+
+        private void renew() {
+            lastRenewed = System.currentTimeMillis();
+        }
+
+        private boolean expired(long limitMs) {
+            return System.currentTimeMillis() - lastRenewed > limitMs;
+        }
+    }
+}
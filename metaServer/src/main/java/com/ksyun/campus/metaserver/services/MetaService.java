@@ -2,13 +2,18 @@ package com.ksyun.campus.metaserver.services;
 
 import com.ksyun.campus.metaserver.domain.StatInfo;
 import com.ksyun.campus.metaserver.domain.ReplicaData;
+import com.ksyun.campus.metaserver.domain.ContentSummary;
 import com.ksyun.campus.metaserver.domain.FileType;
+import com.ksyun.campus.metaserver.domain.NamespaceStats;
+import com.ksyun.campus.metaserver.domain.BatchOpType;
+import com.ksyun.campus.metaserver.domain.BatchOperation;
+import com.ksyun.campus.metaserver.domain.BatchResult;
+import com.ksyun.campus.metaserver.domain.ListingPage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -20,27 +25,53 @@ public class MetaService {
     @Autowired
     private MetadataStorageService metadataStorage;
     
+    @Autowired
+    private RaftService raftService;
+    
     @Autowired
     private DataServerClientService dataServerClient;
     
-    // 简单轮询计数器（全局）
-    private final AtomicInteger roundRobinCounter = new AtomicInteger(0);
+    @Autowired
+    private PathLockManager pathLocks;
+    
+    @Autowired
+    private PlacementPolicy placementPolicy;
+    
+    // 每个文件的副本数
+    private static final int REPLICA_COUNT = 3;
     
     /**
      * 创建文件或目录
+     * 持有路径锁完成"检查不存在 -> 提交"，并发创建同一路径时只有一个生效，其余返回已存在的元数据；
+     * 缺失的父目录与文件本身放在同一条日志中提交
      */
     public StatInfo createFile(String fileSystemName, String path, FileType type) {
+        PathLockManager.Locks locks = pathLocks.lock(fileSystemName, path);
+        try {
+            return createFileLocked(fileSystemName, path, type);
+        } finally {
+            locks.close();
+        }
+    }
+    
+    private StatInfo createFileLocked(String fileSystemName, String path, FileType type) {
         // 检查路径是否已存在
         if (metadataStorage.exists(fileSystemName, path)) {
             log.warn("文件/目录已存在: fileSystemName={}, path={}", fileSystemName, path);
             return getFile(fileSystemName, path);
         }
         
-        // 确保父目录存在
+        // 补齐缺失的父目录（祖先持有读锁，不会被并发删除；并发补齐同一父目录时后者只是覆盖同一inode）
+        MetadataBatch batch = new MetadataBatch();
         String parentPath = getParentPath(path);
-        if (!parentPath.equals("/") && !metadataStorage.exists(fileSystemName, parentPath)) {
-            log.warn("父目录不存在，先创建父目录: fileSystemName={}, parentPath={}", fileSystemName, parentPath);
-            createFile(fileSystemName, parentPath, FileType.Directory);
+        List<String> missingParents = new ArrayList<>();
+        while (!parentPath.equals("/") && !metadataStorage.exists(fileSystemName, parentPath)) {
+            missingParents.add(0, parentPath);
+            parentPath = getParentPath(parentPath);
+        }
+        for (String dir : missingParents) {
+            log.warn("父目录不存在，先创建父目录: fileSystemName={}, parentPath={}", fileSystemName, dir);
+            batch.put(fileSystemName, dir, newStatInfo(dir, FileType.Directory));
         }
         
         StatInfo statInfo = new StatInfo();
@@ -52,37 +83,11 @@ public class MetaService {
         // 如果是普通文件，选择三台DataServer并设置副本信息（不实际创建文件）
         if (type == FileType.File) {
             try {
-                // 选择三台DataServer（轮询 + 剩余容量权重）
-                List<Map<String, Object>> allActive = new ArrayList<>(zkDataServerService.getActiveDataServers());
-                if (allActive.size() < 1) {
-                    throw new RuntimeException("没有可用的DataServer");
-                }
-                
-                // 按剩余容量排序
-                allActive.sort((a, b) -> Long.compare(
-                        ((Number) b.getOrDefault("totalCapacity", b.getOrDefault("capacity", 0L))).longValue() -
-                                ((Number) b.getOrDefault("usedCapacity", 0L)).longValue(),
-                        ((Number) a.getOrDefault("totalCapacity", a.getOrDefault("capacity", 0L))).longValue() -
-                                ((Number) a.getOrDefault("usedCapacity", 0L)).longValue()
-                ));
-                
-                // 轮询选择三台DataServer
-                int start = Math.floorMod(roundRobinCounter.getAndIncrement(), Math.max(1, allActive.size()));
-                List<String> targets = new ArrayList<>();
-                for (int i = 0; i < Math.min(3, allActive.size()); i++) {
-                    Map<String, Object> ds = allActive.get((start + i) % allActive.size());
-                    Object addr = ds.get("address");
-                    if (addr != null) {
-                        targets.add(String.valueOf(addr));
-                    }
-                }
-                
-                if (targets.isEmpty()) {
-                    throw new RuntimeException("无法选择到目标DataServer");
-                }
+                // 按放置策略选择三台DataServer（分散到不同机架/可用区）
+                List<String> targets = selectReplicaTargets();
                 
-                // 设置副本信息（不实际创建文件）
-                List<ReplicaData> replicaDataList = convertToReplicaData(path, targets, 0, 0);
+                // 设置副本信息（不实际创建文件），数据按块路径存放，与逻辑路径无关
+                List<ReplicaData> replicaDataList = convertToReplicaData(newBlockPath(), targets, 0, 0);
                 statInfo.setReplicaData(replicaDataList);
                 log.info("创建文件成功: fileSystemName={}, path={}, 选择的三副本位置: {}", fileSystemName, path, targets);
                 
@@ -92,13 +97,24 @@ public class MetaService {
             }
         }
 
-        // 保存到RocksDB和内存缓存
-        metadataStorage.saveMetadata(fileSystemName, path, statInfo);
+        // 经Raft提交到多数派，应用时检查祖先目录的名字空间配额
+        raftService.submit(batch.put(fileSystemName, path, statInfo).checkQuota());
         
         log.info("创建文件/目录: fileSystemName={}, path={}, 类型: {}", fileSystemName, path, type);
         return statInfo;
     }
     
+    /**
+     * 选择三台DataServer，具体位置由PlacementPolicy决定
+     */
+    private List<String> selectReplicaTargets() {
+        List<String> targets = placementPolicy.chooseTargets(REPLICA_COUNT, Collections.emptyList());
+        if (targets.isEmpty()) {
+            throw new RuntimeException("没有可用的DataServer");
+        }
+        return targets;
+    }
+    
     /**
      * 读取文件数据
      * 支持分块读取，从DataServer获取文件内容
@@ -129,15 +145,15 @@ public class MetaService {
             
             log.info("从副本读取文件: fileSystemName={}, path={} -> {}", fileSystemName, path, replicaAddress);
             
-            // 4. 调用DataServer读取数据
-            byte[] data = dataServerClient.readFromDataServer(replicaAddress, fileSystemName, path);
+            // 4. 调用DataServer读取数据（按副本记录的数据路径，重命名后依然有效）
+            byte[] data = dataServerClient.readFromDataServer(replicaAddress, fileSystemName, dataPathOf(primaryReplica, path));
             if (data == null) {
                 log.warn("从DataServer读取失败，尝试其他副本: fileSystemName={}, path={}, replica={}", fileSystemName, path, replicaAddress);
                 
                 // 尝试其他副本
                 for (int i = 1; i < statInfo.getReplicaData().size(); i++) {
                     ReplicaData replica = statInfo.getReplicaData().get(i);
-                    data = dataServerClient.readFromDataServer(replica.dsNode, fileSystemName, path);
+                    data = dataServerClient.readFromDataServer(replica.dsNode, fileSystemName, dataPathOf(replica, path));
                     if (data != null) {
                         log.info("从备用副本读取成功: fileSystemName={}, path={}, replica={}", fileSystemName, path, replica.dsNode);
                         break;
@@ -180,60 +196,60 @@ public class MetaService {
 
     /**
      * 写入文件数据到DataServer并记录副本位置
+     * offset为0时整体重写文件；大于0时从该位置覆盖或追加，不能超过当前文件大小（不支持空洞）。
+     * 读取元数据、写DataServer、提交新元数据全程持有路径锁，并发写同一文件时不会丢失更新，
+     * 也不会把已被删除（数据已交给BlockGcService回收）的文件重新写回
+     */
+    public StatInfo writeFile(String fileSystemName, String path, byte[] data, long offset, int length) {
+        return writeFile(fileSystemName, path, data, offset, length, false);
+    }
+    
+    /**
+     * 追加到文件末尾，偏移取持锁后读到的文件大小，并发追加按到达顺序依次接在末尾
+     * DataServer只改写最后一个未满的块并按需新建块，开销与追加的字节数成正比
      */
-    public StatInfo writeFile(String fileSystemName, String path, byte[] data, int offset, int length) {
+    public StatInfo appendFile(String fileSystemName, String path, byte[] data, int length) {
+        return writeFile(fileSystemName, path, data, 0, length, true);
+    }
+    
+    private StatInfo writeFile(String fileSystemName, String path, byte[] data, long offset, int length, boolean append) {
+        PathLockManager.Locks locks = createIfAbsentAndLock(fileSystemName, path);
         try {
-            // 1. 检查文件是否存在，不存在则创建
+            // 1. 加锁后重新读取，期间可能已被其他写入更新或被删除
             StatInfo statInfo = getFile(fileSystemName, path);
             if (statInfo == null) {
-                log.info("文件不存在，先创建文件: fileSystemName={}, path={}", fileSystemName, path);
-                statInfo = createFile(fileSystemName, path, FileType.File);
+                throw new IllegalStateException("文件已被并发删除: " + path);
+            }
+            if (append) {
+                offset = statInfo.getSize();
+            } else if (offset > statInfo.getSize()) {
+                throw new IllegalArgumentException("写入偏移超出文件末尾: offset=" + offset + ", size=" + statInfo.getSize());
             }
 
-            // 2. 优先使用已存在的副本位置，如果没有则重新选择
+            // 2. 优先使用已存在的副本位置与数据路径，如果没有则重新选择
             List<String> targets = new ArrayList<>();
+            String dataPath = newBlockPath();
             if (statInfo.getReplicaData() != null && !statInfo.getReplicaData().isEmpty()) {
+                dataPath = dataPathOf(statInfo.getReplicaData().get(0), path);
                 // 使用已存在的副本位置
                 for (ReplicaData replica : statInfo.getReplicaData()) {
                     targets.add(replica.dsNode);
                 }
                 log.info("使用已存在的副本位置: fileSystemName={}, path={}, targets={}", fileSystemName, path, targets);
             } else {
-                // 重新选择三台DataServer（轮询 + 剩余容量权重）
-                List<Map<String, Object>> allActive = new ArrayList<>(zkDataServerService.getActiveDataServers());
-                if (allActive.size() < 1) {
-                    throw new RuntimeException("没有可用的DataServer");
-                }
-                
-                // 按剩余容量排序
-                allActive.sort((a, b) -> Long.compare(
-                        ((Number) b.getOrDefault("totalCapacity", b.getOrDefault("capacity", 0L))).longValue() -
-                                ((Number) b.getOrDefault("usedCapacity", 0L)).longValue(),
-                        ((Number) a.getOrDefault("totalCapacity", a.getOrDefault("capacity", 0L))).longValue() -
-                                ((Number) a.getOrDefault("usedCapacity", 0L)).longValue()
-                ));
-                
-                // 轮询选择三台DataServer
-                int start = Math.floorMod(roundRobinCounter.getAndIncrement(), Math.max(1, allActive.size()));
-                for (int i = 0; i < Math.min(3, allActive.size()); i++) {
-                    Map<String, Object> ds = allActive.get((start + i) % allActive.size());
-                    Object addr = ds.get("address");
-                    if (addr != null) {
-                        targets.add(String.valueOf(addr));
-                    }
-                }
-                
-                if (targets.isEmpty()) {
-                    throw new RuntimeException("无法选择到目标DataServer");
-                }
+                // 重新选择三台DataServer
+                targets.addAll(selectReplicaTargets());
                 
                 log.info("重新选择DataServer: fileSystemName={}, path={}, targets={}", fileSystemName, path, targets);
             }
 
+            // 写DataServer之前预检空间配额，避免数据写入后元数据因超限被拒绝
+            metadataStorage.checkQuota(fileSystemName, path, 0, Math.max(0L, offset + length - statInfo.getSize()));
+            
             // 3. 依次写入三台（第一台作为主副本）
             List<String> successLocations = new ArrayList<>();
             for (String addr : targets) {
-                boolean ok = dataServerClient.writeDirectToDataServer(addr, fileSystemName, path, offset, length, data);
+                boolean ok = dataServerClient.writeDirectToDataServer(addr, fileSystemName, dataPath, offset, length, data);
                 if (ok) {
                     successLocations.add(addr);
                 }
@@ -243,36 +259,66 @@ public class MetaService {
             }
 
             // 4. 更新副本信息与元数据
-            List<ReplicaData> replicaDataList = convertToReplicaData(path, successLocations, offset, length);
-            statInfo.setReplicaData(replicaDataList);
-            
-            // 修复：正确计算文件大小
-            // 如果offset + length大于当前文件大小，则更新为新的文件大小
-            // 如果offset + length小于等于当前文件大小，则保持当前大小不变
+            // 文件大小：offset为0是整体重写，大小即本次长度；否则offset + length大于当前大小时扩展，不大于时保持不变
             long newSize = offset + length;
-            if (newSize > statInfo.getSize()) {
+            if (offset == 0 || newSize > statInfo.getSize()) {
                 statInfo.setSize(newSize);
                 log.info("更新文件大小: fileSystemName={}, path={} -> {}", fileSystemName, path, newSize);
             } else {
                 log.info("保持文件大小: fileSystemName={}, path={} -> {}", fileSystemName, path, statInfo.getSize());
             }
             
+            // 写失败的副本已与其他副本不一致，只记录写成功的副本，每个副本都覆盖整个文件
+            statInfo.setReplicaData(convertToReplicaData(dataPath, successLocations, 0, statInfo.getSize()));
             statInfo.setMtime(System.currentTimeMillis());
-            metadataStorage.saveMetadata(fileSystemName, path, statInfo);
+            raftService.submit(new MetadataBatch().put(fileSystemName, path, statInfo).checkQuota());
             log.info("写入文件成功: fileSystemName={}, path={}, 大小: {}, 副本位置: {}", fileSystemName, path, statInfo.getSize(), successLocations);
 
             return statInfo;
             
+        } catch (QuotaExceededException | IllegalArgumentException e) {
+            log.warn("写入文件失败: fileSystemName={}, path={}, {}", fileSystemName, path, e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("写入文件失败: fileSystemName={}, path={}", fileSystemName, path, e);
             throw new RuntimeException("写入文件失败: " + e.getMessage(), e);
+        } finally {
+            locks.close();
+        }
+    }
+    
+    /**
+     * 文件不存在时先创建，再对路径加锁
+     * createFile自行加锁，不能在持锁期间调用，所以创建放在加锁之前
+     */
+    private PathLockManager.Locks createIfAbsentAndLock(String fileSystemName, String path) {
+        if (getFile(fileSystemName, path) == null) {
+            log.info("文件不存在，先创建文件: fileSystemName={}, path={}", fileSystemName, path);
+            createFile(fileSystemName, path, FileType.File);
         }
+        return pathLocks.lock(fileSystemName, path);
+    }
+    
+    /**
+     * 为新文件分配DataServer上的数据路径：按块ID存放，重命名/移动时数据不需要搬动
+     * 按ID前两位分散到子目录，避免单个目录下文件过多
+     */
+    private static String newBlockPath() {
+        String blockId = UUID.randomUUID().toString();
+        return "/.blocks/" + blockId.substring(0, 2) + "/" + blockId;
+    }
+    
+    /**
+     * 副本在DataServer上的数据路径；早期文件按逻辑路径存放，副本中没有记录时退回逻辑路径
+     */
+    static String dataPathOf(ReplicaData replica, String logicalPath) {
+        return replica != null && replica.path != null && !replica.path.isEmpty() ? replica.path : logicalPath;
     }
     
     /**
      * 将副本位置列表转换为ReplicaData格式
      */
-    private List<ReplicaData> convertToReplicaData(String filePath, List<String> replicaLocations, int offset, int length) {
+    private List<ReplicaData> convertToReplicaData(String dataPath, List<String> replicaLocations, long offset, long length) {
         List<ReplicaData> replicaDataList = new ArrayList<>();
         
         for (int i = 0; i < replicaLocations.size(); i++) {
@@ -282,7 +328,7 @@ public class MetaService {
                 ReplicaData replica = new ReplicaData();
                 replica.id = UUID.randomUUID().toString();
                 replica.dsNode = location; // 格式：ip:port
-                replica.path = filePath;
+                replica.path = dataPath;
                 replica.offset = offset;
                 replica.length = length;
                 replica.isPrimary = i == 0; // 第一个副本为主副本
@@ -303,6 +349,27 @@ public class MetaService {
         return metadataStorage.getMetadata(fileSystemName, path);
     }
     
+    /**
+     * 设置目录配额，根目录的配额即整个文件系统的配额
+     */
+    public ContentSummary setQuota(String fileSystemName, String path, long namespaceQuota, long spaceQuota) {
+        PathLockManager.Locks locks = pathLocks.lock(fileSystemName, path);
+        try {
+            raftService.submit(new MetadataBatch().setQuota(fileSystemName, path, namespaceQuota, spaceQuota));
+        } finally {
+            locks.close();
+        }
+        log.info("设置目录配额: fileSystemName={}, path={}, 名字空间配额={}, 空间配额={}", fileSystemName, path, namespaceQuota, spaceQuota);
+        return metadataStorage.getContentSummary(fileSystemName, path);
+    }
+    
+    /**
+     * 获取目录内容汇总（总字节数、文件数、目录数）
+     */
+    public ContentSummary getContentSummary(String fileSystemName, String path) {
+        return metadataStorage.getContentSummary(fileSystemName, path);
+    }
+    
     /**
      * 列出目录内容
      */
@@ -311,6 +378,24 @@ public class MetaService {
         return metadataStorage.listDirectory(fileSystemName, parentPath);
     }
     
+    /**
+     * 分页列出目录内容
+     * 多取一条用于判断是否还有下一页，续传标记为本页最后一个子项的名称
+     */
+    public ListingPage listFiles(String fileSystemName, String parentPath, String startAfter, int limit) {
+        List<StatInfo> entries = metadataStorage.listDirectory(fileSystemName, parentPath, startAfter, limit + 1);
+        boolean hasMore = entries.size() > limit;
+        if (hasMore) {
+            entries = new ArrayList<>(entries.subList(0, limit));
+        }
+        String nextStartAfter = null;
+        if (hasMore && !entries.isEmpty()) {
+            String lastPath = entries.get(entries.size() - 1).getPath();
+            nextStartAfter = lastPath.substring(lastPath.lastIndexOf('/') + 1);
+        }
+        return new ListingPage(entries, nextStartAfter, hasMore);
+    }
+    
     /**
      * 获取父目录路径
      */
@@ -326,48 +411,29 @@ public class MetaService {
     }
     
     /**
-     * 删除文件或目录（支持递归删除非空目录）
+     * 删除文件或目录（非空目录连同子树一起删除）
+     * 元数据经Raft提交后在一个WriteBatch中原子删除，DataServer上的数据由BlockGcService异步回收
      */
     public boolean deleteFile(String fileSystemName, String path) {
+        PathLockManager.Locks locks = pathLocks.lock(fileSystemName, path);
+        try {
+            return deleteFileLocked(fileSystemName, path);
+        } finally {
+            locks.close();
+        }
+    }
+    
+    private boolean deleteFileLocked(String fileSystemName, String path) {
         StatInfo statInfo = getFile(fileSystemName, path);
-        // 若目录元数据不存在，但存在子项，则按目录处理进行递归删除
         if (statInfo == null) {
-            List<StatInfo> childrenIfAny = listFiles(fileSystemName, path);
-            if (childrenIfAny != null && !childrenIfAny.isEmpty()) {
-                log.info("目录元数据缺失，但检测到子项，按目录递归删除: fileSystemName={}, path={} ({} 个子项)", fileSystemName, path, childrenIfAny.size());
-                boolean ok = deleteDirectoryRecursively(fileSystemName, path);
-                if (ok) {
-                    log.info("成功删除目录(按隐式目录处理): fileSystemName={}, path={}", fileSystemName, path);
-                }
-                return ok;
-            }
             log.warn("文件/目录不存在: fileSystemName={}, path={}", fileSystemName, path);
             return false;
         }
         
         try {
-            if (statInfo.getType() == FileType.Directory) {
-                // 目录删除，先递归删除子文件
-                log.info("开始递归删除目录: fileSystemName={}, path={}", fileSystemName, path);
-                boolean recursiveDeleteSuccess = deleteDirectoryRecursively(fileSystemName, path);
-                if (!recursiveDeleteSuccess) {
-                    log.error("递归删除目录失败: fileSystemName={}, path={}", fileSystemName, path);
-                    return false;
-                }
-            } else {
-                // 文件删除：先通知 DataServer 删除实际数据，再删除元数据
-                List<ReplicaData> replicas = statInfo.getReplicaData();
-                if (replicas != null && !replicas.isEmpty()) {
-                    int deletedCount = dataServerClient.deleteFromMultipleDataServers(fileSystemName, replicas);
-                    log.info("删除文件: fileSystemName={}, path={}, 在DataServer上成功删除: {}/{}", fileSystemName, path, deletedCount, replicas.size());
-                } else {
-                    log.info("删除文件: fileSystemName={}, path={}, 无副本信息，直接删除元数据", fileSystemName, path);
-                }
-            }
-            
-            // 删除成功后，从RocksDB和内存缓存中删除元数据
-            metadataStorage.deleteMetadata(fileSystemName, path);
-            log.info("成功删除文件/目录: fileSystemName={}, path={}", fileSystemName, path);
+            raftService.submit(new MetadataBatch().delete(fileSystemName, path));
+            log.info("成功删除{}: fileSystemName={}, path={}，数据等待异步回收",
+                    statInfo.getType() == FileType.Directory ? "目录" : "文件", fileSystemName, path);
             return true;
             
         } catch (Exception e) {
@@ -377,54 +443,181 @@ public class MetaService {
     }
     
     /**
-     * 递归删除目录及其所有内容
+     * 重命名/移动文件或目录
+     * 只移动一条父子边，DataServer上的数据按块路径存放不受影响，目录下有多少文件耗时都相同
+     *
+     * @throws PathNotFoundException     源不存在或目标的父目录不存在（不会自动创建）
+     * @throws PathAlreadyExistsException 目标已存在
+     * @throws IllegalArgumentException   目标位于源目录之下或目标父路径不是目录
      */
-    private boolean deleteDirectoryRecursively(String fileSystemName, String dirPath) {
+    public StatInfo renameFile(String fileSystemName, String src, String dst) {
+        // 源与目标一次性按分段顺序加锁，相向的两个重命名不会互相等待
+        PathLockManager.Locks locks = pathLocks.lock(fileSystemName, src, dst);
         try {
-            List<StatInfo> children = listFiles(fileSystemName, dirPath);
-            if (children.isEmpty()) {
-                log.debug("目录为空，直接删除: fileSystemName={}, dirPath={}", fileSystemName, dirPath);
-                // 删除空目录的元数据
-                metadataStorage.deleteMetadata(fileSystemName, dirPath);
-                return true;
+            if (!metadataStorage.exists(fileSystemName, src)) {
+                throw new PathNotFoundException("源路径不存在: " + src);
             }
-            
-            log.info("目录 {} 包含 {} 个子项，开始递归删除", 
-                    dirPath, children.size());
-            
-            // 先删除所有子项
-            for (StatInfo child : children) {
-                String childPath = child.getPath();
-                if (child.getType() == FileType.Directory) {
-                    // 递归删除子目录
-                    if (!deleteDirectoryRecursively(fileSystemName, childPath)) {
-                        log.error("递归删除子目录失败: fileSystemName={}, childPath={}", fileSystemName, childPath);
-                        return false;
+            if (!metadataStorage.exists(fileSystemName, getParentPath(dst))) {
+                throw new PathNotFoundException("目标父目录不存在: " + getParentPath(dst));
+            }
+            if (metadataStorage.exists(fileSystemName, dst)) {
+                throw new PathAlreadyExistsException("目标路径已存在: " + dst);
+            }
+            // 移入带配额的目录时同样检查配额
+            raftService.submit(new MetadataBatch().rename(fileSystemName, src, dst).checkQuota());
+            log.info("重命名成功: fileSystemName={}, {} -> {}", fileSystemName, src, dst);
+            return getFile(fileSystemName, dst);
+        } finally {
+            locks.close();
+        }
+    }
+    
+    /**
+     * 批量执行元数据操作
+     * 按顺序处理每个操作，后面的操作能看到前面操作的结果（如先mkdir再create子文件）；
+     * 所有变更累积到committed中，最后作为一条日志提交、一个WriteBatch应用，单个操作失败不影响其他操作；
+     * 删除目录时整棵子树随提交一起删除，DataServer上的数据由BlockGcService异步回收；
+     * 所有变更路径在处理前一次性加锁，整批的检查与提交对其他变更原子
+     */
+    public List<BatchResult> executeBatch(String fileSystemName, List<BatchOperation> operations) {
+        Set<String> writePaths = new HashSet<>();
+        for (BatchOperation operation : operations) {
+            String path = operation.getPath();
+            if (operation.getOp() != null && operation.getOp() != BatchOpType.STAT
+                    && operation.getOp() != BatchOpType.EXISTS && path != null && path.startsWith("/")) {
+                writePaths.add(path);
+            }
+        }
+        PathLockManager.Locks locks = pathLocks.lock(fileSystemName, writePaths);
+        try {
+            return executeBatchLocked(fileSystemName, operations);
+        } finally {
+            locks.close();
+        }
+    }
+    
+    private List<BatchResult> executeBatchLocked(String fileSystemName, List<BatchOperation> operations) {
+        List<BatchResult> results = new ArrayList<>(operations.size());
+        MetadataBatch committed = new MetadataBatch();
+        // 本批次内的未提交视图：path -> 新元数据，值为null表示已删除
+        Map<String, StatInfo> pending = new HashMap<>();
+        // 本批次内删除的路径，其后代在已提交数据中仍然存在，查询时需要屏蔽
+        Set<String> deleted = new HashSet<>();
+        
+        for (BatchOperation operation : operations) {
+            String path = operation.getPath();
+            if (operation.getOp() == null || path == null || !path.startsWith("/")) {
+                results.add(BatchResult.fail(operation, "参数错误"));
+                continue;
+            }
+            try {
+                switch (operation.getOp()) {
+                    case STAT -> {
+                        StatInfo statInfo = lookup(fileSystemName, pending, deleted, path);
+                        results.add(statInfo != null
+                                ? BatchResult.ok(operation, statInfo, "获取成功")
+                                : BatchResult.fail(operation, "文件/目录不存在"));
+                    }
+                    case EXISTS -> {
+                        StatInfo statInfo = lookup(fileSystemName, pending, deleted, path);
+                        results.add(BatchResult.ok(operation, statInfo, statInfo != null ? "文件存在" : "文件不存在"));
+                    }
+                    case MKDIR, CREATE -> {
+                        FileType type = operation.getOp() == BatchOpType.MKDIR ? FileType.Directory : FileType.File;
+                        StatInfo existing = lookup(fileSystemName, pending, deleted, path);
+                        if (existing != null) {
+                            results.add(BatchResult.ok(operation, existing, "文件/目录已存在"));
+                            continue;
+                        }
+                        // 补齐缺失的父目录
+                        String parentPath = getParentPath(path);
+                        List<String> missingParents = new ArrayList<>();
+                        while (!parentPath.equals("/") && lookup(fileSystemName, pending, deleted, parentPath) == null) {
+                            missingParents.add(0, parentPath);
+                            parentPath = getParentPath(parentPath);
+                        }
+                        for (String dir : missingParents) {
+                            StatInfo dirInfo = newStatInfo(dir, FileType.Directory);
+                            pending.put(dir, dirInfo);
+                            committed.put(fileSystemName, dir, dirInfo);
+                        }
+                        StatInfo statInfo = newStatInfo(path, type);
+                        if (type == FileType.File) {
+                            try {
+                                statInfo.setReplicaData(convertToReplicaData(newBlockPath(), selectReplicaTargets(), 0, 0));
+                            } catch (Exception e) {
+                                // 与单个create一致：选择失败也保存元数据，后续write时可以重试
+                                log.error("批量创建文件时选择DataServer失败: fileSystemName={}, path={}", fileSystemName, path, e);
+                            }
+                        }
+                        pending.put(path, statInfo);
+                        committed.put(fileSystemName, path, statInfo);
+                        results.add(BatchResult.ok(operation, statInfo, type == FileType.File ? "创建文件成功" : "创建目录成功"));
                     }
-                } else {
-                    // 删除子文件，先调用DataServer删除实际数据
-                    List<ReplicaData> replicas = child.getReplicaData();
-                    if (replicas != null && !replicas.isEmpty()) {
-                        int deletedCount = dataServerClient.deleteFromMultipleDataServers(fileSystemName, replicas);
-                        log.info("删除子文件: fileSystemName={}, childPath={}, 在DataServer上成功删除: {}/{}", 
-                                fileSystemName, childPath, deletedCount, replicas.size());
+                    case DELETE -> {
+                        StatInfo existing = lookup(fileSystemName, pending, deleted, path);
+                        if (existing == null) {
+                            results.add(BatchResult.fail(operation, "文件/目录不存在"));
+                            continue;
+                        }
+                        // 本批次内先前创建的后代一并作废
+                        String prefix = path.equals("/") ? "/" : path + "/";
+                        pending.replaceAll((p, v) -> p.startsWith(prefix) ? null : v);
+                        pending.put(path, null);
+                        deleted.add(path);
+                        committed.delete(fileSystemName, path);
+                        results.add(BatchResult.ok(operation, null, "删除成功"));
                     }
+                    default -> results.add(BatchResult.fail(operation, "不支持的操作类型"));
+                }
+            } catch (Exception e) {
+                log.error("批量操作失败: fileSystemName={}, op={}, path={}", fileSystemName, operation.getOp(), path, e);
+                results.add(BatchResult.fail(operation, "操作异常: " + e.getMessage()));
+            }
+        }
+        
+        try {
+            if (!committed.isEmpty()) {
+                raftService.submit(committed.checkQuota());
+            }
+        } catch (QuotaExceededException e) {
+            // 整批作为一个WriteBatch提交，超出配额时全部变更都未生效
+            log.warn("批量操作超出配额，全部变更未提交: fileSystemName={}, {}", fileSystemName, e.getMessage());
+            committed.clear();
+            for (int i = 0; i < results.size(); i++) {
+                BatchResult result = results.get(i);
+                BatchOpType op = operations.get(i).getOp();
+                if (result.isSuccess() && op != BatchOpType.STAT && op != BatchOpType.EXISTS) {
+                    results.set(i, BatchResult.fail(operations.get(i), "超出配额: " + e.getMessage()));
                 }
-                
-                // 删除子项的元数据
-                metadataStorage.deleteMetadata(fileSystemName, childPath);
             }
-            
-            log.info("目录 {} 的所有子项删除完成", dirPath);
-            return true;
-            
-        } catch (Exception e) {
-            log.error("递归删除目录异常: fileSystemName={}, dirPath={}", fileSystemName, dirPath, e);
-            return false;
         }
+        log.info("批量操作完成: fileSystemName={}, 操作数={}, 提交变更数={}", fileSystemName, operations.size(), committed.size());
+        return results;
     }
     
-
+    private StatInfo lookup(String fileSystemName, Map<String, StatInfo> pending, Set<String> deleted, String path) {
+        if (pending.containsKey(path)) {
+            return pending.get(path);
+        }
+        // 祖先在本批次内被删除：已提交数据中的该路径随子树一起删除
+        for (String ancestor = path; !ancestor.equals("/"); ) {
+            ancestor = getParentPath(ancestor);
+            if (deleted.contains(ancestor)) {
+                return null;
+            }
+        }
+        return metadataStorage.getMetadata(fileSystemName, path);
+    }
+    
+    private StatInfo newStatInfo(String path, FileType type) {
+        StatInfo statInfo = new StatInfo();
+        statInfo.setPath(path);
+        statInfo.setSize(0);
+        statInfo.setMtime(System.currentTimeMillis());
+        statInfo.setType(type);
+        return statInfo;
+    }
     
     /**
      * 获取所有数据服务器
@@ -503,41 +696,34 @@ public class MetaService {
     }
     
     /**
-     * 获取文件系统统计信息
+     * 获取文件系统统计信息（读取增量维护的计数器）
      */
     public Map<String, Object> getGlobalStats() {
-        Map<String, Object> stats = new HashMap<>();
-        List<StatInfo> allFiles = metadataStorage.getAllMetadata();
-        stats.put("totalFiles", allFiles.size());
-        stats.put("totalDirectories", (int) allFiles.stream()
-                .filter(f -> f.getType() == FileType.Directory).count());
-        stats.put("totalRegularFiles", (int) allFiles.stream()
-                .filter(f -> f.getType() == FileType.File).count());
-        long totalSize = allFiles.stream()
-                .filter(f -> f.getType() == FileType.File)
-                .mapToLong(StatInfo::getSize)
-                .sum();
-        stats.put("totalSize", totalSize);
-        return stats;
+        return toStatsMap(metadataStorage.getNamespaceStats());
     }
     
     /**
      * 获取指定文件系统的统计信息
      */
     public Map<String, Object> getFileSystemStats(String fileSystemName) {
-        Map<String, Object> stats = new HashMap<>();
-        List<StatInfo> allFiles = metadataStorage.getAllMetadata(fileSystemName);
+        Map<String, Object> stats = toStatsMap(metadataStorage.getNamespaceStats(fileSystemName));
         stats.put("fileSystemName", fileSystemName);
-        stats.put("totalFiles", allFiles.size());
-        stats.put("totalDirectories", (int) allFiles.stream()
-                .filter(f -> f.getType() == FileType.Directory).count());
-        stats.put("totalRegularFiles", (int) allFiles.stream()
-                .filter(f -> f.getType() == FileType.File).count());
-        long totalSize = allFiles.stream()
-                .filter(f -> f.getType() == FileType.File)
-                .mapToLong(StatInfo::getSize)
-                .sum();
-        stats.put("totalSize", totalSize);
+        return stats;
+    }
+    
+    /**
+     * 获取命名空间计数器
+     */
+    public NamespaceStats getNamespaceStats() {
+        return metadataStorage.getNamespaceStats();
+    }
+    
+    private static Map<String, Object> toStatsMap(NamespaceStats namespaceStats) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalFiles", namespaceStats.getFiles() + namespaceStats.getDirectories());
+        stats.put("totalDirectories", namespaceStats.getDirectories());
+        stats.put("totalRegularFiles", namespaceStats.getFiles());
+        stats.put("totalSize", namespaceStats.getTotalSize());
         return stats;
     }
 }
@@ -0,0 +1,173 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.EditLogEntry;
+import com.ksyun.campus.metaserver.domain.ReplicationType;
+import com.ksyun.campus.metaserver.domain.StatInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一组元数据变更，经RaftService提交为一条操作日志，复制到多数派后由各节点作为一个RocksDB WriteBatch原子应用
+ * 同一路径的多次变更按加入顺序生效；删除目录时连同子树一起删除，重命名只移动一条父子边
+ */
+public class MetadataBatch {
+
+    public static final class Entry {
+        private final String fileSystemName;
+        private final String path;
+        // statInfo、target、quota都为null表示删除
+        private final StatInfo statInfo;
+        // 重命名的目标路径
+        private final String target;
+        // 设置配额：{名字空间配额, 空间配额}
+        private final long[] quota;
+
+        private Entry(String fileSystemName, String path, StatInfo statInfo, String target, long[] quota) {
+            this.fileSystemName = fileSystemName;
+            this.path = path;
+            this.statInfo = statInfo;
+            this.target = target;
+            this.quota = quota;
+        }
+
+        public String getFileSystemName() {
+            return fileSystemName;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public StatInfo getStatInfo() {
+            return statInfo;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public long getNamespaceQuota() {
+            return quota[0];
+        }
+
+        public long getSpaceQuota() {
+            return quota[1];
+        }
+
+        public boolean isDelete() {
+            return statInfo == null && target == null && quota == null;
+        }
+
+        public boolean isRename() {
+            return target != null;
+        }
+
+        public boolean isSetQuota() {
+            return quota != null;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    // 应用时检查目录配额，只有客户端发起的变更需要；各节点在相同状态上检查，结果一致
+    private boolean quotaChecked;
+
+    public MetadataBatch put(String fileSystemName, String path, StatInfo statInfo) {
+        if (statInfo == null) {
+            throw new IllegalArgumentException("statInfo不能为空: " + path);
+        }
+        entries.add(new Entry(fileSystemName, path, statInfo, null, null));
+        return this;
+    }
+
+    public MetadataBatch delete(String fileSystemName, String path) {
+        entries.add(new Entry(fileSystemName, path, null, null, null));
+        return this;
+    }
+
+    public MetadataBatch rename(String fileSystemName, String path, String target) {
+        if (target == null) {
+            throw new IllegalArgumentException("重命名目标不能为空: " + path);
+        }
+        entries.add(new Entry(fileSystemName, path, null, target, null));
+        return this;
+    }
+
+    public MetadataBatch setQuota(String fileSystemName, String path, long namespaceQuota, long spaceQuota) {
+        entries.add(new Entry(fileSystemName, path, null, null, new long[]{namespaceQuota, spaceQuota}));
+        return this;
+    }
+
+    public MetadataBatch checkQuota() {
+        this.quotaChecked = true;
+        return this;
+    }
+
+    public boolean isQuotaChecked() {
+        return quotaChecked;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * 转为一条操作日志记录
+     */
+    public EditLogEntry toEditLogEntry(long txid, long term, long timestamp) {
+        EditLogEntry editLog = new EditLogEntry(txid, term, timestamp);
+        editLog.setQuotaChecked(quotaChecked);
+        for (Entry entry : entries) {
+            EditLogEntry.Op op = new EditLogEntry.Op();
+            op.setFileSystemName(entry.getFileSystemName());
+            op.setPath(entry.getPath());
+            if (entry.isDelete()) {
+                op.setType(ReplicationType.DELETE);
+            } else if (entry.isRename()) {
+                op.setType(ReplicationType.RENAME);
+                op.setTarget(entry.getTarget());
+            } else if (entry.isSetQuota()) {
+                op.setType(ReplicationType.SET_QUOTA);
+                op.setNamespaceQuota(entry.getNamespaceQuota());
+                op.setSpaceQuota(entry.getSpaceQuota());
+            } else {
+                op.setType(ReplicationType.PUT);
+                op.setStatInfo(entry.getStatInfo());
+            }
+            editLog.getOps().add(op);
+        }
+        return editLog;
+    }
+
+    /**
+     * 从操作日志记录还原批次
+     */
+    public static MetadataBatch of(EditLogEntry editLog) {
+        MetadataBatch batch = new MetadataBatch();
+        for (EditLogEntry.Op op : editLog.getOps()) {
+            switch (op.getType()) {
+                case PUT -> batch.put(op.getFileSystemName(), op.getPath(), op.getStatInfo());
+                case DELETE -> batch.delete(op.getFileSystemName(), op.getPath());
+                case RENAME -> batch.rename(op.getFileSystemName(), op.getPath(), op.getTarget());
+                case SET_QUOTA -> batch.setQuota(op.getFileSystemName(), op.getPath(), op.getNamespaceQuota(), op.getSpaceQuota());
+            }
+        }
+        if (editLog.isQuotaChecked()) {
+            batch.checkQuota();
+        }
+        return batch;
+    }
+}
@@ -1,119 +1,1994 @@
 package com.ksyun.campus.metaserver.services;
 
+import com.ksyun.campus.metaserver.domain.ContentSummary;
+import com.ksyun.campus.metaserver.domain.EditLogEntry;
+import com.ksyun.campus.metaserver.domain.FileType;
+import com.ksyun.campus.metaserver.domain.GcTask;
+import com.ksyun.campus.metaserver.domain.Inode;
+import com.ksyun.campus.metaserver.domain.NamespaceStats;
+import com.ksyun.campus.metaserver.domain.ReplicaData;
+import com.ksyun.campus.metaserver.domain.SnapshotManifest;
 import com.ksyun.campus.metaserver.domain.StatInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ksyun.campus.metaserver.config.RocksDbProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.rocksdb.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
+/**
+ * 元数据存储（inode表）
+ * 列族与键空间：
+ *   namespace 0x01 {inodeId}{fs}             -> inode记录（父ID、名称、类型、大小、副本）
+ *   namespace 0x02 {parentId}{fs}:{name}     -> 子节点inodeId，同一目录的子项连续存放
+ *   namespace 0x08 {dirId}{fs}               -> 目录子树汇总（文件数、目录数、字节数），不含目录自身
+ *   namespace 0x09 {dirId}{fs}               -> 目录配额（名字空间配额、空间配额），根目录的配额即文件系统配额
+ *   blockmap  0x05 {dsNodeId}                -> DataServer地址（inode记录中只存字典ID）
+ *   blockmap  0x06 {seq}                     -> 待回收的DataServer副本（GcTask），与删除同批提交
+ *   replog    {txid}                         -> 操作日志即Raft日志（EditLogEntry），先于应用同步落盘，应用后只保留最近的一段
+ *   default   0x03 {fs}                      -> 文件系统注册
+ *   default   0x04 nextInodeId               -> inode ID分配水位
+ *   default   0x04 aggregates                -> 目录汇总已建立的标记
+ *   default   0x04 lastTxid                  -> 最后应用的txid与term，与变更同批提交
+ *   default   0x04 logStart                  -> 已裁剪（或由快照覆盖）部分的最后一条txid与term
+ *   default   0x04 raftState                 -> Raft持久状态：当前任期与投票对象
+ *   default   0x04 installing                -> 快照安装中的标记，启动时存在说明安装中断
+ *   default   0x07 {fs}                      -> 命名空间计数器（NamespaceStats），与变更同批提交
+ * namespace列族的键以定长的 类型+ID（9字节）开头，前缀提取器与前缀布隆过滤器按此切分，
+ * 列目录的前缀seek与getMetadata/exists的点查都能在不读数据块的情况下排除无关SST。
+ * inode记录使用InodeCodec二进制编码，旧的JSON记录在读取时兼容并择机重写
+ * 路径只在遍历时拼接，前缀不重复存储；堆内只有定长的dentry/inode缓存，占用与命名空间大小无关
+ * 快照：在一致的RocksDB快照上把namespace、blockmap列族与default列族的状态键顺序写成SST文件，
+ * Follower拉取后用ingestExternalFile整体导入，不经过逐条解码与重写
+ */
 @Slf4j
 @Service
 public class MetadataStorageService {
     
+    private static final byte INODE_PREFIX = 0x01;
+    private static final byte EDGE_PREFIX = 0x02;
+    private static final byte FS_PREFIX = 0x03;
+    private static final byte[] NEXT_INODE_ID_KEY = {0x04, 'n', 'e', 'x', 't', 'I', 'n', 'o', 'd', 'e', 'I', 'd'};
+    private static final byte DS_DICT_PREFIX = 0x05;
+    private static final byte GC_PREFIX = 0x06;
+    private static final byte STATS_PREFIX = 0x07;
+    private static final byte AGGREGATE_PREFIX = 0x08;
+    private static final byte QUOTA_PREFIX = 0x09;
+    // 配额未设置
+    public static final long QUOTA_UNSET = -1L;
+    private static final byte[] AGGREGATES_READY_KEY = {0x04, 'a', 'g', 'g', 'r', 'e', 'g', 'a', 't', 'e', 's'};
+    private static final byte[] LAST_TXID_KEY = {0x04, 'l', 'a', 's', 't', 'T', 'x', 'i', 'd'};
+    private static final byte[] LOG_START_KEY = {0x04, 'l', 'o', 'g', 'S', 't', 'a', 'r', 't'};
+    private static final byte[] RAFT_STATE_KEY = {0x04, 'r', 'a', 'f', 't', 'S', 't', 'a', 't', 'e'};
+    private static final byte[] INSTALLING_KEY = {0x04, 'i', 'n', 's', 't', 'a', 'l', 'l', 'i', 'n', 'g'};
+    // 存在即表示边的键已是 类型+父ID+名称长度+名称 的布局
+    private static final byte[] EDGE_LAYOUT_KEY = {0x04, 'e', 'd', 'g', 'e', 'L', 'a', 'y', 'o', 'u', 't'};
+    // 操作日志超出保留条数这么多之后才裁剪一次，避免每次提交都写范围删除
+    private static final long EDIT_LOG_TRIM_INTERVAL = 1024;
+    // 每条GC任务最多携带的副本数
+    private static final int GC_TASK_MAX_REPLICAS = 1000;
+    
+    private static final String NAMESPACE_CF = "namespace";
+    private static final String BLOCK_MAP_CF = "blockmap";
+    private static final String REPLICATION_LOG_CF = "replog";
+    // namespace列族的前缀长度：类型(1B) + inodeId/parentId(8B)
+    private static final int NAMESPACE_PREFIX_LENGTH = 1 + Long.BYTES;
+    
+    // 每个文件系统的根目录使用固定ID，普通inode从2开始分配
+    public static final long ROOT_INODE_ID = 1L;
+    private static final long NO_INODE = -1L;
+    
+    // 旧格式数据迁移时每批提交的条数
+    private static final int MIGRATION_BATCH_SIZE = 10000;
+    
+    private static final String SNAPSHOT_DIR_PREFIX = "snap-";
+    private static final String RECEIVE_DIR_PREFIX = "recv-";
+    
     private RocksDB rocksDB;
+    private ColumnFamilyHandle namespaceCf;
+    private ColumnFamilyHandle blockMapCf;
+    private ColumnFamilyHandle replicationLogCf;
+    // RocksDB原生对象，随数据库一起关闭
+    private final List<AutoCloseable> nativeResources = new ArrayList<>();
+    private final List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>();
+    // 生成快照SST时沿用各列族的表配置（布隆过滤器、前缀提取器），导入后无需等待压缩即可高效读取
+    private DBOptions dbOptions;
+    private final Map<String, ColumnFamilyOptions> columnFamilyOptionsByName = new HashMap<>();
+    private LRUCache blockCache;
+    // 列目录：迭代限定在seek键的前缀内，可使用前缀布隆过滤器
+    private ReadOptions prefixReadOptions;
+    // 跨前缀的全量扫描
+    private ReadOptions totalOrderReadOptions;
+    // 批次内点查（合并WriteBatchWithIndex中未提交的变更）
+    private ReadOptions pointReadOptions;
+    
+    @Autowired
+    private RocksDbProperties rocksDbProperties;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InodeCodec inodeCodec = new InodeCodec(new DataServerDictionaryImpl(), objectMapper);
+    
+    // 所有命名空间写入（日志应用、快照安装与旧格式记录重写）串行执行
+    private final ReentrantLock writeLock = new ReentrantLock();
+    
+    // DataServer地址字典，数量很小，常驻内存
+    private final Map<String, Integer> dsNodeIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> dsNodeNames = new ConcurrentHashMap<>();
     
     // 从配置文件读取RocksDB路径
     @Value("${metadata.storage.path:./rocksdb_metadata}")
     private String dbPath;
     
-    // 缓存全局路径集合（按文件系统分组）
-    private final Map<String, Set<String>> fileSystemPaths = new ConcurrentHashMap<>();
+    @Value("${metadata.cache.dentry-size:65536}")
+    private int dentryCacheSize;
+    
+    @Value("${metadata.cache.inode-size:65536}")
+    private int inodeCacheSize;
+    
+    @Value("${metadata.cache.stat-size:65536}")
+    private int statCacheSize;
+    
+    // 已应用的操作日志保留条数，落后更多的Follower改用快照追赶
+    @Value("${metadata.editlog.retain:100000}")
+    private long editLogRetain;
+    
+    // 快照目录，未配置时使用 {dbPath}_snapshots；Leader生成的快照与Follower接收中的快照都在这里
+    @Value("${metadata.snapshot.path:}")
+    private String snapshotPath;
+    
+    // 单个快照SST文件的大小上限
+    @Value("${metadata.snapshot.file-size-mb:64}")
+    private long snapshotFileSizeMb;
+    
+    // Leader最近生成的快照，日志仍能从它的txid接上时供各Follower复用（断点续传依赖同一个快照ID）
+    private volatile SnapshotManifest latestSnapshot;
+    private final Object snapshotLock = new Object();
+    
+    // 下一个可分配的inode ID，只在应用日志（串行）时推进
+    private volatile long nextInodeId = ROOT_INODE_ID + 1;
+    
+    // 最后应用的txid及其term，只在应用日志时推进；txidMonitor用于等待应用进度
+    private volatile long lastTxid;
+    private volatile long lastTxidTerm;
+    private final Object txidMonitor = new Object();
+    
+    // 操作日志实际保存 (logStartTxid, lastLogTxid]；日志的追加与截断由RaftNode串行调用
+    private volatile long logStartTxid;
+    private volatile long logStartTerm;
+    private volatile long lastLogTxid;
+    private volatile long lastLogTerm;
+    
+    // Raft持久状态
+    private volatile long currentTerm;
+    private volatile String votedFor;
+    
+    // 下一个GC任务序号，只在应用日志时推进；gcQueueSize为待回收任务数
+    private long nextGcSeq = 1;
+    private final AtomicLong gcQueueSize = new AtomicLong();
+    
+    // 设置了配额的目录 -> {名字空间配额, 空间配额}；数量很少，常驻内存，没有配额的写入不产生额外读取
+    private final Map<DirRef, long[]> quotas = new ConcurrentHashMap<>();
+    
+    // 文件系统名称 -> 命名空间计数器；提交时整体替换为新对象，读者拿到的总是某次提交后的完整快照
+    private final Map<String, NamespaceStats> namespaceStats = new ConcurrentHashMap<>();
+    
+    // (fs, parentId, name) -> childId
+    private DirectMappedCache<Dentry> dentryCache;
+    // (fs, inodeId) -> inode
+    private DirectMappedCache<CachedInode> inodeCache;
+    // 每次提交后递增；读路径在读盘前后比对，期间有提交则不回填缓存，避免缓存旧值
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    // (fs, path) -> StatInfo，热点stat直接从内存返回
+    private StatInfoCache statCache;
+    
+    private record Dentry(String fileSystemName, long parentId, String name, long childId) {}
+    
+    private record CachedInode(String fileSystemName, Inode inode) {}
+    
+    private record DirRef(String fileSystemName, long id) {}
+    
+    /**
+     * 目录子树汇总，也用作单个节点对父目录汇总的贡献
+     */
+    private static final class DirAggregate {
+        long files;
+        long directories;
+        long bytes;
+        
+        /**
+         * 节点自身的贡献（不含子树）
+         */
+        static DirAggregate of(Inode inode) {
+            DirAggregate aggregate = new DirAggregate();
+            if (inode.getType() == FileType.Directory) {
+                aggregate.directories = 1;
+            } else {
+                aggregate.files = 1;
+                aggregate.bytes = inode.getSize();
+            }
+            return aggregate;
+        }
+        
+        static DirAggregate decode(byte[] value) {
+            DirAggregate aggregate = new DirAggregate();
+            if (value != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(value);
+                aggregate.files = buffer.getLong();
+                aggregate.directories = buffer.getLong();
+                aggregate.bytes = buffer.getLong();
+            }
+            return aggregate;
+        }
+        
+        byte[] encode() {
+            return ByteBuffer.allocate(3 * Long.BYTES).putLong(files).putLong(directories).putLong(bytes).array();
+        }
+        
+        DirAggregate add(DirAggregate other, int sign) {
+            files += sign * other.files;
+            directories += sign * other.directories;
+            bytes += sign * other.bytes;
+            return this;
+        }
+        
+        boolean isZero() {
+            return files == 0 && directories == 0 && bytes == 0;
+        }
+    }
+    
+    /**
+     * 一次批次应用过程中的中间状态
+     */
+    private static final class BatchState {
+        // 带索引的WriteBatch，子树删除时能读到本批次内尚未提交的子项
+        final WriteBatchWithIndex writeBatch;
+        // 本批次内已解析/新建/删除的路径：{fs}:{path} -> inodeId，NO_INODE表示已删除
+        final Map<String, Long> resolved = new HashMap<>();
+        // 计数器增量：fs -> 本批次的变化量
+        final Map<String, NamespaceStats> statsDeltas = new HashMap<>();
+        // 目录汇总增量，只记在直接父目录上，提交前再沿祖先链合并
+        final Map<DirRef, DirAggregate> aggregateDeltas = new HashMap<>();
+        // 本批次设置或随目录删除的配额，提交后同步到内存，null表示移除
+        final Map<DirRef, long[]> quotaUpdates = new LinkedHashMap<>();
+        final List<Dentry> removedDentries = new ArrayList<>();
+        final Set<Long> touchedInodeHashes = new HashSet<>();
+        // 需要失效的StatInfo缓存：{fs, path}；removedDirs中的目录连同子树一起失效
+        final List<String[]> touchedPaths = new ArrayList<>();
+        final List<String[]> removedDirs = new ArrayList<>();
+        // 被删除文件的副本：fs -> 副本，提交时写成GC任务
+        final Map<String, List<ReplicaData>> garbage = new HashMap<>();
+        long nextInodeId;
+        // 批次的时间戳，自动创建目录的mtime与GC任务的创建时间取此值，各节点重放结果一致
+        final long timestamp;
+        
+        BatchState(WriteBatchWithIndex writeBatch, long nextInodeId, long timestamp) {
+            this.writeBatch = writeBatch;
+            this.nextInodeId = nextInodeId;
+            this.timestamp = timestamp;
+        }
+        
+        void count(String fileSystemName, Inode inode, int sign) {
+            statsDeltas.computeIfAbsent(fileSystemName, k -> new NamespaceStats()).addInode(inode, sign);
+        }
+        
+        void aggregate(String fileSystemName, long dirId, DirAggregate delta, int sign) {
+            aggregateDeltas.computeIfAbsent(new DirRef(fileSystemName, dirId), k -> new DirAggregate()).add(delta, sign);
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        try {
+            log.info("初始化RocksDB，路径: {}", dbPath);
+            
+            File dbDir = new File(dbPath);
+            if (!dbDir.exists()) {
+                dbDir.mkdirs();
+                log.info("创建RocksDB目录: {}", dbPath);
+            }
+            
+            if (snapshotPath == null || snapshotPath.isEmpty()) {
+                snapshotPath = dbPath + "_snapshots";
+            }
+            removeSnapshotDirs(SNAPSHOT_DIR_PREFIX, null);
+            
+            openDatabase();
+            log.info("RocksDB初始化成功，路径: {}，块缓存: {}MB，布隆过滤器: {} bits/key",
+                    dbPath, rocksDbProperties.getBlockCacheSizeMb(), rocksDbProperties.getBloomBitsPerKey());
+            
+            migrateEdgeLayout();
+            migrateToColumnFamilies();
+            
+            dentryCache = new DirectMappedCache<>(dentryCacheSize);
+            inodeCache = new DirectMappedCache<>(inodeCacheSize);
+            statCache = new StatInfoCache(statCacheSize, cacheGeneration);
+            
+            // 先处理中断的快照安装，再加载依赖命名空间的内存状态
+            loadEditLog();
+            
+            loadDataServerDictionary();
+            loadGcQueue();
+            loadQuotas();
+            
+            byte[] nextId = rocksDB.get(NEXT_INODE_ID_KEY);
+            if (nextId != null) {
+                nextInodeId = ByteBuffer.wrap(nextId).getLong();
+            }
+            
+            // 先加载文件系统列表，再迁移按路径存储的旧数据
+            loadFileSystems();
+            migrateLegacyKeys();
+            if (rocksDB.get(AGGREGATES_READY_KEY) == null) {
+                rebuildAggregates();
+            }
+            
+        } catch (RocksDBException e) {
+            log.error("RocksDB初始化失败，路径: {}", dbPath, e);
+            throw new RuntimeException("RocksDB初始化失败: " + dbPath, e);
+        } catch (Exception e) {
+            log.error("RocksDB初始化过程中发生未知错误", e);
+            throw new RuntimeException("RocksDB初始化失败", e);
+        }
+    }
+    
+    /**
+     * 按RocksDbProperties打开数据库：所有列族共享一个LRU块缓存，namespace列族配置前缀提取器与布隆过滤器
+     */
+    private void openDatabase() throws RocksDBException {
+        RocksDB.loadLibrary();
+        RocksDbProperties props = rocksDbProperties;
+        blockCache = new LRUCache(props.getBlockCacheSizeMb() * 1024 * 1024);
+        nativeResources.add(blockCache);
+        
+        dbOptions = new DBOptions()
+                .setCreateIfMissing(true)
+                .setCreateMissingColumnFamilies(true)
+                .setMaxBackgroundJobs(props.getMaxBackgroundJobs());
+        nativeResources.add(dbOptions);
+        
+        ColumnFamilyOptions defaultOptions = columnFamilyOptions(false, false);
+        ColumnFamilyOptions namespaceOptions = columnFamilyOptions(true, true);
+        ColumnFamilyOptions blockMapOptions = columnFamilyOptions(true, false);
+        // 复制日志只追加、顺序读，不需要布隆过滤器
+        ColumnFamilyOptions replicationLogOptions = columnFamilyOptions(false, false);
+        
+        List<ColumnFamilyDescriptor> descriptors = List.of(
+                new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, defaultOptions),
+                new ColumnFamilyDescriptor(NAMESPACE_CF.getBytes(StandardCharsets.UTF_8), namespaceOptions),
+                new ColumnFamilyDescriptor(BLOCK_MAP_CF.getBytes(StandardCharsets.UTF_8), blockMapOptions),
+                new ColumnFamilyDescriptor(REPLICATION_LOG_CF.getBytes(StandardCharsets.UTF_8), replicationLogOptions));
+        columnFamilyOptionsByName.put(new String(RocksDB.DEFAULT_COLUMN_FAMILY, StandardCharsets.UTF_8), defaultOptions);
+        columnFamilyOptionsByName.put(NAMESPACE_CF, namespaceOptions);
+        columnFamilyOptionsByName.put(BLOCK_MAP_CF, blockMapOptions);
+        rocksDB = RocksDB.open(dbOptions, dbPath, descriptors, columnFamilyHandles);
+        namespaceCf = columnFamilyHandles.get(1);
+        blockMapCf = columnFamilyHandles.get(2);
+        replicationLogCf = columnFamilyHandles.get(3);
+        
+        prefixReadOptions = new ReadOptions().setPrefixSameAsStart(true);
+        totalOrderReadOptions = new ReadOptions().setTotalOrderSeek(true);
+        pointReadOptions = new ReadOptions();
+        nativeResources.add(pointReadOptions);
+        nativeResources.add(prefixReadOptions);
+        nativeResources.add(totalOrderReadOptions);
+    }
+    
+    private ColumnFamilyOptions columnFamilyOptions(boolean bloomFilter, boolean prefixExtractor) {
+        RocksDbProperties props = rocksDbProperties;
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig()
+                .setBlockCache(blockCache)
+                .setBlockSize(props.getBlockSizeKb() * 1024)
+                .setCacheIndexAndFilterBlocks(props.isCacheIndexAndFilterBlocks())
+                .setPinL0FilterAndIndexBlocksInCache(props.isCacheIndexAndFilterBlocks())
+                .setWholeKeyFiltering(props.isWholeKeyFiltering());
+        if (bloomFilter && props.getBloomBitsPerKey() > 0) {
+            BloomFilter filter = new BloomFilter(props.getBloomBitsPerKey());
+            nativeResources.add(filter);
+            tableConfig.setFilterPolicy(filter);
+        }
+        
+        ColumnFamilyOptions options = new ColumnFamilyOptions()
+                .setTableFormatConfig(tableConfig)
+                .setWriteBufferSize(props.getWriteBufferSizeMb() * 1024 * 1024)
+                .setMaxWriteBufferNumber(props.getMaxWriteBufferNumber())
+                .setLevel0SlowdownWritesTrigger(props.getLevel0SlowdownWritesTrigger())
+                .setLevel0StopWritesTrigger(props.getLevel0StopWritesTrigger());
+        if (prefixExtractor) {
+            options.useFixedLengthPrefixExtractor(NAMESPACE_PREFIX_LENGTH);
+            options.setMemtablePrefixBloomSizeRatio(props.getMemtablePrefixBloomRatio());
+        }
+        nativeResources.add(options);
+        return options;
+    }
+    
+    /**
+     * 将单列族布局（inode/边/字典都在default列族，键以{fs}开头）迁移到独立列族
+     * inode与边的键改为 类型+ID 开头以匹配前缀提取器；迁移为一次性操作
+     */
+    private void migrateToColumnFamilies() throws RocksDBException {
+        long migrated = 0;
+        try (RocksIterator iterator = rocksDB.newIterator(totalOrderReadOptions);
+             WriteOptions writeOptions = new WriteOptions()) {
+            WriteBatch batch = new WriteBatch();
+            try {
+                for (iterator.seek(new byte[]{INODE_PREFIX}); iterator.isValid() && iterator.key()[0] <= DS_DICT_PREFIX; iterator.next()) {
+                    byte[] key = iterator.key();
+                    byte[] value = iterator.value();
+                    if (key[0] == INODE_PREFIX) {
+                        // 0x01 {fs}:{id}
+                        String fileSystemName = new String(key, 1, key.length - 2 - Long.BYTES, StandardCharsets.UTF_8);
+                        long id = ByteBuffer.wrap(key, key.length - Long.BYTES, Long.BYTES).getLong();
+                        batch.put(namespaceCf, inodeKey(fileSystemName, id), value);
+                    } else if (key[0] == EDGE_PREFIX) {
+                        // 0x02 {fs}:{parentId}{name}
+                        int colon = indexOf(key, (byte) ':', 1);
+                        String fileSystemName = new String(key, 1, colon - 1, StandardCharsets.UTF_8);
+                        long parentId = ByteBuffer.wrap(key, colon + 1, Long.BYTES).getLong();
+                        int nameStart = colon + 1 + Long.BYTES;
+                        String name = new String(key, nameStart, key.length - nameStart, StandardCharsets.UTF_8);
+                        batch.put(namespaceCf, edgeKey(fileSystemName, parentId, name), value);
+                    } else if (key[0] == DS_DICT_PREFIX) {
+                        batch.put(blockMapCf, key, value);
+                    } else {
+                        continue;
+                    }
+                    batch.delete(key);
+                    if (++migrated % MIGRATION_BATCH_SIZE == 0) {
+                        rocksDB.write(writeOptions, batch);
+                        batch.close();
+                        batch = new WriteBatch();
+                    }
+                }
+                rocksDB.write(writeOptions, batch);
+            } finally {
+                batch.close();
+            }
+        }
+        if (migrated > 0) {
+            log.info("单列族元数据迁移到独立列族完成: {} 条", migrated);
+        }
+    }
+    
+    /**
+     * 边的键原为 0x02 {parentId}{fs}:{name}，文件系统名称本身可以含':'，
+     * "a"的根目录前缀会匹配到"a:b"根目录下的边；改为在名称前写入文件系统名称的长度
+     * 旧键按已知文件系统中最长的匹配名称解析；必须在其他步骤写入新布局的边之前执行
+     */
+    private void migrateEdgeLayout() throws RocksDBException {
+        if (rocksDB.get(EDGE_LAYOUT_KEY) != null) {
+            return;
+        }
+        List<byte[]> fileSystems = new ArrayList<>();
+        try (RocksIterator iterator = rocksDB.newIterator()) {
+            for (iterator.seek(new byte[]{FS_PREFIX}); iterator.isValid() && iterator.key()[0] == FS_PREFIX; iterator.next()) {
+                fileSystems.add(Arrays.copyOfRange(iterator.key(), 1, iterator.key().length));
+            }
+        }
+        fileSystems.sort((a, b) -> Integer.compare(b.length, a.length));
+        long migrated = 0;
+        try (RocksIterator iterator = rocksDB.newIterator(namespaceCf, totalOrderReadOptions);
+             WriteOptions writeOptions = new WriteOptions()) {
+            WriteBatch batch = new WriteBatch();
+            try {
+                for (iterator.seek(new byte[]{EDGE_PREFIX}); iterator.isValid() && iterator.key()[0] == EDGE_PREFIX; iterator.next()) {
+                    byte[] key = iterator.key();
+                    byte[] fs = null;
+                    for (byte[] candidate : fileSystems) {
+                        int end = NAMESPACE_PREFIX_LENGTH + candidate.length;
+                        if (end < key.length && key[end] == ':'
+                                && Arrays.equals(key, NAMESPACE_PREFIX_LENGTH, end, candidate, 0, candidate.length)) {
+                            fs = candidate;
+                            break;
+                        }
+                    }
+                    if (fs == null) {
+                        log.warn("跳过无法识别文件系统的边: {}", Arrays.toString(key));
+                        continue;
+                    }
+                    long parentId = ByteBuffer.wrap(key, 1, Long.BYTES).getLong();
+                    int nameStart = NAMESPACE_PREFIX_LENGTH + fs.length + 1;
+                    String name = new String(key, nameStart, key.length - nameStart, StandardCharsets.UTF_8);
+                    batch.delete(namespaceCf, key);
+                    batch.put(namespaceCf, edgeKey(new String(fs, StandardCharsets.UTF_8), parentId, name), iterator.value());
+                    if (++migrated % MIGRATION_BATCH_SIZE == 0) {
+                        rocksDB.write(writeOptions, batch);
+                        batch.close();
+                        batch = new WriteBatch();
+                    }
+                }
+                batch.put(EDGE_LAYOUT_KEY, new byte[0]);
+                rocksDB.write(writeOptions, batch);
+            } finally {
+                batch.close();
+            }
+        }
+        if (migrated > 0) {
+            log.info("边的键迁移为带文件系统名称长度的布局: {} 条", migrated);
+        }
+    }
+    
+    private static int indexOf(byte[] bytes, byte target, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void loadDataServerDictionary() {
+        try (RocksIterator iterator = rocksDB.newIterator(blockMapCf)) {
+            for (iterator.seek(new byte[]{DS_DICT_PREFIX}); iterator.isValid() && iterator.key()[0] == DS_DICT_PREFIX; iterator.next()) {
+                int id = ByteBuffer.wrap(iterator.key(), 1, Integer.BYTES).getInt();
+                String dsNode = new String(iterator.value(), StandardCharsets.UTF_8);
+                dsNodeIds.put(dsNode, id);
+                dsNodeNames.put(id, dsNode);
+            }
+        }
+        log.info("DataServer地址字典加载完成: {} 项", dsNodeIds.size());
+    }
+    
+    /**
+     * DataServer地址字典：新地址立即落盘后才会被inode记录引用，孤立的字典项无害
+     */
+    private final class DataServerDictionaryImpl implements InodeCodec.DataServerDictionary {
+        @Override
+        public int intern(String dsNode) {
+            Integer id = dsNodeIds.get(dsNode);
+            if (id != null) {
+                return id;
+            }
+            synchronized (dsNodeIds) {
+                id = dsNodeIds.get(dsNode);
+                if (id != null) {
+                    return id;
+                }
+                int newId = dsNodeIds.size() + 1;
+                byte[] key = ByteBuffer.allocate(1 + Integer.BYTES).put(DS_DICT_PREFIX).putInt(newId).array();
+                try {
+                    rocksDB.put(blockMapCf, key, dsNode.getBytes(StandardCharsets.UTF_8));
+                } catch (RocksDBException e) {
+                    throw new RuntimeException("写入DataServer地址字典失败: " + dsNode, e);
+                }
+                dsNodeNames.put(newId, dsNode);
+                dsNodeIds.put(dsNode, newId);
+                return newId;
+            }
+        }
+        
+        @Override
+        public String lookup(int id) {
+            return dsNodeNames.get(id);
+        }
+    }
+    
+    /**
+     * 加载文件系统列表与持久化的计数器
+     * 升级前的数据没有计数器，此时遍历一次该文件系统的inode重建并落盘，之后启动不再扫描
+     */
+    private void loadFileSystems() throws Exception {
+        namespaceStats.clear();
+        List<String> fileSystems = new ArrayList<>();
+        try (RocksIterator iterator = rocksDB.newIterator()) {
+            for (iterator.seek(new byte[]{FS_PREFIX}); iterator.isValid() && iterator.key()[0] == FS_PREFIX; iterator.next()) {
+                fileSystems.add(new String(iterator.key(), 1, iterator.key().length - 1, StandardCharsets.UTF_8));
+            }
+        }
+        Set<String> missing = new HashSet<>();
+        for (String fileSystemName : fileSystems) {
+            byte[] value = rocksDB.get(statsKey(fileSystemName));
+            if (value == null) {
+                missing.add(fileSystemName);
+            } else {
+                namespaceStats.put(fileSystemName, objectMapper.readValue(value, NamespaceStats.class));
+            }
+        }
+        if (!missing.isEmpty()) {
+            rebuildNamespaceStats(missing);
+        }
+        for (Map.Entry<String, NamespaceStats> entry : namespaceStats.entrySet()) {
+            NamespaceStats stats = entry.getValue();
+            log.info("文件系统 {}: {} 个文件, {} 个目录, {} 字节", entry.getKey(), stats.getFiles(), stats.getDirectories(), stats.getTotalSize());
+        }
+        log.info("文件系统加载完成，共 {} 个文件系统，下一个inode ID: {}", namespaceStats.size(), nextInodeId);
+    }
+    
+    private void rebuildNamespaceStats(Set<String> fileSystems) throws Exception {
+        Map<String, NamespaceStats> rebuilt = new HashMap<>();
+        for (String fileSystemName : fileSystems) {
+            rebuilt.put(fileSystemName, new NamespaceStats());
+        }
+        // inode键以ID开头、文件系统名称在键尾，一次扫描按名称分别累计
+        try (RocksIterator iterator = rocksDB.newIterator(namespaceCf, totalOrderReadOptions)) {
+            for (iterator.seek(new byte[]{INODE_PREFIX}); iterator.isValid() && iterator.key()[0] == INODE_PREFIX; iterator.next()) {
+                byte[] key = iterator.key();
+                NamespaceStats stats = rebuilt.get(new String(key, NAMESPACE_PREFIX_LENGTH, key.length - NAMESPACE_PREFIX_LENGTH, StandardCharsets.UTF_8));
+                if (stats != null) {
+                    stats.addInode(inodeCodec.decode(iterator.value()), 1);
+                }
+            }
+        }
+        try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+            for (Map.Entry<String, NamespaceStats> entry : rebuilt.entrySet()) {
+                batch.put(statsKey(entry.getKey()), objectMapper.writeValueAsBytes(entry.getValue()));
+            }
+            rocksDB.write(writeOptions, batch);
+        }
+        namespaceStats.putAll(rebuilt);
+        log.info("重建文件系统计数器: {}", fileSystems);
+    }
+    
+    /**
+     * 将按路径存储的旧格式数据（{fs}:{path} 或 {fs}:{parentPath}\0{name}）迁移为inode表
+     * 旧键以可见字符开头，与新键的前缀字节不冲突；迁移为一次性操作
+     */
+    private void migrateLegacyKeys() throws RocksDBException {
+        Map<String, TreeMap<String, StatInfo>> legacy = new HashMap<>();
+        List<byte[]> legacyKeys = new ArrayList<>();
+        try (RocksIterator iterator = rocksDB.newIterator()) {
+            for (iterator.seek(new byte[]{0x20}); iterator.isValid(); iterator.next()) {
+                String key = new String(iterator.key(), StandardCharsets.UTF_8);
+                legacyKeys.add(iterator.key());
+                String[] parts = key.split(":", 2);
+                if (parts.length != 2) {
+                    continue;
+                }
+                String path = parts[1];
+                int separator = path.indexOf('\u0000');
+                if (separator >= 0) {
+                    String parentPath = path.substring(0, separator);
+                    String name = path.substring(separator + 1);
+                    path = parentPath.isEmpty() ? "/" : (parentPath.equals("/") ? "/" + name : parentPath + "/" + name);
+                }
+                try {
+                    StatInfo statInfo = objectMapper.readValue(iterator.value(), StatInfo.class);
+                    legacy.computeIfAbsent(parts[0], k -> new TreeMap<>()).put(path, statInfo);
+                } catch (Exception e) {
+                    log.warn("跳过无法解析的旧格式元数据: {}", key, e);
+                }
+            }
+        }
+        if (legacyKeys.isEmpty()) {
+            return;
+        }
+        
+        log.info("发现 {} 条旧格式元数据，开始迁移为inode表", legacyKeys.size());
+        // TreeMap按路径排序，父目录总在子项之前
+        for (Map.Entry<String, TreeMap<String, StatInfo>> fs : legacy.entrySet()) {
+            MetadataBatch batch = new MetadataBatch();
+            for (Map.Entry<String, StatInfo> entry : fs.getValue().entrySet()) {
+                batch.put(fs.getKey(), entry.getKey(), entry.getValue());
+                if (batch.size() >= MIGRATION_BATCH_SIZE) {
+                    applyLocalBatch(batch);
+                    batch = new MetadataBatch();
+                }
+            }
+            applyLocalBatch(batch);
+        }
+        try (WriteBatch cleanup = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+            for (byte[] key : legacyKeys) {
+                cleanup.delete(key);
+            }
+            rocksDB.write(writeOptions, cleanup);
+        }
+        log.info("旧格式元数据迁移完成: {} 条", legacyKeys.size());
+    }
+    
+    /**
+     * 直接应用一个不经过操作日志的本地批次（旧数据迁移），不推进txid水位
+     */
+    private void applyLocalBatch(MetadataBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            applyBatchLocked(batch, null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * 应用一个批次：所有变更写入同一个WriteBatch，一次落盘，要么全部可见要么全部不可见。
+     * 应用串行执行，inode ID分配与路径解析不会并发冲突；缺失的父目录在同一批次中自动创建。
+     * editLog不为null时txid水位与变更写入同一个WriteBatch；变更不合法或超出配额时整批不生效，但水位照常推进
+     */
+    private void applyBatchLocked(MetadataBatch batch, EditLogEntry editLog) {
+        BatchState state;
+        Map<String, NamespaceStats> updatedStats;
+        long gcSeq = nextGcSeq;
+        try (WriteBatchWithIndex writeBatch = new WriteBatchWithIndex(true); WriteOptions writeOptions = new WriteOptions()) {
+            state = new BatchState(writeBatch, nextInodeId, editLog != null ? editLog.getTimestamp() : System.currentTimeMillis());
+            for (MetadataBatch.Entry entry : batch.getEntries()) {
+                if (!namespaceStats.containsKey(entry.getFileSystemName()) && !state.statsDeltas.containsKey(entry.getFileSystemName())) {
+                    writeBatch.put(fsKey(entry.getFileSystemName()), new byte[0]);
+                    state.statsDeltas.put(entry.getFileSystemName(), new NamespaceStats());
+                }
+                if (entry.isDelete()) {
+                    stageDelete(state, entry.getFileSystemName(), entry.getPath());
+                } else if (entry.isRename()) {
+                    stageRename(state, entry.getFileSystemName(), entry.getPath(), entry.getTarget());
+                } else if (entry.isSetQuota()) {
+                    stageSetQuota(state, entry.getFileSystemName(), entry.getPath(), entry.getNamespaceQuota(), entry.getSpaceQuota());
+                } else {
+                    stagePut(state, entry.getFileSystemName(), entry.getPath(), entry.getStatInfo());
+                }
+            }
+            if (state.nextInodeId != nextInodeId) {
+                writeBatch.put(NEXT_INODE_ID_KEY, longBytes(state.nextInodeId));
+            }
+            gcSeq = stageGarbage(state, gcSeq);
+            stageAggregates(state, batch.isQuotaChecked());
+            updatedStats = stageStats(state);
+            if (editLog != null) {
+                writeBatch.put(LAST_TXID_KEY, appliedBytes(editLog.getTxid(), editLog.getTerm()));
+            }
+            rocksDB.write(writeOptions, writeBatch);
+        } catch (IllegalArgumentException | QuotaExceededException e) {
+            // 变更本身不合法（如重命名目标已存在）或超出配额，整批不生效；各节点在相同状态上得到相同结论
+            if (editLog != null) {
+                advanceApplied(editLog, true);
+            }
+            throw e;
+        } catch (Exception e) {
+            log.error("批量写入元数据失败: {} 条变更", batch.size(), e);
+            throw new RuntimeException("批量写入元数据失败", e);
+        }
+        nextInodeId = state.nextInodeId;
+        gcQueueSize.addAndGet(gcSeq - nextGcSeq);
+        nextGcSeq = gcSeq;
+        
+        // 提交后失效缓存：先推进代数，阻止提交前读到旧值的读者回填
+        cacheGeneration.incrementAndGet();
+        for (Dentry dentry : state.removedDentries) {
+            long hash = dentryHash(dentry.fileSystemName(), dentry.parentId(), dentry.name());
+            Dentry cached = dentryCache.get(hash);
+            if (cached != null && cached.childId() == dentry.childId()) {
+                dentryCache.remove(hash, cached);
+            }
+        }
+        for (long hash : state.touchedInodeHashes) {
+            CachedInode cached = inodeCache.get(hash);
+            if (cached != null) {
+                inodeCache.remove(hash, cached);
+            }
+        }
+        for (String[] touched : state.touchedPaths) {
+            statCache.invalidate(touched[0], touched[1]);
+        }
+        for (String[] dir : state.removedDirs) {
+            statCache.invalidateSubtree(dir[0], dir[1]);
+        }
+        namespaceStats.putAll(updatedStats);
+        for (Map.Entry<DirRef, long[]> update : state.quotaUpdates.entrySet()) {
+            if (update.getValue() == null) {
+                quotas.remove(update.getKey());
+            } else {
+                quotas.put(update.getKey(), update.getValue());
+            }
+        }
+        
+        if (editLog != null) {
+            advanceApplied(editLog, false);
+        }
+        log.debug("批量写入元数据成功: txid={}, {} 条变更", lastTxid, batch.size());
+    }
+    
+    private void stagePut(BatchState state, String fileSystemName, String path, StatInfo statInfo) throws Exception {
+        if (path.equals("/")) {
+            // 根目录只有inode记录，没有父子边
+            Inode root = Inode.of(ROOT_INODE_ID, 0L, "", statInfo);
+            Inode previous = loadStagedInode(state, fileSystemName, ROOT_INODE_ID);
+            if (previous != null) {
+                state.count(fileSystemName, previous, -1);
+            }
+            state.count(fileSystemName, root, 1);
+            state.writeBatch.put(namespaceCf, inodeKey(fileSystemName, ROOT_INODE_ID), encodeInode(root));
+            state.resolved.put(fileSystemName + ":/", ROOT_INODE_ID);
+            state.touchedInodeHashes.add(inodeHash(fileSystemName, ROOT_INODE_ID));
+            state.touchedPaths.add(new String[]{fileSystemName, path});
+            return;
+        }
+        String name = nameOf(path);
+        long parentId = ensureDirectories(state, fileSystemName, parentOf(path));
+        long id = resolve(fileSystemName, path, state.resolved);
+        Inode previous = null;
+        if (id == NO_INODE) {
+            id = state.nextInodeId++;
+            state.writeBatch.put(namespaceCf, edgeKey(fileSystemName, parentId, name), longBytes(id));
+            state.resolved.put(fileSystemName + ":" + path, id);
+        } else {
+            // 覆盖已有inode时先扣除旧值（大小、副本分布可能变化）
+            previous = loadStagedInode(state, fileSystemName, id);
+            if (previous != null) {
+                state.count(fileSystemName, previous, -1);
+                state.aggregate(fileSystemName, parentId, DirAggregate.of(previous), -1);
+            }
+        }
+        Inode inode = Inode.of(id, parentId, name, statInfo);
+        state.count(fileSystemName, inode, 1);
+        state.aggregate(fileSystemName, parentId, DirAggregate.of(inode), 1);
+        state.writeBatch.put(namespaceCf, inodeKey(fileSystemName, id), encodeInode(inode));
+        state.touchedInodeHashes.add(inodeHash(fileSystemName, id));
+        state.touchedPaths.add(new String[]{fileSystemName, path});
+    }
+    
+    private void stageDelete(BatchState state, String fileSystemName, String path) throws Exception {
+        if (path.equals("/")) {
+            if (inodeExists(state, fileSystemName, ROOT_INODE_ID)) {
+                Inode root = loadStagedInode(state, fileSystemName, ROOT_INODE_ID);
+                stageSubtreeDelete(state, fileSystemName, ROOT_INODE_ID, path);
+                state.writeBatch.delete(namespaceCf, inodeKey(fileSystemName, ROOT_INODE_ID));
+                state.writeBatch.delete(namespaceCf, aggregateKey(fileSystemName, ROOT_INODE_ID));
+                state.aggregateDeltas.remove(new DirRef(fileSystemName, ROOT_INODE_ID));
+                stageQuotaRemoval(state, fileSystemName, ROOT_INODE_ID);
+                state.resolved.put(fileSystemName + ":/", NO_INODE);
+                if (root != null) {
+                    state.count(fileSystemName, root, -1);
+                }
+                state.touchedInodeHashes.add(inodeHash(fileSystemName, ROOT_INODE_ID));
+                state.removedDirs.add(new String[]{fileSystemName, path});
+                state.touchedPaths.add(new String[]{fileSystemName, path});
+            }
+            return;
+        }
+        long parentId = resolve(fileSystemName, parentOf(path), state.resolved);
+        long id = parentId == NO_INODE ? NO_INODE : resolve(fileSystemName, path, state.resolved);
+        if (id == NO_INODE) {
+            return;
+        }
+        Inode removed = loadStagedInode(state, fileSystemName, id);
+        if (removed != null) {
+            // 必须在子树的汇总记录被删除之前读取
+            state.aggregate(fileSystemName, parentId, subtreeAggregate(state, fileSystemName, id, removed), -1);
+        }
+        if (removed != null && removed.getType() == FileType.Directory) {
+            stageSubtreeDelete(state, fileSystemName, id, path);
+        }
+        stageRemove(state, fileSystemName, parentId, nameOf(path), id, removed);
+        state.touchedPaths.add(new String[]{fileSystemName, path});
+        state.resolved.put(fileSystemName + ":" + path, NO_INODE);
+    }
+    
+    /**
+     * 重命名/移动：删除源父子边、写入目标父子边，并更新inode中的父ID与名称
+     * 子树中的节点只通过父ID相连，不需要逐个改写，耗时与子树大小无关；目标的父目录必须已存在，不会自动创建
+     */
+    private void stageRename(BatchState state, String fileSystemName, String src, String dst) throws Exception {
+        if (src.equals("/") || dst.equals("/") || src.equals(dst)) {
+            throw new IllegalArgumentException("非法的重命名: " + src + " -> " + dst);
+        }
+        if (dst.startsWith(src + "/")) {
+            throw new IllegalArgumentException("不能将目录移动到自身的子目录下: " + src + " -> " + dst);
+        }
+        long srcParentId = resolve(fileSystemName, parentOf(src), state.resolved);
+        long id = srcParentId == NO_INODE ? NO_INODE : resolve(fileSystemName, src, state.resolved);
+        if (id == NO_INODE) {
+            throw new PathNotFoundException("源路径不存在: " + src);
+        }
+        long dstParentId = resolve(fileSystemName, parentOf(dst), state.resolved);
+        if (dstParentId == NO_INODE) {
+            throw new PathNotFoundException("目标父目录不存在: " + parentOf(dst));
+        }
+        Inode dstParent = loadStagedInode(state, fileSystemName, dstParentId);
+        if (dstParent != null ? dstParent.getType() != FileType.Directory : dstParentId != ROOT_INODE_ID) {
+            throw new IllegalArgumentException("目标父路径不是目录: " + parentOf(dst));
+        }
+        if (resolve(fileSystemName, dst, state.resolved) != NO_INODE) {
+            throw new PathAlreadyExistsException("目标路径已存在: " + dst);
+        }
+        Inode inode = loadStagedInode(state, fileSystemName, id);
+        if (inode == null) {
+            throw new IllegalStateException("inode记录缺失: " + src);
+        }
+        String srcName = nameOf(src);
+        String dstName = nameOf(dst);
+        // 整棵子树的汇总从源父目录链转移到目标父目录链，子树内部的汇总不变
+        DirAggregate moved = subtreeAggregate(state, fileSystemName, id, inode);
+        state.aggregate(fileSystemName, srcParentId, moved, -1);
+        state.aggregate(fileSystemName, dstParentId, moved, 1);
+        
+        state.writeBatch.delete(namespaceCf, edgeKey(fileSystemName, srcParentId, srcName));
+        state.writeBatch.put(namespaceCf, edgeKey(fileSystemName, dstParentId, dstName), longBytes(id));
+        inode.setParentId(dstParentId);
+        inode.setName(dstName);
+        state.writeBatch.put(namespaceCf, inodeKey(fileSystemName, id), encodeInode(inode));
+        
+        state.removedDentries.add(new Dentry(fileSystemName, srcParentId, srcName, id));
+        state.touchedInodeHashes.add(inodeHash(fileSystemName, id));
+        // 源路径下缓存的StatInfo全部作废（路径已变化），本批次内解析过的源子路径同样作废
+        state.removedDirs.add(new String[]{fileSystemName, src});
+        state.touchedPaths.add(new String[]{fileSystemName, src});
+        state.touchedPaths.add(new String[]{fileSystemName, dst});
+        String prefix = fileSystemName + ":" + src + "/";
+        for (Map.Entry<String, Long> entry : state.resolved.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                entry.setValue(NO_INODE);
+            }
+        }
+        // 目标路径下此前解析过的结果（多为不存在）丢弃，之后经目标inode重新解析
+        String dstPrefix = fileSystemName + ":" + dst + "/";
+        state.resolved.keySet().removeIf(key -> key.startsWith(dstPrefix));
+        state.resolved.put(fileSystemName + ":" + src, NO_INODE);
+        state.resolved.put(fileSystemName + ":" + dst, id);
+    }
+    
+    /**
+     * 删除目录下的全部后代（不含目录自身），与目录的删除在同一个WriteBatch中提交，要么整棵子树消失要么都不变
+     * 按父子边逐层展开，每个节点只访问一次；被删除文件的副本记入state.garbage，提交时转为GC任务
+     */
+    private void stageSubtreeDelete(BatchState state, String fileSystemName, long dirId, String dirPath) throws Exception {
+        Deque<Long> stack = new ArrayDeque<>();
+        stack.push(dirId);
+        long removedCount = 0;
+        while (!stack.isEmpty()) {
+            long parentId = stack.pop();
+            // 先读出全部子项再修改批次，避免迭代过程中改动WriteBatchWithIndex
+            List<Map.Entry<String, Long>> children = new ArrayList<>();
+            byte[] prefix = edgePrefix(fileSystemName, parentId);
+            try (RocksIterator base = rocksDB.newIterator(namespaceCf, prefixReadOptions);
+                 RocksIterator iterator = state.writeBatch.newIteratorWithBase(namespaceCf, base)) {
+                for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix); iterator.next()) {
+                    byte[] key = iterator.key();
+                    String name = new String(key, prefix.length, key.length - prefix.length, StandardCharsets.UTF_8);
+                    children.add(Map.entry(name, ByteBuffer.wrap(iterator.value()).getLong()));
+                }
+            }
+            for (Map.Entry<String, Long> child : children) {
+                Inode inode = loadStagedInode(state, fileSystemName, child.getValue());
+                if (inode != null && inode.getType() == FileType.Directory) {
+                    stack.push(child.getValue());
+                }
+                stageRemove(state, fileSystemName, parentId, child.getKey(), child.getValue(), inode);
+                removedCount++;
+            }
+        }
+        // 本批次内解析过的后代路径全部作废
+        String prefix = fileSystemName + ":" + (dirPath.equals("/") ? "/" : dirPath + "/");
+        for (Map.Entry<String, Long> entry : state.resolved.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                entry.setValue(NO_INODE);
+            }
+        }
+        state.removedDirs.add(new String[]{fileSystemName, dirPath});
+        log.debug("暂存子树删除: fileSystemName={}, path={}, {} 个后代", fileSystemName, dirPath, removedCount);
+    }
+    
+    private void stageRemove(BatchState state, String fileSystemName, long parentId, String name, long id, Inode inode) throws RocksDBException {
+        state.writeBatch.delete(namespaceCf, edgeKey(fileSystemName, parentId, name));
+        state.writeBatch.delete(namespaceCf, inodeKey(fileSystemName, id));
+        state.removedDentries.add(new Dentry(fileSystemName, parentId, name, id));
+        state.touchedInodeHashes.add(inodeHash(fileSystemName, id));
+        if (inode != null) {
+            state.count(fileSystemName, inode, -1);
+            if (inode.getType() == FileType.Directory) {
+                state.writeBatch.delete(namespaceCf, aggregateKey(fileSystemName, id));
+                stageQuotaRemoval(state, fileSystemName, id);
+            }
+        }
+        if (inode != null && inode.getType() == FileType.File && inode.getReplicaData() != null) {
+            state.garbage.computeIfAbsent(fileSystemName, k -> new ArrayList<>()).addAll(inode.getReplicaData());
+        }
+    }
+    
+    /**
+     * 读取inode，优先读本批次内未提交的版本
+     */
+    private Inode loadStagedInode(BatchState state, String fileSystemName, long id) throws Exception {
+        byte[] value = state.writeBatch.getFromBatchAndDB(rocksDB, namespaceCf, pointReadOptions, inodeKey(fileSystemName, id));
+        return value == null ? null : inodeCodec.decode(value);
+    }
+    
+    /**
+     * 把本批次删除文件的副本写成GC任务，与元数据变更一起提交；返回下一个可用序号
+     */
+    private long stageGarbage(BatchState state, long gcSeq) throws Exception {
+        long now = state.timestamp;
+        for (Map.Entry<String, List<ReplicaData>> entry : state.garbage.entrySet()) {
+            List<ReplicaData> replicas = entry.getValue();
+            for (int from = 0; from < replicas.size(); from += GC_TASK_MAX_REPLICAS) {
+                GcTask task = new GcTask();
+                task.setSeq(gcSeq);
+                task.setFileSystemName(entry.getKey());
+                task.setReplicas(new ArrayList<>(replicas.subList(from, Math.min(replicas.size(), from + GC_TASK_MAX_REPLICAS))));
+                task.setCreateTime(now);
+                state.writeBatch.put(blockMapCf, gcKey(gcSeq), objectMapper.writeValueAsBytes(task));
+                gcSeq++;
+            }
+        }
+        return gcSeq;
+    }
+    
+    /**
+     * 节点连同子树的汇总：目录为自身加上已提交的子树汇总，文件为自身
+     * 本批次内尚未合并的增量不计入，它们在提交前沿节点最终所在的祖先链合并，不会重复也不会遗漏
+     */
+    private DirAggregate subtreeAggregate(BatchState state, String fileSystemName, long id, Inode inode) throws Exception {
+        DirAggregate aggregate = DirAggregate.of(inode);
+        if (inode.getType() == FileType.Directory) {
+            byte[] value = state.writeBatch.getFromBatchAndDB(rocksDB, namespaceCf, pointReadOptions, aggregateKey(fileSystemName, id));
+            aggregate.add(DirAggregate.decode(value), 1);
+        }
+        return aggregate;
+    }
+    
+    /**
+     * 把记在直接父目录上的汇总增量沿祖先链合并，每个受影响的目录在本批次只读写一次汇总记录
+     * 同一目录下的大量变更只放大为一次祖先链写入；已在本批次删除的目录上的增量随目录一起丢弃
+     */
+    private void stageAggregates(BatchState state, boolean quotaChecked) throws Exception {
+        Map<DirRef, DirAggregate> totals = new HashMap<>();
+        Map<DirRef, Long> parents = new HashMap<>();
+        for (Map.Entry<DirRef, DirAggregate> entry : state.aggregateDeltas.entrySet()) {
+            DirAggregate delta = entry.getValue();
+            if (delta.isZero()) {
+                continue;
+            }
+            String fileSystemName = entry.getKey().fileSystemName();
+            List<DirRef> chain = new ArrayList<>();
+            DirRef dir = entry.getKey();
+            while (true) {
+                chain.add(dir);
+                if (dir.id() == ROOT_INODE_ID) {
+                    break;
+                }
+                Long parentId = parents.get(dir);
+                if (parentId == null) {
+                    Inode inode = loadStagedInode(state, fileSystemName, dir.id());
+                    if (inode == null) {
+                        break;
+                    }
+                    parentId = inode.getParentId();
+                    parents.put(dir, parentId);
+                }
+                dir = new DirRef(fileSystemName, parentId);
+            }
+            if (dir.id() != ROOT_INODE_ID) {
+                continue;
+            }
+            for (DirRef ancestor : chain) {
+                totals.computeIfAbsent(ancestor, k -> new DirAggregate()).add(delta, 1);
+            }
+        }
+        for (Map.Entry<DirRef, DirAggregate> entry : totals.entrySet()) {
+            if (entry.getValue().isZero()) {
+                continue;
+            }
+            byte[] key = aggregateKey(entry.getKey().fileSystemName(), entry.getKey().id());
+            DirAggregate aggregate = DirAggregate.decode(state.writeBatch.getFromBatchAndDB(rocksDB, namespaceCf, pointReadOptions, key));
+            aggregate.add(entry.getValue(), 1);
+            if (quotaChecked) {
+                verifyQuota(entry.getKey(), aggregate, entry.getValue());
+            }
+            state.writeBatch.put(namespaceCf, key, aggregate.encode());
+        }
+    }
+    
+    /**
+     * 检查变更后的汇总是否超出目录配额；只拦截使用量增加的方向，配额调低到当前用量以下时仍允许删除
+     */
+    private void verifyQuota(DirRef dir, DirAggregate after, DirAggregate delta) {
+        long[] quota = quotas.get(dir);
+        if (quota == null) {
+            return;
+        }
+        long namespaceDelta = delta.files + delta.directories;
+        if (quota[0] != QUOTA_UNSET && namespaceDelta > 0 && after.files + after.directories > quota[0]) {
+            throw new QuotaExceededException("超出名字空间配额: 目录inode=" + dir.id() + ", 配额=" + quota[0]
+                    + ", 变更后=" + (after.files + after.directories));
+        }
+        if (quota[1] != QUOTA_UNSET && delta.bytes > 0 && after.bytes > quota[1]) {
+            throw new QuotaExceededException("超出空间配额: 目录inode=" + dir.id() + ", 配额=" + quota[1]
+                    + ", 变更后=" + after.bytes);
+        }
+    }
+    
+    private void stageQuotaRemoval(BatchState state, String fileSystemName, long dirId) throws RocksDBException {
+        DirRef dir = new DirRef(fileSystemName, dirId);
+        if (quotas.containsKey(dir) || state.quotaUpdates.get(dir) != null) {
+            state.writeBatch.delete(namespaceCf, quotaKey(fileSystemName, dirId));
+            state.quotaUpdates.put(dir, null);
+        }
+    }
+    
+    private void stageSetQuota(BatchState state, String fileSystemName, String path, long namespaceQuota, long spaceQuota) throws Exception {
+        if (namespaceQuota < QUOTA_UNSET || spaceQuota < QUOTA_UNSET) {
+            throw new IllegalArgumentException("配额不能为负数");
+        }
+        long id = resolve(fileSystemName, path, state.resolved);
+        if (id == NO_INODE) {
+            throw new IllegalArgumentException("目录不存在: " + path);
+        }
+        Inode inode = loadStagedInode(state, fileSystemName, id);
+        if (inode != null ? inode.getType() != FileType.Directory : id != ROOT_INODE_ID) {
+            throw new IllegalArgumentException("只能为目录设置配额: " + path);
+        }
+        DirRef dir = new DirRef(fileSystemName, id);
+        if (namespaceQuota == QUOTA_UNSET && spaceQuota == QUOTA_UNSET) {
+            state.writeBatch.delete(namespaceCf, quotaKey(fileSystemName, id));
+            state.quotaUpdates.put(dir, null);
+        } else {
+            byte[] value = ByteBuffer.allocate(2 * Long.BYTES).putLong(namespaceQuota).putLong(spaceQuota).array();
+            state.writeBatch.put(namespaceCf, quotaKey(fileSystemName, id), value);
+            state.quotaUpdates.put(dir, new long[]{namespaceQuota, spaceQuota});
+        }
+    }
+    
+    private void loadQuotas() {
+        try (RocksIterator iterator = rocksDB.newIterator(namespaceCf, totalOrderReadOptions)) {
+            for (iterator.seek(new byte[]{QUOTA_PREFIX}); iterator.isValid() && iterator.key()[0] == QUOTA_PREFIX; iterator.next()) {
+                byte[] key = iterator.key();
+                long dirId = ByteBuffer.wrap(key, 1, Long.BYTES).getLong();
+                String fileSystemName = new String(key, NAMESPACE_PREFIX_LENGTH, key.length - NAMESPACE_PREFIX_LENGTH, StandardCharsets.UTF_8);
+                ByteBuffer value = ByteBuffer.wrap(iterator.value());
+                quotas.put(new DirRef(fileSystemName, dirId), new long[]{value.getLong(), value.getLong()});
+            }
+        }
+        if (!quotas.isEmpty()) {
+            log.info("目录配额加载完成: {} 个目录", quotas.size());
+        }
+    }
+    
+    /**
+     * 写数据前的配额预检：path及其已存在的祖先目录中，有配额的目录加上增量后不能超限
+     * 没有任何配额时直接返回；提交时还会在写锁内再检查一次，预检只用于避免白写DataServer
+     */
+    public void checkQuota(String fileSystemName, String path, long namespaceDelta, long spaceDelta) {
+        if (quotas.isEmpty() || (namespaceDelta <= 0 && spaceDelta <= 0)) {
+            return;
+        }
+        try {
+            DirAggregate delta = new DirAggregate();
+            delta.files = namespaceDelta;
+            delta.bytes = spaceDelta;
+            long id = ROOT_INODE_ID;
+            int start = 1;
+            while (true) {
+                DirRef dir = new DirRef(fileSystemName, id);
+                if (quotas.containsKey(dir)) {
+                    DirAggregate after = DirAggregate.decode(rocksDB.get(namespaceCf, aggregateKey(fileSystemName, id))).add(delta, 1);
+                    verifyQuota(dir, after, delta);
+                }
+                int end = path.indexOf('/', start);
+                if (end < 0 || start >= path.length()) {
+                    break;
+                }
+                id = lookupChild(fileSystemName, id, path.substring(start, end));
+                if (id == NO_INODE) {
+                    break;
+                }
+                start = end + 1;
+            }
+        } catch (QuotaExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("配额预检失败，交由提交时检查: fileSystemName={}, path={}", fileSystemName, path, e);
+        }
+    }
+    
+    /**
+     * 为升级前的数据建立目录汇总：每个文件系统后序遍历一次，之后只做增量维护
+     */
+    private void rebuildAggregates() throws Exception {
+        long directories = 0;
+        try (WriteOptions writeOptions = new WriteOptions()) {
+            WriteBatch batch = new WriteBatch();
+            try {
+                for (String fileSystemName : namespaceStats.keySet()) {
+                    // 栈中只保留当前路径上的目录，每个目录记录待访问的子目录
+                    Deque<Map.Entry<Long, Deque<Long>>> stack = new ArrayDeque<>();
+                    Deque<DirAggregate> aggregates = new ArrayDeque<>();
+                    stack.push(Map.entry(ROOT_INODE_ID, new ArrayDeque<>()));
+                    aggregates.push(scanChildren(fileSystemName, ROOT_INODE_ID, stack.peek().getValue()));
+                    while (!stack.isEmpty()) {
+                        Deque<Long> pending = stack.peek().getValue();
+                        if (!pending.isEmpty()) {
+                            long childId = pending.pop();
+                            Deque<Long> childDirs = new ArrayDeque<>();
+                            aggregates.push(scanChildren(fileSystemName, childId, childDirs));
+                            stack.push(Map.entry(childId, childDirs));
+                            continue;
+                        }
+                        long dirId = stack.pop().getKey();
+                        DirAggregate aggregate = aggregates.pop();
+                        batch.put(namespaceCf, aggregateKey(fileSystemName, dirId), aggregate.encode());
+                        if (!aggregates.isEmpty()) {
+                            aggregates.peek().add(aggregate, 1);
+                        }
+                        if (++directories % MIGRATION_BATCH_SIZE == 0) {
+                            rocksDB.write(writeOptions, batch);
+                            batch.close();
+                            batch = new WriteBatch();
+                        }
+                    }
+                }
+                batch.put(AGGREGATES_READY_KEY, new byte[0]);
+                rocksDB.write(writeOptions, batch);
+            } finally {
+                batch.close();
+            }
+        }
+        log.info("目录汇总建立完成: {} 个目录", directories);
+    }
+    
+    /**
+     * 累计目录直接子项的贡献，子目录ID放入childDirs等待展开
+     */
+    private DirAggregate scanChildren(String fileSystemName, long dirId, Deque<Long> childDirs) throws Exception {
+        DirAggregate aggregate = new DirAggregate();
+        byte[] prefix = edgePrefix(fileSystemName, dirId);
+        try (RocksIterator iterator = rocksDB.newIterator(namespaceCf, prefixReadOptions)) {
+            for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix); iterator.next()) {
+                long childId = ByteBuffer.wrap(iterator.value()).getLong();
+                byte[] value = rocksDB.get(namespaceCf, inodeKey(fileSystemName, childId));
+                if (value == null) {
+                    continue;
+                }
+                Inode child = inodeCodec.decode(value);
+                aggregate.add(DirAggregate.of(child), 1);
+                if (child.getType() == FileType.Directory) {
+                    childDirs.push(childId);
+                }
+            }
+        }
+        return aggregate;
+    }
+    
+    /**
+     * 把本批次的计数器增量合并到当前值并写入批次，返回提交后要替换的新计数器
+     */
+    private Map<String, NamespaceStats> stageStats(BatchState state) throws Exception {
+        Map<String, NamespaceStats> updated = new HashMap<>();
+        for (Map.Entry<String, NamespaceStats> delta : state.statsDeltas.entrySet()) {
+            NamespaceStats current = namespaceStats.get(delta.getKey());
+            NamespaceStats stats = current == null ? new NamespaceStats() : current.copy();
+            stats.merge(delta.getValue());
+            state.writeBatch.put(statsKey(delta.getKey()), objectMapper.writeValueAsBytes(stats));
+            updated.put(delta.getKey(), stats);
+        }
+        return updated;
+    }
+    
+    // ---------------- GC队列 ----------------
+    
+    /**
+     * 按序号顺序取出最多limit条待回收任务（不出队，处理完后调用completeGcTask）
+     */
+    public List<GcTask> peekGcTasks(int limit) {
+        List<GcTask> tasks = new ArrayList<>();
+        try (RocksIterator iterator = rocksDB.newIterator(blockMapCf)) {
+            for (iterator.seek(new byte[]{GC_PREFIX}); iterator.isValid() && iterator.key()[0] == GC_PREFIX && tasks.size() < limit; iterator.next()) {
+                try {
+                    tasks.add(objectMapper.readValue(iterator.value(), GcTask.class));
+                } catch (Exception e) {
+                    log.error("跳过无法解析的GC任务: seq={}", ByteBuffer.wrap(iterator.key(), 1, Long.BYTES).getLong(), e);
+                }
+            }
+        }
+        return tasks;
+    }
+    
+    /**
+     * 任务处理完毕：remaining为空时出队，否则保存剩余副本等待下次重试
+     */
+    public void completeGcTask(GcTask task, List<ReplicaData> remaining) {
+        try {
+            if (remaining == null || remaining.isEmpty()) {
+                rocksDB.delete(blockMapCf, gcKey(task.getSeq()));
+                gcQueueSize.decrementAndGet();
+            } else {
+                task.setReplicas(remaining);
+                rocksDB.put(blockMapCf, gcKey(task.getSeq()), objectMapper.writeValueAsBytes(task));
+            }
+        } catch (Exception e) {
+            log.error("更新GC任务失败: seq={}", task.getSeq(), e);
+        }
+    }
+    
+    public long getGcQueueSize() {
+        return gcQueueSize.get();
+    }
+    
+    private void loadGcQueue() {
+        try (RocksIterator iterator = rocksDB.newIterator(blockMapCf)) {
+            long count = 0;
+            for (iterator.seek(new byte[]{GC_PREFIX}); iterator.isValid() && iterator.key()[0] == GC_PREFIX; iterator.next()) {
+                nextGcSeq = ByteBuffer.wrap(iterator.key(), 1, Long.BYTES).getLong() + 1;
+                count++;
+            }
+            gcQueueSize.set(count);
+            if (count > 0) {
+                log.info("待回收GC任务: {} 条", count);
+            }
+        }
+    }
+    
+    // ---------------- 操作日志（Raft日志与状态机） ----------------
+    
+    private void loadEditLog() throws RocksDBException {
+        byte[] raftState = rocksDB.get(RAFT_STATE_KEY);
+        if (raftState != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(raftState);
+            currentTerm = buffer.getLong();
+            votedFor = buffer.hasRemaining() ? StandardCharsets.UTF_8.decode(buffer).toString() : null;
+        }
+        if (rocksDB.get(INSTALLING_KEY) != null) {
+            // 快照安装中断：命名空间只写入了一部分，清空后从txid 0重新追赶
+            log.warn("检测到未完成的快照安装，清空本地命名空间");
+            try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+                stageWipe(batch);
+                batch.delete(INSTALLING_KEY);
+                rocksDB.write(writeOptions, batch);
+            }
+        }
+        byte[] applied = rocksDB.get(LAST_TXID_KEY);
+        if (applied != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(applied);
+            lastTxid = buffer.getLong();
+            // 旧版本只记录txid，任期视为0
+            lastTxidTerm = buffer.hasRemaining() ? buffer.getLong() : 0;
+        }
+        byte[] logStart = rocksDB.get(LOG_START_KEY);
+        if (logStart != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(logStart);
+            logStartTxid = buffer.getLong();
+            logStartTerm = buffer.getLong();
+        } else {
+            try (RocksIterator iterator = rocksDB.newIterator(replicationLogCf)) {
+                iterator.seekToFirst();
+                logStartTxid = iterator.isValid() ? ByteBuffer.wrap(iterator.key()).getLong() - 1 : lastTxid;
+                logStartTerm = iterator.isValid() ? 0 : lastTxidTerm;
+            }
+        }
+        lastLogTxid = logStartTxid;
+        lastLogTerm = logStartTerm;
+        try (RocksIterator iterator = rocksDB.newIterator(replicationLogCf)) {
+            iterator.seekToLast();
+            if (iterator.isValid()) {
+                lastLogTxid = ByteBuffer.wrap(iterator.key()).getLong();
+                lastLogTerm = readEntry(iterator.value()).getTerm();
+            }
+        } catch (RocksDBException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("读取操作日志失败", e);
+        }
+        log.info("操作日志加载完成: 日志 txid {} ~ {}，已应用 {}，任期 {}", logStartTxid + 1, lastLogTxid, lastTxid, currentTerm);
+    }
+    
+    private EditLogEntry readEntry(byte[] value) throws Exception {
+        return objectMapper.readValue(value, EditLogEntry.class);
+    }
+    
+    private static byte[] appliedBytes(long txid, long term) {
+        return ByteBuffer.allocate(2 * Long.BYTES).putLong(txid).putLong(term).array();
+    }
+    
+    /**
+     * 推进已应用水位：rejected为true时批次本身未生效，单独写入水位
+     */
+    private void advanceApplied(EditLogEntry editLog, boolean rejected) {
+        if (rejected) {
+            try {
+                rocksDB.put(LAST_TXID_KEY, appliedBytes(editLog.getTxid(), editLog.getTerm()));
+            } catch (RocksDBException e) {
+                log.error("写入txid水位失败: txid={}", editLog.getTxid(), e);
+                throw new RuntimeException("批量写入元数据失败", e);
+            }
+        }
+        lastTxid = editLog.getTxid();
+        lastTxidTerm = editLog.getTerm();
+        if (lastTxid - logStartTxid >= editLogRetain + EDIT_LOG_TRIM_INTERVAL) {
+            trimEditLog();
+        }
+        synchronized (txidMonitor) {
+            txidMonitor.notifyAll();
+        }
+    }
+    
+    /**
+     * 裁剪已应用的日志，只保留最近editLogRetain条，一次范围删除
+     */
+    private void trimEditLog() {
+        long newStart = lastTxid - editLogRetain;
+        try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+            long newStartTerm = termAt(newStart);
+            batch.deleteRange(replicationLogCf, longBytes(logStartTxid + 1), longBytes(newStart + 1));
+            batch.put(LOG_START_KEY, appliedBytes(newStart, newStartTerm));
+            rocksDB.write(writeOptions, batch);
+            logStartTxid = newStart;
+            logStartTerm = newStartTerm;
+        } catch (RocksDBException e) {
+            log.warn("裁剪操作日志失败: txid {} ~ {}", logStartTxid + 1, newStart, e);
+        }
+    }
+    
+    public long getLastTxid() {
+        return lastTxid;
+    }
+    
+    public long getLastTxidTerm() {
+        return lastTxidTerm;
+    }
+    
+    public long getFirstTxid() {
+        return logStartTxid + 1;
+    }
+    
+    public long getLogStartTxid() {
+        return logStartTxid;
+    }
+    
+    public long getLastLogTxid() {
+        return lastLogTxid;
+    }
+    
+    public long getLastLogTerm() {
+        return lastLogTerm;
+    }
+    
+    /**
+     * 日志中txid对应的任期；0表示txid 0，-1表示该条已被裁剪或不存在
+     */
+    public long termAt(long txid) {
+        if (txid == logStartTxid) {
+            return logStartTerm;
+        }
+        if (txid < logStartTxid || txid > lastLogTxid) {
+            return -1;
+        }
+        if (txid == lastLogTxid) {
+            return lastLogTerm;
+        }
+        try {
+            byte[] value = rocksDB.get(replicationLogCf, longBytes(txid));
+            return value == null ? -1 : readEntry(value).getTerm();
+        } catch (Exception e) {
+            log.error("读取操作日志失败: txid={}", txid, e);
+            throw new RuntimeException("读取操作日志失败", e);
+        }
+    }
+    
+    /**
+     * 读取txid大于afterTxid的操作日志，最多limit条，按txid升序
+     */
+    public List<EditLogEntry> readEditLog(long afterTxid, int limit) {
+        List<EditLogEntry> entries = new ArrayList<>();
+        try (RocksIterator iterator = rocksDB.newIterator(replicationLogCf)) {
+            for (iterator.seek(longBytes(afterTxid + 1)); iterator.isValid() && entries.size() < limit; iterator.next()) {
+                entries.add(readEntry(iterator.value()));
+            }
+        } catch (Exception e) {
+            log.error("读取操作日志失败: afterTxid={}", afterTxid, e);
+            throw new RuntimeException("读取操作日志失败", e);
+        }
+        return entries;
+    }
+    
+    /**
+     * 等待直到txid大于afterTxid的日志已应用或超时
+     */
+    public void awaitTxid(long afterTxid, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (txidMonitor) {
+            long remaining;
+            while (lastTxid <= afterTxid && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                txidMonitor.wait(remaining);
+            }
+        }
+    }
+    
+    /**
+     * 同步追加日志（Leader追加新条目、Follower接收AppendEntries），返回前已落盘
+     * 第一条的txid不大于当前末尾时，先截断从该txid开始的冲突后缀；调用方保证追加串行且不截断已提交的条目
+     */
+    public void appendEditLog(List<EditLogEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        long first = entries.get(0).getTxid();
+        if (first <= logStartTxid || first > lastLogTxid + 1) {
+            throw new IllegalStateException("操作日志不连续: 日志范围 " + (logStartTxid + 1) + " ~ " + lastLogTxid + ", 追加txid=" + first);
+        }
+        try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+            if (first <= lastLogTxid) {
+                batch.deleteRange(replicationLogCf, longBytes(first), longBytes(lastLogTxid + 1));
+            }
+            for (EditLogEntry entry : entries) {
+                batch.put(replicationLogCf, longBytes(entry.getTxid()), objectMapper.writeValueAsBytes(entry));
+            }
+            rocksDB.write(writeOptions, batch);
+        } catch (Exception e) {
+            log.error("追加操作日志失败: txid {} ~ {}", first, first + entries.size() - 1, e);
+            throw new RuntimeException("追加操作日志失败", e);
+        }
+        EditLogEntry last = entries.get(entries.size() - 1);
+        lastLogTxid = last.getTxid();
+        lastLogTerm = last.getTerm();
+    }
+    
+    /**
+     * 日志中与txid同任期的第一条，用于AppendEntries冲突时让Leader一次跳过整个任期
+     */
+    public long firstTxidOfTerm(long txid) {
+        long term = termAt(txid);
+        long first = txid;
+        while (first - 1 > logStartTxid && termAt(first - 1) == term) {
+            first--;
+        }
+        return first;
+    }
+    
+    public long getCurrentTerm() {
+        return currentTerm;
+    }
+    
+    public String getVotedFor() {
+        return votedFor;
+    }
+    
+    /**
+     * 同步持久化Raft任期与投票，必须在回复投票/追加请求之前落盘
+     */
+    public void saveRaftState(long term, String votedFor) {
+        byte[] vote = votedFor == null ? new byte[0] : votedFor.getBytes(StandardCharsets.UTF_8);
+        try (WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+            rocksDB.put(writeOptions, RAFT_STATE_KEY, ByteBuffer.allocate(Long.BYTES + vote.length).putLong(term).put(vote).array());
+        } catch (RocksDBException e) {
+            log.error("保存Raft状态失败: term={}", term, e);
+            throw new RuntimeException("保存Raft状态失败", e);
+        }
+        this.currentTerm = term;
+        this.votedFor = votedFor;
+    }
+    
+    /**
+     * 应用一条已提交的日志，必须按txid连续调用；不大于水位的txid已应用过，直接跳过
+     * 变更不合法或超出配额时抛出对应异常，此时水位也已推进（所有节点上都同样不生效）
+     */
+    public void applyEditLog(EditLogEntry editLog) {
+        writeLock.lock();
+        try {
+            if (editLog.getTxid() <= lastTxid) {
+                return;
+            }
+            if (editLog.getTxid() != lastTxid + 1) {
+                throw new IllegalStateException("操作日志不连续: 本地txid=" + lastTxid + ", 收到txid=" + editLog.getTxid());
+            }
+            if (editLog.getOps().isEmpty()) {
+                advanceApplied(editLog, true);
+                return;
+            }
+            applyBatchLocked(MetadataBatch.of(editLog), editLog);
+        } finally {
+            writeLock.unlock();
+        }
+    }
     
-    @PostConstruct
-    public void init() {
-        try {
-            log.info("初始化RocksDB，路径: {}", dbPath);
-            
-            File dbDir = new File(dbPath);
-            if (!dbDir.exists()) {
-                dbDir.mkdirs();
-                log.info("创建RocksDB目录: {}", dbPath);
+    /**
+     * 清空快照覆盖的全部状态：命名空间、DataServer字典与GC队列、文件系统注册与计数器、操作日志；Raft任期与投票保留
+     * inode记录中的DataServer字典ID由各节点自行分配，字典必须随命名空间一起来自同一个快照
+     */
+    private void stageWipe(WriteBatch batch) throws RocksDBException {
+        batch.deleteRange(namespaceCf, new byte[]{0x00}, new byte[]{(byte) 0xFF});
+        batch.deleteRange(blockMapCf, new byte[]{0x00}, new byte[]{(byte) 0xFF});
+        batch.deleteRange(replicationLogCf, longBytes(0), longBytes(Long.MAX_VALUE));
+        try (RocksIterator iterator = rocksDB.newIterator()) {
+            for (iterator.seek(new byte[]{FS_PREFIX}); iterator.isValid() && iterator.key()[0] == FS_PREFIX; iterator.next()) {
+                batch.delete(iterator.key());
+            }
+            for (iterator.seek(new byte[]{STATS_PREFIX}); iterator.isValid() && iterator.key()[0] == STATS_PREFIX; iterator.next()) {
+                batch.delete(iterator.key());
             }
-            
-            Options options = new Options();
-            options.setCreateIfMissing(true);
-            options.setMaxBackgroundJobs(4);
-            options.setMaxWriteBufferNumber(4);
-            options.setWriteBufferSize(64 * 1024 * 1024); // 64MB
-            options.setLevel0SlowdownWritesTrigger(8);
-            options.setLevel0StopWritesTrigger(12);
-            
-            rocksDB = RocksDB.open(options, dbPath);
-            log.info("RocksDB初始化成功，路径: {}", dbPath);
-            
-            // 重建文件系统路径缓存
-            rebuildFileSystemCache();
-            
-        } catch (RocksDBException e) {
-            log.error("RocksDB初始化失败，路径: {}", dbPath, e);
-            throw new RuntimeException("RocksDB初始化失败: " + dbPath, e);
-        } catch (Exception e) {
-            log.error("RocksDB初始化过程中发生未知错误", e);
-            throw new RuntimeException("RocksDB初始化失败", e);
         }
+        batch.delete(NEXT_INODE_ID_KEY);
+        batch.delete(LAST_TXID_KEY);
+        batch.delete(LOG_START_KEY);
+        batch.put(AGGREGATES_READY_KEY, new byte[0]);
+    }
+    
+    /**
+     * 快照包含的default列族键：文件系统注册、计数器、inode ID水位与汇总标记；txid水位、日志起点与Raft状态由安装方单独写入
+     */
+    private static boolean isSnapshotStateKey(byte[] key) {
+        return key.length > 0 && (key[0] == FS_PREFIX || key[0] == STATS_PREFIX
+                || Arrays.equals(key, NEXT_INODE_ID_KEY) || Arrays.equals(key, AGGREGATES_READY_KEY));
     }
     
     /**
-     * 重建文件系统路径缓存
+     * 用Leader的快照整体替换本地状态（Follower落后超出Leader日志保留范围时），dir为已校验的快照文件所在目录
+     * 先清空并打上安装中标记，再按列族导入SST文件，最后一次写入水位并去掉标记；中途宕机时启动阶段清空重来
      */
-    private void rebuildFileSystemCache() {
+    public void installSnapshot(SnapshotManifest manifest, Path dir) {
+        writeLock.lock();
         try {
-            fileSystemPaths.clear();
-            RocksIterator iterator = rocksDB.newIterator();
-            iterator.seekToFirst();
+            try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+                stageWipe(batch);
+                batch.put(INSTALLING_KEY, new byte[0]);
+                rocksDB.write(writeOptions, batch);
+            }
+            lastTxid = 0;
+            lastTxidTerm = 0;
+            logStartTxid = 0;
+            logStartTerm = 0;
+            lastLogTxid = 0;
+            lastLogTerm = 0;
             
-            while (iterator.isValid()) {
-                String key = new String(iterator.key(), StandardCharsets.UTF_8);
-                // 解析键格式：{fileSystemName}:{path}
-                String[] parts = key.split(":", 2);
-                if (parts.length == 2) {
-                    String fileSystemName = parts[0];
-                    String path = parts[1];
-                    
-                    fileSystemPaths.computeIfAbsent(fileSystemName, k -> ConcurrentHashMap.newKeySet()).add(path);
+            // 同一列族的文件键范围互不重叠，一次导入；文件直接移动进数据库目录，不再复制
+            Map<String, List<String>> filesByColumnFamily = new LinkedHashMap<>();
+            long totalSize = 0;
+            for (SnapshotManifest.SnapshotFile file : manifest.getFiles()) {
+                filesByColumnFamily.computeIfAbsent(file.getColumnFamily(), k -> new ArrayList<>())
+                        .add(dir.resolve(file.getName()).toString());
+                totalSize += file.getSize();
+            }
+            try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)) {
+                for (Map.Entry<String, List<String>> entry : filesByColumnFamily.entrySet()) {
+                    rocksDB.ingestExternalFile(columnFamily(entry.getKey()), entry.getValue(), ingestOptions);
                 }
-                iterator.next();
             }
-            iterator.close();
             
-            log.info("文件系统路径缓存重建完成，共 {} 个文件系统", fileSystemPaths.size());
-            for (Map.Entry<String, Set<String>> entry : fileSystemPaths.entrySet()) {
-                log.info("文件系统 {}: {} 条路径", entry.getKey(), entry.getValue().size());
+            try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions().setSync(true)) {
+                batch.put(LAST_TXID_KEY, appliedBytes(manifest.getTxid(), manifest.getTerm()));
+                batch.put(LOG_START_KEY, appliedBytes(manifest.getTxid(), manifest.getTerm()));
+                batch.delete(INSTALLING_KEY);
+                rocksDB.write(writeOptions, batch);
+            }
+            reloadState();
+            logStartTxid = manifest.getTxid();
+            logStartTerm = manifest.getTerm();
+            lastLogTxid = manifest.getTxid();
+            lastLogTerm = manifest.getTerm();
+            lastTxidTerm = manifest.getTerm();
+            lastTxid = manifest.getTxid();
+            synchronized (txidMonitor) {
+                txidMonitor.notifyAll();
             }
+            log.info("快照安装完成: id={}, txid={}, term={}, {} 个文件, {} 字节",
+                    manifest.getId(), manifest.getTxid(), manifest.getTerm(), manifest.getFiles().size(), totalSize);
         } catch (Exception e) {
-            log.error("重建文件系统路径缓存失败", e);
+            log.error("安装快照失败: id={}, txid={}", manifest.getId(), manifest.getTxid(), e);
+            throw new RuntimeException("安装快照失败", e);
+        } finally {
+            writeLock.unlock();
         }
+        deleteDirectory(dir);
     }
     
     /**
-     * 保存元数据
+     * 导入快照后重新加载依赖磁盘状态的内存结构，并清空读缓存
      */
-    public void saveMetadata(String fileSystemName, String path, StatInfo statInfo) {
-        try {
-            String key = fileSystemName + ":" + path;
-            String json = objectMapper.writeValueAsString(statInfo);
-            byte[] value = json.getBytes(StandardCharsets.UTF_8);
-            
-            rocksDB.put(key.getBytes(StandardCharsets.UTF_8), value);
-            
-            // 更新缓存
-            fileSystemPaths.computeIfAbsent(fileSystemName, k -> ConcurrentHashMap.newKeySet()).add(path);
-            
-            log.debug("保存元数据成功: {} -> {}", key, statInfo.getPath());
-            
+    private void reloadState() throws Exception {
+        synchronized (dsNodeIds) {
+            dsNodeIds.clear();
+            dsNodeNames.clear();
+            loadDataServerDictionary();
+        }
+        nextGcSeq = 1;
+        loadGcQueue();
+        quotas.clear();
+        loadQuotas();
+        byte[] nextId = rocksDB.get(NEXT_INODE_ID_KEY);
+        nextInodeId = nextId != null ? ByteBuffer.wrap(nextId).getLong() : ROOT_INODE_ID + 1;
+        cacheGeneration.incrementAndGet();
+        dentryCache.clear();
+        inodeCache.clear();
+        statCache.clear();
+        loadFileSystems();
+        if (rocksDB.get(AGGREGATES_READY_KEY) == null) {
+            rebuildAggregates();
+        }
+    }
+    
+    private ColumnFamilyHandle columnFamily(String name) {
+        return switch (name) {
+            case NAMESPACE_CF -> namespaceCf;
+            case BLOCK_MAP_CF -> blockMapCf;
+            case "default" -> rocksDB.getDefaultColumnFamily();
+            default -> throw new IllegalArgumentException("快照中的列族未知: " + name);
+        };
+    }
+    
+    /**
+     * 返回可供Follower拉取的快照：最近的快照之后的日志仍在保留范围内时直接复用，否则生成新快照并删除旧的
+     */
+    public SnapshotManifest prepareSnapshot() {
+        synchronized (snapshotLock) {
+            SnapshotManifest latest = latestSnapshot;
+            if (latest != null && latest.getTxid() >= logStartTxid) {
+                return latest;
+            }
+            SnapshotManifest created = createSnapshot();
+            latestSnapshot = created;
+            removeSnapshotDirs(SNAPSHOT_DIR_PREFIX, created.getId());
+            return created;
+        }
+    }
+    
+    /**
+     * 在同一个RocksDB快照上把各列族顺序写成SST文件，遍历期间应用的日志不会混入；内存占用与命名空间大小无关
+     */
+    private SnapshotManifest createSnapshot() {
+        long start = System.currentTimeMillis();
+        Snapshot snapshot = rocksDB.getSnapshot();
+        Path dir = null;
+        try (ReadOptions readOptions = new ReadOptions().setSnapshot(snapshot).setTotalOrderSeek(true);
+             EnvOptions envOptions = new EnvOptions()) {
+            byte[] applied = rocksDB.get(readOptions, LAST_TXID_KEY);
+            long txid = 0;
+            long term = 0;
+            if (applied != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(applied);
+                txid = buffer.getLong();
+                term = buffer.hasRemaining() ? buffer.getLong() : 0;
+            }
+            SnapshotManifest manifest = new SnapshotManifest(SNAPSHOT_DIR_PREFIX + txid + "-" + term + "-" + start, txid, term);
+            dir = Paths.get(snapshotPath, manifest.getId());
+            Files.createDirectories(dir);
+            writeSnapshotFiles(manifest, dir, "default", readOptions, envOptions);
+            writeSnapshotFiles(manifest, dir, NAMESPACE_CF, readOptions, envOptions);
+            writeSnapshotFiles(manifest, dir, BLOCK_MAP_CF, readOptions, envOptions);
+            long totalSize = 0;
+            for (SnapshotManifest.SnapshotFile file : manifest.getFiles()) {
+                totalSize += file.getSize();
+            }
+            log.info("生成元数据快照: id={}, txid={}, term={}, {} 个文件, {} 字节, 耗时 {}ms",
+                    manifest.getId(), txid, term, manifest.getFiles().size(), totalSize, System.currentTimeMillis() - start);
+            return manifest;
         } catch (Exception e) {
-            log.error("保存元数据失败: fileSystemName={}, path={}", fileSystemName, path, e);
-            throw new RuntimeException("保存元数据失败", e);
+            log.error("生成元数据快照失败", e);
+            if (dir != null) {
+                deleteDirectory(dir);
+            }
+            throw new RuntimeException("生成元数据快照失败", e);
+        } finally {
+            rocksDB.releaseSnapshot(snapshot);
+        }
+    }
+    
+    private void writeSnapshotFiles(SnapshotManifest manifest, Path dir, String columnFamilyName,
+                                    ReadOptions readOptions, EnvOptions envOptions) throws Exception {
+        long fileSizeLimit = snapshotFileSizeMb * 1024 * 1024;
+        boolean defaultCf = columnFamilyName.equals("default");
+        SstFileWriter writer = null;
+        Path file = null;
+        try (Options options = new Options(dbOptions, columnFamilyOptionsByName.get(columnFamilyName));
+             RocksIterator iterator = rocksDB.newIterator(columnFamily(columnFamilyName), readOptions)) {
+            for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                byte[] key = iterator.key();
+                if (defaultCf && !isSnapshotStateKey(key)) {
+                    continue;
+                }
+                if (writer == null) {
+                    file = dir.resolve(String.format("%s-%06d.sst", columnFamilyName, manifest.getFiles().size()));
+                    writer = new SstFileWriter(envOptions, options);
+                    writer.open(file.toString());
+                }
+                writer.put(key, iterator.value());
+                if (writer.fileSize() >= fileSizeLimit) {
+                    finishSnapshotFile(manifest, columnFamilyName, writer, file);
+                    writer = null;
+                }
+            }
+            if (writer != null) {
+                finishSnapshotFile(manifest, columnFamilyName, writer, file);
+                writer = null;
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+    
+    private void finishSnapshotFile(SnapshotManifest manifest, String columnFamilyName, SstFileWriter writer, Path file) throws Exception {
+        try {
+            writer.finish();
+        } finally {
+            writer.close();
+        }
+        manifest.getFiles().add(new SnapshotManifest.SnapshotFile(
+                file.getFileName().toString(), columnFamilyName, Files.size(file), checksum(file)));
+    }
+    
+    /**
+     * Leader上的快照文件，供Follower拉取；快照已被替换或名称不合法时返回null
+     */
+    public Path getSnapshotFile(String snapshotId, String fileName) {
+        if (!isSafeName(snapshotId) || !snapshotId.startsWith(SNAPSHOT_DIR_PREFIX) || !isSafeName(fileName)) {
+            return null;
+        }
+        Path file = Paths.get(snapshotPath, snapshotId, fileName);
+        return Files.isRegularFile(file) ? file : null;
+    }
+    
+    /**
+     * Follower接收快照的目录：同一快照ID的目录保留已下载的部分用于断点续传，其他快照的残留目录删除
+     */
+    public Path prepareSnapshotReceiveDir(String snapshotId) throws IOException {
+        if (!isSafeName(snapshotId)) {
+            throw new IllegalArgumentException("快照ID不合法: " + snapshotId);
+        }
+        String name = RECEIVE_DIR_PREFIX + snapshotId;
+        removeSnapshotDirs(RECEIVE_DIR_PREFIX, name);
+        Path dir = Paths.get(snapshotPath, name);
+        Files.createDirectories(dir);
+        return dir;
+    }
+    
+    /**
+     * 校验接收到的快照文件：长度与CRC32C都与清单一致
+     */
+    public boolean verifySnapshotFile(Path dir, SnapshotManifest.SnapshotFile file) throws IOException {
+        Path path = dir.resolve(file.getName());
+        return Files.isRegularFile(path) && Files.size(path) == file.getSize() && checksum(path) == file.getChecksum();
+    }
+    
+    private static boolean isSafeName(String name) {
+        return name != null && !name.isEmpty() && name.matches("[A-Za-z0-9._-]+") && !name.contains("..");
+    }
+    
+    private static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+    
+    /**
+     * 删除快照目录下以prefix开头的子目录，keep除外
+     */
+    private void removeSnapshotDirs(String prefix, String keep) {
+        Path root = Paths.get(snapshotPath);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(dir -> {
+                String name = dir.getFileName().toString();
+                return name.startsWith(prefix) && !name.equals(keep);
+            }).forEach(this::deleteDirectory);
+        } catch (IOException e) {
+            log.warn("清理快照目录失败: {}", root, e);
+        }
+    }
+    
+    private void deleteDirectory(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            log.warn("删除目录失败: {}", dir, e);
+        }
+    }
+    
+    /**
+     * 确保目录链存在，缺失的目录在同一个WriteBatch中创建，返回最末级目录的inodeId
+     */
+    private long ensureDirectories(BatchState state, String fileSystemName, String dirPath) throws Exception {
+        if (dirPath.equals("/")) {
+            return ROOT_INODE_ID;
+        }
+        long id = resolve(fileSystemName, dirPath, state.resolved);
+        if (id != NO_INODE) {
+            return id;
+        }
+        long parentId = ensureDirectories(state, fileSystemName, parentOf(dirPath));
+        String name = nameOf(dirPath);
+        StatInfo dir = new StatInfo();
+        dir.setPath(dirPath);
+        dir.setType(FileType.Directory);
+        dir.setMtime(state.timestamp);
+        id = state.nextInodeId++;
+        Inode inode = Inode.of(id, parentId, name, dir);
+        state.writeBatch.put(namespaceCf, edgeKey(fileSystemName, parentId, name), longBytes(id));
+        state.writeBatch.put(namespaceCf, inodeKey(fileSystemName, id), encodeInode(inode));
+        state.touchedPaths.add(new String[]{fileSystemName, dirPath});
+        state.resolved.put(fileSystemName + ":" + dirPath, id);
+        state.count(fileSystemName, inode, 1);
+        state.aggregate(fileSystemName, parentId, DirAggregate.of(inode), 1);
+        log.debug("自动创建父目录: fileSystemName={}, path={}, inodeId={}", fileSystemName, dirPath, id);
+        return id;
+    }
+    
+    private boolean inodeExists(BatchState state, String fileSystemName, long id) throws Exception {
+        Long staged = state.resolved.get(fileSystemName + ":/");
+        if (id == ROOT_INODE_ID && staged != null) {
+            return staged != NO_INODE;
+        }
+        return rocksDB.get(namespaceCf, inodeKey(fileSystemName, id)) != null;
+    }
+    
+    /**
+     * 路径解析：逐级查找父子边，优先使用本批次内的结果与dentry缓存
+     */
+    private long resolve(String fileSystemName, String path, Map<String, Long> staged) throws RocksDBException {
+        if (path.equals("/")) {
+            return ROOT_INODE_ID;
+        }
+        if (staged != null) {
+            Long id = staged.get(fileSystemName + ":" + path);
+            if (id != null) {
+                return id;
+            }
+        }
+        long id = ROOT_INODE_ID;
+        int start = 1;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            Long stagedId = staged != null && end < path.length() ? staged.get(fileSystemName + ":" + path.substring(0, end)) : null;
+            id = stagedId != null ? stagedId : lookupChild(fileSystemName, id, path.substring(start, end));
+            if (id == NO_INODE) {
+                return NO_INODE;
+            }
+            start = end + 1;
+        }
+        return id;
+    }
+    
+    private long lookupChild(String fileSystemName, long parentId, String name) throws RocksDBException {
+        long hash = dentryHash(fileSystemName, parentId, name);
+        Dentry cached = dentryCache.get(hash);
+        if (cached != null && cached.parentId() == parentId && cached.name().equals(name)
+                && cached.fileSystemName().equals(fileSystemName)) {
+            return cached.childId();
+        }
+        long generation = cacheGeneration.get();
+        byte[] value = rocksDB.get(namespaceCf, edgeKey(fileSystemName, parentId, name));
+        if (value == null) {
+            return NO_INODE;
+        }
+        long childId = ByteBuffer.wrap(value).getLong();
+        if (cacheGeneration.get() == generation) {
+            dentryCache.put(hash, new Dentry(fileSystemName, parentId, name, childId));
+        }
+        return childId;
+    }
+    
+    private Inode loadInode(String fileSystemName, long id) throws Exception {
+        long hash = inodeHash(fileSystemName, id);
+        CachedInode cached = inodeCache.get(hash);
+        if (cached != null && cached.inode().getId() == id && cached.fileSystemName().equals(fileSystemName)) {
+            return cached.inode();
+        }
+        long generation = cacheGeneration.get();
+        byte[] value = rocksDB.get(namespaceCf, inodeKey(fileSystemName, id));
+        if (value == null) {
+            return null;
+        }
+        Inode inode = decodeInode(inodeKey(fileSystemName, id), value);
+        if (cacheGeneration.get() == generation) {
+            inodeCache.put(hash, new CachedInode(fileSystemName, inode));
         }
+        return inode;
     }
     
     /**
@@ -121,17 +1996,23 @@ public class MetadataStorageService {
      */
     public StatInfo getMetadata(String fileSystemName, String path) {
         try {
-            String key = fileSystemName + ":" + path;
-            byte[] value = rocksDB.get(key.getBytes(StandardCharsets.UTF_8));
-            
-            if (value == null) {
+            StatInfo cached = statCache.get(fileSystemName, path);
+            if (cached != null) {
+                return cached;
+            }
+            long generation = cacheGeneration.get();
+            long id = resolve(fileSystemName, path, null);
+            if (id == NO_INODE) {
+                return null;
+            }
+            Inode inode = loadInode(fileSystemName, id);
+            if (inode == null) {
                 return null;
             }
             
-            String json = new String(value, StandardCharsets.UTF_8);
-            StatInfo statInfo = objectMapper.readValue(json, StatInfo.class);
-            
-            log.debug("获取元数据成功: {} -> {}", key, statInfo.getPath());
+            log.debug("获取元数据成功: {}:{} -> inodeId={}", fileSystemName, path, id);
+            StatInfo statInfo = inode.toStatInfo(path);
+            statCache.put(fileSystemName, path, statInfo, generation);
             return statInfo;
             
         } catch (Exception e) {
@@ -140,14 +2021,43 @@ public class MetadataStorageService {
         }
     }
     
+    /**
+     * 获取目录（或文件）的内容汇总，直接读取增量维护的目录汇总，耗时与子树大小无关
+     */
+    public ContentSummary getContentSummary(String fileSystemName, String path) {
+        try {
+            long id = resolve(fileSystemName, path, null);
+            if (id == NO_INODE) {
+                return null;
+            }
+            Inode inode = loadInode(fileSystemName, id);
+            if (inode == null && id != ROOT_INODE_ID) {
+                return null;
+            }
+            if (inode != null && inode.getType() != FileType.Directory) {
+                return new ContentSummary(path, inode.getSize(), 1, 0);
+            }
+            DirAggregate aggregate = DirAggregate.decode(rocksDB.get(namespaceCf, aggregateKey(fileSystemName, id)));
+            ContentSummary summary = new ContentSummary(path, aggregate.bytes, aggregate.files, aggregate.directories + 1);
+            long[] quota = quotas.get(new DirRef(fileSystemName, id));
+            summary.setNamespaceQuota(quota == null ? QUOTA_UNSET : quota[0]);
+            summary.setSpaceQuota(quota == null ? QUOTA_UNSET : quota[1]);
+            return summary;
+        } catch (Exception e) {
+            log.error("获取内容汇总失败: fileSystemName={}, path={}", fileSystemName, path, e);
+            return null;
+        }
+    }
+    
     /**
      * 检查路径是否存在
      */
     public boolean exists(String fileSystemName, String path) {
         try {
-            String key = fileSystemName + ":" + path;
-            byte[] value = rocksDB.get(key.getBytes(StandardCharsets.UTF_8));
-            return value != null;
+            if (path.equals("/")) {
+                return loadInode(fileSystemName, ROOT_INODE_ID) != null;
+            }
+            return resolve(fileSystemName, path, null) != NO_INODE;
         } catch (Exception e) {
             log.error("检查路径存在性失败: fileSystemName={}, path={}", fileSystemName, path, e);
             return false;
@@ -156,82 +2066,63 @@ public class MetadataStorageService {
     
     /**
      * 列出目录内容
+     * 子项边共享{fs}:{parentId}前缀，一次seek顺序读出，开销只与子项数量相关
      */
     public List<StatInfo> listDirectory(String fileSystemName, String parentPath) {
-        List<StatInfo> children = new ArrayList<>();
+        return listDirectory(fileSystemName, parentPath, null, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * 分页列出目录内容
+     * 从startAfter之后的第一个子项开始（按名称字节序），最多返回limit条；startAfter为空时从头开始。
+     * 读取失败时抛出异常而不是返回已读到的部分，否则调用方会把残缺的一页当作最后一页
+     */
+    public List<StatInfo> listDirectory(String fileSystemName, String parentPath, String startAfter, int limit) {
+        List<StatInfo> children = new ArrayList<>(Math.min(limit, 1024));
         
         try {
-            Set<String> paths = fileSystemPaths.get(fileSystemName);
-            if (paths == null) {
+            String dirPath = normalizeDir(parentPath);
+            long dirId = resolve(fileSystemName, dirPath, null);
+            if (dirId == NO_INODE) {
                 return children;
             }
-            
-            String parentPathWithSlash = parentPath.endsWith("/") ? parentPath : parentPath + "/";
-            
-            for (String path : paths) {
-                if (path.startsWith(parentPathWithSlash) && !path.equals(parentPathWithSlash)) {
-                    // 检查是否是直接子项（不是孙子项）
-                    String relativePath = path.substring(parentPathWithSlash.length());
-                    if (!relativePath.contains("/")) {
-                        // 直接子项
-                        StatInfo statInfo = getMetadata(fileSystemName, path);
-                        if (statInfo != null) {
-                            children.add(statInfo);
-                        }
+            String base = dirPath.equals("/") ? "/" : dirPath + "/";
+            byte[] prefix = edgePrefix(fileSystemName, dirId);
+            byte[] seekKey = startAfter == null || startAfter.isEmpty() ? prefix : edgeKey(fileSystemName, dirId, startAfter);
+            try (RocksIterator iterator = rocksDB.newIterator(namespaceCf, prefixReadOptions)) {
+                iterator.seek(seekKey);
+                // 跳过startAfter自身
+                if (seekKey != prefix && iterator.isValid() && Arrays.equals(iterator.key(), seekKey)) {
+                    iterator.next();
+                }
+                for (; iterator.isValid() && children.size() < limit && startsWith(iterator.key(), prefix); iterator.next()) {
+                    byte[] key = iterator.key();
+                    String name = new String(key, prefix.length, key.length - prefix.length, StandardCharsets.UTF_8);
+                    Inode inode = loadInode(fileSystemName, ByteBuffer.wrap(iterator.value()).getLong());
+                    if (inode != null) {
+                        children.add(inode.toStatInfo(base + name));
                     }
                 }
+                // 迭代器因读取错误失效时isValid()同样返回false，需要显式检查
+                iterator.status();
             }
-            
-            log.debug("列出目录内容: fileSystemName={}, parentPath={} -> {} 个项目", fileSystemName, parentPath, children.size());
-            
         } catch (Exception e) {
-            log.error("列出目录内容失败: fileSystemName={}, parentPath={}", fileSystemName, parentPath, e);
+            log.error("列出目录内容失败: fileSystemName={}, parentPath={}, startAfter={}", fileSystemName, parentPath, startAfter, e);
+            throw new RuntimeException("列出目录内容失败: " + parentPath, e);
         }
         
+        log.debug("列出目录内容: fileSystemName={}, parentPath={} -> {} 个项目", fileSystemName, parentPath, children.size());
         return children;
     }
     
     /**
-     * 删除元数据
-     */
-    public void deleteMetadata(String fileSystemName, String path) {
-        try {
-            String key = fileSystemName + ":" + path;
-            rocksDB.delete(key.getBytes(StandardCharsets.UTF_8));
-            
-            // 更新缓存
-            Set<String> paths = fileSystemPaths.get(fileSystemName);
-            if (paths != null) {
-                paths.remove(path);
-            }
-            
-            log.debug("删除元数据成功: fileSystemName={}, path={}", fileSystemName, path);
-            
-        } catch (Exception e) {
-            log.error("删除元数据失败: fileSystemName={}, path={}", fileSystemName, path, e);
-            throw new RuntimeException("删除元数据失败", e);
-        }
-    }
-    
-    /**
-     * 获取指定文件系统的所有元数据
+     * 获取指定文件系统的所有元数据（从根目录沿父子边深度优先遍历）
      */
     public List<StatInfo> getAllMetadata(String fileSystemName) {
         List<StatInfo> allMetadata = new ArrayList<>();
         
         try {
-            Set<String> paths = fileSystemPaths.get(fileSystemName);
-            if (paths == null) {
-                return allMetadata;
-            }
-            
-            for (String path : paths) {
-                StatInfo statInfo = getMetadata(fileSystemName, path);
-                if (statInfo != null) {
-                    allMetadata.add(statInfo);
-                }
-            }
-            
+            collectMetadata(fileSystemName, prefixReadOptions, allMetadata);
             log.debug("获取文件系统元数据: fileSystemName={}, {} 个项目", fileSystemName, allMetadata.size());
             
         } catch (Exception e) {
@@ -241,6 +2132,38 @@ public class MetadataStorageService {
         return allMetadata;
     }
     
+    private void collectMetadata(String fileSystemName, ReadOptions readOptions, List<StatInfo> allMetadata) throws Exception {
+        byte[] rootValue = rocksDB.get(namespaceCf, readOptions, inodeKey(fileSystemName, ROOT_INODE_ID));
+        if (rootValue != null) {
+            allMetadata.add(decodeInode(inodeKey(fileSystemName, ROOT_INODE_ID), rootValue).toStatInfo("/"));
+        }
+        Deque<Map.Entry<Long, String>> stack = new ArrayDeque<>();
+        stack.push(Map.entry(ROOT_INODE_ID, "/"));
+        try (RocksIterator iterator = rocksDB.newIterator(namespaceCf, readOptions)) {
+            while (!stack.isEmpty()) {
+                Map.Entry<Long, String> dir = stack.pop();
+                String base = dir.getValue().equals("/") ? "/" : dir.getValue() + "/";
+                byte[] prefix = edgePrefix(fileSystemName, dir.getKey());
+                for (iterator.seek(prefix); iterator.isValid() && startsWith(iterator.key(), prefix); iterator.next()) {
+                    byte[] key = iterator.key();
+                    String path = base + new String(key, prefix.length, key.length - prefix.length, StandardCharsets.UTF_8);
+                    long childId = ByteBuffer.wrap(iterator.value()).getLong();
+                    // 全量遍历不经过缓存，避免冲掉热点数据
+                    byte[] inodeKey = inodeKey(fileSystemName, childId);
+                    byte[] value = rocksDB.get(namespaceCf, readOptions, inodeKey);
+                    if (value == null) {
+                        continue;
+                    }
+                    Inode inode = decodeInode(inodeKey, value);
+                    allMetadata.add(inode.toStatInfo(path));
+                    if (inode.getType() == FileType.Directory) {
+                        stack.push(Map.entry(childId, path));
+                    }
+                }
+            }
+        }
+    }
+    
     /**
      * 获取所有文件系统的元数据
      */
@@ -248,7 +2171,7 @@ public class MetadataStorageService {
         List<StatInfo> allMetadata = new ArrayList<>();
         
         try {
-            for (String fileSystemName : fileSystemPaths.keySet()) {
+            for (String fileSystemName : namespaceStats.keySet()) {
                 allMetadata.addAll(getAllMetadata(fileSystemName));
             }
             
@@ -260,7 +2183,7 @@ public class MetadataStorageService {
         
         return allMetadata;
     }
-
+    
     /**
      * 获取存储统计信息
      */
@@ -269,9 +2192,22 @@ public class MetadataStorageService {
         
         try {
             stats.put("dbPath", dbPath);
-            long totalFiles = fileSystemPaths.values().stream().mapToLong(Set::size).sum();
-            stats.put("totalFiles", String.valueOf(totalFiles));
-            stats.put("totalFileSystems", String.valueOf(fileSystemPaths.size()));
+            NamespaceStats total = getNamespaceStats();
+            stats.put("totalFiles", String.valueOf(total.getFiles() + total.getDirectories()));
+            stats.put("totalFileSystems", String.valueOf(namespaceStats.size()));
+            stats.put("nextInodeId", String.valueOf(nextInodeId));
+            stats.put("lastTxid", String.valueOf(lastTxid));
+            stats.put("firstTxid", String.valueOf(logStartTxid + 1));
+            stats.put("lastLogTxid", String.valueOf(lastLogTxid));
+            stats.put("currentTerm", String.valueOf(currentTerm));
+            stats.put("dentryCacheSlots", String.valueOf(dentryCache.capacity()));
+            stats.put("inodeCacheSlots", String.valueOf(inodeCache.capacity()));
+            stats.putAll(statCache.stats());
+            stats.put("gcQueueSize", String.valueOf(gcQueueSize.get()));
+            
+            stats.put("blockCacheUsage", String.valueOf(blockCache.getUsage()));
+            stats.put("blockCachePinnedUsage", String.valueOf(blockCache.getPinnedUsage()));
+            stats.put("namespaceEstimatedKeys", rocksDB.getProperty(namespaceCf, "rocksdb.estimate-num-keys"));
             
             // 获取RocksDB统计信息
             String dbStats = rocksDB.getProperty("rocksdb.stats");
@@ -286,19 +2222,177 @@ public class MetadataStorageService {
         
         return stats;
     }
-
+    
     @PreDestroy
     public void cleanup() {
         if (rocksDB != null) {
+            // 列族句柄需先于数据库关闭，选项与缓存在数据库关闭之后释放
+            for (ColumnFamilyHandle handle : columnFamilyHandles) {
+                handle.close();
+            }
             rocksDB.close();
+            for (AutoCloseable resource : nativeResources) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    log.warn("释放RocksDB资源失败", e);
+                }
+            }
             log.info("RocksDB已关闭");
         }
     }
-
+    
     /**
      * 获取所有文件系统名称集合
      */
     public Set<String> getAllFileSystemNames() {
-        return new HashSet<>(fileSystemPaths.keySet());
+        return new HashSet<>(namespaceStats.keySet());
+    }
+    
+    /**
+     * 获取指定文件系统的计数器（副本），文件系统不存在时返回全0
+     */
+    public NamespaceStats getNamespaceStats(String fileSystemName) {
+        NamespaceStats stats = namespaceStats.get(fileSystemName);
+        return stats == null ? new NamespaceStats() : stats.copy();
+    }
+    
+    /**
+     * 获取所有文件系统计数器之和
+     */
+    public NamespaceStats getNamespaceStats() {
+        NamespaceStats total = new NamespaceStats();
+        for (NamespaceStats stats : namespaceStats.values()) {
+            total.merge(stats);
+        }
+        return total;
+    }
+    
+    // ---------------- 键编码 ----------------
+    
+    private static byte[] statsKey(String fileSystemName) {
+        byte[] fs = fileSystemName.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(1 + fs.length).put(STATS_PREFIX).put(fs).array();
+    }
+    
+    private static byte[] aggregateKey(String fileSystemName, long dirId) {
+        byte[] fs = fileSystemName.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(NAMESPACE_PREFIX_LENGTH + fs.length).put(AGGREGATE_PREFIX).putLong(dirId).put(fs).array();
+    }
+    
+    private static byte[] quotaKey(String fileSystemName, long dirId) {
+        byte[] fs = fileSystemName.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(NAMESPACE_PREFIX_LENGTH + fs.length).put(QUOTA_PREFIX).putLong(dirId).put(fs).array();
+    }
+    
+    static byte[] inodeKey(String fileSystemName, long id) {
+        byte[] fs = fileSystemName.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(NAMESPACE_PREFIX_LENGTH + fs.length).put(INODE_PREFIX).putLong(id).put(fs).array();
+    }
+    
+    /**
+     * 0x02 {parentId}{fs长度，2字节}{fs}：名称带长度，任何两个文件系统的前缀都不会互相包含
+     */
+    static byte[] edgePrefix(String fileSystemName, long parentId) {
+        byte[] fs = fileSystemName.getBytes(StandardCharsets.UTF_8);
+        if (fs.length > 0xFFFF) {
+            throw new IllegalArgumentException("文件系统名称过长: " + fs.length + " 字节");
+        }
+        return ByteBuffer.allocate(NAMESPACE_PREFIX_LENGTH + Short.BYTES + fs.length)
+                .put(EDGE_PREFIX).putLong(parentId).putShort((short) fs.length).put(fs).array();
+    }
+    
+    static byte[] edgeKey(String fileSystemName, long parentId, String name) {
+        byte[] prefix = edgePrefix(fileSystemName, parentId);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(prefix.length + nameBytes.length).put(prefix).put(nameBytes).array();
+    }
+    
+    private static byte[] fsKey(String fileSystemName) {
+        byte[] fs = fileSystemName.getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[fs.length + 1];
+        key[0] = FS_PREFIX;
+        System.arraycopy(fs, 0, key, 1, fs.length);
+        return key;
+    }
+    
+    private static byte[] gcKey(long seq) {
+        return ByteBuffer.allocate(1 + Long.BYTES).put(GC_PREFIX).putLong(seq).array();
+    }
+    
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+    
+    private byte[] encodeInode(Inode inode) {
+        return inodeCodec.encode(inode);
+    }
+    
+    /**
+     * 解码inode记录；遇到旧的JSON记录时顺带重写为二进制
+     */
+    private Inode decodeInode(byte[] key, byte[] value) throws Exception {
+        Inode inode = inodeCodec.decode(value);
+        if (InodeCodec.isLegacyJson(value)) {
+            rewriteLegacyValue(key, value, inode);
+        }
+        return inode;
+    }
+    
+    /**
+     * 旧格式记录的惰性迁移
+     * 只在拿到写锁时进行（拿不到就留给下一次读取），并确认记录未被改写，不会覆盖并发写入的新值
+     */
+    private void rewriteLegacyValue(byte[] key, byte[] value, Inode inode) {
+        if (!writeLock.tryLock()) {
+            return;
+        }
+        try {
+            byte[] current = rocksDB.get(namespaceCf, key);
+            if (Arrays.equals(current, value)) {
+                rocksDB.put(namespaceCf, key, encodeInode(inode));
+            }
+        } catch (Exception e) {
+            log.warn("重写旧格式inode记录失败，下次读取时重试", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    private static long dentryHash(String fileSystemName, long parentId, String name) {
+        return (31L * fileSystemName.hashCode() + parentId) * 31L + name.hashCode();
+    }
+    
+    // inode ID全局唯一，只有各文件系统共用的根目录ID需要区分文件系统
+    private static long inodeHash(String fileSystemName, long id) {
+        return id == ROOT_INODE_ID ? ((long) fileSystemName.hashCode() << 32) | ROOT_INODE_ID : id;
+    }
+    
+    private static String parentOf(String path) {
+        int idx = path.lastIndexOf('/');
+        return idx <= 0 ? "/" : path.substring(0, idx);
+    }
+    
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+    
+    private static String normalizeDir(String dirPath) {
+        if (dirPath.length() > 1 && dirPath.endsWith("/")) {
+            return dirPath.substring(0, dirPath.length() - 1);
+        }
+        return dirPath;
+    }
+    
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 }
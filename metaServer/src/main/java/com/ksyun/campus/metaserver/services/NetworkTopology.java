@@ -0,0 +1,82 @@
+package com.ksyun.campus.metaserver.services;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 活跃DataServer的拓扑快照：按地址排序的节点数组，每个节点带可用区与机架标签，另有地址索引和可用区/机架计数
+ * 由ZkDataServerService在DataServer上下线或数据变化时构建并整体替换，读取方拿到的快照不会再变；构建代价与节点数成正比
+ */
+public final class NetworkTopology {
+
+    public static final NetworkTopology EMPTY = new NetworkTopology(new DataServerNode[0]);
+
+    private final DataServerNode[] nodes;
+    private final List<DataServerNode> nodeList;
+    private final Map<String, DataServerNode> byAddress;
+    private final int zoneCount;
+    private final int rackCount;
+
+    private NetworkTopology(DataServerNode[] nodes) {
+        this.nodes = nodes;
+        this.nodeList = Collections.unmodifiableList(Arrays.asList(nodes));
+        Map<String, DataServerNode> addressIndex = new HashMap<>();
+        Set<String> zones = new HashSet<>();
+        Set<String> racks = new HashSet<>();
+        for (DataServerNode node : nodes) {
+            addressIndex.put(node.address, node);
+            zones.add(node.zone);
+            racks.add(node.rackKey());
+        }
+        this.byAddress = addressIndex;
+        this.zoneCount = zones.size();
+        this.rackCount = racks.size();
+    }
+
+    /**
+     * 由ZkDataServerService的DataServer信息构建，缺少地址的节点忽略；节点按地址排序，同一组DataServer的快照顺序稳定
+     */
+    public static NetworkTopology of(Collection<Map<String, Object>> servers) {
+        DataServerNode[] built = new DataServerNode[servers.size()];
+        int count = 0;
+        for (Map<String, Object> server : servers) {
+            DataServerNode node = DataServerNode.fromServerInfo(server);
+            if (node != null) {
+                built[count++] = node;
+            }
+        }
+        DataServerNode[] nodes = Arrays.copyOf(built, count);
+        Arrays.sort(nodes, (a, b) -> a.address.compareTo(b.address));
+        return new NetworkTopology(nodes);
+    }
+
+    public List<DataServerNode> getNodes() {
+        return nodeList;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public DataServerNode get(int index) {
+        return nodes[index];
+    }
+
+    public DataServerNode getNode(String address) {
+        return byAddress.get(address);
+    }
+
+    public int getZoneCount() {
+        return zoneCount;
+    }
+
+    public int getRackCount() {
+        return rackCount;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ksyun.campus.metaserver.services;
+
+/**
+ * 本节点不是Leader（或提交期间失去了Leader身份），变更未被接受；leaderId为已知的Leader，可能为null
+ */
+public class NotLeaderException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final String leaderId;
+    
+    public NotLeaderException(String message, String leaderId) {
+        super(message);
+        this.leaderId = leaderId;
+    }
+    
+    public String getLeaderId() {
+        return leaderId;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ksyun.campus.metaserver.services;
+
+/**
+ * 路径已存在：如重命名的目标已存在，控制器映射为409
+ * 继承IllegalArgumentException，只关心参数错误的调用方无需区分
+ */
+public class PathAlreadyExistsException extends IllegalArgumentException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public PathAlreadyExistsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,109 @@
+package com.ksyun.campus.metaserver.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 名字空间分段路径锁
+ * 固定数量的读写锁按(文件系统, 路径)的哈希分段，不为每个路径单独建锁，内存占用与名字空间大小无关。
+ * 变更操作对目标路径加写锁、对其所有祖先（含根目录）加读锁：同一路径上的检查与提交不会被并发变更打断，
+ * 祖先目录被删除/重命名时与其下的写入互斥，而互不相关的路径落在不同分段上可以并行。
+ * 一次调用内的所有分段按下标升序获取，同一分段既要读又要写时只加写锁，因此任意两次加锁之间不会死锁；
+ * 调用方不得在持有锁期间再次调用lock（嵌套加锁无法保证全局顺序）
+ */
+@Slf4j
+@Service
+public class PathLockManager {
+
+    @Value("${metadata.lock.stripes:1024}")
+    private int stripeCount;
+
+    private ReentrantReadWriteLock[] stripes;
+    private int mask;
+
+    @PostConstruct
+    public void init() {
+        // 向上取整为2的幂，下标用位与计算
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        mask = size - 1;
+        log.info("路径锁初始化完成: 分段数={}", size);
+    }
+
+    /**
+     * 对writePaths加写锁、对它们的祖先加读锁，返回的Locks关闭时全部释放
+     */
+    public Locks lock(String fileSystemName, Collection<String> writePaths) {
+        // 分段下标 -> 是否需要写锁，TreeMap保证按下标升序获取
+        TreeMap<Integer, Boolean> plan = new TreeMap<>();
+        for (String path : writePaths) {
+            plan.put(stripeOf(fileSystemName, path), true);
+        }
+        for (String path : writePaths) {
+            for (String ancestor = path; !ancestor.equals("/"); ) {
+                ancestor = parentOf(ancestor);
+                plan.putIfAbsent(stripeOf(fileSystemName, ancestor), false);
+            }
+        }
+        List<Lock> held = new ArrayList<>(plan.size());
+        try {
+            for (Map.Entry<Integer, Boolean> entry : plan.entrySet()) {
+                ReentrantReadWriteLock stripe = stripes[entry.getKey()];
+                Lock lock = entry.getValue() ? stripe.writeLock() : stripe.readLock();
+                lock.lock();
+                held.add(lock);
+            }
+        } catch (RuntimeException | Error e) {
+            new Locks(held).close();
+            throw e;
+        }
+        return new Locks(held);
+    }
+
+    public Locks lock(String fileSystemName, String... writePaths) {
+        return lock(fileSystemName, List.of(writePaths));
+    }
+
+    private int stripeOf(String fileSystemName, String path) {
+        int h = fileSystemName.hashCode() * 31 + path.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static String parentOf(String path) {
+        int lastSlashIndex = path.lastIndexOf('/');
+        return lastSlashIndex <= 0 ? "/" : path.substring(0, lastSlashIndex);
+    }
+
+    /**
+     * 一次lock调用获得的全部锁，按获取的逆序释放
+     */
+    public static final class Locks implements AutoCloseable {
+
+        private final List<Lock> held;
+
+        private Locks(List<Lock> held) {
+            this.held = held;
+        }
+
+        @Override
+        public void close() {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+            held.clear();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.ksyun.campus.metaserver.services;
+
+/**
+ * 路径不存在：源路径或目标的父目录缺失，控制器映射为404
+ * 继承IllegalArgumentException，只关心参数错误的调用方无需区分
+ */
+public class PathNotFoundException extends IllegalArgumentException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public PathNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ksyun.campus.metaserver.services;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 副本放置策略：为新文件或补副本选择DataServer
+ * 默认实现为RackAwarePlacementPolicy，替换策略时注册另一个实现并标注@Primary即可
+ */
+public interface PlacementPolicy {
+
+    /**
+     * 选择最多numReplicas个新的副本位置
+     *
+     * @param numReplicas 需要新增的副本数
+     * @param existing    已有副本所在的DataServer地址：不会再被选中，其机架/可用区视为已占用
+     * @return DataServer地址（ip:port），按写入顺序排列，第一个作为主副本；可用节点不足时返回的数量少于numReplicas
+     */
+    List<String> chooseTargets(int numReplicas, Collection<String> existing);
+}
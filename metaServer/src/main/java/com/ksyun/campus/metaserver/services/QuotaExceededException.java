@@ -0,0 +1,13 @@
+package com.ksyun.campus.metaserver.services;
+
+/**
+ * 变更会使某个目录超出名字空间配额或空间配额，整批变更被拒绝
+ */
+public class QuotaExceededException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
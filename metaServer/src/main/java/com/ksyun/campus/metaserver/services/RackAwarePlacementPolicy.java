@@ -0,0 +1,241 @@
+package com.ksyun.campus.metaserver.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 机架/可用区感知的副本放置
+ * 第一个副本放在与本MetaServer同主机的DataServer上（数据由MetaServer直接写入各副本），没有则任选节点；
+ * 之后的副本依次优先选择尚未使用的可用区、尚未使用的机架，都用完后才在已用机架内选其他节点。
+ * 整个机架或可用区故障时至少还有一个副本可用；每个副本都由MetaServer直接写入，分散到不同机架不会增加额外的转发流量。
+ * 同一层级内按负载选择：随机取两个候选，选综合负载分较低的一个（power-of-two-choices）。
+ * 负载来自心跳，多个MetaServer在同一上报周期内不会一起涌向当前最空闲的节点；负载明显高于平均的节点只在没有其他候选时才使用。
+ * 负载分和候选顺序在拓扑快照发布时计算，每次放置只做数组扫描，不构建集合也不排序
+ */
+@Slf4j
+@Service
+public class RackAwarePlacementPolicy implements PlacementPolicy {
+
+    @Autowired
+    private ZkDataServerService zkDataServerService;
+
+    // 数据写入方（本MetaServer）的主机，用于本地优先
+    @Value("${metaserver.host:localhost}")
+    private String localHost;
+
+    // 综合负载分中各项的参考值：达到参考值时该项记1分，已用容量比例直接计分
+    @Value("${metadata.placement.load.queue-depth-ref:8}")
+    private double queueDepthRef;
+
+    @Value("${metadata.placement.load.write-mbps-ref:100}")
+    private double writeMBpsRef;
+
+    @Value("${metadata.placement.load.pending-transfers-ref:4}")
+    private double pendingTransfersRef;
+
+    @Value("${metadata.placement.load.disk-latency-ms-ref:50}")
+    private double diskLatencyMsRef;
+
+    // 负载分超过平均值的该倍数（且不低于1分）视为过载
+    @Value("${metadata.placement.load.overload-factor:2.0}")
+    private double overloadFactor;
+
+    private static final int TIER_LOCAL = 0;
+    private static final int TIER_NEW_ZONE = 1;
+    private static final int TIER_NEW_RACK = 2;
+    private static final int TIER_ANY = 3;
+
+    private static final int[] FIRST_REPLICA_TIERS = {TIER_LOCAL, TIER_ANY};
+    private static final int[] OTHER_REPLICA_TIERS = {TIER_NEW_ZONE, TIER_NEW_RACK, TIER_ANY};
+
+    // 按最近一次发布的拓扑快照计算的候选，由ZkDataServerService发布快照时重建
+    private volatile Candidates candidates;
+
+    @PostConstruct
+    public void init() {
+        zkDataServerService.addTopologyListener(topology -> rebuildCandidates());
+        // 注册前已发布的快照
+        rebuildCandidates();
+    }
+
+    @Override
+    public List<String> chooseTargets(int numReplicas, Collection<String> existing) {
+        Candidates current = candidates;
+        // 已有副本与本次已选节点：不再被选中，其机架/可用区视为已占用
+        DataServerNode[] placed = new DataServerNode[existing.size() + numReplicas];
+        int placedCount = 0;
+        for (String address : existing) {
+            DataServerNode node = current.topology.getNode(address);
+            if (node != null) {
+                placed[placedCount++] = node;
+            }
+        }
+
+        List<String> targets = new ArrayList<>(numReplicas);
+        for (int i = 0; i < numReplicas; i++) {
+            int[] tiers = placedCount == 0 ? FIRST_REPLICA_TIERS : OTHER_REPLICA_TIERS;
+            DataServerNode chosen = choose(current, tiers, placed, placedCount);
+            if (chosen == null) {
+                break;
+            }
+            targets.add(chosen.address);
+            placed[placedCount++] = chosen;
+        }
+        log.debug("副本放置: 需要{}个, 已有{}, 选择{}, 拓扑: {}个可用区/{}个机架",
+                numReplicas, existing, targets, current.topology.getZoneCount(), current.topology.getRackCount());
+        return targets;
+    }
+
+    /**
+     * 总是按当前最新的快照重建，注册时的初次构建与发布通知交错时也不会用旧快照覆盖新快照
+     */
+    private synchronized void rebuildCandidates() {
+        NetworkTopology topology = zkDataServerService.getTopology();
+        Candidates cached = candidates;
+        if (cached == null || cached.topology != topology) {
+            candidates = new Candidates(topology);
+        }
+    }
+
+    /**
+     * 按层级优先级在第一个有候选的层级中按power-of-two-choices选择；
+     * 先只考虑未过载且有剩余容量的节点（候选数组的前缀），全部不满足时再在所有节点中选择
+     */
+    private DataServerNode choose(Candidates current, int[] tiers, DataServerNode[] placed, int placedCount) {
+        DataServerNode chosen = chooseWithin(current, current.healthyCount, tiers, placed, placedCount);
+        return chosen != null ? chosen : chooseWithin(current, current.nodes.length, tiers, placed, placedCount);
+    }
+
+    private DataServerNode chooseWithin(Candidates current, int limit, int[] tiers, DataServerNode[] placed, int placedCount) {
+        for (int tier : tiers) {
+            DataServerNode chosen = powerOfTwoChoices(current, limit, tier, placed, placedCount);
+            if (chosen != null) {
+                return chosen;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在候选数组前limit个节点中符合层级条件的节点里随机取两个，返回负载分较低的一个；没有符合条件的节点时返回null
+     */
+    private DataServerNode powerOfTwoChoices(Candidates current, int limit, int tier, DataServerNode[] placed, int placedCount) {
+        int matched = 0;
+        for (int i = 0; i < limit; i++) {
+            if (matches(current.nodes[i], tier, placed, placedCount)) {
+                matched++;
+            }
+        }
+        if (matched == 0) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(matched);
+        int second = first;
+        if (matched > 1) {
+            // 第二个候选从其余节点中取，保证两者不同
+            second = random.nextInt(matched - 1);
+            if (second >= first) {
+                second++;
+            }
+        }
+        int firstIndex = -1;
+        int secondIndex = -1;
+        for (int i = 0, seen = 0; i < limit && (firstIndex < 0 || secondIndex < 0); i++) {
+            if (matches(current.nodes[i], tier, placed, placedCount)) {
+                if (seen == first) {
+                    firstIndex = i;
+                }
+                if (seen == second) {
+                    secondIndex = i;
+                }
+                seen++;
+            }
+        }
+        return current.nodes[current.scores[secondIndex] < current.scores[firstIndex] ? secondIndex : firstIndex];
+    }
+
+    private boolean matches(DataServerNode node, int tier, DataServerNode[] placed, int placedCount) {
+        boolean zoneUsed = false;
+        boolean rackUsed = false;
+        for (int i = 0; i < placedCount; i++) {
+            if (placed[i] == node) {
+                return false;
+            }
+            zoneUsed |= placed[i].zone.equals(node.zone);
+            rackUsed |= placed[i].rackKey().equals(node.rackKey());
+        }
+        switch (tier) {
+            case TIER_LOCAL:
+                return localHost.equals(node.host);
+            case TIER_NEW_ZONE:
+                return !zoneUsed;
+            case TIER_NEW_RACK:
+                return !rackUsed;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 综合负载分：队列深度、写入速率、待完成的FSCK传输、磁盘延迟按参考值归一化后与已用容量比例相加，越低越空闲
+     */
+    private double loadScore(DataServerNode node) {
+        return node.queueDepth / queueDepthRef
+                + node.writeMBps / writeMBpsRef
+                + node.pendingTransfers / pendingTransfersRef
+                + node.diskLatencyMs / diskLatencyMsRef
+                + node.usedRatio();
+    }
+
+    /**
+     * 一个拓扑快照上的放置候选：未过载且有剩余容量的节点排在前面，两段内各按负载分升序；scores与nodes一一对应
+     */
+    private final class Candidates {
+        final NetworkTopology topology;
+        final DataServerNode[] nodes;
+        final double[] scores;
+        final int healthyCount;
+
+        Candidates(NetworkTopology topology) {
+            this.topology = topology;
+            int size = topology.size();
+            double sum = 0.0;
+            Integer[] order = new Integer[size];
+            double[] rawScores = new double[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+                rawScores[i] = loadScore(topology.get(i));
+                sum += rawScores[i];
+            }
+            double overloadScore = Math.max(1.0, overloadFactor * (size == 0 ? 0.0 : sum / size));
+            boolean[] healthy = new boolean[size];
+            int healthyNodes = 0;
+            for (int i = 0; i < size; i++) {
+                healthy[i] = topology.get(i).remainingCapacity > 0 && rawScores[i] <= overloadScore;
+                if (healthy[i]) {
+                    healthyNodes++;
+                }
+            }
+            Arrays.sort(order, Comparator.<Integer>comparingInt(i -> healthy[i] ? 0 : 1)
+                    .thenComparingDouble(i -> rawScores[i]));
+            this.nodes = new DataServerNode[size];
+            this.scores = new double[size];
+            for (int i = 0; i < size; i++) {
+                nodes[i] = topology.get(order[i]);
+                scores[i] = rawScores[order[i]];
+            }
+            this.healthyCount = healthyNodes;
+        }
+    }
+}
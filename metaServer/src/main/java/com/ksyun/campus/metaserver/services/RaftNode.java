@@ -0,0 +1,972 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.AppendEntriesRequest;
+import com.ksyun.campus.metaserver.domain.AppendEntriesResponse;
+import com.ksyun.campus.metaserver.domain.EditLogEntry;
+import com.ksyun.campus.metaserver.domain.InstallSnapshotRequest;
+import com.ksyun.campus.metaserver.domain.SnapshotManifest;
+import com.ksyun.campus.metaserver.domain.VoteRequest;
+import com.ksyun.campus.metaserver.domain.VoteResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 元数据的Raft复制
+ * 每个批次作为一条日志先同步写入Leader本地，同时并行复制到各Follower，多数派落盘后提交，各节点按txid顺序应用到MetadataStorageService
+ * - 选举：Follower在随机化的选举超时内没有收到Leader消息则发起选举；仍能收到Leader消息的节点拒绝投票（Leader粘滞），
+ *   Leader在一个选举超时内得不到多数派响应则主动退位（checkQuorum），被分区的旧Leader不会继续接受写入
+ * - 组提交：提案进入队列，追加线程一次取出一批，分配连续的txid后一次同步写入，并发写入共享一次fsync
+ * - 流水线：对每个Follower最多同时有maxInflight个AppendEntries在途，不等待上一批确认；被拒绝或失败时退回探测模式逐条对齐
+ * - 快照：Follower所需的日志已被裁剪时，发送Leader的快照清单，Follower按清单拉取SST文件（支持断点续传）后整体替换其状态
+ * 不依赖Spring，多个节点可以在同一进程内通过内存中的RaftTransport组成集群
+ */
+@Slf4j
+public class RaftNode {
+
+    public enum Role { FOLLOWER, CANDIDATE, LEADER }
+
+    // 单个快照文件下载中断后的续传次数（含首次）
+    private static final int SNAPSHOT_FETCH_ATTEMPTS = 5;
+
+    /**
+     * 运行参数：选举超时在[electionTimeoutMs, 2*electionTimeoutMs)内随机；heartbeatIntervalMs同时是失败重试的退避时间
+     */
+    public record Options(long electionTimeoutMs, long heartbeatIntervalMs, int maxBatchEntries, int maxInflight, long proposeTimeoutMs) {}
+
+    /**
+     * 一次提案，batch为null表示新Leader上任时的空操作
+     */
+    private static final class Proposal {
+        final MetadataBatch batch;
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+        final long deadline;
+        long txid;
+        long term;
+
+        Proposal(MetadataBatch batch, long deadline, long term) {
+            this.batch = batch;
+            this.deadline = deadline;
+            this.term = term;
+        }
+    }
+
+    private final String selfId;
+    private final List<String> peers;
+    private final MetadataStorageService storage;
+    private final RaftTransport transport;
+    private final Options options;
+    private final Consumer<String> leaderListener;
+    private final long electionTimeoutNanos;
+    private final long heartbeatNanos;
+
+    // 日志写入（追加、截断、安装快照）串行执行；与节点状态锁（this）同时持有时先取logLock
+    private final Object logLock = new Object();
+
+    // 以下状态由this保护，任期与投票持久化在storage中
+    private volatile Role role = Role.FOLLOWER;
+    private volatile String leaderId;
+    private volatile long commitTxid;
+    // 当前任期的第一条日志（上任时的空操作），只有本任期的日志能按多数派计数提交，之前任期的日志随之间接提交
+    private long termStartTxid = Long.MAX_VALUE;
+    private long electionDeadline;
+    private volatile long lastLeaderContact;
+    private int votes;
+    private final Map<String, Replicator> replicators = new HashMap<>();
+
+    private final LinkedBlockingQueue<Proposal> proposals = new LinkedBlockingQueue<>();
+    // 已追加到本地日志、等待提交的提案：txid -> 提案
+    private final Map<Long, Proposal> pending = new ConcurrentHashMap<>();
+    // 安装快照期间不发起选举
+    private volatile boolean installingSnapshot;
+    private volatile boolean running;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService notifier;
+    private final ExecutorService snapshotSender;
+    private Thread appendThread;
+    private Thread applyThread;
+
+    public RaftNode(String selfId, List<String> peers, MetadataStorageService storage, RaftTransport transport,
+                    Options options, Consumer<String> leaderListener) {
+        this.selfId = selfId;
+        this.peers = List.copyOf(peers);
+        this.storage = storage;
+        this.transport = transport;
+        this.options = options;
+        this.leaderListener = leaderListener;
+        this.electionTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.electionTimeoutMs());
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(options.heartbeatIntervalMs());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("Raft-Timer-" + selfId));
+        this.notifier = Executors.newSingleThreadExecutor(daemon("Raft-Notify-" + selfId));
+        this.snapshotSender = Executors.newSingleThreadExecutor(daemon("Raft-Snapshot-" + selfId));
+    }
+
+    public void start() {
+        running = true;
+        synchronized (this) {
+            // 已应用的日志必然已提交
+            commitTxid = storage.getLastTxid();
+            resetElectionTimer();
+            if (peers.isEmpty()) {
+                // 单节点无需等待选举超时
+                electionDeadline = System.nanoTime();
+            }
+        }
+        appendThread = newThread("Raft-Append-" + selfId, this::appendLoop);
+        applyThread = newThread("Raft-Apply-" + selfId, this::applyLoop);
+        long tick = Math.max(5, options.heartbeatIntervalMs() / 3);
+        scheduler.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+        log.info("Raft节点启动: id={}, peers={}, term={}, 日志 txid {} ~ {}, 已应用 {}",
+                selfId, peers, storage.getCurrentTerm(), storage.getFirstTxid(), storage.getLastLogTxid(), storage.getLastTxid());
+    }
+
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        snapshotSender.shutdownNow();
+        synchronized (this) {
+            for (Replicator replicator : replicators.values()) {
+                replicator.stopped = true;
+            }
+            replicators.clear();
+            role = Role.FOLLOWER;
+            notifyAll();
+        }
+        if (appendThread != null) {
+            appendThread.interrupt();
+        }
+        if (applyThread != null) {
+            applyThread.interrupt();
+        }
+        // 调用方随后会关闭storage，返回前等各线程退出，不再有线程访问RocksDB
+        awaitExit();
+        NotLeaderException stopped = new NotLeaderException("Raft节点已停止", null);
+        for (Proposal proposal : proposals) {
+            proposal.future.completeExceptionally(stopped);
+        }
+        for (Proposal proposal : pending.values()) {
+            proposal.future.completeExceptionally(stopped);
+        }
+        notifier.shutdown();
+    }
+
+    // ---------------- 提案 ----------------
+
+    /**
+     * 提交一个批次，返回的future在该批次应用到本地后以其txid完成
+     * 不是Leader时以NotLeaderException完成；变更不合法或超出配额时以IllegalArgumentException/QuotaExceededException完成（日志已提交，但各节点上都不生效）；
+     * 超时以TimeoutException完成，此时变更可能已提交也可能被丢弃
+     */
+    public CompletableFuture<Long> propose(MetadataBatch batch) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.proposeTimeoutMs());
+        Proposal proposal = new Proposal(batch, deadline, 0);
+        synchronized (this) {
+            if (role != Role.LEADER) {
+                proposal.future.completeExceptionally(new NotLeaderException("不是Leader", leaderId));
+                return proposal.future;
+            }
+            proposals.offer(proposal);
+        }
+        return proposal.future;
+    }
+
+    /**
+     * 追加线程：一次取出队列中的一批提案，写成连续的日志条目，一次同步写入
+     */
+    private void appendLoop() {
+        List<Proposal> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(proposals.take());
+                proposals.drainTo(batch, options.maxBatchEntries() - 1);
+                appendProposals(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("追加日志失败: {} 条提案", batch.size(), e);
+                for (Proposal proposal : batch) {
+                    pending.remove(proposal.txid, proposal);
+                    proposal.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void appendProposals(List<Proposal> batch) {
+        List<EditLogEntry> entries = new ArrayList<>(batch.size());
+        synchronized (logLock) {
+            long term;
+            synchronized (this) {
+                if (role != Role.LEADER) {
+                    NotLeaderException notLeader = new NotLeaderException("不是Leader", leaderId);
+                    for (Proposal proposal : batch) {
+                        proposal.future.completeExceptionally(notLeader);
+                    }
+                    return;
+                }
+                term = storage.getCurrentTerm();
+            }
+            long txid = storage.getLastLogTxid();
+            long now = System.currentTimeMillis();
+            Proposal noop = null;
+            for (Proposal proposal : batch) {
+                proposal.txid = ++txid;
+                if (proposal.batch == null) {
+                    if (proposal.term == term && noop == null) {
+                        noop = proposal;
+                    }
+                    entries.add(new EditLogEntry(txid, term, now));
+                } else {
+                    entries.add(proposal.batch.toEditLogEntry(txid, term, now));
+                    pending.put(txid, proposal);
+                }
+                proposal.term = term;
+            }
+            storage.appendEditLog(entries);
+            logLock.notifyAll();
+            if (noop != null) {
+                synchronized (this) {
+                    if (role == Role.LEADER && storage.getCurrentTerm() == term && termStartTxid == Long.MAX_VALUE) {
+                        termStartTxid = noop.txid;
+                    }
+                }
+            }
+        }
+        maybeAdvanceCommit();
+        pumpReplicators();
+    }
+
+    // ---------------- 提交与应用 ----------------
+
+    /**
+     * 多数派（含自身）已落盘的最大txid即可提交的位置，且必须属于当前任期
+     */
+    private synchronized void maybeAdvanceCommit() {
+        if (role != Role.LEADER) {
+            return;
+        }
+        long[] matches = new long[replicators.size() + 1];
+        matches[0] = storage.getLastLogTxid();
+        int i = 1;
+        for (Replicator replicator : replicators.values()) {
+            matches[i++] = replicator.matchTxid;
+        }
+        Arrays.sort(matches);
+        long quorumTxid = matches[matches.length - quorum()];
+        if (quorumTxid > commitTxid && quorumTxid >= termStartTxid) {
+            commitTxid = quorumTxid;
+            notifyAll();
+        }
+    }
+
+    /**
+     * 应用线程：把已提交的日志按txid顺序应用到命名空间，并完成对应的提案
+     */
+    private void applyLoop() {
+        while (running) {
+            try {
+                long commit;
+                synchronized (this) {
+                    while (running && storage.getLastTxid() >= commitTxid) {
+                        wait(options.heartbeatIntervalMs());
+                    }
+                    commit = commitTxid;
+                }
+                long applied = storage.getLastTxid();
+                int limit = (int) Math.min(commit - applied, options.maxBatchEntries());
+                for (EditLogEntry entry : storage.readEditLog(applied, limit)) {
+                    if (entry.getTxid() > commit) {
+                        break;
+                    }
+                    applyEntry(entry);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // 磁盘等非确定性错误：不推进水位，稍后重试同一条
+                log.error("应用日志失败，稍后重试: txid={}", storage.getLastTxid() + 1, e);
+                try {
+                    Thread.sleep(options.heartbeatIntervalMs());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void applyEntry(EditLogEntry entry) {
+        Proposal proposal = pending.remove(entry.getTxid());
+        if (proposal != null && proposal.term != entry.getTerm()) {
+            // 该位置已被新Leader的日志覆盖，原提案没有提交
+            proposal.future.completeExceptionally(new NotLeaderException("提交期间Leader已变化", leaderId));
+            proposal = null;
+        }
+        try {
+            storage.applyEditLog(entry);
+        } catch (IllegalArgumentException | QuotaExceededException e) {
+            if (proposal != null) {
+                proposal.future.completeExceptionally(e);
+            }
+            return;
+        } catch (RuntimeException e) {
+            if (proposal != null) {
+                pending.put(entry.getTxid(), proposal);
+            }
+            throw e;
+        }
+        if (proposal != null) {
+            proposal.future.complete(entry.getTxid());
+        }
+    }
+
+    private void expireProposals() {
+        long now = System.nanoTime();
+        for (Proposal proposal : pending.values()) {
+            if (now - proposal.deadline > 0 && pending.remove(proposal.txid, proposal)) {
+                proposal.future.completeExceptionally(new TimeoutException("等待提交超时，结果未知: txid=" + proposal.txid));
+            }
+        }
+    }
+
+    // ---------------- 选举 ----------------
+
+    private void tick() {
+        try {
+            boolean elect = false;
+            List<Replicator> active = null;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (role == Role.LEADER) {
+                    if (!quorumActive(now)) {
+                        log.warn("一个选举超时内没有收到多数派响应，主动退位: term={}", storage.getCurrentTerm());
+                        becomeFollower(storage.getCurrentTerm(), null);
+                    } else {
+                        active = new ArrayList<>(replicators.values());
+                    }
+                } else if (now - electionDeadline >= 0 && !installingSnapshot) {
+                    elect = true;
+                }
+            }
+            if (elect) {
+                startElection();
+            }
+            if (active != null) {
+                for (Replicator replicator : active) {
+                    replicator.pump();
+                }
+            }
+            expireProposals();
+        } catch (Exception e) {
+            log.error("Raft定时任务异常", e);
+        }
+    }
+
+    /**
+     * 先预投票：以term+1询问各节点是否会投票，得到多数同意后才真正增加任期发起选举，
+     * 被隔离的节点因此不会不断抬高任期，重新连通后也不会迫使正常工作的Leader退位
+     */
+    private void startElection() {
+        VoteRequest request;
+        long term;
+        synchronized (this) {
+            if (role == Role.LEADER || System.nanoTime() - electionDeadline < 0) {
+                return;
+            }
+            resetElectionTimer();
+            if (peers.isEmpty()) {
+                campaign();
+                return;
+            }
+            votes = 1;
+            term = storage.getCurrentTerm();
+            request = new VoteRequest(term + 1, selfId, storage.getLastLogTxid(), storage.getLastLogTerm(), true);
+        }
+        for (String peer : peers) {
+            transport.requestVote(peer, request).whenComplete((response, error) -> {
+                if (response != null) {
+                    onPreVoteResponse(term, response);
+                }
+            });
+        }
+    }
+
+    private synchronized void onPreVoteResponse(long term, VoteResponse response) {
+        if (response.getTerm() > storage.getCurrentTerm()) {
+            becomeFollower(response.getTerm(), null);
+            return;
+        }
+        if (role == Role.LEADER || storage.getCurrentTerm() != term || !response.isGranted()) {
+            return;
+        }
+        if (++votes >= quorum()) {
+            campaign();
+        }
+    }
+
+    // 调用方持有this锁
+    private void campaign() {
+        long term = storage.getCurrentTerm() + 1;
+        storage.saveRaftState(term, selfId);
+        role = Role.CANDIDATE;
+        setLeader(null);
+        votes = 1;
+        resetElectionTimer();
+        log.info("发起选举: term={}, 日志末尾 txid={} term={}", term, storage.getLastLogTxid(), storage.getLastLogTerm());
+        if (votes >= quorum()) {
+            becomeLeader();
+            return;
+        }
+        VoteRequest request = new VoteRequest(term, selfId, storage.getLastLogTxid(), storage.getLastLogTerm(), false);
+        for (String peer : peers) {
+            transport.requestVote(peer, request).whenComplete((response, error) -> {
+                if (response != null) {
+                    onVoteResponse(request.getTerm(), response);
+                }
+            });
+        }
+    }
+
+    private synchronized void onVoteResponse(long term, VoteResponse response) {
+        if (response.getTerm() > storage.getCurrentTerm()) {
+            becomeFollower(response.getTerm(), null);
+            return;
+        }
+        if (role != Role.CANDIDATE || storage.getCurrentTerm() != term || !response.isGranted()) {
+            return;
+        }
+        if (++votes >= quorum()) {
+            becomeLeader();
+        }
+    }
+
+    /**
+     * 处理投票请求：候选人日志至少与本地一样新、且本任期尚未投给别人时投票
+     */
+    public synchronized VoteResponse handleVote(VoteRequest request) {
+        long term = storage.getCurrentTerm();
+        if (request.getTerm() < term) {
+            return new VoteResponse(term, false);
+        }
+        // Leader粘滞：仍能收到Leader消息时不理会更高任期的选举，避免短暂失联后重新加入的节点打断集群
+        if (request.getTerm() > term && (role == Role.LEADER
+                || (leaderId != null && System.nanoTime() - lastLeaderContact < electionTimeoutNanos))) {
+            return new VoteResponse(term, false);
+        }
+        boolean upToDate = request.getLastLogTerm() > storage.getLastLogTerm()
+                || (request.getLastLogTerm() == storage.getLastLogTerm() && request.getLastLogTxid() >= storage.getLastLogTxid());
+        if (request.isPreVote()) {
+            return new VoteResponse(term, request.getTerm() > term && upToDate);
+        }
+        if (request.getTerm() > term) {
+            becomeFollower(request.getTerm(), null);
+            term = request.getTerm();
+        }
+        String votedFor = storage.getVotedFor();
+        if (upToDate && (votedFor == null || votedFor.equals(request.getCandidateId()))) {
+            storage.saveRaftState(term, request.getCandidateId());
+            resetElectionTimer();
+            return new VoteResponse(term, true);
+        }
+        return new VoteResponse(term, false);
+    }
+
+    private void becomeLeader() {
+        role = Role.LEADER;
+        termStartTxid = Long.MAX_VALUE;
+        setLeader(selfId);
+        long nextTxid = storage.getLastLogTxid() + 1;
+        long now = System.nanoTime();
+        for (String peer : peers) {
+            replicators.put(peer, new Replicator(peer, storage.getCurrentTerm(), nextTxid, now));
+        }
+        // 空操作先于之后的所有提案进入队列，提交它即提交之前任期遗留的日志
+        proposals.offer(new Proposal(null, Long.MAX_VALUE, storage.getCurrentTerm()));
+        log.info("成为Leader: term={}, 日志末尾 txid={}", storage.getCurrentTerm(), nextTxid - 1);
+    }
+
+    private void becomeFollower(long term, String leader) {
+        if (term > storage.getCurrentTerm()) {
+            storage.saveRaftState(term, null);
+        }
+        if (role == Role.LEADER) {
+            log.info("退为Follower: term={}, leader={}", term, leader);
+            for (Replicator replicator : replicators.values()) {
+                replicator.stopped = true;
+            }
+            replicators.clear();
+        }
+        role = Role.FOLLOWER;
+        termStartTxid = Long.MAX_VALUE;
+        setLeader(leader);
+    }
+
+    /**
+     * 收到任期不低于本地的Leader消息
+     */
+    private void acceptLeader(long term, String leader) {
+        if (term > storage.getCurrentTerm() || role != Role.FOLLOWER) {
+            becomeFollower(term, leader);
+        } else {
+            setLeader(leader);
+        }
+        lastLeaderContact = System.nanoTime();
+        resetElectionTimer();
+    }
+
+    private void setLeader(String leader) {
+        if (!Objects.equals(leaderId, leader)) {
+            leaderId = leader;
+            if (leaderListener != null && !notifier.isShutdown()) {
+                notifier.execute(() -> leaderListener.accept(leader));
+            }
+        }
+    }
+
+    private void resetElectionTimer() {
+        electionDeadline = System.nanoTime() + electionTimeoutNanos + ThreadLocalRandom.current().nextLong(electionTimeoutNanos);
+    }
+
+    private boolean quorumActive(long now) {
+        int active = 1;
+        for (Replicator replicator : replicators.values()) {
+            if (now - replicator.lastAckNanos < electionTimeoutNanos) {
+                active++;
+            }
+        }
+        return active >= quorum();
+    }
+
+    private int quorum() {
+        return (peers.size() + 1) / 2 + 1;
+    }
+
+    // ---------------- Follower侧 ----------------
+
+    /**
+     * 处理AppendEntries：prevTxid处任期一致时追加，只截断与新条目冲突的后缀，已有的相同条目跳过（乱序或重复的请求不会截断更新的日志）
+     */
+    public AppendEntriesResponse handleAppendEntries(AppendEntriesRequest request) throws InterruptedException {
+        synchronized (logLock) {
+            long term;
+            synchronized (this) {
+                term = storage.getCurrentTerm();
+                if (request.getTerm() < term) {
+                    return new AppendEntriesResponse(term, false, 0);
+                }
+                acceptLeader(request.getTerm(), request.getLeaderId());
+                term = request.getTerm();
+            }
+            // 流水线中后发的请求可能先到达，短暂等待前面的请求写入（等待期间释放logLock）
+            long deadline = System.nanoTime() + heartbeatNanos;
+            long remaining;
+            while (request.getPrevTxid() > storage.getLastLogTxid() && (remaining = deadline - System.nanoTime()) > 0) {
+                logLock.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            }
+            if (storage.getCurrentTerm() != term) {
+                return new AppendEntriesResponse(storage.getCurrentTerm(), false, 0);
+            }
+            if (request.getPrevTxid() > storage.getLastLogTxid()) {
+                return new AppendEntriesResponse(term, false, storage.getLastLogTxid() + 1);
+            }
+            long logStart = storage.getLogStartTxid();
+            if (request.getPrevTxid() >= logStart && storage.termAt(request.getPrevTxid()) != request.getPrevTerm()) {
+                return new AppendEntriesResponse(term, false, storage.firstTxidOfTerm(request.getPrevTxid()));
+            }
+            // prevTxid之后第一条本地没有或任期不同的条目，从这里开始追加；已被快照覆盖的条目必然已提交，直接跳过
+            List<EditLogEntry> entries = request.getEntries();
+            int from = 0;
+            while (from < entries.size()) {
+                EditLogEntry entry = entries.get(from);
+                if (entry.getTxid() > logStart && (entry.getTxid() > storage.getLastLogTxid() || storage.termAt(entry.getTxid()) != entry.getTerm())) {
+                    break;
+                }
+                from++;
+            }
+            if (from < entries.size()) {
+                storage.appendEditLog(entries.subList(from, entries.size()));
+                logLock.notifyAll();
+            }
+            long matchTxid = Math.max(request.getPrevTxid() + entries.size(), logStart);
+            synchronized (this) {
+                long commit = Math.min(request.getLeaderCommit(), matchTxid);
+                if (commit > commitTxid) {
+                    commitTxid = commit;
+                    notifyAll();
+                }
+            }
+            return new AppendEntriesResponse(term, true, matchTxid);
+        }
+    }
+
+    /**
+     * 处理快照安装：本地已有快照位置的同一条日志（或已应用到更后）时不需要安装
+     * 否则从Leader逐个下载清单中的文件并校验，全部就绪后导入；下载失败时抛出异常，Leader稍后重发同一快照，已下载的部分续传
+     */
+    public AppendEntriesResponse handleInstallSnapshot(InstallSnapshotRequest request) throws IOException {
+        synchronized (logLock) {
+            long term;
+            synchronized (this) {
+                term = storage.getCurrentTerm();
+                if (request.getTerm() < term) {
+                    return new AppendEntriesResponse(term, false, 0);
+                }
+                acceptLeader(request.getTerm(), request.getLeaderId());
+                term = request.getTerm();
+            }
+            SnapshotManifest snapshot = request.getSnapshot();
+            if (snapshot.getTxid() > storage.getLastTxid() && storage.termAt(snapshot.getTxid()) != snapshot.getTerm()) {
+                installingSnapshot = true;
+                try {
+                    Path dir = storage.prepareSnapshotReceiveDir(snapshot.getId());
+                    for (SnapshotManifest.SnapshotFile file : snapshot.getFiles()) {
+                        fetchSnapshotFile(request.getLeaderId(), snapshot, file, dir);
+                    }
+                    storage.installSnapshot(snapshot, dir);
+                } finally {
+                    installingSnapshot = false;
+                }
+            }
+            synchronized (this) {
+                resetElectionTimer();
+                if (snapshot.getTxid() > commitTxid) {
+                    commitTxid = snapshot.getTxid();
+                    notifyAll();
+                }
+            }
+            logLock.notifyAll();
+            return new AppendEntriesResponse(term, true, snapshot.getTxid());
+        }
+    }
+
+    private void fetchSnapshotFile(String leader, SnapshotManifest snapshot, SnapshotManifest.SnapshotFile file, Path dir) throws IOException {
+        Path target = dir.resolve(file.getName());
+        for (int attempt = 1; ; attempt++) {
+            long offset = Files.exists(target) ? Files.size(target) : 0;
+            if (offset < file.getSize()) {
+                try (OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    transport.fetchSnapshotFile(leader, snapshot.getId(), file.getName(), offset, out);
+                } catch (IOException | RuntimeException e) {
+                    if (attempt >= SNAPSHOT_FETCH_ATTEMPTS) {
+                        throw e;
+                    }
+                    log.warn("下载快照文件中断，续传: {} offset={}, {}", file.getName(), Files.exists(target) ? Files.size(target) : 0, e.getMessage());
+                    continue;
+                }
+            }
+            if (storage.verifySnapshotFile(dir, file)) {
+                return;
+            }
+            // 长度超出或内容不一致，丢弃后重新下载
+            Files.deleteIfExists(target);
+            if (attempt >= SNAPSHOT_FETCH_ATTEMPTS) {
+                throw new IOException("快照文件校验失败: " + snapshot.getId() + "/" + file.getName());
+            }
+        }
+    }
+
+    // ---------------- Leader侧复制 ----------------
+
+    private void pumpReplicators() {
+        List<Replicator> active;
+        synchronized (this) {
+            if (role != Role.LEADER) {
+                return;
+            }
+            active = new ArrayList<>(replicators.values());
+        }
+        for (Replicator replicator : active) {
+            replicator.pump();
+        }
+    }
+
+    private void stepDown(long term) {
+        synchronized (this) {
+            if (term > storage.getCurrentTerm()) {
+                becomeFollower(term, null);
+            }
+        }
+    }
+
+    /**
+     * 向一个Follower复制日志
+     * 正常状态下连续发送、最多maxInflight个请求在途；探测状态（刚上任、被拒绝、请求失败后）一次只发一个，确认位置后恢复流水线。
+     * 每次回退递增epoch，之前发出的请求的响应直接丢弃。只持有自身的锁，调用节点方法前先释放，避免与节点状态锁交叉
+     */
+    private final class Replicator {
+        final String peer;
+        final long term;
+        long nextTxid;
+        volatile long matchTxid;
+        volatile long lastAckNanos;
+        volatile boolean stopped;
+        int inflight;
+        boolean probing = true;
+        boolean sendingSnapshot;
+        long epoch;
+        long lastSendNanos;
+        long retryAtNanos;
+
+        Replicator(String peer, long term, long nextTxid, long now) {
+            this.peer = peer;
+            this.term = term;
+            this.nextTxid = nextTxid;
+            this.lastAckNanos = now;
+            this.lastSendNanos = now - heartbeatNanos;
+        }
+
+        void pump() {
+            List<AppendEntriesRequest> requests = new ArrayList<>();
+            long sendEpoch;
+            boolean snapshot = false;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (stopped || sendingSnapshot || now - retryAtNanos < 0) {
+                    return;
+                }
+                int window = probing ? 1 : options.maxInflight();
+                while (inflight < window) {
+                    long lastLogTxid = storage.getLastLogTxid();
+                    boolean heartbeatDue = inflight == 0 && now - lastSendNanos >= heartbeatNanos;
+                    if (nextTxid > lastLogTxid && !heartbeatDue) {
+                        break;
+                    }
+                    long prevTxid = nextTxid - 1;
+                    long prevTerm = storage.termAt(prevTxid);
+                    if (prevTerm < 0) {
+                        // 所需日志已被裁剪
+                        sendingSnapshot = true;
+                        inflight++;
+                        snapshot = true;
+                        break;
+                    }
+                    List<EditLogEntry> entries = nextTxid <= lastLogTxid ? storage.readEditLog(prevTxid, options.maxBatchEntries()) : List.of();
+                    AppendEntriesRequest request = new AppendEntriesRequest();
+                    request.setTerm(term);
+                    request.setLeaderId(selfId);
+                    request.setPrevTxid(prevTxid);
+                    request.setPrevTerm(prevTerm);
+                    request.setEntries(entries);
+                    request.setLeaderCommit(commitTxid);
+                    requests.add(request);
+                    inflight++;
+                    lastSendNanos = now;
+                    if (probing) {
+                        break;
+                    }
+                    nextTxid += entries.size();
+                }
+                sendEpoch = epoch;
+            }
+            for (AppendEntriesRequest request : requests) {
+                transport.appendEntries(peer, request).whenComplete((response, error) -> onAppendResponse(sendEpoch, request, response, error));
+            }
+            if (snapshot) {
+                sendSnapshot();
+            }
+        }
+
+        private void onAppendResponse(long sentEpoch, AppendEntriesRequest request, AppendEntriesResponse response, Throwable error) {
+            boolean advanced = false;
+            synchronized (this) {
+                if (stopped || sentEpoch != epoch) {
+                    return;
+                }
+                inflight--;
+                long now = System.nanoTime();
+                if (error != null) {
+                    log.debug("向 {} 复制日志失败: {}", peer, error.getMessage());
+                    // 未得到回应不说明日志不一致，从失败的位置重新探测
+                    reset(Math.max(matchTxid + 1, request.getPrevTxid() + 1));
+                    retryAtNanos = now + heartbeatNanos;
+                } else if (response.getTerm() > term) {
+                    stopped = true;
+                } else if (response.isSuccess()) {
+                    lastAckNanos = now;
+                    if (response.getMatchTxid() > matchTxid) {
+                        matchTxid = response.getMatchTxid();
+                        advanced = true;
+                    }
+                    if (probing) {
+                        probing = false;
+                        nextTxid = Math.max(nextTxid, matchTxid + 1);
+                    }
+                } else {
+                    lastAckNanos = now;
+                    // 回退点落到本地已截断的日志之前时，先从本地日志起点再探测一次，仍不一致才发送快照
+                    long logStart = storage.getLogStartTxid();
+                    long next = Math.min(response.getMatchTxid(), request.getPrevTxid());
+                    if (next <= logStart && request.getPrevTxid() > logStart) {
+                        next = logStart + 1;
+                    }
+                    reset(Math.max(matchTxid + 1, next));
+                }
+            }
+            if (response != null && response.getTerm() > term) {
+                stepDown(response.getTerm());
+                return;
+            }
+            if (advanced) {
+                maybeAdvanceCommit();
+            }
+            pump();
+        }
+
+        private void reset(long next) {
+            epoch++;
+            inflight = 0;
+            probing = true;
+            nextTxid = next;
+        }
+
+        private void sendSnapshot() {
+            snapshotSender.execute(() -> {
+                try {
+                    SnapshotManifest snapshot = storage.prepareSnapshot();
+                    log.info("向 {} 发送快照: id={}, txid={}, term={}, {} 个文件", peer, snapshot.getId(), snapshot.getTxid(), snapshot.getTerm(), snapshot.getFiles().size());
+                    transport.installSnapshot(peer, new InstallSnapshotRequest(term, selfId, snapshot))
+                            .whenComplete((response, error) -> onSnapshotResponse(response, error));
+                } catch (Exception e) {
+                    onSnapshotResponse(null, e);
+                }
+            });
+        }
+
+        private void onSnapshotResponse(AppendEntriesResponse response, Throwable error) {
+            synchronized (this) {
+                sendingSnapshot = false;
+                if (stopped) {
+                    return;
+                }
+                long now = System.nanoTime();
+                if (error != null || response == null) {
+                    log.warn("向 {} 发送快照失败: {}", peer, error != null ? error.getMessage() : "无响应");
+                    reset(matchTxid + 1);
+                    retryAtNanos = now + electionTimeoutNanos;
+                } else if (response.getTerm() <= term) {
+                    lastAckNanos = now;
+                    matchTxid = Math.max(matchTxid, response.getMatchTxid());
+                    reset(matchTxid + 1);
+                    probing = false;
+                }
+            }
+            if (response != null && response.getTerm() > term) {
+                stepDown(response.getTerm());
+                return;
+            }
+            maybeAdvanceCommit();
+            pump();
+        }
+    }
+
+    // ---------------- 状态 ----------------
+
+    public boolean isLeader() {
+        return role == Role.LEADER;
+    }
+
+    public String getLeaderId() {
+        return leaderId;
+    }
+
+    public String getSelfId() {
+        return selfId;
+    }
+
+    public long getCommitTxid() {
+        return commitTxid;
+    }
+
+    /**
+     * 距最近一次收到Leader消息的毫秒数；Leader自身为0（checkQuorum保证失去多数派后及时退位），尚未联系过Leader时为Long.MAX_VALUE
+     */
+    public long getLeaderContactAgeMs() {
+        if (role == Role.LEADER) {
+            return 0;
+        }
+        if (leaderId == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastLeaderContact);
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", selfId);
+        status.put("role", role.name());
+        status.put("term", storage.getCurrentTerm());
+        status.put("leaderId", leaderId);
+        status.put("commitTxid", commitTxid);
+        status.put("appliedTxid", storage.getLastTxid());
+        status.put("firstLogTxid", storage.getFirstTxid());
+        status.put("lastLogTxid", storage.getLastLogTxid());
+        status.put("pendingProposals", pending.size() + proposals.size());
+        if (role == Role.LEADER) {
+            Map<String, Object> followers = new LinkedHashMap<>();
+            for (Replicator replicator : replicators.values()) {
+                Map<String, Object> follower = new LinkedHashMap<>();
+                follower.put("matchTxid", replicator.matchTxid);
+                follower.put("lastAckMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - replicator.lastAckNanos));
+                followers.put(replicator.peer, follower);
+            }
+            status.put("followers", followers);
+        }
+        return status;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void awaitExit() {
+        try {
+            scheduler.awaitTermination(options.proposeTimeoutMs(), TimeUnit.MILLISECONDS);
+            snapshotSender.awaitTermination(options.proposeTimeoutMs(), TimeUnit.MILLISECONDS);
+            for (Thread thread : new Thread[]{appendThread, applyThread}) {
+                if (thread != null) {
+                    thread.join(options.proposeTimeoutMs());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread newThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,267 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.config.ClusterConfig;
+import com.ksyun.campus.metaserver.domain.AppendEntriesRequest;
+import com.ksyun.campus.metaserver.domain.AppendEntriesResponse;
+import com.ksyun.campus.metaserver.domain.InstallSnapshotRequest;
+import com.ksyun.campus.metaserver.domain.VoteRequest;
+import com.ksyun.campus.metaserver.domain.VoteResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * MetaServer集群的元数据复制入口
+ * 所有元数据变更经submit提交为Raft日志，多数派落盘后才返回；集群成员取自cluster.metaserver.nodes，未配置时单节点运行。
+ * 同时作为RaftNode的HTTP传输：节点ID即host:port，请求发往对方的/internal/raft/*接口
+ */
+@Slf4j
+@Service
+public class RaftService implements RaftTransport, ApplicationRunner {
+
+    @Autowired
+    private MetadataStorageService metadataStorage;
+
+    @Autowired
+    private ClusterConfig clusterConfig;
+
+    @Value("${metaserver.host:localhost}")
+    private String serverHost;
+
+    @Value("${server.port:8000}")
+    private int serverPort;
+
+    // 选举超时，实际取[1, 2)倍之间的随机值
+    @Value("${metadata.raft.election-timeout-ms:1500}")
+    private long electionTimeoutMs;
+
+    @Value("${metadata.raft.heartbeat-interval-ms:300}")
+    private long heartbeatIntervalMs;
+
+    // 一次同步写入/一个AppendEntries携带的最大日志条数
+    @Value("${metadata.raft.max-batch-entries:256}")
+    private int maxBatchEntries;
+
+    // 每个Follower最多在途的AppendEntries请求数
+    @Value("${metadata.raft.max-inflight:8}")
+    private int maxInflight;
+
+    @Value("${metadata.raft.propose-timeout-ms:5000}")
+    private long proposeTimeoutMs;
+
+    @Value("${metadata.raft.rpc-timeout-ms:2000}")
+    private int rpcTimeoutMs;
+
+    // 快照安装请求要等Follower下载并导入完整个快照，单独使用更长的超时
+    @Value("${metadata.raft.snapshot-timeout-ms:600000}")
+    private int snapshotTimeoutMs;
+
+    // 下载快照文件时单次读取的超时，连接停滞超过该时间即中断并续传
+    @Value("${metadata.raft.snapshot-read-timeout-ms:30000}")
+    private int snapshotReadTimeoutMs;
+
+    // Follower本地读的陈旧度上限：距最近一次收到Leader消息超过该时间则拒绝读，由客户端改去其他节点
+    @Value("${metadata.read.max-staleness-ms:3000}")
+    private long readMaxStalenessMs;
+
+    // 读己之写：等待本地应用到客户端携带的txid的最长时间
+    @Value("${metadata.read.wait-ms:1000}")
+    private long readWaitMs;
+
+    private RestTemplate rpcTemplate;
+    private RestTemplate snapshotTemplate;
+    private RestTemplate snapshotFileTemplate;
+    private ExecutorService rpcExecutor;
+    private RaftNode raftNode;
+    private final List<Consumer<String>> leaderListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        rpcTemplate = new RestTemplate(requestFactory(rpcTimeoutMs));
+        snapshotTemplate = new RestTemplate(requestFactory(snapshotTimeoutMs));
+        snapshotFileTemplate = new RestTemplate(requestFactory(snapshotReadTimeoutMs));
+        rpcExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Raft-Rpc");
+            thread.setDaemon(true);
+            return thread;
+        });
+        String selfId = serverHost + ":" + serverPort;
+        List<String> peers = new ArrayList<>();
+        if (clusterConfig.getMetaserver() != null && clusterConfig.getMetaserver().getNodes() != null) {
+            for (ClusterConfig.NodeConfig node : clusterConfig.getMetaserver().getNodes()) {
+                String id = node.getHost() + ":" + node.getPort();
+                if (!id.equals(selfId)) {
+                    peers.add(id);
+                }
+            }
+        }
+        RaftNode.Options options = new RaftNode.Options(electionTimeoutMs, heartbeatIntervalMs, maxBatchEntries, maxInflight, proposeTimeoutMs);
+        raftNode = new RaftNode(selfId, peers, metadataStorage, this, options, leader -> {
+            for (Consumer<String> listener : leaderListeners) {
+                try {
+                    listener.accept(leader);
+                } catch (Exception e) {
+                    log.warn("Leader变更通知失败: leader={}", leader, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 容器启动完成（HTTP接口已可用）后再加入集群
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        raftNode.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        raftNode.stop();
+        rpcExecutor.shutdownNow();
+    }
+
+    /**
+     * 注册Leader变更回调，参数为新Leader的ID（host:port），未知时为null；回调在同一个线程中按变更顺序执行
+     */
+    public void addLeaderListener(Consumer<String> listener) {
+        leaderListeners.add(listener);
+    }
+
+    /**
+     * 提交一批元数据变更，返回其txid；返回时变更已复制到多数派并应用到本节点
+     * 变更不合法、超出配额、本节点不是Leader时抛出对应异常，整批不生效
+     */
+    public long submit(MetadataBatch batch) {
+        try {
+            return raftNode.propose(batch).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalArgumentException || cause instanceof QuotaExceededException || cause instanceof NotLeaderException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof TimeoutException) {
+                throw new RuntimeException("元数据提交超时", cause);
+            }
+            throw new RuntimeException("元数据提交失败", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("元数据提交被中断", e);
+        }
+    }
+
+    /**
+     * 本地读前检查：Follower与Leader失联超过陈旧度上限时拒绝；
+     * minTxid>0时等待本地应用到该txid（客户端见过的最新变更），超时拒绝。拒绝时抛出StaleReadException
+     */
+    public void awaitReadable(long minTxid) {
+        long age = raftNode.getLeaderContactAgeMs();
+        if (age > readMaxStalenessMs) {
+            throw new StaleReadException("本节点与Leader失联过久，元数据可能过旧");
+        }
+        if (minTxid <= metadataStorage.getLastTxid()) {
+            return;
+        }
+        try {
+            metadataStorage.awaitTxid(minTxid - 1, readWaitMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StaleReadException("等待元数据同步被中断");
+        }
+        if (metadataStorage.getLastTxid() < minTxid) {
+            throw new StaleReadException("等待元数据同步超时: 需要txid=" + minTxid + ", 本地txid=" + metadataStorage.getLastTxid());
+        }
+    }
+
+    /**
+     * 本节点已应用的最新txid，随响应返回给客户端作为读己之写的依据
+     */
+    public long getAppliedTxid() {
+        return metadataStorage.getLastTxid();
+    }
+
+    public boolean isLeader() {
+        return raftNode.isLeader();
+    }
+
+    /**
+     * 当前Leader的地址 host:port，未知时为null
+     */
+    public String getLeaderAddress() {
+        return raftNode.getLeaderId();
+    }
+
+    public String getSelfAddress() {
+        return raftNode.getSelfId();
+    }
+
+    public Map<String, Object> getStatus() {
+        return raftNode.getStatus();
+    }
+
+    public VoteResponse handleVote(VoteRequest request) {
+        return raftNode.handleVote(request);
+    }
+
+    public AppendEntriesResponse handleAppendEntries(AppendEntriesRequest request) throws InterruptedException {
+        return raftNode.handleAppendEntries(request);
+    }
+
+    public AppendEntriesResponse handleInstallSnapshot(InstallSnapshotRequest request) throws IOException {
+        return raftNode.handleInstallSnapshot(request);
+    }
+
+    // ---------------- HTTP传输 ----------------
+
+    @Override
+    public CompletableFuture<VoteResponse> requestVote(String peer, VoteRequest request) {
+        return CompletableFuture.supplyAsync(
+                () -> rpcTemplate.postForObject("http://" + peer + "/internal/raft/vote", request, VoteResponse.class), rpcExecutor);
+    }
+
+    @Override
+    public CompletableFuture<AppendEntriesResponse> appendEntries(String peer, AppendEntriesRequest request) {
+        return CompletableFuture.supplyAsync(
+                () -> rpcTemplate.postForObject("http://" + peer + "/internal/raft/append", request, AppendEntriesResponse.class), rpcExecutor);
+    }
+
+    @Override
+    public CompletableFuture<AppendEntriesResponse> installSnapshot(String peer, InstallSnapshotRequest request) {
+        return CompletableFuture.supplyAsync(
+                () -> snapshotTemplate.postForObject("http://" + peer + "/internal/raft/snapshot", request, AppendEntriesResponse.class), rpcExecutor);
+    }
+
+    @Override
+    public void fetchSnapshotFile(String peer, String snapshotId, String fileName, long offset, OutputStream out) {
+        snapshotFileTemplate.execute("http://" + peer + "/internal/raft/snapshot/{snapshotId}/{fileName}?offset={offset}", HttpMethod.GET, null,
+                response -> response.getBody().transferTo(out), snapshotId, fileName, offset);
+    }
+
+    private static SimpleClientHttpRequestFactory requestFactory(int timeoutMs) {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(Math.min(timeoutMs, 2000));
+        factory.setReadTimeout(timeoutMs);
+        return factory;
+    }
+}
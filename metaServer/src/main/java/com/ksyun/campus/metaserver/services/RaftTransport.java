@@ -0,0 +1,29 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.AppendEntriesRequest;
+import com.ksyun.campus.metaserver.domain.AppendEntriesResponse;
+import com.ksyun.campus.metaserver.domain.InstallSnapshotRequest;
+import com.ksyun.campus.metaserver.domain.VoteRequest;
+import com.ksyun.campus.metaserver.domain.VoteResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Raft节点之间的通信，peer为节点ID（host:port）
+ * 除快照文件下载外方法均为异步，不阻塞调用线程；请求失败（超时、连接拒绝等）时future异常完成
+ */
+public interface RaftTransport {
+    
+    CompletableFuture<VoteResponse> requestVote(String peer, VoteRequest request);
+    
+    CompletableFuture<AppendEntriesResponse> appendEntries(String peer, AppendEntriesRequest request);
+    
+    CompletableFuture<AppendEntriesResponse> installSnapshot(String peer, InstallSnapshotRequest request);
+
+    /**
+     * 同步下载peer上快照文件从offset开始的剩余部分，边收边写入out；中途失败时已写入的部分保留，可从新的offset续传
+     */
+    void fetchSnapshotFile(String peer, String snapshotId, String fileName, long offset, OutputStream out) throws IOException;
+}
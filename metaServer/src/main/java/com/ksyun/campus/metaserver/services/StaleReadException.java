@@ -0,0 +1,13 @@
+package com.ksyun.campus.metaserver.services;
+
+/**
+ * 本节点的元数据可能过旧，无法满足读请求的一致性要求（与Leader失联过久，或等待客户端要求的txid超时）
+ */
+public class StaleReadException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public StaleReadException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,273 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.ReplicaData;
+import com.ksyun.campus.metaserver.domain.StatInfo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按路径缓存解码后的StatInfo，命中时跳过路径解析与inode解码
+ * 淘汰策略参照W-TinyLFU：新条目先进入容量1%的窗口LRU，被挤出窗口时与主区LRU尾部比较访问频率（Count-Min Sketch估计），
+ * 频率更高者留下，一次性扫描不会冲掉热点。
+ * 读路径只访问ConcurrentHashMap；访问顺序与频率在tryLock成功时才更新，竞争激烈时丢弃少量访问记录换取不阻塞。
+ * 缓存中的对象不外泄，读写均复制，调用方修改返回值不会污染缓存。
+ * 回填与失效共用元数据提交代数：回填在policyLock内确认代数未变，失效在推进代数之后进行，二者不会交错出旧值
+ */
+class StatInfoCache {
+
+    private final AtomicLong generation;
+    private final Map<String, StatInfo> data = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    // 以下结构只在policyLock内访问
+    private final LinkedHashMap<String, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final int windowCapacity;
+    private final int mainCapacity;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    
+    StatInfoCache(int capacity, AtomicLong generation) {
+        this.generation = generation;
+        int total = Math.max(16, capacity);
+        this.windowCapacity = Math.max(1, total / 100);
+        this.mainCapacity = total - windowCapacity;
+        this.sketch = new FrequencySketch(total);
+    }
+    
+    StatInfo get(String fileSystemName, String path) {
+        String key = key(fileSystemName, path);
+        StatInfo cached = data.get(key);
+        if (cached == null) {
+            misses.increment();
+            if (policyLock.tryLock()) {
+                try {
+                    sketch.increment(key);
+                } finally {
+                    policyLock.unlock();
+                }
+            }
+            return null;
+        }
+        hits.increment();
+        if (policyLock.tryLock()) {
+            try {
+                sketch.increment(key);
+                // 触发access-order重排
+                if (window.get(key) == null) {
+                    main.get(key);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return copy(cached);
+    }
+    
+    /**
+     * 回填缓存，readGeneration为读盘前取得的提交代数，期间有提交则放弃回填
+     */
+    void put(String fileSystemName, String path, StatInfo statInfo, long readGeneration) {
+        String key = key(fileSystemName, path);
+        policyLock.lock();
+        try {
+            if (generation.get() != readGeneration) {
+                return;
+            }
+            if (data.put(key, copy(statInfo)) != null) {
+                return;
+            }
+            window.put(key, Boolean.TRUE);
+            if (window.size() <= windowCapacity) {
+                return;
+            }
+            String candidate = removeEldest(window);
+            if (main.size() < mainCapacity) {
+                main.put(candidate, Boolean.TRUE);
+                return;
+            }
+            String victim = main.keySet().iterator().next();
+            if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                main.remove(victim);
+                data.remove(victim);
+                main.put(candidate, Boolean.TRUE);
+                evictions.increment();
+            } else {
+                data.remove(candidate);
+                rejections.increment();
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+    
+    void invalidate(String fileSystemName, String path) {
+        String key = key(fileSystemName, path);
+        policyLock.lock();
+        try {
+            if (data.remove(key) != null) {
+                window.remove(key);
+                main.remove(key);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+    
+    /**
+     * 失效目录下的所有路径，需遍历整个缓存，只在删除目录时调用
+     */
+    void invalidateSubtree(String fileSystemName, String dirPath) {
+        String prefix = key(fileSystemName, dirPath.endsWith("/") ? dirPath : dirPath + "/");
+        policyLock.lock();
+        try {
+            for (Iterator<String> it = data.keySet().iterator(); it.hasNext(); ) {
+                String key = it.next();
+                if (key.startsWith(prefix)) {
+                    it.remove();
+                    window.remove(key);
+                    main.remove(key);
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+    
+    void clear() {
+        policyLock.lock();
+        try {
+            data.clear();
+            window.clear();
+            main.clear();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+    
+    Map<String, String> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        Map<String, String> stats = new LinkedHashMap<>();
+        stats.put("statCacheSize", String.valueOf(data.size()));
+        stats.put("statCacheCapacity", String.valueOf(windowCapacity + mainCapacity));
+        stats.put("statCacheHits", String.valueOf(hitCount));
+        stats.put("statCacheMisses", String.valueOf(missCount));
+        stats.put("statCacheHitRate", requests == 0 ? "0.0" : String.format("%.4f", (double) hitCount / requests));
+        stats.put("statCacheEvictions", String.valueOf(evictions.sum()));
+        stats.put("statCacheRejections", String.valueOf(rejections.sum()));
+        return stats;
+    }
+    
+    private static String removeEldest(LinkedHashMap<String, Boolean> lru) {
+        Iterator<String> it = lru.keySet().iterator();
+        String eldest = it.next();
+        it.remove();
+        return eldest;
+    }
+    
+    private static String key(String fileSystemName, String path) {
+        return fileSystemName + '\0' + path;
+    }
+    
+    private static StatInfo copy(StatInfo source) {
+        StatInfo target = new StatInfo();
+        target.setPath(source.getPath());
+        target.setSize(source.getSize());
+        target.setMtime(source.getMtime());
+        target.setType(source.getType());
+        if (source.getReplicaData() != null) {
+            List<ReplicaData> replicas = new ArrayList<>(source.getReplicaData().size());
+            for (ReplicaData replica : source.getReplicaData()) {
+                ReplicaData r = new ReplicaData();
+                r.id = replica.id;
+                r.dsNode = replica.dsNode;
+                r.path = replica.path;
+                r.offset = replica.offset;
+                r.length = replica.length;
+                r.isPrimary = replica.isPrimary;
+                replicas.add(r);
+            }
+            target.setReplicaData(replicas);
+        }
+        return target;
+    }
+    
+    /**
+     * 4位计数器的Count-Min Sketch，计数总和达到10倍容量时全部减半，让历史热度逐渐衰减
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+        
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(8, capacity - 1) << 1) / 4;
+            this.table = new long[Math.max(8, size)];
+            this.tableMask = table.length - 1;
+            this.sampleSize = 10 * capacity;
+        }
+        
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int min = 15;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                min = Math.min(min, (int) ((table[index] >>> offset) & 0xF));
+            }
+            return min;
+        }
+        
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = counterOffset(hash, i);
+                long mask = 0xFL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+        
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            return (int) (h ^ (h >>> 32)) & tableMask;
+        }
+        
+        // 每个long含16个4位计数器，4个哈希函数各用其中一组
+        private static int counterOffset(int hash, int i) {
+            return (((hash >>> (i << 3)) & 3) + (i << 2)) << 2;
+        }
+        
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -9,7 +9,9 @@ import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -27,6 +29,9 @@ public class ZkDataServerService {
     private final Map<String, String> dataServerLastData = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
     private String dataServerPath;
+    // 活跃DataServer的不可变快照，ZK节点或数据变化时整体替换，放置与FSCK只读取快照
+    private volatile NetworkTopology topology = NetworkTopology.EMPTY;
+    private final List<Consumer<NetworkTopology>> topologyListeners = new CopyOnWriteArrayList<>();
     
     @PostConstruct
     public void init() {
@@ -118,8 +123,10 @@ public class ZkDataServerService {
                             dataServers.put(serverId, server);
                             // 更新缓存
                             dataServerLastData.put(serverId, serverInfo);
+                            publishTopology();
                             if (changed) {
-                                log.info("DataServer {} 数据更新: {}", serverId, serverInfo);
+                                // 负载指标每次心跳都会变化，按debug输出
+                                log.debug("DataServer {} 数据更新: {}", serverId, serverInfo);
                             } else {
                                 log.debug("DataServer {} 数据内容未变，跳过日志", serverId);
                             }
@@ -170,23 +177,30 @@ public class ZkDataServerService {
             List<String> children = zooKeeper.getChildren(dataServerPath, false);
             Set<String> aliveSet = new HashSet<>(children);
 
-            // 标记存在的为active并刷新时间，不存在的为inactive
+            // 标记存在的为active并刷新时间，不存在的为inactive；只有活跃状态变化时才重建拓扑
+            boolean flipped = false;
             for (Map.Entry<String, Map<String, Object>> entry : dataServers.entrySet()) {
                 String serverId = entry.getKey();
                 Map<String, Object> server = entry.getValue();
-                if (aliveSet.contains(serverId)) {
+                boolean wasActive = Boolean.TRUE.equals(server.get("active"));
+                boolean alive = aliveSet.contains(serverId);
+                flipped |= wasActive != alive;
+                if (alive) {
                     server.put("active", true);
                     server.put("status", "ACTIVE");
                     server.put("lastHeartbeat", System.currentTimeMillis());
                     log.debug("DataServer {} 心跳正常", serverId);
                 } else {
-                    if (Boolean.TRUE.equals(server.get("active"))) {
+                    if (wasActive) {
                         log.warn("数据服务器 {} 不在ZK列表中，标记为不可用", serverId);
                     }
                     server.put("active", false);
                     server.put("status", "INACTIVE");
                 }
             }
+            if (flipped) {
+                publishTopology();
+            }
         } catch (Exception e) {
             log.error("心跳存在性检查失败", e);
         }
@@ -214,6 +228,7 @@ public class ZkDataServerService {
                 }
             }
             
+            publishTopology();
             log.info("成功加载 {} 个数据服务器", dataServers.size());
             
         } catch (Exception e) {
@@ -246,6 +261,11 @@ public class ZkDataServerService {
                     long used = json.get("usedCapacity") instanceof Number ? ((Number) json.get("usedCapacity")).longValue() : 0L;
                     long fileTotal = json.get("fileTotal") instanceof Number ? ((Number) json.get("fileTotal")).longValue() : 0L;
                     String status = json.get("status") != null ? String.valueOf(json.get("status")) : "unknown";
+                    // 实时负载，旧版本DataServer不上报时按空闲处理
+                    int queueDepth = json.get("queueDepth") instanceof Number ? ((Number) json.get("queueDepth")).intValue() : 0;
+                    double writeMBps = json.get("writeMBps") instanceof Number ? ((Number) json.get("writeMBps")).doubleValue() : 0.0;
+                    int pendingTransfers = json.get("pendingTransfers") instanceof Number ? ((Number) json.get("pendingTransfers")).intValue() : 0;
+                    double diskLatencyMs = json.get("diskLatencyMs") instanceof Number ? ((Number) json.get("diskLatencyMs")).doubleValue() : 0.0;
 
                     log.debug("解析容量信息: totalCapacity={} ({}), usedCapacity={} ({}), 原始值: totalCapacity={}, usedCapacity={}", 
                              total, total, used, used, json.get("totalCapacity"), json.get("usedCapacity"));
@@ -259,6 +279,10 @@ public class ZkDataServerService {
                     server.put("totalCapacity", total);
                     server.put("usedCapacity", used);
                     server.put("fileTotal", fileTotal);
+                    server.put("queueDepth", queueDepth);
+                    server.put("writeMBps", writeMBps);
+                    server.put("pendingTransfers", pendingTransfers);
+                    server.put("diskLatencyMs", diskLatencyMs);
                     // 计算剩余容量
                     long remainingCapacity = Math.max(0, total - used);
                     server.put("remainingCapacity", remainingCapacity);
@@ -367,10 +391,43 @@ public class ZkDataServerService {
         }
     }
     
-    public List<Map<String, Object>> getActiveDataServers() {
-        return dataServers.values().stream()
-                .filter(server -> (Boolean) server.get("active"))
-                .toList();
+    /**
+     * 由当前活跃的DataServer重建拓扑快照并通知监听方；ZK事件线程与心跳检查线程都会调用，串行化保证后构建的快照后发布
+     */
+    private synchronized void publishTopology() {
+        List<Map<String, Object>> actives = new ArrayList<>();
+        for (Map<String, Object> server : dataServers.values()) {
+            if (Boolean.TRUE.equals(server.get("active"))) {
+                actives.add(server);
+            }
+        }
+        NetworkTopology published = NetworkTopology.of(actives);
+        topology = published;
+        for (Consumer<NetworkTopology> listener : topologyListeners) {
+            try {
+                listener.accept(published);
+            } catch (Exception e) {
+                log.warn("拓扑变更通知失败", e);
+            }
+        }
+    }
+    
+    /**
+     * 注册拓扑变更回调，在发布新快照的线程中按发布顺序执行，用于在请求路径之外预先计算依赖拓扑的数据
+     */
+    public void addTopologyListener(Consumer<NetworkTopology> listener) {
+        topologyListeners.add(listener);
+    }
+    
+    /**
+     * 活跃DataServer的拓扑快照，返回的对象不可变，调用方无需复制
+     */
+    public NetworkTopology getTopology() {
+        return topology;
+    }
+    
+    public List<DataServerNode> getActiveDataServers() {
+        return topology.getNodes();
     }
     
     public Map<String, Map<String, Object>> getAllDataServers() {
@@ -1,7 +1,12 @@
 package com.ksyun.campus.metaserver.services;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ksyun.campus.metaserver.domain.MountEntry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.zookeeper.*;
+import org.apache.zookeeper.data.Stat;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
@@ -9,13 +14,21 @@ import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * MetaServer在ZK上的注册
+ * Leader由RaftService选出，这里只把当前Leader发布到 {组根}/leader/leader（临时节点），供客户端与DataServer发现。
+ * 多个MetaServer组（各自独立的Raft副本组）分担命名空间：default组的组根即 {root}，其他组为 {root}/groups/{组名}；
+ * 挂载表 {root}/mounts 把文件系统或子树映射到组，客户端据此路由，本节点收到不属于本组的路径时拒绝
+ */
 @Slf4j
 @Service
 public class ZkMetaServerService implements ApplicationRunner {
@@ -32,18 +45,36 @@ public class ZkMetaServerService implements ApplicationRunner {
     @Value("${metaserver.host:localhost}")
     private String serverHost;
     
+    // 本节点所属的MetaServer组，同组节点组成一个Raft副本组（cluster.metaserver.nodes只列同组节点）
+    @Value("${metaserver.group:default}")
+    private String group;
+    
+    @Autowired
+    private RaftService raftService;
+    
     private ZooKeeper zooKeeper;
-    private final AtomicBoolean isLeader = new AtomicBoolean(false);
     private final AtomicBoolean isRunning = new AtomicBoolean(true);
     private String leaderPath;
     private String metaServerPath;
     
+    public static final String DEFAULT_GROUP = "default";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<MountEntry>> MOUNT_LIST_TYPE = new TypeReference<List<MountEntry>>() {};
+    // 挂载表本地缓存，由ZK watch刷新
+    private volatile List<MountEntry> mountEntries = Collections.emptyList();
+    private final Watcher mountWatcher = event -> {
+        if (event.getType() != Watcher.Event.EventType.None) {
+            loadMountTable();
+        }
+    };
+    
     @PostConstruct
     public void init() {
         try {
             connectToZookeeper();
             createMetaServerNode();
-            startLeaderElection();
+            loadMountTable();
+            raftService.addLeaderListener(leader -> publishLeader());
             log.info("ZkMetaServerService初始化完成");
         } catch (Exception e) {
             log.error("初始化ZK元数据服务失败", e);
@@ -79,7 +110,8 @@ public class ZkMetaServerService implements ApplicationRunner {
             }
             connectToZookeeper();
             createMetaServerNode();
-            startLeaderElection();
+            loadMountTable();
+            publishLeader();
             log.info("重新连接Zookeeper成功");
         } catch (Exception e) {
             log.error("重新连接Zookeeper失败", e);
@@ -89,16 +121,10 @@ public class ZkMetaServerService implements ApplicationRunner {
     private void createMetaServerNode() {
         try {
             String metaServerId = "meta" + serverPort;
-            metaServerPath = zkRootPath + "/metaservers/" + metaServerId;
+            metaServerPath = groupRoot() + "/metaservers/" + metaServerId;
             
-            // 创建metaservers路径
-            try {
-                zooKeeper.create(zkRootPath + "/metaservers", new byte[0], 
-                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
-                log.info("创建Zookeeper元数据服务器路径: {}", zkRootPath + "/metaservers");
-            } catch (KeeperException.NodeExistsException e) {
-                log.debug("Zookeeper元数据服务器路径已存在: {}", zkRootPath + "/metaservers");
-            }
+            // 创建metaservers路径（非default组连同组根一起创建）
+            ensurePath(groupRoot() + "/metaservers");
             
             // 创建当前MetaServer节点
             String serverInfo = serverHost + ":" + serverPort + ":active:" + System.currentTimeMillis();
@@ -111,94 +137,172 @@ public class ZkMetaServerService implements ApplicationRunner {
         }
     }
     
-    private void startLeaderElection() {
+    /**
+     * Leader变更或重连ZK后调用：本节点是Raft Leader时发布（覆盖旧Leader尚未过期的临时节点），不再是Leader时撤下自己发布的节点
+     */
+    private synchronized void publishLeader() {
+        if (zooKeeper == null) {
+            return;
+        }
         try {
-            leaderPath = zkRootPath + "/leader";
-            
-            // 创建leader路径
+            leaderPath = groupRoot() + "/leader";
+            ensurePath(leaderPath);
+            String leaderNodePath = leaderPath + "/leader";
+            String self = serverHost + ":" + serverPort;
+            String published = null;
             try {
-                zooKeeper.create(leaderPath, new byte[0], 
-                    ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
-                log.info("创建Zookeeper leader路径: {}", leaderPath);
-            } catch (KeeperException.NodeExistsException e) {
-                log.debug("Zookeeper leader路径已存在: {}", leaderPath);
+                published = new String(zooKeeper.getData(leaderNodePath, false, null));
+            } catch (KeeperException.NoNodeException e) {
+                // 尚未发布
+            }
+            boolean publishedBySelf = published != null && published.startsWith(self + ":");
+            if (raftService.isLeader()) {
+                if (published != null && !publishedBySelf) {
+                    zooKeeper.delete(leaderNodePath, -1);
+                }
+                if (!publishedBySelf) {
+                    String leaderData = self + ":" + System.currentTimeMillis();
+                    zooKeeper.create(leaderNodePath, leaderData.getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
+                    log.info("发布Leader: {} -> {}", leaderNodePath, leaderData);
+                }
+            } else if (publishedBySelf) {
+                zooKeeper.delete(leaderNodePath, -1);
+                log.info("不再是Leader，撤下 {}", leaderNodePath);
             }
-            
-            // 尝试成为leader
-            tryBecomeLeader();
-            
         } catch (Exception e) {
-            log.error("启动leader选举失败", e);
+            log.error("发布Leader失败", e);
         }
     }
     
-    private void tryBecomeLeader() {
-        try {
-            String leaderNodePath = leaderPath + "/leader";
-            String leaderData = serverHost + ":" + serverPort + ":" + System.currentTimeMillis();
-            
-            zooKeeper.create(leaderNodePath, leaderData.getBytes(), 
-                ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
-            
-            // 成功创建leader节点，成为leader
-            isLeader.set(true);
-            log.info("成功成为leader: {} -> {}", leaderNodePath, leaderData);
-            
-            // 设置leader节点删除监听
-            watchLeaderNode(leaderNodePath);
-            
-        } catch (KeeperException.NodeExistsException e) {
-            // leader节点已存在，成为follower
-            log.info("leader节点已存在，成为follower");
-            watchLeaderNode();
-        } catch (Exception e) {
-            log.error("尝试成为leader失败", e);
+    /**
+     * 本组在ZK上的根路径
+     */
+    private String groupRoot() {
+        return DEFAULT_GROUP.equals(group) ? zkRootPath : zkRootPath + "/groups/" + group;
+    }
+    
+    /**
+     * 逐级创建持久节点，已存在的跳过
+     */
+    private void ensurePath(String path) throws KeeperException, InterruptedException {
+        StringBuilder current = new StringBuilder();
+        for (String part : path.split("/")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            current.append('/').append(part);
+            try {
+                zooKeeper.create(current.toString(), new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+                log.info("创建Zookeeper路径: {}", current);
+            } catch (KeeperException.NodeExistsException e) {
+                // 已存在
+            }
         }
     }
     
-    private void watchLeaderNode() {
+    // ---------------- 挂载表 ----------------
+    
+    private String mountsPath() {
+        return zkRootPath + "/mounts";
+    }
+    
+    /**
+     * 读取挂载表并重新注册watch；节点不存在时用exists监听其创建
+     */
+    private void loadMountTable() {
+        if (zooKeeper == null) {
+            return;
+        }
         try {
-            // 监听leader路径下的子节点变化
-            zooKeeper.getChildren(leaderPath, new Watcher() {
-                @Override
-                public void process(WatchedEvent event) {
-                    if (event.getType() == Event.EventType.NodeChildrenChanged) {
-                        log.info("检测到leader节点变化，重新尝试成为leader");
-                        // 重新尝试成为leader
-                        tryBecomeLeader();
-                    }
-                }
-            });
+            if (zooKeeper.exists(mountsPath(), mountWatcher) == null) {
+                mountEntries = Collections.emptyList();
+                return;
+            }
+            byte[] data = zooKeeper.getData(mountsPath(), mountWatcher, null);
+            mountEntries = parseMounts(data);
+            log.info("加载挂载表: {} 条", mountEntries.size());
+        } catch (KeeperException.NoNodeException e) {
+            mountEntries = Collections.emptyList();
         } catch (Exception e) {
-            log.error("设置leader节点监听失败", e);
+            // 保留旧表，等待下一次事件或重连
+            log.error("加载挂载表失败", e);
         }
     }
     
-    private void watchLeaderNode(String leaderNodePath) {
-        try {
-            // 监听当前leader节点
-            zooKeeper.exists(leaderNodePath, new Watcher() {
-                @Override
-                public void process(WatchedEvent event) {
-                    if (event.getType() == Event.EventType.NodeDeleted) {
-                        log.warn("Leader节点被删除，重新启动leader选举");
-                        isLeader.set(false);
-                        tryBecomeLeader();
-                    }
-                }
-            });
-        } catch (Exception e) {
-            log.error("设置leader节点监听失败", e);
+    private static List<MountEntry> parseMounts(byte[] data) throws java.io.IOException {
+        if (data == null || data.length == 0) {
+            return Collections.emptyList();
+        }
+        List<MountEntry> entries = MAPPER.readValue(data, MOUNT_LIST_TYPE);
+        return entries == null ? Collections.emptyList() : Collections.unmodifiableList(entries);
+    }
+    
+    public String getGroup() {
+        return group;
+    }
+    
+    public List<MountEntry> getMountTable() {
+        return mountEntries;
+    }
+    
+    /**
+     * 路径所属的MetaServer组：同一文件系统下最长前缀匹配的挂载条目，没有命中时为default组
+     */
+    public String resolveGroup(String fileSystemName, String path) {
+        MountEntry best = null;
+        for (MountEntry entry : mountEntries) {
+            if (entry.getFileSystemName().equals(fileSystemName) && covers(entry.getPath(), path)
+                    && (best == null || entry.getPath().length() > best.getPath().length())) {
+                best = entry;
+            }
         }
+        return best != null ? best.getGroup() : DEFAULT_GROUP;
     }
     
     /**
-     * 获取所有MetaServer节点信息
+     * 路径是否由本组管理；客户端挂载表缓存过期时会把请求发到错误的组，据此拒绝，避免同一路径在两个组中各自生效
+     */
+    public boolean ownsPath(String fileSystemName, String path) {
+        return group.equals(resolveGroup(fileSystemName, path));
+    }
+    
+    private static boolean covers(String mountPath, String path) {
+        return "/".equals(mountPath) || path.equals(mountPath) || path.startsWith(mountPath + "/");
+    }
+    
+    /**
+     * 新增或替换挂载条目（按文件系统+路径唯一），group为null时删除该条目
+     * 以版本号做CAS更新ZK上的挂载表；挂载只改变路由，不迁移已有元数据
+     */
+    public List<MountEntry> updateMount(String fileSystemName, String path, String targetGroup) throws Exception {
+        String mountPath = path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        ensurePath(mountsPath());
+        while (true) {
+            Stat stat = new Stat();
+            byte[] data = zooKeeper.getData(mountsPath(), false, stat);
+            List<MountEntry> entries = new ArrayList<>(parseMounts(data));
+            entries.removeIf(entry -> entry.getFileSystemName().equals(fileSystemName) && entry.getPath().equals(mountPath));
+            if (targetGroup != null) {
+                entries.add(new MountEntry(fileSystemName, mountPath, targetGroup));
+            }
+            try {
+                zooKeeper.setData(mountsPath(), MAPPER.writeValueAsString(entries).getBytes(StandardCharsets.UTF_8), stat.getVersion());
+                log.info("更新挂载表: fileSystemName={}, path={}, group={}", fileSystemName, mountPath, targetGroup);
+                mountEntries = Collections.unmodifiableList(entries);
+                return mountEntries;
+            } catch (KeeperException.BadVersionException e) {
+                // 并发修改，重读后重试
+            }
+        }
+    }
+    
+    /**
+     * 获取所有MetaServer节点信息（本组）
      */
     public List<Map<String, Object>> getAllMetaServers() {
         List<Map<String, Object>> metaServers = new ArrayList<>();
         try {
-            String metaServerPath = zkRootPath + "/metaservers";
+            String metaServerPath = groupRoot() + "/metaservers";
             List<String> children = zooKeeper.getChildren(metaServerPath, false);
             
             for (String child : children) {
@@ -248,30 +352,17 @@ public class ZkMetaServerService implements ApplicationRunner {
     }
     
     /**
-     * 检查是否为Leader
+     * 检查是否为Leader（以Raft为准）
      */
     public boolean isLeader() {
-        return isLeader.get();
+        return raftService.isLeader();
     }
 
     /**
-     * 获取当前Leader地址 host:port
+     * 获取当前Leader地址 host:port（以Raft为准），未知时为null
      */
     public String getLeaderAddress() {
-        try {
-            String leaderNodePath = zkRootPath + "/leader/leader";
-            byte[] data = zooKeeper.getData(leaderNodePath, false, null);
-            if (data != null && data.length > 0) {
-                String s = new String(data);
-                String[] parts = s.split(":");
-                if (parts.length >= 2) {
-                    return parts[0] + ":" + parts[1];
-                }
-            }
-        } catch (Exception e) {
-            log.warn("获取Leader地址失败", e);
-        }
-        return null;
+        return raftService.getLeaderAddress();
     }
     
     /**
@@ -0,0 +1,128 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.AppendEntriesRequest;
+import com.ksyun.campus.metaserver.domain.AppendEntriesResponse;
+import com.ksyun.campus.metaserver.domain.InstallSnapshotRequest;
+import com.ksyun.campus.metaserver.domain.VoteRequest;
+import com.ksyun.campus.metaserver.domain.VoteResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一进程内的RaftTransport：按节点ID直接调用对应RaftNode的处理方法，每个节点持有一个以自身ID发送的实例
+ * 请求在共享线程池上异步执行，与HTTP实现一样不阻塞调用方；断开的节点收发的请求都以ConnectException失败，用于模拟宕机和网络分区
+ */
+final class InMemoryRaftTransport implements RaftTransport {
+
+    private final String selfId;
+    private final Network network;
+
+    InMemoryRaftTransport(String selfId, Network network) {
+        this.selfId = selfId;
+        this.network = network;
+    }
+
+    @Override
+    public CompletableFuture<VoteResponse> requestVote(String peer, VoteRequest request) {
+        return network.deliver(selfId, peer, node -> node.handleVote(request));
+    }
+
+    @Override
+    public CompletableFuture<AppendEntriesResponse> appendEntries(String peer, AppendEntriesRequest request) {
+        return network.deliver(selfId, peer, node -> node.handleAppendEntries(request));
+    }
+
+    @Override
+    public CompletableFuture<AppendEntriesResponse> installSnapshot(String peer, InstallSnapshotRequest request) {
+        return network.deliver(selfId, peer, node -> node.handleInstallSnapshot(request));
+    }
+
+    @Override
+    public void fetchSnapshotFile(String peer, String snapshotId, String fileName, long offset, OutputStream out) throws IOException {
+        network.checkConnected(selfId, peer);
+        Path file = network.storages.get(peer).getSnapshotFile(snapshotId, fileName);
+        if (file == null) {
+            throw new IOException("快照文件不存在: " + snapshotId + "/" + fileName);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            in.skipNBytes(offset);
+            in.transferTo(out);
+        }
+    }
+
+    @FunctionalInterface
+    interface Handler<T> {
+        T handle(RaftNode node) throws Exception;
+    }
+
+    /**
+     * 节点注册表与连通状态，测试中的所有节点共享一个
+     */
+    static final class Network {
+
+        private final Map<String, RaftNode> nodes = new ConcurrentHashMap<>();
+        private final Map<String, MetadataStorageService> storages = new ConcurrentHashMap<>();
+        private final Set<String> disconnected = ConcurrentHashMap.newKeySet();
+        private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Raft-InMemory-Transport");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        void register(RaftNode node, MetadataStorageService storage) {
+            nodes.put(node.getSelfId(), node);
+            storages.put(node.getSelfId(), storage);
+        }
+
+        /**
+         * 断开节点：之后发往它和由它发出的请求都失败，已在处理中的请求的响应也会丢失
+         */
+        void disconnect(String id) {
+            disconnected.add(id);
+        }
+
+        void reconnect(String id) {
+            disconnected.remove(id);
+        }
+
+        private <T> CompletableFuture<T> deliver(String from, String to, Handler<T> handler) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    checkConnected(from, to);
+                    T response = handler.handle(nodes.get(to));
+                    checkConnected(from, to);
+                    return response;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+
+        private void checkConnected(String from, String to) throws ConnectException {
+            if (disconnected.contains(from) || disconnected.contains(to) || !nodes.containsKey(to)) {
+                throw new ConnectException("连接被拒绝: " + from + " -> " + to);
+            }
+        }
+
+        /**
+         * 等待在途的请求处理完，之后才能关闭各节点的storage
+         */
+        void close() throws InterruptedException {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
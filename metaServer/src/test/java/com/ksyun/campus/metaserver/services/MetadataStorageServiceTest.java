@@ -0,0 +1,74 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.FileType;
+import com.ksyun.campus.metaserver.domain.StatInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MetadataStorageServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MetadataStorageService storage;
+    private long txid;
+
+    @BeforeEach
+    void setUp() {
+        storage = TestStorages.open(tempDir.resolve("db"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.cleanup();
+    }
+
+    /**
+     * 名称互为前缀（"a"与"a:b"）的两个文件系统共用根inode ID，列目录与删除不能越过文件系统边界
+     */
+    @Test
+    void fileSystemsWithPrefixNamesStayIsolated() {
+        apply(new MetadataBatch().put("a", "/", stat("/", FileType.Directory)).put("a", "/y", stat("/y", FileType.File)));
+        apply(new MetadataBatch().put("a:b", "/", stat("/", FileType.Directory)).put("a:b", "/x", stat("/x", FileType.File)));
+
+        assertEquals(List.of("/y"), paths(storage.listDirectory("a", "/")));
+        assertEquals(List.of("/x"), paths(storage.listDirectory("a:b", "/")));
+        assertNull(storage.getMetadata("a", "/b:x"));
+
+        apply(new MetadataBatch().delete("a", "/"));
+        assertNull(storage.getMetadata("a", "/y"));
+        assertNotNull(storage.getMetadata("a:b", "/x"));
+        assertEquals(List.of("/x"), paths(storage.listDirectory("a:b", "/")));
+    }
+
+    private void apply(MetadataBatch batch) {
+        storage.applyEditLog(batch.toEditLogEntry(++txid, 1, System.currentTimeMillis()));
+    }
+
+    private static StatInfo stat(String path, FileType type) {
+        StatInfo statInfo = new StatInfo();
+        statInfo.setPath(path);
+        statInfo.setSize(0);
+        statInfo.setMtime(System.currentTimeMillis());
+        statInfo.setType(type);
+        return statInfo;
+    }
+
+    private static List<String> paths(List<StatInfo> statInfos) {
+        List<String> paths = new ArrayList<>();
+        for (StatInfo statInfo : statInfos) {
+            paths.add(statInfo.getPath());
+        }
+        return paths;
+    }
+}
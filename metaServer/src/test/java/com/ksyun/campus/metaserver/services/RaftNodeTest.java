@@ -0,0 +1,263 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.domain.AppendEntriesRequest;
+import com.ksyun.campus.metaserver.domain.AppendEntriesResponse;
+import com.ksyun.campus.metaserver.domain.EditLogEntry;
+import com.ksyun.campus.metaserver.domain.FileType;
+import com.ksyun.campus.metaserver.domain.StatInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 三个RaftNode通过InMemoryRaftTransport在同一进程内组成集群，各自使用临时目录下的RocksDB
+ */
+class RaftNodeTest {
+
+    private static final String FS = "raft-test";
+    private static final List<String> IDS = List.of("n1", "n2", "n3");
+    private static final RaftNode.Options OPTIONS = new RaftNode.Options(500, 50, 64, 4, 5000);
+    private static final long AWAIT_MS = 10000;
+
+    @TempDir
+    Path tempDir;
+
+    private final InMemoryRaftTransport.Network network = new InMemoryRaftTransport.Network();
+    private final Map<String, RaftNode> nodes = new LinkedHashMap<>();
+    private final Map<String, MetadataStorageService> storages = new LinkedHashMap<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        // 先切断所有连接，再停止节点、等在途请求处理完，最后关闭RocksDB
+        nodes.keySet().forEach(network::disconnect);
+        nodes.values().forEach(RaftNode::stop);
+        network.close();
+        storages.values().forEach(MetadataStorageService::cleanup);
+    }
+
+    @Test
+    void electsSingleLeaderAndReplicatesToAll() throws Exception {
+        startCluster();
+        RaftNode leader = awaitLeader(nodes.values());
+
+        long txid = propose(leader, "/elected");
+        for (String id : IDS) {
+            awaitApplied(id, txid);
+            assertNotNull(storages.get(id).getMetadata(FS, "/elected"), id);
+            assertEquals(leader.getSelfId(), nodes.get(id).getLeaderId(), id);
+        }
+    }
+
+    @Test
+    void commitsWithMajorityWhileFollowerStalled() throws Exception {
+        startCluster();
+        RaftNode leader = awaitLeader(nodes.values());
+        String stalled = followersOf(leader).get(0);
+        String active = followersOf(leader).get(1);
+        network.disconnect(stalled);
+
+        long txid = propose(leader, "/majority");
+        assertNotNull(storages.get(leader.getSelfId()).getMetadata(FS, "/majority"));
+        awaitApplied(active, txid);
+        assertTrue(storages.get(stalled).getLastTxid() < txid, "失联的Follower不应应用该日志");
+        assertTrue(leader.isLeader(), "多数派仍在时Leader不应退位");
+
+        // 重新连通后从断开处追上
+        network.reconnect(stalled);
+        awaitApplied(stalled, txid);
+        assertNotNull(storages.get(stalled).getMetadata(FS, "/majority"));
+    }
+
+    @Test
+    void truncatesOnlyConflictingSuffix() throws Exception {
+        MetadataStorageService storage = newStorage("n1");
+        RaftNode follower = new RaftNode("n1", List.of("n2", "n3"), storage, new InMemoryRaftTransport("n1", network), OPTIONS, null);
+        nodes.put("n1", follower);
+
+        // 任期1的Leader写入txid 1~3
+        AppendEntriesResponse response = follower.handleAppendEntries(appendRequest(1, "n2", 0, 0, entry(1, 1), entry(2, 1), entry(3, 1)));
+        assertTrue(response.isSuccess());
+        assertEquals(3, response.getMatchTxid());
+
+        // 任期2的Leader在txid 2处写入不同的条目：截断2之后的后缀
+        response = follower.handleAppendEntries(appendRequest(2, "n3", 1, 1, entry(2, 2)));
+        assertTrue(response.isSuccess());
+        assertEquals(2, storage.getLastLogTxid());
+        assertEquals(1, storage.termAt(1));
+        assertEquals(2, storage.termAt(2));
+        assertEquals(-1, storage.termAt(3));
+
+        response = follower.handleAppendEntries(appendRequest(2, "n3", 2, 2, entry(3, 2)));
+        assertTrue(response.isSuccess());
+        assertEquals(3, storage.getLastLogTxid());
+
+        // 迟到的重复请求与本地条目一致，不截断之后的日志
+        response = follower.handleAppendEntries(appendRequest(2, "n3", 1, 1, entry(2, 2)));
+        assertTrue(response.isSuccess());
+        assertEquals(3, storage.getLastLogTxid());
+
+        // prevTxid处任期不一致时拒绝，回退到本地该任期的第一条
+        response = follower.handleAppendEntries(appendRequest(2, "n3", 3, 1));
+        assertFalse(response.isSuccess());
+        assertEquals(2, response.getMatchTxid());
+        assertEquals(3, storage.getLastLogTxid());
+
+        // 过期任期的请求直接拒绝
+        response = follower.handleAppendEntries(appendRequest(1, "n2", 3, 2, entry(4, 1)));
+        assertFalse(response.isSuccess());
+        assertEquals(2, response.getTerm());
+        assertEquals(3, storage.getLastLogTxid());
+    }
+
+    @Test
+    void failsOverWhenLeaderDisconnected() throws Exception {
+        startCluster();
+        RaftNode oldLeader = awaitLeader(nodes.values());
+        long before = propose(oldLeader, "/before");
+        long oldTerm = storages.get(oldLeader.getSelfId()).getCurrentTerm();
+
+        network.disconnect(oldLeader.getSelfId());
+        List<RaftNode> rest = new ArrayList<>();
+        for (String id : followersOf(oldLeader)) {
+            rest.add(nodes.get(id));
+        }
+        RaftNode newLeader = awaitLeader(rest);
+        assertNotEquals(oldLeader.getSelfId(), newLeader.getSelfId());
+        assertTrue(storages.get(newLeader.getSelfId()).getCurrentTerm() > oldTerm);
+
+        // 旧Leader得不到多数派响应后主动退位，不再接受提案
+        await(() -> !oldLeader.isLeader(), "旧Leader未退位");
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+                () -> oldLeader.propose(putBatch("/rejected")).get(AWAIT_MS, TimeUnit.MILLISECONDS));
+        assertInstanceOf(NotLeaderException.class, rejected.getCause());
+
+        long after = propose(newLeader, "/after");
+        assertTrue(after > before);
+        assertNotNull(storages.get(newLeader.getSelfId()).getMetadata(FS, "/before"));
+
+        // 旧Leader重新连通后跟随新Leader并追上日志
+        network.reconnect(oldLeader.getSelfId());
+        awaitApplied(oldLeader.getSelfId(), after);
+        assertNotNull(storages.get(oldLeader.getSelfId()).getMetadata(FS, "/after"));
+        assertEquals(newLeader.getSelfId(), oldLeader.getLeaderId());
+    }
+
+    private void startCluster() {
+        for (String id : IDS) {
+            List<String> peers = new ArrayList<>(IDS);
+            peers.remove(id);
+            MetadataStorageService storage = newStorage(id);
+            RaftNode node = new RaftNode(id, peers, storage, new InMemoryRaftTransport(id, network), OPTIONS, null);
+            network.register(node, storage);
+            nodes.put(id, node);
+        }
+        nodes.values().forEach(RaftNode::start);
+    }
+
+    private MetadataStorageService newStorage(String id) {
+        MetadataStorageService storage = TestStorages.open(tempDir.resolve(id));
+        storages.put(id, storage);
+        return storage;
+    }
+
+    /**
+     * 等待candidates中恰好一个Leader，且其余节点都已认它为Leader
+     */
+    private RaftNode awaitLeader(Collection<RaftNode> candidates) {
+        RaftNode[] found = new RaftNode[1];
+        await(() -> {
+            RaftNode leader = null;
+            for (RaftNode node : candidates) {
+                if (node.isLeader()) {
+                    if (leader != null) {
+                        return false;
+                    }
+                    leader = node;
+                }
+            }
+            if (leader == null) {
+                return false;
+            }
+            for (RaftNode node : candidates) {
+                if (!leader.getSelfId().equals(node.getLeaderId())) {
+                    return false;
+                }
+            }
+            found[0] = leader;
+            return true;
+        }, "未选出Leader");
+        return found[0];
+    }
+
+    private List<String> followersOf(RaftNode leader) {
+        List<String> followers = new ArrayList<>(IDS);
+        followers.remove(leader.getSelfId());
+        return followers;
+    }
+
+    private long propose(RaftNode leader, String path) throws Exception {
+        return leader.propose(putBatch(path)).get(AWAIT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitApplied(String id, long txid) {
+        await(() -> storages.get(id).getLastTxid() >= txid, id + " 未应用到 txid=" + txid);
+    }
+
+    private static MetadataBatch putBatch(String path) {
+        StatInfo statInfo = new StatInfo();
+        statInfo.setPath(path);
+        statInfo.setSize(0);
+        statInfo.setMtime(System.currentTimeMillis());
+        statInfo.setType(FileType.File);
+        return new MetadataBatch().put(FS, path, statInfo);
+    }
+
+    private static EditLogEntry entry(long txid, long term) {
+        return new EditLogEntry(txid, term, System.currentTimeMillis());
+    }
+
+    private static AppendEntriesRequest appendRequest(long term, String leaderId, long prevTxid, long prevTerm, EditLogEntry... entries) {
+        AppendEntriesRequest request = new AppendEntriesRequest();
+        request.setTerm(term);
+        request.setLeaderId(leaderId);
+        request.setPrevTxid(prevTxid);
+        request.setPrevTerm(prevTerm);
+        request.setEntries(List.of(entries));
+        request.setLeaderCommit(0);
+        return request;
+    }
+
+    private static void await(BooleanSupplier condition, String message) {
+        long deadline = System.currentTimeMillis() + AWAIT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(message);
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(message);
+            }
+        }
+    }
+}
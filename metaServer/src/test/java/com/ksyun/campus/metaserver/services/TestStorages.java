@@ -0,0 +1,28 @@
+package com.ksyun.campus.metaserver.services;
+
+import com.ksyun.campus.metaserver.config.RocksDbProperties;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+/**
+ * 不经过Spring，在指定目录上打开一个MetadataStorageService，配置取各@Value的默认值（缓存改小）
+ */
+final class TestStorages {
+
+    private TestStorages() {
+    }
+
+    static MetadataStorageService open(Path dir) {
+        MetadataStorageService storage = new MetadataStorageService();
+        ReflectionTestUtils.setField(storage, "rocksDbProperties", new RocksDbProperties());
+        ReflectionTestUtils.setField(storage, "dbPath", dir.toString());
+        ReflectionTestUtils.setField(storage, "dentryCacheSize", 1024);
+        ReflectionTestUtils.setField(storage, "inodeCacheSize", 1024);
+        ReflectionTestUtils.setField(storage, "statCacheSize", 1024);
+        ReflectionTestUtils.setField(storage, "editLogRetain", 100000L);
+        ReflectionTestUtils.setField(storage, "snapshotFileSizeMb", 64L);
+        storage.init();
+        return storage;
+    }
+}